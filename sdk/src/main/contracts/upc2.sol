@@ -78,6 +78,7 @@ contract UPC2 is ReentrancyGuard{
     uint256 channelExpiry;                          // linux time when channel expires
     Party hub; Party client;                        // two parties in the channel
     PromiseAddressReceiver[] unresolvedPromises;    // a list of registered promises to be resolved
+    uint256 resolveCursor;                          // index of the next promise in unresolvedPromises to resolve
     uint256 private constant unresolvedPromiseLimit = 2000;
 
 
@@ -158,16 +159,57 @@ contract UPC2 is ReentrancyGuard{
     }
 
     function verifyPromise(Promise memory _promise, Signature memory sig, bytes32[] memory memProof, Party memory thisParty) public view onlyChannelParticipants returns (address){
-        require( (_promise.sender == client.addr && _promise.receiver == hub.addr) || (_promise.sender == hub.addr && _promise.receiver == client.addr) , "sender and receiver of promise are not correctly set");
         require(unresolvedPromises.length < unresolvedPromiseLimit, "Unresolved promises array is maxed out.");
-        address promiseAddress = getAddress(_promise.contractByteCode, _promise.salt);
+        (address promiseAddress, bool needsProof) = _checkPromise(_promise, sig, thisParty);
+        if (needsProof) // to prevent double spending, check membership proof of promise inside the accumulator submitted in registerReceipt
+            require(MerkleProof.verify(memProof, thisParty.acc, keccak256(abi.encode(promiseAddress))), "membership proof of the promise inside the accumulator not verified");
+        return promiseAddress;
+    }
+
+
+    /// @notice registering many promises in one transaction; the membership proofs of all promises that need one are checked with a single multiproof
+    /// @param _promises    the promises to register; the ones that need a membership proof come first, in the leaf order of the multiproof
+    /// @param sigs         signatures of the promise senders, one for each promise
+    /// @param multiProof   the sibling hashes of the multiproof (see MerkleProof.multiProofVerify)
+    /// @param proofFlags   the flags of the multiproof
+    function registerPromises(Promise[] memory _promises, Signature[] memory sigs, bytes32[] memory multiProof, bool[] memory proofFlags) external onlyChannelParticipants channelActiveOrPauseOrClosing setClosing{
+        require(_promises.length == sigs.length, "number of promises and signatures do not match");
+        require(unresolvedPromises.length + _promises.length <= unresolvedPromiseLimit, "Unresolved promises array is maxed out.");
+        Party memory thisParty = _getParty(msg.sender);
+        address[] memory promiseAddresses = new address[](_promises.length);
+        bytes32[] memory leaves = new bytes32[](_promises.length);
+        uint256 numLeaves = 0;
+        for (uint256 i = 0; i < _promises.length; i++) {
+            (address promiseAddress, bool needsProof) = _checkPromise(_promises[i], sigs[i], thisParty);
+            if (needsProof) {
+                require(numLeaves == i, "promises that need a membership proof must come first");
+                leaves[numLeaves++] = keccak256(abi.encode(promiseAddress));
+            }
+            promiseAddresses[i] = promiseAddress;
+        }
+        if (numLeaves > 0) {
+            assembly { mstore(leaves, numLeaves) } // shrink leaves to the promises that need a proof
+            require(MerkleProof.multiProofVerify(multiProof, proofFlags, thisParty.acc, leaves), "membership multiproof of the promises inside the accumulator not verified");
+        }
+        for (uint256 i = 0; i < _promises.length; i++) {
+            _deploy(_promises[i].contractByteCode, _promises[i].salt);
+            unresolvedPromises.push(PromiseAddressReceiver(promiseAddresses[i], _promises[i].receiver));
+            emit DeployPromise(msg.sender, channelParams.cid, promiseAddresses[i]);
+        }
+    }
+
+
+    /// @notice checks everything about a promise except its membership proof
+    /// @return promiseAddress    the address the promise will be deployed to
+    /// @return needsProof        whether a membership proof in the accumulator of thisParty is required
+    function _checkPromise(Promise memory _promise, Signature memory sig, Party memory thisParty) private view returns (address promiseAddress, bool needsProof){
+        require( (_promise.sender == client.addr && _promise.receiver == hub.addr) || (_promise.sender == hub.addr && _promise.receiver == client.addr) , "sender and receiver of promise are not correctly set");
+        promiseAddress = getAddress(_promise.contractByteCode, _promise.salt);
         if (thisParty.addr == _promise.receiver){
             require(_sigVerify(_promise.sender, _promiseHash(_promise, promiseAddress), sig), "signature of promise sender does not verify");
             require(thisParty.receiptRegistered == true, "receipt of the receiver needs to be registered first (to make sure this promise is not being double spent)");
-            if((_promise.rid < thisParty.rid) && thisParty.rid != 0) // to prevent double spending, check membership proof of promise inside the accumulator submitted in registerReceipt
-                require(MerkleProof.verify(memProof, thisParty.acc, keccak256(abi.encode(promiseAddress))), "membership proof of the promise inside the accumulator not verified");
+            needsProof = (_promise.rid < thisParty.rid) && thisParty.rid != 0;
         }
-        return promiseAddress;
     }
 
 
@@ -216,7 +258,7 @@ contract UPC2 is ReentrancyGuard{
 
     /// @notice upon expiry of the channel or cooperative closing, anyone can call to withdraw the settled amounts for each party
     function withdrawClosing() external nonReentrant channelClosed onlyChannelParticipants{
-        _resolvePromises();
+        _resolvePromises(type(uint256).max);
 
         require(hub.deposit + client.deposit >= hub.credit + client.credit, "Trying to withdraw more than you have");
 
@@ -246,20 +288,33 @@ contract UPC2 is ReentrancyGuard{
     }
 
 
-/// @notice this function is called at the time of withdrawal to iterate through all the registered promises and resolve the final amount
-    function _resolvePromises() internal {
-        uint256 i = 0;
-         while (i < unresolvedPromises.length) { // may want to batch this; to avoid running out of gas
-            // try{
-                _resolvePromise(unresolvedPromises[i]);
-            // }
-            // catch{
-            //     console.log("Catch on i = %s" , i);
-            //     //TODO: emit similar error here.
-            // } 
-            i++;
+    /// @notice resolves up to maxCount registered promises, continuing from where the previous call stopped
+    /// @notice with many promises, call this repeatedly before withdrawClosing so that each transaction stays within the block gas limit
+    /// @param maxCount    the maximum number of promises to resolve in this call
+    function resolvePromises(uint256 maxCount) external nonReentrant channelClosed onlyChannelParticipants{
+        require(maxCount != 0, "maxCount should not be zero.");
+        _resolvePromises(maxCount);
+    }
+
+
+    /// @notice returns the number of resolved promises and the total number of registered promises
+    function getResolveProgress() external view returns (uint256, uint256) {
+        return (resolveCursor, unresolvedPromises.length);
+    }
+
+
+/// @notice this function is called at the time of withdrawal to iterate through the registered promises that are not resolved yet and resolve the final amount
+    /// @param maxCount    the maximum number of promises to resolve
+    function _resolvePromises(uint256 maxCount) internal {
+        uint256 end = unresolvedPromises.length;
+        if (end - resolveCursor > maxCount)
+            end = resolveCursor + maxCount;
+        for (uint256 i = resolveCursor; i < end; i++) {
+            _resolvePromise(unresolvedPromises[i]);
         }
-        delete unresolvedPromises;
+        resolveCursor = end;
+        // unresolvedPromises is not deleted: no promise can be registered once the channel is closed, and clearing
+        // every slot would cost more gas than resolving; the contract self-destructs on withdrawal
     }
     
 
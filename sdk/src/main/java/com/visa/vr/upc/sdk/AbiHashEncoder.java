@@ -0,0 +1,135 @@
+package com.visa.vr.upc.sdk;
+
+import com.visa.vr.upc.sdk.domain.UInt256;
+import org.bouncycastle.crypto.digests.KeccakDigest;
+
+/**
+ * Computes keccak256 of the ABI encoding of static types (uint256, address, bytes32), as abi.encode does in the
+ * contracts. Words are written straight into a reusable per-thread buffer and hashed in place, without the web3j
+ * {@code Type} objects and hex strings of {@code FunctionEncoder}.
+ *
+ * <p>Usage: {@code AbiHashEncoder.start().uint256(a).address(b).hash()}. An encoder must be finished with
+ * {@link #hash()} before another one is started on the same thread.</p>
+ */
+public final class AbiHashEncoder {
+
+    /**
+     * The maximum number of 32-byte words that can be hashed.
+     */
+    public static final int MAX_WORDS = 8;
+
+    private static final ThreadLocal<AbiHashEncoder> ENCODER = ThreadLocal.withInitial(AbiHashEncoder::new);
+
+    private final byte[] buffer = new byte[MAX_WORDS * 32];
+
+    private final KeccakDigest digest = new KeccakDigest(256);
+
+    private int length = 0;
+
+    private AbiHashEncoder() {
+    }
+
+    /**
+     * Returns the empty encoder of the current thread.
+     * @return
+     */
+    public static AbiHashEncoder start() {
+        AbiHashEncoder encoder = ENCODER.get();
+        encoder.length = 0;
+        return encoder;
+    }
+
+    /**
+     * Appends a uint256 word.
+     * @param value a non-negative value
+     * @return
+     */
+    public AbiHashEncoder uint256(long value) {
+        if (value < 0) {
+            throw new IllegalArgumentException("uint256 value is negative");
+        }
+        int offset = nextWord();
+        for (int i = 31; i >= 24; i--) {
+            buffer[offset + i] = (byte) value;
+            value >>>= 8;
+        }
+        return this;
+    }
+
+    /**
+     * Appends a uint256 word.
+     * @param value
+     * @return
+     */
+    public AbiHashEncoder uint256(UInt256 value) {
+        value.writeTo(buffer, nextWord());
+        return this;
+    }
+
+    /**
+     * Appends an address word. The address is a hex string of at most 40 digits, with or without the 0x prefix.
+     * @param address
+     * @return
+     */
+    public AbiHashEncoder address(String address) {
+        int start = address.startsWith("0x") || address.startsWith("0X") ? 2 : 0;
+        int digits = address.length() - start;
+        if (digits > 40) {
+            throw new IllegalArgumentException("Address is longer than 20 bytes: " + address);
+        }
+        int offset = nextWord();
+        // Fill from the last digit backwards, so a short address is left padded with zeros
+        int position = offset + 31;
+        for (int i = address.length() - 1; i >= start; i -= 2) {
+            int low = hexDigit(address, i);
+            int high = i - 1 >= start ? hexDigit(address, i - 1) : 0;
+            buffer[position--] = (byte) ((high << 4) | low);
+        }
+        return this;
+    }
+
+    /**
+     * Appends a bytes32 word.
+     * @param value exactly 32 bytes
+     * @return
+     */
+    public AbiHashEncoder bytes32(byte[] value) {
+        if (value.length != 32) {
+            throw new IllegalArgumentException("bytes32 value is not 32 bytes long");
+        }
+        System.arraycopy(value, 0, buffer, nextWord(), 32);
+        return this;
+    }
+
+    /**
+     * Returns the keccak256 hash of the words appended since {@link #start()}.
+     * @return
+     */
+    public byte[] hash() {
+        byte[] hash = new byte[32];
+        digest.update(buffer, 0, length);
+        digest.doFinal(hash, 0);
+        length = 0;
+        return hash;
+    }
+
+    private int nextWord() {
+        if (length == buffer.length) {
+            throw new IllegalStateException("Too many words to encode");
+        }
+        int offset = length;
+        for (int i = offset; i < offset + 32; i++) {
+            buffer[i] = 0;
+        }
+        length += 32;
+        return offset;
+    }
+
+    private static int hexDigit(String s, int index) {
+        int digit = Character.digit(s.charAt(index), 16);
+        if (digit < 0) {
+            throw new IllegalArgumentException("Invalid hex character in address: " + s);
+        }
+        return digit;
+    }
+}
@@ -1,6 +1,7 @@
 package com.visa.vr.upc.sdk;
 
 import org.web3j.abi.datatypes.Address;
+import org.web3j.utils.Numeric;
 
 /**
  * Some utility functions for working with strings that contain Eth addresses.
@@ -16,4 +17,13 @@ public class AddressUtils {
     public static boolean isEqual(String a, String b){
         return new Address(a).equals(new Address(b));
     }
+
+    /**
+     * Normalizes an address to lower case with a 0x prefix, e.g. for use as a map key.
+     * @param address
+     * @return
+     */
+    public static String normalize(String address){
+        return Numeric.prependHexPrefix(Numeric.cleanHexPrefix(address).toLowerCase());
+    }
 }
@@ -1,7 +1,10 @@
 package com.visa.vr.upc.sdk;
 
 import com.visa.vr.upc.sdk.domain.*;
-import kotlin.Pair;
+import com.visa.vr.upc.sdk.store.PromiseArchive;
+import com.visa.vr.upc.sdk.store.PromiseStore;
+import com.visa.vr.upc.sdk.store.ReceiptRetentionPolicy;
+import com.visa.vr.upc.sdk.store.ReceiptStore;
 
 import java.time.Instant;
 import java.util.*;
@@ -16,13 +19,13 @@ public class DefaultDataService implements IChannelDataService, IPromiseDataServ
 
     private final HashMap<Long, Channel> channels;
 
-    private final HashMap<Long, StatefulPromise> incomingPromises;
+    private final PromiseStore incomingPromises;
 
-    private final HashMap<Long, StatefulPromise> outgoingPromises;
+    private final PromiseStore outgoingPromises;
 
-    private final HashMap<Pair<Long, Long>, Receipt> outgoingReceipts;
+    private final ReceiptStore outgoingReceipts;
 
-    private final HashMap<Pair<Long, Long>, Receipt> incomingReceipts;
+    private final ReceiptStore incomingReceipts;
 
     private Long nextChannel = 1L;
 
@@ -33,11 +36,29 @@ public class DefaultDataService implements IChannelDataService, IPromiseDataServ
     private final String selfAddress;
 
     public DefaultDataService(String selfAddress){
+        this(selfAddress, ReceiptRetentionPolicy.keepAll());
+    }
+
+    /**
+     * @param selfAddress
+     * @param receiptRetention which receipts to keep in memory, for each channel and direction
+     */
+    public DefaultDataService(String selfAddress, ReceiptRetentionPolicy receiptRetention){
+        this(selfAddress, receiptRetention, PromiseArchive.inMemory(true), PromiseArchive.inMemory(true));
+    }
+
+    /**
+     * @param selfAddress
+     * @param receiptRetention which receipts to keep in memory, for each channel and direction
+     * @param incomingArchive the archive of incoming promises that are no longer open
+     * @param outgoingArchive the archive of outgoing promises that are no longer open
+     */
+    public DefaultDataService(String selfAddress, ReceiptRetentionPolicy receiptRetention, PromiseArchive incomingArchive, PromiseArchive outgoingArchive){
         channels = new HashMap<>();
-        incomingPromises = new HashMap<>();
-        incomingReceipts = new HashMap<>();
-        outgoingPromises = new HashMap<>();
-        outgoingReceipts = new HashMap<>();
+        incomingPromises = new PromiseStore(incomingArchive);
+        incomingReceipts = new ReceiptStore(receiptRetention);
+        outgoingPromises = new PromiseStore(outgoingArchive);
+        outgoingReceipts = new ReceiptStore(receiptRetention);
         this.selfAddress = selfAddress;
     }
 
@@ -53,6 +74,7 @@ public class DefaultDataService implements IChannelDataService, IPromiseDataServ
     public void addChannel(Channel channel){
         //TODO: Check id
         channels.put(channel.getId(), channel);
+        nextChannel = Math.max(nextChannel, channel.getId() + 1);
     }
 
     @Override
@@ -83,7 +105,7 @@ public class DefaultDataService implements IChannelDataService, IPromiseDataServ
     @Override
     public StatefulPromise addOutgoingPromise(Promise promise, Integer promiseType, Boolean triggerClose) {
         StatefulPromise statefulPromise = new StatefulPromise(promise, nextPromise, promiseType, triggerClose);
-        outgoingPromises.put(nextPromise, statefulPromise);
+        outgoingPromises.add(statefulPromise);
         nextPromise += 1;
         return statefulPromise;
     }
@@ -91,125 +113,143 @@ public class DefaultDataService implements IChannelDataService, IPromiseDataServ
     @Override
     public StatefulPromise addIncomingPromise(Promise promise, Long promiseId, Integer promiseType, Boolean triggerClose) {
         StatefulPromise statefulPromise = new StatefulPromise(promise, promiseId, promiseType, triggerClose);
-        incomingPromises.put(promiseId, statefulPromise);
+        incomingPromises.add(statefulPromise);
         return statefulPromise;
     }
 
+    @Override
+    public void restoreOutgoingPromise(StatefulPromise promise) {
+        outgoingPromises.add(promise);
+        nextPromise = Math.max(nextPromise, promise.getPromiseId() + 1);
+    }
+
     @Override
     public void updateIncomingPromise(StatefulPromise promise) {
-        if(!incomingPromises.containsKey(promise.getPromiseId())){
-            throw new IllegalArgumentException("Promise not found");
-        }
-        incomingPromises.put(promise.getPromiseId(), promise);
+        incomingPromises.update(promise);
     }
 
     @Override
     public void updateOutgoingPromise(StatefulPromise promise) {
-        if(!outgoingPromises.containsKey(promise.getPromiseId())){
-            throw new IllegalArgumentException("Promise not found");
-        }
-        outgoingPromises.put(promise.getPromiseId(), promise);
+        outgoingPromises.update(promise);
     }
 
     @Override
     public Optional<StatefulPromise> getIncomingPromiseById(Long id) {
-        return Optional.ofNullable(incomingPromises.getOrDefault(id, null));
+        return incomingPromises.get(id);
     }
 
     @Override
     public Optional<StatefulPromise> getOutgoingPromiseById(Long id) {
-        return Optional.ofNullable(outgoingPromises.getOrDefault(id, null));
+        return outgoingPromises.get(id);
     }
 
     @Override
     public Optional<StatefulPromise> getIncomingPromiseByAddress(String address){
-        return incomingPromises.values().stream().filter(
-                (StatefulPromise p) -> AddressUtils.isEqual(p.getAddress(), address)).findFirst();
+        return incomingPromises.getByAddress(address);
     }
 
     @Override
     public Optional<StatefulPromise> getOutgoingPromiseByAddress(String address){
-        return outgoingPromises.values().stream().filter(
-                (StatefulPromise p) -> AddressUtils.isEqual(p.getAddress(), address)).findFirst();
+        return outgoingPromises.getByAddress(address);
+    }
+
+    @Override
+    public Optional<StatefulPromise> getIncomingPromiseByAddress(long channelId, String address){
+        return incomingPromises.getByAddress(channelId, address);
     }
 
+    @Override
+    public Optional<StatefulPromise> getOutgoingPromiseByAddress(long channelId, String address){
+        return outgoingPromises.getByAddress(channelId, address);
+    }
 
     @Override
     public List<StatefulPromise> getPromisesByChannel(Long channelId) {
-        return Stream.concat(incomingPromises.values().stream(),
-                outgoingPromises.values().stream()).filter((StatefulPromise p) -> p.getChannelId() == channelId)
-                .collect(Collectors.toList());
+        List<StatefulPromise> promises = incomingPromises.getAll(channelId);
+        promises.addAll(outgoingPromises.getAll(channelId));
+        return promises;
+    }
+
+    @Override
+    public Stream<StatefulPromise> streamPromisesByChannel(long channelId) {
+        return Stream.concat(incomingPromises.streamAll(channelId), outgoingPromises.streamAll(channelId));
     }
 
     @Override
     public List<StatefulPromise> getOpenPromisesByChannel(Long channelId) {
-        return Stream.concat(incomingPromises.values().stream(),
-                outgoingPromises.values().stream())
-                .filter((StatefulPromise p) -> p.getChannelId() == channelId
-                        && p.getStatus().equals(PromiseStatus.OPEN))
-                .collect(Collectors.toList());
+        List<StatefulPromise> promises = incomingPromises.getOpen(channelId);
+        promises.addAll(outgoingPromises.getOpen(channelId));
+        return promises;
     }
 
     @Override
     public List<StatefulPromise> getOpenOutgoingPromises(Long channelId){
-        return outgoingPromises.values().stream().filter(
-                (StatefulPromise p) -> p.getChannelId() == channelId
-                        && p.getStatus().equals(PromiseStatus.OPEN))
-                .collect(Collectors.toList());
+        return outgoingPromises.getOpen(channelId);
     }
 
     @Override
     public List<StatefulPromise> getOpenIncomingPromises(Long channelId) {
-        return incomingPromises.values().stream().filter(
-                (StatefulPromise p) -> p.getChannelId() == channelId
-                        && p.getStatus().equals(PromiseStatus.OPEN))
-                .collect(Collectors.toList());
+        return incomingPromises.getOpen(channelId);
+    }
+
+    @Override
+    public Stream<StatefulPromise> streamOpenOutgoingPromises(long channelId) {
+        return outgoingPromises.streamOpen(channelId);
     }
 
     @Override
-    public long getIncomingPendingAmount(long channelId) {
-        return getOpenIncomingPromises(channelId).stream()
-                .mapToLong((StatefulPromise p) -> p.getAmount()).sum();
+    public Stream<StatefulPromise> streamOpenIncomingPromises(long channelId) {
+        return incomingPromises.streamOpen(channelId);
     }
 
     @Override
-    public long getOutgoingPendingAmount(long channelId) {
-        return getOpenOutgoingPromises(channelId).stream()
-                .mapToLong((StatefulPromise p) -> p.getAmount()).sum();
+    public UInt256 getIncomingPendingAmount(long channelId) {
+        return incomingPromises.streamOpen(channelId).map(Promise::getAmount).reduce(UInt256.ZERO, UInt256::add);
+    }
+
+    @Override
+    public UInt256 getOutgoingPendingAmount(long channelId) {
+        return outgoingPromises.streamOpen(channelId).map(Promise::getAmount).reduce(UInt256.ZERO, UInt256::add);
     }
 
     @Override
     public List<StatefulPromise> getIncomingOpenPromisesWithout(long channelId, Set<Long> toRemove){
-        return incomingPromises.values().stream().filter(
-                (StatefulPromise p) -> p.getChannelId() == channelId
-                        && p.getStatus().equals(PromiseStatus.OPEN)
-                        && !toRemove.contains(p.getPromiseId()))
-                .collect(Collectors.toList());
+        return streamIncomingOpenPromisesWithout(channelId, toRemove).collect(Collectors.toList());
     }
 
     @Override
     public List<StatefulPromise> getOutgoingOpenPromisesWithout(long channelId, Set<Long> toRemove){
-        return outgoingPromises.values().stream().filter(
-                (StatefulPromise p) -> p.getChannelId() == channelId
-                        && p.getStatus().equals(PromiseStatus.OPEN)
-                        && !toRemove.contains(p.getPromiseId()))
-                .collect(Collectors.toList());
+        return streamOutgoingOpenPromisesWithout(channelId, toRemove).collect(Collectors.toList());
+    }
+
+    @Override
+    public Stream<StatefulPromise> streamIncomingOpenPromisesWithout(long channelId, Set<Long> toRemove) {
+        return incomingPromises.streamOpen(channelId)
+                .filter((StatefulPromise p) -> !toRemove.contains(p.getPromiseId()));
+    }
+
+    @Override
+    public Stream<StatefulPromise> streamOutgoingOpenPromisesWithout(long channelId, Set<Long> toRemove) {
+        return outgoingPromises.streamOpen(channelId)
+                .filter((StatefulPromise p) -> !toRemove.contains(p.getPromiseId()));
     }
 
     @Override
     public List<StatefulPromise> getExpiringPromises(long channelId) {
-        long threshold = Instant.now().plusSeconds(EXPIRATION_WINDOW).getEpochSecond();
-        return Stream.concat(incomingPromises.values().stream(),
-                outgoingPromises.values().stream())
-                .filter((StatefulPromise p) -> p.getChannelId() == channelId
-                        && p.getTriggerClose()
-                        && p.getExpiration() < threshold)
-                .collect(Collectors.toList());
+        return streamExpiringPromises(channelId).collect(Collectors.toList());
     }
 
     @Override
     public Boolean getPromiseExpiring(long channelId) {
-        return !getExpiringPromises(channelId).isEmpty();
+        return streamExpiringPromises(channelId).findAny().isPresent();
+    }
+
+    @Override
+    public Stream<StatefulPromise> streamExpiringPromises(long channelId) {
+        long threshold = Instant.now().plusSeconds(EXPIRATION_WINDOW).getEpochSecond();
+        return Stream.concat(incomingPromises.streamOpen(channelId), outgoingPromises.streamOpen(channelId))
+                .filter((StatefulPromise p) -> p.getTriggerClose()
+                        && p.getExpiration() < threshold);
     }
 
     @Override
@@ -230,41 +270,37 @@ public class DefaultDataService implements IChannelDataService, IPromiseDataServ
 
     @Override
     public void addOutgoingReceipt(Receipt receipt) {
-        if(outgoingReceipts.putIfAbsent(
-                new Pair<Long, Long>(receipt.getChannelId(), receipt.getReceiptId()), receipt) != null){
-            throw new IllegalArgumentException("Receipt already exists");
-        }
+        outgoingReceipts.add(receipt);
     }
 
     @Override
     public void addIncomingReceipt(Receipt receipt, Long receiptId) {
-        if(incomingReceipts.putIfAbsent(
-                new Pair<Long, Long>(receipt.getChannelId(), receipt.getReceiptId()), receipt) != null){
-            throw new IllegalArgumentException("Receipt already exists");
-        }
+        incomingReceipts.add(receipt);
     }
 
     @Override
     public Optional<Receipt> getIncomingReceiptById(long channelId, long receiptId) {
-        return Optional.ofNullable(incomingReceipts.getOrDefault(new Pair(channelId, receiptId), null));
+        return incomingReceipts.get(channelId, receiptId);
     }
 
     @Override
     public Optional<Receipt> getOutgoingReceiptById(long channelId, long receiptId) {
-        return Optional.ofNullable(outgoingReceipts.getOrDefault(new Pair(channelId, receiptId), null));
+        return outgoingReceipts.get(channelId, receiptId);
     }
 
     @Override
     public Optional<Receipt> getLatestIncomingReceipt(long channelId) {
-        return incomingReceipts.values().stream()
-                .filter((Receipt r) -> r.getChannelId() == channelId)
-                .max(Comparator.comparingLong(r -> r.getReceiptId()));
+        return incomingReceipts.getLatest(channelId);
     }
 
     @Override
     public Optional<Receipt> getLatestOutgoingReceipt(long channelId){
-        return outgoingReceipts.values().stream()
-                .filter((Receipt r) -> r.getChannelId() == channelId)
-                .max(Comparator.comparingLong(r -> r.getReceiptId()));
+        return outgoingReceipts.getLatest(channelId);
+    }
+
+    @Override
+    public void compact(long channelId) {
+        incomingReceipts.compact(channelId);
+        outgoingReceipts.compact(channelId);
     }
 }
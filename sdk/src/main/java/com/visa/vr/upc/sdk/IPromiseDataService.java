@@ -2,11 +2,13 @@ package com.visa.vr.upc.sdk;
 
 import com.visa.vr.upc.sdk.domain.Promise;
 import com.visa.vr.upc.sdk.domain.StatefulPromise;
+import com.visa.vr.upc.sdk.domain.UInt256;
 
 import javax.swing.*;
 import java.util.List;
 import java.util.Optional;
 import java.util.Set;
+import java.util.stream.Stream;
 
 /**
  * An interface that handles promise CRUD operations.
@@ -17,6 +19,24 @@ public interface IPromiseDataService{
 
     StatefulPromise addIncomingPromise(Promise promise, Long promiseId, Integer promiseType, Boolean triggerClose);
 
+    /**
+     * Adds an outgoing promise with the id it already has, e.g. when restoring a snapshot on a standby. The default
+     * implementation only works if {@link #addOutgoingPromise(Promise, Integer, Boolean)} assigns that same id;
+     * implementations that generate ids should override it.
+     * @param promise
+     * @throws IllegalStateException if the promise was added with a different id
+     */
+    default void restoreOutgoingPromise(StatefulPromise promise) {
+        StatefulPromise added = addOutgoingPromise(promise, promise.getPromiseType(), promise.getTriggerClose());
+        if(!added.getPromiseId().equals(promise.getPromiseId())){
+            throw new IllegalStateException("Outgoing promise " + promise.getPromiseId() + " was restored with id " + added.getPromiseId());
+        }
+        if(promise.getStatus() != added.getStatus()){
+            added.setStatus(promise.getStatus());
+            updateOutgoingPromise(added);
+        }
+    }
+
     void updateIncomingPromise(StatefulPromise promise);
 
     void updateOutgoingPromise(StatefulPromise promise);
@@ -29,17 +49,68 @@ public interface IPromiseDataService{
 
     Optional<StatefulPromise> getOutgoingPromiseByAddress(String address);
 
+    /**
+     * Finds an incoming promise of a channel by its address. Implementations should index promises by address, as this
+     * is called for every deployed promise event.
+     * @param channelId
+     * @param address
+     * @return
+     */
+    default Optional<StatefulPromise> getIncomingPromiseByAddress(long channelId, String address) {
+        return getIncomingPromiseByAddress(address).filter(p -> p.getChannelId() == channelId);
+    }
+
+    /**
+     * Finds an outgoing promise of a channel by its address. Implementations should index promises by address, as this
+     * is called for every deployed promise event.
+     * @param channelId
+     * @param address
+     * @return
+     */
+    default Optional<StatefulPromise> getOutgoingPromiseByAddress(long channelId, String address) {
+        return getOutgoingPromiseByAddress(address).filter(p -> p.getChannelId() == channelId);
+    }
+
     List<StatefulPromise> getPromisesByChannel(Long channelId);
 
+    /**
+     * Streams the promises of a channel, so callers can fold over them without a list. Implementations should stream
+     * their own collections without copying them, in which case the service must not be modified until the stream is
+     * consumed. The default implementation streams {@link #getPromisesByChannel(Long)}.
+     * @param channelId
+     * @return
+     */
+    default Stream<StatefulPromise> streamPromisesByChannel(long channelId) {
+        return getPromisesByChannel(channelId).stream();
+    }
+
     List<StatefulPromise> getOpenPromisesByChannel(Long channelId);
 
     List<StatefulPromise> getOpenOutgoingPromises(Long channelId);
 
     List<StatefulPromise> getOpenIncomingPromises(Long channelId);
 
-    long getIncomingPendingAmount(long channelId);
+    /**
+     * Streams the open outgoing promises of a channel, see {@link #streamPromisesByChannel(long)}.
+     * @param channelId
+     * @return
+     */
+    default Stream<StatefulPromise> streamOpenOutgoingPromises(long channelId) {
+        return getOpenOutgoingPromises(channelId).stream();
+    }
 
-    long getOutgoingPendingAmount(long channelId);
+    /**
+     * Streams the open incoming promises of a channel, see {@link #streamPromisesByChannel(long)}.
+     * @param channelId
+     * @return
+     */
+    default Stream<StatefulPromise> streamOpenIncomingPromises(long channelId) {
+        return getOpenIncomingPromises(channelId).stream();
+    }
+
+    UInt256 getIncomingPendingAmount(long channelId);
+
+    UInt256 getOutgoingPendingAmount(long channelId);
 
     List<StatefulPromise> getIncomingOpenPromisesWithout(long channelId, Set<Long> toRemove);
 
@@ -47,6 +118,36 @@ public interface IPromiseDataService{
 
     List<StatefulPromise> getExpiringPromises(long channelId);
 
+    /**
+     * Streams the open incoming promises of a channel except some, see {@link #streamPromisesByChannel(long)}.
+     * @param channelId
+     * @param toRemove the ids of the promises to leave out
+     * @return
+     */
+    default Stream<StatefulPromise> streamIncomingOpenPromisesWithout(long channelId, Set<Long> toRemove) {
+        return streamOpenIncomingPromises(channelId).filter(p -> !toRemove.contains(p.getPromiseId()));
+    }
+
+    /**
+     * Streams the open outgoing promises of a channel except some, see {@link #streamPromisesByChannel(long)}.
+     * @param channelId
+     * @param toRemove the ids of the promises to leave out
+     * @return
+     */
+    default Stream<StatefulPromise> streamOutgoingOpenPromisesWithout(long channelId, Set<Long> toRemove) {
+        return streamOpenOutgoingPromises(channelId).filter(p -> !toRemove.contains(p.getPromiseId()));
+    }
+
+    /**
+     * Streams the promises of a channel that are about to expire, see {@link #streamPromisesByChannel(long)}. The
+     * default implementation streams {@link #getExpiringPromises(long)}.
+     * @param channelId
+     * @return
+     */
+    default Stream<StatefulPromise> streamExpiringPromises(long channelId) {
+        return getExpiringPromises(channelId).stream();
+    }
+
     Boolean getPromiseExpiring(long channelId);
 
     void closeIncomingPromises(List<StatefulPromise> promises);
@@ -22,4 +22,12 @@ public interface IReceiptDataService {
     Optional<Receipt> getLatestIncomingReceipt(long channelId);
 
     Optional<Receipt> getLatestOutgoingReceipt(long channelId);
+
+    /**
+     * Drops or archives the receipts of a channel that are superseded by later ones, as the implementation's
+     * retention policy allows. Implementations that keep every receipt do nothing.
+     * @param channelId
+     */
+    default void compact(long channelId) {
+    }
 }
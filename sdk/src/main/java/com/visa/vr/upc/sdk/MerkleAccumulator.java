@@ -1,16 +1,16 @@
 package com.visa.vr.upc.sdk;
 
+import com.visa.vr.upc.sdk.metrics.Metrics;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.web3j.abi.FunctionEncoder;
-import org.web3j.abi.datatypes.Type;
-import org.web3j.crypto.Hash;
 import org.web3j.utils.Numeric;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.math.BigInteger;
 import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * A Merkle Accumulator.
@@ -31,7 +31,9 @@ public class MerkleAccumulator {
     public static final String DUMMY_ADDRRESS = "FFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFF";
     private Node root = null;
     private HashMap<String, Node> hashMap;
+    private HashMap<String, Integer> leafIndices;
     private long numKeys;
+    private int numLeaves;
 
     /**
      * Constructs a MerkleAccumulator from a list of addresses.
@@ -41,24 +43,44 @@ public class MerkleAccumulator {
     public static MerkleAccumulator fromAddresses(List<String> addresses){
         ArrayList<byte[]> hashedKeys = new ArrayList<>(addresses.size());
         for (String address: addresses) {
-            if(Numeric.cleanHexPrefix(address.toLowerCase()).length() == 40) {
-                hashedKeys.add(keyFromAddress(address));
-            }
-            else{
-                throw new IllegalArgumentException("Address invalid");
-            }
+            hashedKeys.add(checkedKeyFromAddress(address));
         }
         return new MerkleAccumulator(hashedKeys);
     }
 
+    /**
+     * Constructs a MerkleAccumulator from a stream of addresses, hashing each address as it is consumed so that only
+     * the keys are collected.
+     * @param addresses
+     * @return
+     */
+    public static MerkleAccumulator fromAddresses(Stream<String> addresses){
+        return new MerkleAccumulator(addresses.map(MerkleAccumulator::checkedKeyFromAddress).collect(Collectors.toCollection(ArrayList::new)));
+    }
+
+    private static byte[] checkedKeyFromAddress(String address){
+        if(Numeric.cleanHexPrefix(address.toLowerCase()).length() != 40) {
+            throw new IllegalArgumentException("Address invalid");
+        }
+        return keyFromAddress(address);
+    }
+
     /**
      * Creates a Merkle Accumulator from a list of hashes.
      * @param hashedKeys
      */
     public MerkleAccumulator(List<byte[]> hashedKeys){
+        long start = System.nanoTime();
+        build(hashedKeys);
+        Metrics.get().recordNanos(Metrics.ACCUMULATOR_BUILD, System.nanoTime() - start);
+        Metrics.get().recordValue(Metrics.ACCUMULATOR_SIZE, numKeys);
+    }
+
+    private void build(List<byte[]> hashedKeys){
         numKeys = hashedKeys.size();
 
         hashMap = new HashMap<>();
+        leafIndices = new HashMap<>();
 
         if(hashedKeys.isEmpty()){
             root = new Node();
@@ -76,8 +98,10 @@ public class MerkleAccumulator {
             Node node = new Node();
             node.value = hashedKey;
             hashMap.put(Numeric.toHexString(hashedKey), node);
+            leafIndices.put(Numeric.toHexString(hashedKey), currentLevel.size());
             currentLevel.add(node);
         }
+        numLeaves = currentLevel.size();
         ArrayList<Node> nextLevel = new ArrayList<>();
 
         for(int j = 0; j < logNumKeys; j++){
@@ -135,10 +159,7 @@ public class MerkleAccumulator {
      * @return
      */
     public static byte[] hash(byte[] left, byte[] right){
-        String abiEncoded = FunctionEncoder.encodeConstructor(Arrays.<Type>asList(
-                new org.web3j.abi.datatypes.generated.Bytes32(left),
-                new org.web3j.abi.datatypes.generated.Bytes32(right)));
-        return Numeric.hexStringToByteArray(Hash.sha3(abiEncoded));
+        return AbiHashEncoder.start().bytes32(left).bytes32(right).hash();
     }
 
     /**
@@ -147,9 +168,7 @@ public class MerkleAccumulator {
      * @return
      */
     public static byte[] keyFromAddress(String address){
-        String abiEncoded = FunctionEncoder.encodeConstructor(Arrays.asList(
-                new org.web3j.abi.datatypes.Address(address)));
-        return Numeric.hexStringToByteArray(Hash.sha3(abiEncoded));
+        return AbiHashEncoder.start().address(address).hash();
     }
 
     public static int compareByteArray(byte[] left, byte[] right){
@@ -204,6 +223,126 @@ public class MerkleAccumulator {
         return siblingHashes.toByteArray();
     }
 
+    /**
+     * Returns a multiproof for several keys, in the format of OpenZeppelin's MerkleProof.multiProofVerify.
+     * The leaves of the proof are ordered as the verifier expects them, which may differ from the given order.
+     * @param hashedKeys
+     * @return
+     */
+    public MultiProof getMultiProof(List<byte[]> hashedKeys) {
+        if(hashedKeys.isEmpty()){
+            return new MultiProof(new ArrayList<>(), new ArrayList<>(), new ArrayList<>());
+        }
+        // Number the nodes as in an array-backed heap: the root is 0, the children of i are 2i+1 and 2i+2
+        int offset = numLeaves - 1;
+        TreeSet<Integer> indices = new TreeSet<>(Comparator.reverseOrder());
+        for (byte[] hashedKey: hashedKeys) {
+            if(Arrays.equals(hashedKey, keyFromAddress(DUMMY_ADDRRESS))){
+                throw new IllegalArgumentException("Trying to find proof for dummy key - possible error");
+            }
+            Integer leafIndex = leafIndices.get(Numeric.toHexString(hashedKey));
+            if(leafIndex == null){
+                throw new NoSuchElementException("Key not present in accumulator");
+            }
+            indices.add(offset + leafIndex);
+        }
+        Node[] tree = toHeap();
+
+        List<byte[]> leaves = new ArrayList<>(indices.size());
+        for (int index: indices) {
+            leaves.add(tree[index].value);
+        }
+        List<byte[]> proof = new ArrayList<>();
+        List<Boolean> proofFlags = new ArrayList<>();
+        ArrayDeque<Integer> stack = new ArrayDeque<>(indices);
+        while(!stack.isEmpty() && stack.peekFirst() > 0){
+            int j = stack.pollFirst();
+            int sibling = j % 2 == 1 ? j + 1 : j - 1;
+            if(!stack.isEmpty() && stack.peekFirst() == sibling){
+                proofFlags.add(true);
+                stack.pollFirst();
+            }
+            else{
+                proofFlags.add(false);
+                proof.add(tree[sibling].value);
+            }
+            stack.addLast((j - 1) / 2);
+        }
+        return new MultiProof(leaves, proof, proofFlags);
+    }
+
+    private Node[] toHeap() {
+        Node[] tree = new Node[2 * numLeaves - 1];
+        tree[0] = root;
+        for(int i = 0; 2 * i + 2 < tree.length; i++){
+            tree[2 * i + 1] = tree[i].leftChild;
+            tree[2 * i + 2] = tree[i].rightChild;
+        }
+        return tree;
+    }
+
+    /**
+     * Verifies a multiproof, as OpenZeppelin's MerkleProof.multiProofVerify does.
+     * @param root
+     * @param multiProof
+     * @return
+     */
+    public static boolean verifyMultiProof(byte[] root, MultiProof multiProof) {
+        List<byte[]> leaves = multiProof.getLeaves();
+        List<byte[]> proof = multiProof.getProof();
+        List<Boolean> proofFlags = multiProof.getProofFlags();
+        int totalHashes = proofFlags.size();
+        if(leaves.size() + proof.size() - 1 != totalHashes){
+            return false;
+        }
+        byte[][] hashes = new byte[totalHashes][];
+        int leafPos = 0;
+        int hashPos = 0;
+        int proofPos = 0;
+        for(int i = 0; i < totalHashes; i++){
+            byte[] a = leafPos < leaves.size() ? leaves.get(leafPos++) : hashes[hashPos++];
+            byte[] b = proofFlags.get(i)
+                    ? (leafPos < leaves.size() ? leaves.get(leafPos++) : hashes[hashPos++])
+                    : proof.get(proofPos++);
+            hashes[i] = compareByteArray(a, b) <= 0 ? hash(a, b) : hash(b, a);
+        }
+        if(totalHashes > 0){
+            return Arrays.equals(root, hashes[totalHashes - 1]);
+        }
+        return !leaves.isEmpty() ? Arrays.equals(root, leaves.get(0)) : Arrays.equals(root, proof.get(0));
+    }
+
+    /**
+     * A proof that several leaves are in the accumulator.
+     */
+    public static class MultiProof {
+        private final List<byte[]> leaves;
+        private final List<byte[]> proof;
+        private final List<Boolean> proofFlags;
+
+        public MultiProof(List<byte[]> leaves, List<byte[]> proof, List<Boolean> proofFlags) {
+            this.leaves = leaves;
+            this.proof = proof;
+            this.proofFlags = proofFlags;
+        }
+
+        /**
+         * Returns the proven leaves, in the order the verifier consumes them.
+         * @return
+         */
+        public List<byte[]> getLeaves() {
+            return leaves;
+        }
+
+        public List<byte[]> getProof() {
+            return proof;
+        }
+
+        public List<Boolean> getProofFlags() {
+            return proofFlags;
+        }
+    }
+
     /**
      * Verifies an inclusion proof.
      * @param root
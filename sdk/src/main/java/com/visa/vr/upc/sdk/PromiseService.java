@@ -2,14 +2,17 @@ package com.visa.vr.upc.sdk;
 
 import com.visa.vr.upc.sdk.custody.BasicSigner;
 import com.visa.vr.upc.sdk.custody.ISigner;
+import com.visa.vr.upc.sdk.custody.SigningPool;
+import com.visa.vr.upc.sdk.domain.Bytecode;
 import com.visa.vr.upc.sdk.domain.IPromiseConstructorParams;
 import com.visa.vr.upc.sdk.domain.Promise;
 import com.visa.vr.upc.sdk.domain.Receipt;
 import com.visa.vr.upc.sdk.domain.Signature;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
-import org.web3j.abi.FunctionEncoder;
-import org.web3j.abi.datatypes.Type;
+import com.visa.vr.upc.sdk.domain.UInt256;
+import com.visa.vr.upc.sdk.logging.EventLogger;
+import com.visa.vr.upc.sdk.metrics.Metrics;
+import com.visa.vr.upc.sdk.tracing.ISpan;
+import com.visa.vr.upc.sdk.tracing.Tracing;
 import org.web3j.crypto.*;
 import org.web3j.utils.Numeric;
 
@@ -17,13 +20,14 @@ import java.io.IOException;
 import java.security.SignatureException;
 import java.util.Arrays;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Stream;
 
 /**
  * Provides stateless operations related to promises and receipts.
  */
 public class PromiseService {
-    private static final Logger log = LoggerFactory.getLogger(PromiseService.class);
+    private static final EventLogger events = EventLogger.getLogger(PromiseService.class);
 
     /**
      * Constructs an (unsigned) promise. All parameters should be verified before this method.
@@ -45,20 +49,29 @@ public class PromiseService {
                                         String bytecode,
                                         IPromiseConstructorParams params,
                                         byte[] salt){
-        Promise promise = new Promise();
-        promise.setChannelId(channelId);
-        promise.setChainId(chainId);
-        promise.setSender(sender);
-        promise.setReceiver(receiver);
-        promise.setReceiptId(receiptId);
-        promise.setAmount(params.getAmount());
-        promise.setExpiration(params.getExpiration());
-        promise.setSalt(salt);
-
-        promise.setBytecode(PromiseService.combineBytecode(bytecode, params));
-        promise.setAddress(PromiseService.getCreate2Address(channelAddress, salt, promise.getBytecode()));
-
-        return promise;
+        try (ISpan span = Tracing.startSpan(Tracing.PROMISE_CREATE)) {
+            span.setAttribute(Tracing.CHANNEL_ID, channelId).setAttribute(Tracing.RECEIPT_ID, receiptId);
+            Bytecode combinedBytecode;
+            try (ISpan bytecodeSpan = Tracing.startSpan(Tracing.PROMISE_BYTECODE)) {
+                combinedBytecode = Bytecode.of(bytecode, params.encodePacked());
+            }
+            String address;
+            try (ISpan addressSpan = Tracing.startSpan(Tracing.PROMISE_CREATE2)) {
+                address = PromiseService.getCreate2Address(channelAddress, salt, combinedBytecode);
+            }
+            return Promise.builder()
+                    .channelId(channelId)
+                    .chainId(chainId)
+                    .sender(sender)
+                    .receiver(receiver)
+                    .receiptId(receiptId)
+                    .amount(params.getAmount())
+                    .expiration(params.getExpiration())
+                    .salt(salt)
+                    .bytecode(combinedBytecode)
+                    .address(address)
+                    .build();
+        }
     }
 
     /**
@@ -73,6 +86,29 @@ public class PromiseService {
         return ContractUtils.generateCreate2ContractAddress(address, salt, Numeric.hexStringToByteArray(bytecode));
     }
 
+    /**
+     * Same as {@link #getCreate2Address(String, byte[], String)}, hashing the bytecode without converting it to hex or rebuilding it.
+     * @param address - the address of the deploying contract
+     * @param salt
+     * @param bytecode the bytecode (including constructor variables) of the contract to be deployed
+     * @return the address at which the bytecode will be deployed
+     */
+    public static String getCreate2Address(String address, byte[] salt, Bytecode bytecode){
+        byte[] deployer = Numeric.hexStringToByteArray(address);
+        if(deployer.length != 20){
+            throw new IllegalArgumentException("Invalid address size");
+        }
+        if(salt.length != 32){
+            throw new IllegalArgumentException("Invalid salt size");
+        }
+        byte[] buffer = new byte[85];
+        buffer[0] = (byte) 0xff;
+        System.arraycopy(deployer, 0, buffer, 1, 20);
+        System.arraycopy(salt, 0, buffer, 21, 32);
+        System.arraycopy(bytecode.keccak256(), 0, buffer, 53, 32);
+        return Numeric.toHexString(Arrays.copyOfRange(Hash.sha3(buffer), 12, 32));
+    }
+
     /**
      * Constructs the full deployable bytecode for a contract by combining the contract's binary with encoded constructor parameters
      * @param bytecode the contract binary
@@ -93,10 +129,18 @@ public class PromiseService {
         if(!AddressUtils.isEqual(promise.getSender(), signer.getAddress())){
             throw new IllegalArgumentException("Signer has a different address from sender");
         }
-        byte[] hash = PromiseService.hashPromise(promise);
-        Sign.SignatureData sigData = signer.signPrefixedMessage(hash);
-        promise.setSignature(new Signature(sigData));
-        return promise;
+        try (ISpan span = Tracing.startSpan(Tracing.PROMISE_SIGN)) {
+            span.setAttribute(Tracing.CHANNEL_ID, promise.getChannelId()).setAttribute(Tracing.RECEIPT_ID, promise.getReceiptId());
+            long start = System.nanoTime();
+            byte[] hash;
+            try (ISpan hashSpan = Tracing.startSpan(Tracing.PROMISE_HASH)) {
+                hash = PromiseService.hashPromise(promise);
+            }
+            Sign.SignatureData sigData = signer.signPrefixedMessage(hash);
+            Metrics.get().recordNanos(Metrics.SIGN, System.nanoTime() - start, "type", "promise");
+            promise.setSignature(new Signature(sigData));
+            return promise;
+        }
     }
 
     /**
@@ -109,20 +153,36 @@ public class PromiseService {
         return PromiseService.signPromise(promise, new BasicSigner(keyPair));
     }
 
+    /**
+     * Signs a promise on the workers of a {@link SigningPool}. The hash is computed on the calling thread.
+     * @param promise the promise to be signed
+     * @param pool
+     * @return a future of the signed promise
+     */
+    public static CompletableFuture<Promise> signPromiseAsync(Promise promise, SigningPool pool){
+        if(!AddressUtils.isEqual(promise.getSender(), pool.getAddress())){
+            throw new IllegalArgumentException("Signer has a different address from sender");
+        }
+        return pool.signPrefixedMessageAsync(PromiseService.hashPromise(promise)).thenApply(sigData -> {
+            promise.setSignature(new Signature(sigData));
+            return promise;
+        });
+    }
+
     /**
      * ABI encodes and hashes a promise, consistent with UPC contract.
      * @param promise the promise to hash
      * @return the hash
      */
     public static byte[] hashPromise(Promise promise){
-        String abiEncoded = FunctionEncoder.encodeConstructor(Arrays.<Type>asList(
-                new org.web3j.abi.datatypes.generated.Uint256(promise.getChainId()),
-                new org.web3j.abi.datatypes.generated.Uint256(promise.getChannelId()),
-                new org.web3j.abi.datatypes.generated.Uint256(promise.getReceiptId()),
-                new org.web3j.abi.datatypes.Address(promise.getSender()),
-                new org.web3j.abi.datatypes.Address(promise.getReceiver()),
-                new org.web3j.abi.datatypes.Address(promise.getAddress())));
-        return Numeric.hexStringToByteArray(Hash.sha3(abiEncoded));
+        return AbiHashEncoder.start()
+                .uint256(promise.getChainId())
+                .uint256(promise.getChannelId())
+                .uint256(promise.getReceiptId())
+                .address(promise.getSender())
+                .address(promise.getReceiver())
+                .address(promise.getAddress())
+                .hash();
     }
 
     /**
@@ -149,17 +209,31 @@ public class PromiseService {
                                         String bytecode,
                                         IPromiseConstructorParams params,
                                         byte[] salt) throws SignatureException {
-        Promise expectedPromise = PromiseService.createPromise(channelId, chainId, channelAddress, sender, receiver, receiptId, bytecode, params, salt);
-        byte[] expectedHash = PromiseService.hashPromise(expectedPromise);
-        if(!Arrays.equals(expectedHash, PromiseService.hashPromise(promise))){
-            log.info("Promise hash mismatch on Channel {}", channelId);
-            return false;
-        }
-        if(!AddressUtils.isEqual(sender, Keys.getAddress(Sign.signedPrefixedMessageToKey(expectedHash, promise.getSignature().toSignatureData())))){
-            log.info("Promise signature failed to validate on Channel {}", channelId);
-            return false;
+        try (ISpan span = Tracing.startSpan(Tracing.PROMISE_VERIFY)) {
+            span.setAttribute(Tracing.CHANNEL_ID, channelId).setAttribute(Tracing.RECEIPT_ID, receiptId);
+            Promise expectedPromise = PromiseService.createPromise(channelId, chainId, channelAddress, sender, receiver, receiptId, bytecode, params, salt);
+            byte[] expectedHash;
+            boolean matches;
+            try (ISpan hashSpan = Tracing.startSpan(Tracing.PROMISE_HASH)) {
+                expectedHash = PromiseService.hashPromise(expectedPromise);
+                matches = Arrays.equals(expectedHash, PromiseService.hashPromise(promise));
+            }
+            if(!matches){
+                events.debug("promise.rejected").with("channelId", channelId).with("reason", "hash").log();
+                return false;
+            }
+            long start = System.nanoTime();
+            boolean signed;
+            try (ISpan recoverSpan = Tracing.startSpan(Tracing.SIGNATURE_RECOVER)) {
+                signed = AddressUtils.isEqual(sender, Keys.getAddress(Sign.signedPrefixedMessageToKey(expectedHash, promise.getSignature().toSignatureData())));
+            }
+            Metrics.get().recordNanos(Metrics.VERIFY, System.nanoTime() - start, "type", "promise", "valid", Boolean.toString(signed));
+            if(!signed){
+                events.debug("promise.rejected").with("channelId", channelId).with("reason", "signature").log();
+                return false;
+            }
+            return true;
         }
-        return true;
     }
 
     /**
@@ -171,6 +245,40 @@ public class PromiseService {
      * @param promises
      * @return
      */
+    public static Receipt createReceipt(long channelId,
+                                        long chainId,
+                                        String sender,
+                                        String receiver,
+                                        long receiptId,
+                                        UInt256 cumulativeCredit,
+                                        List<? extends Promise> promises){
+        return PromiseService.createReceipt(channelId, chainId, sender, receiver, receiptId, cumulativeCredit, promises.stream());
+    }
+
+    /**
+     * Creates a receipt over a stream of promises, e.g. from {@link IPromiseDataService#streamOpenOutgoingPromises(long)},
+     * without collecting them in a list.
+     */
+    public static Receipt createReceipt(long channelId,
+                                        long chainId,
+                                        String sender,
+                                        String receiver,
+                                        long receiptId,
+                                        UInt256 cumulativeCredit,
+                                        Stream<? extends Promise> promises){
+        try (ISpan span = Tracing.startSpan(Tracing.RECEIPT_CREATE)) {
+            span.setAttribute(Tracing.CHANNEL_ID, channelId).setAttribute(Tracing.RECEIPT_ID, receiptId);
+            byte[] accumulatorRoot;
+            try (ISpan accumulatorSpan = Tracing.startSpan(Tracing.ACCUMULATOR_BUILD)) {
+                accumulatorRoot = getAccumulator(promises).getRootHash();
+            }
+            return PromiseService.createReceipt(channelId, chainId, sender, receiver, receiptId, cumulativeCredit, accumulatorRoot);
+        }
+    }
+
+    /**
+     * See {@link #createReceipt(long, long, String, String, long, UInt256, List)}
+     */
     public static Receipt createReceipt(long channelId,
                                         long chainId,
                                         String sender,
@@ -178,9 +286,8 @@ public class PromiseService {
                                         long receiptId,
                                         long cumulativeCredit,
                                         List<? extends Promise> promises){
-        byte[] accumulatorRoot = MerkleAccumulator.fromAddresses(promises.stream().map(p -> p.getAddress()).collect(Collectors.toList())).getRootHash();
-        return PromiseService.createReceipt(channelId, chainId, sender, receiver, receiptId, cumulativeCredit, accumulatorRoot);
-    };
+        return PromiseService.createReceipt(channelId, chainId, sender, receiver, receiptId, UInt256.valueOf(cumulativeCredit), promises);
+    }
 
     /**
      *
@@ -196,19 +303,32 @@ public class PromiseService {
                                         String sender,
                                         String receiver,
                                         long receiptId,
-                                        long cumulativeCredit,
+                                        UInt256 cumulativeCredit,
                                         byte[] accumulatorRoot){
-        Receipt receipt = new Receipt();
-        receipt.setChannelId(channelId);
-        receipt.setChainId(chainId);
-        receipt.setSender(sender);
-        receipt.setReceiver(receiver);
-        receipt.setReceiptId(receiptId);
-        receipt.setCumulativeCredit(cumulativeCredit);
-        receipt.setAccumulatorRoot(accumulatorRoot);
-        return receipt;
+        return Receipt.builder()
+                .channelId(channelId)
+                .chainId(chainId)
+                .sender(sender)
+                .receiver(receiver)
+                .receiptId(receiptId)
+                .cumulativeCredit(cumulativeCredit)
+                .accumulatorRoot(accumulatorRoot)
+                .build();
     };
 
+    /**
+     * See {@link #createReceipt(long, long, String, String, long, UInt256, byte[])}
+     */
+    public static Receipt createReceipt(long channelId,
+                                        long chainId,
+                                        String sender,
+                                        String receiver,
+                                        long receiptId,
+                                        long cumulativeCredit,
+                                        byte[] accumulatorRoot){
+        return PromiseService.createReceipt(channelId, chainId, sender, receiver, receiptId, UInt256.valueOf(cumulativeCredit), accumulatorRoot);
+    }
+
     /**
      *
      * @param receipt
@@ -219,10 +339,15 @@ public class PromiseService {
         if(!AddressUtils.isEqual(receipt.getSender(), signer.getAddress())){
             throw new IllegalArgumentException("Signer has a different address from sender");
         }
-        byte[] hash = PromiseService.hashReceipt(receipt);
-        Sign.SignatureData sigData = signer.signPrefixedMessage(hash);
-        receipt.setSignature(new Signature(sigData));
-        return receipt;
+        try (ISpan span = Tracing.startSpan(Tracing.RECEIPT_SIGN)) {
+            span.setAttribute(Tracing.CHANNEL_ID, receipt.getChannelId()).setAttribute(Tracing.RECEIPT_ID, receipt.getReceiptId());
+            long start = System.nanoTime();
+            byte[] hash = PromiseService.hashReceipt(receipt);
+            Sign.SignatureData sigData = signer.signPrefixedMessage(hash);
+            Metrics.get().recordNanos(Metrics.SIGN, System.nanoTime() - start, "type", "receipt");
+            receipt.setSignature(new Signature(sigData));
+            return receipt;
+        }
     }
 
     /**
@@ -235,19 +360,35 @@ public class PromiseService {
         return PromiseService.signReceipt(receipt, new BasicSigner(keyPair));
     }
 
+    /**
+     * Signs a receipt on the workers of a {@link SigningPool}. The hash is computed on the calling thread.
+     * @param receipt
+     * @param pool
+     * @return a future of the signed receipt
+     */
+    public static CompletableFuture<Receipt> signReceiptAsync(Receipt receipt, SigningPool pool){
+        if(!AddressUtils.isEqual(receipt.getSender(), pool.getAddress())){
+            throw new IllegalArgumentException("Signer has a different address from sender");
+        }
+        return pool.signPrefixedMessageAsync(PromiseService.hashReceipt(receipt)).thenApply(sigData -> {
+            receipt.setSignature(new Signature(sigData));
+            return receipt;
+        });
+    }
+
     /**
      *
      * @param receipt
      * @return
      */
     public static byte[] hashReceipt(Receipt receipt){
-        String abiEncoded = FunctionEncoder.encodeConstructor(Arrays.<Type>asList(
-                new org.web3j.abi.datatypes.generated.Uint256(receipt.getChainId()),
-                new org.web3j.abi.datatypes.generated.Uint256(receipt.getChannelId()),
-                new org.web3j.abi.datatypes.generated.Uint256(receipt.getReceiptId()),
-                new org.web3j.abi.datatypes.generated.Uint256(receipt.getCumulativeCredit()),
-                new org.web3j.abi.datatypes.generated.Bytes32(receipt.getAccumulatorRoot())));
-        return Numeric.hexStringToByteArray(Hash.sha3(abiEncoded));
+        return AbiHashEncoder.start()
+                .uint256(receipt.getChainId())
+                .uint256(receipt.getChannelId())
+                .uint256(receipt.getReceiptId())
+                .uint256(receipt.getCumulativeCredit())
+                .bytes32(receipt.getAccumulatorRoot())
+                .hash();
     }
 
     /**
@@ -267,19 +408,60 @@ public class PromiseService {
                                         String sender,
                                         String receiver,
                                         long receiptId,
-                                        long cumulativeCredit,
+                                        UInt256 cumulativeCredit,
                                         List<? extends Promise> promises) throws SignatureException {
-        byte[] accumulatorRoot = getAccumulator(promises).getRootHash();
+        return PromiseService.verifyReceipt(receipt, channelId, chainId, sender, receiver, receiptId, cumulativeCredit, promises.stream());
+    }
+
+    /**
+     * Verifies a receipt against a stream of promises, e.g. from
+     * {@link IPromiseDataService#streamOpenIncomingPromises(long)}, without collecting them in a list.
+     */
+    public static boolean verifyReceipt(Receipt receipt,
+                                        long channelId,
+                                        long chainId,
+                                        String sender,
+                                        String receiver,
+                                        long receiptId,
+                                        UInt256 cumulativeCredit,
+                                        Stream<? extends Promise> promises) throws SignatureException {
+        byte[] accumulatorRoot;
+        try (ISpan span = Tracing.startSpan(Tracing.ACCUMULATOR_BUILD)) {
+            accumulatorRoot = getAccumulator(promises).getRootHash();
+        }
         return PromiseService.verifyReceipt(receipt, channelId, chainId, sender, receiver, receiptId, cumulativeCredit, accumulatorRoot);
     }
 
+    /**
+     * See {@link #verifyReceipt(Receipt, long, long, String, String, long, UInt256, List)}
+     */
+    public static boolean verifyReceipt(Receipt receipt,
+                                        long channelId,
+                                        long chainId,
+                                        String sender,
+                                        String receiver,
+                                        long receiptId,
+                                        long cumulativeCredit,
+                                        List<? extends Promise> promises) throws SignatureException {
+        return PromiseService.verifyReceipt(receipt, channelId, chainId, sender, receiver, receiptId, UInt256.valueOf(cumulativeCredit), promises);
+    }
+
     /**
      * Builds a Merkle Accumulator from a list of promises.
      * @param promises
      * @return
      */
     public static MerkleAccumulator getAccumulator(List<? extends Promise> promises){
-        return MerkleAccumulator.fromAddresses(promises.stream().map(p -> p.getAddress()).collect(Collectors.toList()));
+        return getAccumulator(promises.stream());
+    }
+
+    /**
+     * Builds a Merkle Accumulator from a stream of promises.
+     * @param promises
+     * @return
+     */
+    public static MerkleAccumulator getAccumulator(Stream<? extends Promise> promises){
+        return MerkleAccumulator.fromAddresses(promises.map(p -> p.getAddress()));
     }
 
     /**
@@ -294,24 +476,47 @@ public class PromiseService {
      * @throws SignatureException
      */
     public static boolean verifyReceipt(Receipt receipt,
-                                        Long channelId,
-                                        Long chainId,
+                                        long channelId,
+                                        long chainId,
                                         String sender,
                                         String receiver,
-                                        Long receiptId,
-                                        Long credit,
+                                        long receiptId,
+                                        UInt256 credit,
                                         byte[] accumulatorRoot) throws SignatureException {
-        Receipt expectedReceipt = PromiseService.createReceipt(channelId, chainId, sender, receiver, receiptId, credit, accumulatorRoot);
-        byte[] expectedHash = PromiseService.hashReceipt(expectedReceipt);
-        if(!Arrays.equals(expectedHash, PromiseService.hashReceipt(receipt))){
-            log.info("Receipt hash mismatch on Channel {}", channelId);
-            return false;
-        }
-        if(!AddressUtils.isEqual(sender, Keys.getAddress(Sign.signedPrefixedMessageToKey(expectedHash, receipt.getSignature().toSignatureData())))){
-            log.info("Receipt signature failed to validate on Channel {}", channelId);
-            return false;
+        try (ISpan span = Tracing.startSpan(Tracing.RECEIPT_VERIFY)) {
+            span.setAttribute(Tracing.CHANNEL_ID, channelId).setAttribute(Tracing.RECEIPT_ID, receiptId);
+            Receipt expectedReceipt = PromiseService.createReceipt(channelId, chainId, sender, receiver, receiptId, credit, accumulatorRoot);
+            byte[] expectedHash = PromiseService.hashReceipt(expectedReceipt);
+            if(!Arrays.equals(expectedHash, PromiseService.hashReceipt(receipt))){
+                events.debug("receipt.rejected").with("channelId", channelId).with("reason", "hash").log();
+                return false;
+            }
+            long start = System.nanoTime();
+            boolean signed;
+            try (ISpan recoverSpan = Tracing.startSpan(Tracing.SIGNATURE_RECOVER)) {
+                signed = AddressUtils.isEqual(sender, Keys.getAddress(Sign.signedPrefixedMessageToKey(expectedHash, receipt.getSignature().toSignatureData())));
+            }
+            Metrics.get().recordNanos(Metrics.VERIFY, System.nanoTime() - start, "type", "receipt", "valid", Boolean.toString(signed));
+            if(!signed){
+                events.debug("receipt.rejected").with("channelId", channelId).with("reason", "signature").log();
+                return false;
+            }
+            return true;
         }
-        return true;
+    }
+
+    /**
+     * See {@link #verifyReceipt(Receipt, long, long, String, String, long, UInt256, byte[])}
+     */
+    public static boolean verifyReceipt(Receipt receipt,
+                                        long channelId,
+                                        long chainId,
+                                        String sender,
+                                        String receiver,
+                                        long receiptId,
+                                        long credit,
+                                        byte[] accumulatorRoot) throws SignatureException {
+        return PromiseService.verifyReceipt(receipt, channelId, chainId, sender, receiver, receiptId, UInt256.valueOf(credit), accumulatorRoot);
     }
 
     /**
@@ -0,0 +1,715 @@
+package com.visa.vr.upc.sdk;
+
+import com.visa.vr.upc.sdk.custody.ISigner;
+import com.visa.vr.upc.sdk.domain.*;
+import com.visa.vr.upc.sdk.logging.EventLogger;
+import com.visa.vr.upc.sdk.store.StateSnapshot;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.security.SignatureException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * Partitions the channels of a hub across several shards, each with its own data services and
+ * {@link StatefulUPCService}, that share one signing identity. Channels are routed to a shard by id, and can be moved
+ * to another shard, or exported to another hub process, to rebalance the load. A channel is moved as a channel-only
+ * {@link StateSnapshot} image, so a router in another JVM can import it from a socket or a file.
+ *
+ * Calls on a shard are serialized, so each shard can use data services that are not thread safe, e.g. a
+ * {@link DefaultDataService}, while calls on different shards run in parallel. Channel ids and outgoing promise ids are
+ * allocated by the router, so they stay unique across shards: channels have to be created through
+ * {@link #createChannel(Channel)}, and the promise data services of the shards have to override
+ * {@link IPromiseDataService#restoreOutgoingPromise(StatefulPromise)}.
+ */
+public class ShardedUPCService {
+
+    private static final EventLogger events = EventLogger.getLogger(ShardedUPCService.class);
+
+    // The shard of a channel that was exported to another hub
+    private static final int EXPORTED = -1;
+
+    private final ISigner self;
+
+    private final List<Node> nodes = new ArrayList<>();
+
+    // Channels that are not in their default shard
+    private final Map<Long, Integer> assignments = new ConcurrentHashMap<>();
+
+    private final AtomicLong nextChannel = new AtomicLong(1);
+
+    private final AtomicLong nextPromise = new AtomicLong(1);
+
+    // Serializes moves, imports and exports
+    private final Object moveLock = new Object();
+
+    /**
+     * @param self the signer shared by all shards
+     * @param shards the data services of each shard
+     */
+    public ShardedUPCService(ISigner self, List<Shard> shards) {
+        this(self, shards, Collections.emptyMap());
+    }
+
+    /**
+     * Creates a router with the assignments of a previous one, see {@link #getAssignments()}.
+     * @param self the signer shared by all shards
+     * @param shards the data services of each shard
+     * @param assignments the channels that are not in their default shard
+     */
+    public ShardedUPCService(ISigner self, List<Shard> shards, Map<Long, Integer> assignments) {
+        if(shards.isEmpty()){
+            throw new IllegalArgumentException("No shards");
+        }
+        this.self = self;
+        for (Shard shard: shards) {
+            Shard routed = new Shard(shard.channelDataService, new RoutedPromiseDataService(shard.promiseDataService, nextPromise), shard.receiptDataService);
+            nodes.add(new Node(routed, new StatefulUPCService(self, routed.promiseDataService, routed.receiptDataService, routed.channelDataService)));
+            // Ids continue after the ones already in the shard, including incoming ones as closed outgoing promises
+            // can only be listed with them
+            for (ChannelStatus status: ChannelStatus.values()) {
+                for (Channel channel: shard.channelDataService.getChannelsByStatus(status)) {
+                    reserveIds(channel, shard.promiseDataService.getPromisesByChannel(channel.getId()));
+                }
+            }
+        }
+        for (Map.Entry<Long, Integer> assignment: assignments.entrySet()) {
+            if(assignment.getValue() != EXPORTED && (assignment.getValue() < 0 || assignment.getValue() >= nodes.size())){
+                throw new IllegalArgumentException("Invalid shard " + assignment.getValue() + " for channel " + assignment.getKey());
+            }
+        }
+        this.assignments.putAll(assignments);
+    }
+
+    /**
+     * Creates a router over shards that keep their state in memory.
+     * @param self the signer shared by all shards
+     * @param count the number of shards
+     * @return
+     */
+    public static ShardedUPCService inMemory(ISigner self, int count) {
+        List<Shard> shards = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            DefaultDataService dataService = new DefaultDataService(self.getAddress());
+            shards.add(new Shard(dataService, dataService, dataService));
+        }
+        return new ShardedUPCService(self, shards);
+    }
+
+    /**
+     * @return the number of shards
+     */
+    public int getShardCount() {
+        return nodes.size();
+    }
+
+    /**
+     * Returns the index of the shard that holds a channel.
+     * @param channelId
+     * @return
+     * @throws IllegalArgumentException if the channel was exported
+     */
+    public int getShardIndex(long channelId) {
+        Integer index = assignments.get(channelId);
+        if(index == null){
+            return (int) Math.floorMod(channelId, (long) nodes.size());
+        }
+        if(index == EXPORTED){
+            throw new IllegalArgumentException("Channel " + channelId + " was exported");
+        }
+        return index;
+    }
+
+    /**
+     * Returns the channels that are not in their default shard, to create the next router with.
+     * @return
+     */
+    public Map<Long, Integer> getAssignments() {
+        return new HashMap<>(assignments);
+    }
+
+    /**
+     * Creates a channel with a new id in its shard.
+     * @param channel
+     * @return
+     */
+    public Channel createChannel(Channel channel) {
+        channel.setId(nextChannel.getAndIncrement());
+        Node node = lock(channel.getId());
+        try {
+            node.shard.channelDataService.addChannel(channel);
+            return channel;
+        } finally {
+            node.lock.unlock();
+        }
+    }
+
+    /**
+     * Runs an action on the shard of a channel, e.g. to store a promise or receipt once it was checked. No other
+     * call runs on the shard, and the channel is not moved, until the action returns.
+     * @param channelId
+     * @param action
+     * @return the result of the action
+     */
+    public <T> T withShard(long channelId, Function<Shard, T> action) {
+        Node node = lock(channelId);
+        try {
+            return action.apply(node.shard);
+        } finally {
+            node.lock.unlock();
+        }
+    }
+
+    /**
+     * See {@link StatefulUPCService#getCredit(long, String)}.
+     */
+    public UInt256 getCredit(long channelId, String address) {
+        Node node = lock(channelId);
+        try {
+            return node.service.getCredit(channelId, address);
+        } finally {
+            node.lock.unlock();
+        }
+    }
+
+    /**
+     * See {@link StatefulUPCService#getSelfAvailableAmount(long)}.
+     */
+    public UInt256 getSelfAvailableAmount(long channelId) {
+        Node node = lock(channelId);
+        try {
+            return node.service.getSelfAvailableAmount(channelId);
+        } finally {
+            node.lock.unlock();
+        }
+    }
+
+    /**
+     * See {@link StatefulUPCService#getOtherAvailableAmount(long)}.
+     */
+    public UInt256 getOtherAvailableAmount(long channelId) {
+        Node node = lock(channelId);
+        try {
+            return node.service.getOtherAvailableAmount(channelId);
+        } finally {
+            node.lock.unlock();
+        }
+    }
+
+    /**
+     * See {@link StatefulUPCService#createReceipt(long)}.
+     */
+    public Receipt createReceipt(long channelId) {
+        Node node = lock(channelId);
+        try {
+            return node.service.createReceipt(channelId);
+        } finally {
+            node.lock.unlock();
+        }
+    }
+
+    /**
+     * See {@link StatefulUPCService#createReceipt(long, long, Set)}.
+     */
+    public Receipt createReceipt(long channelId, long creditChange, Set<Long> toRemove) {
+        Node node = lock(channelId);
+        try {
+            return node.service.createReceipt(channelId, creditChange, toRemove);
+        } finally {
+            node.lock.unlock();
+        }
+    }
+
+    /**
+     * See {@link StatefulUPCService#getIncomingAccumulator(long)}.
+     */
+    public MerkleAccumulator getIncomingAccumulator(long channelId) {
+        Node node = lock(channelId);
+        try {
+            return node.service.getIncomingAccumulator(channelId);
+        } finally {
+            node.lock.unlock();
+        }
+    }
+
+    /**
+     * See {@link StatefulUPCService#checkReceipt(Receipt, long, long, long, Set)}.
+     */
+    public Boolean checkReceipt(Receipt receipt, long channelId, long receiptId, long creditChange, Set<Long> toRemove) throws SignatureException {
+        Node node = lock(channelId);
+        try {
+            return node.service.checkReceipt(receipt, channelId, receiptId, creditChange, toRemove);
+        } finally {
+            node.lock.unlock();
+        }
+    }
+
+    /**
+     * See {@link StatefulUPCService#createPromise(long, int, String, IPromiseConstructorParams, byte[])}.
+     */
+    public StatefulPromise createPromise(long channelId, int type, String bytecode, IPromiseConstructorParams params, byte[] salt) {
+        Node node = lock(channelId);
+        try {
+            return node.service.createPromise(channelId, type, bytecode, params, salt);
+        } finally {
+            node.lock.unlock();
+        }
+    }
+
+    /**
+     * See {@link StatefulUPCService#checkPromise(Promise, long, String, IPromiseConstructorParams, byte[])}.
+     */
+    public Boolean checkPromise(Promise promise, long channelId, String bytecode, IPromiseConstructorParams params, byte[] salt) throws SignatureException {
+        Node node = lock(channelId);
+        try {
+            return node.service.checkPromise(promise, channelId, bytecode, params, salt);
+        } finally {
+            node.lock.unlock();
+        }
+    }
+
+    /**
+     * Moves a channel with its open promises and latest receipts to another shard. The previous shard keeps a stale
+     * copy of the channel, in which its open promises are closed, and which is overwritten if the channel moves back.
+     * @param channelId
+     * @param target the index of the shard to move the channel to
+     * @throws IllegalStateException if a promise id of the channel is already used by another channel in the target shard
+     */
+    public void moveChannel(long channelId, int target) {
+        checkShard(target);
+        synchronized (moveLock) {
+            int source = getShardIndex(channelId);
+            if(source == target){
+                return;
+            }
+            long start = System.currentTimeMillis();
+            // Lock the shards in order, so concurrent moves cannot deadlock with each other
+            Node first = nodes.get(Math.min(source, target));
+            Node second = nodes.get(Math.max(source, target));
+            first.lock.lock();
+            second.lock.lock();
+            try {
+                byte[] image = write(nodes.get(source).shard, channelId);
+                restore(nodes.get(target).shard, image, false);
+                assign(channelId, target);
+                retire(nodes.get(source).shard, channelId);
+                events.info("shard.channel.moved").with("channelId", channelId).with("from", source).with("to", target)
+                        .with("bytes", image.length).with("millis", System.currentTimeMillis() - start).log();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            } finally {
+                second.lock.unlock();
+                first.lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Exports a channel with its open promises and latest receipts, to import it into the router of another hub
+     * process with {@link #importChannel(InputStream, int)}. The channel is no longer served by this router, and its
+     * open promises are closed in its shard.
+     * @param channelId
+     * @param out the stream to write the channel to, which is not closed
+     * @throws IOException
+     */
+    public void exportChannel(long channelId, OutputStream out) throws IOException {
+        synchronized (moveLock) {
+            Node node = lock(channelId);
+            try {
+                byte[] image = write(node.shard, channelId);
+                out.write(image);
+                out.flush();
+                assignments.put(channelId, EXPORTED);
+                retire(node.shard, channelId);
+                events.info("shard.channel.exported").with("channelId", channelId).with("bytes", image.length).log();
+            } finally {
+                node.lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Imports the channels exported by another router into a shard.
+     * @param in the stream to read the channels from
+     * @param target the index of the shard to import the channels into
+     * @return the ids of the imported channels
+     * @throws IOException if the stream cannot be read
+     * @throws IllegalArgumentException if the image is corrupt
+     * @throws IllegalStateException if a channel is already served by this router, or a promise id is already used by
+     * another channel in the shard
+     */
+    public List<Long> importChannel(InputStream in, int target) throws IOException {
+        checkShard(target);
+        ByteArrayOutputStream image = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int read;
+        while((read = in.read(buffer)) != -1){
+            image.write(buffer, 0, read);
+        }
+        synchronized (moveLock) {
+            Node node = nodes.get(target);
+            node.lock.lock();
+            try {
+                List<Long> channelIds = restore(node.shard, image.toByteArray(), true);
+                for (long channelId: channelIds) {
+                    assign(channelId, target);
+                }
+                events.info("shard.channel.imported").with("channels", channelIds.size()).with("shard", target).log();
+                return channelIds;
+            } finally {
+                node.lock.unlock();
+            }
+        }
+    }
+
+    private Node lock(long channelId) {
+        while(true){
+            Node node = nodes.get(getShardIndex(channelId));
+            node.lock.lock();
+            boolean routed = false;
+            try {
+                // The channel may have moved while waiting for the lock
+                routed = nodes.get(getShardIndex(channelId)) == node;
+            } finally {
+                if(!routed){
+                    node.lock.unlock();
+                }
+            }
+            if(routed){
+                return node;
+            }
+        }
+    }
+
+    private void assign(long channelId, int target) {
+        if(Math.floorMod(channelId, (long) nodes.size()) == target){
+            assignments.remove(channelId);
+        } else {
+            assignments.put(channelId, target);
+        }
+    }
+
+    private void checkShard(int index) {
+        if(index < 0 || index >= nodes.size()){
+            throw new IllegalArgumentException("Invalid shard " + index);
+        }
+    }
+
+    private void reserveIds(Channel channel, List<StatefulPromise> promises) {
+        nextChannel.accumulateAndGet(channel.getId() + 1, Math::max);
+        for (StatefulPromise promise: promises) {
+            nextPromise.accumulateAndGet(promise.getPromiseId() + 1, Math::max);
+        }
+    }
+
+    private static byte[] write(Shard shard, long channelId) {
+        if(!shard.channelDataService.getChannelById(channelId).isPresent()){
+            throw new IllegalArgumentException("Unknown channel " + channelId);
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try {
+            new StateSnapshot(shard.channelDataService, shard.promiseDataService, shard.receiptDataService, id -> id == channelId).write(out);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Restores an image into a shard, after checking it in a scratch data service, so that nothing is changed if it is
+     * corrupt, its promise ids are already used, or its receipts differ from ones in the shard. Stale copies of the
+     * channels in the shard are overwritten, and their receipts are kept.
+     */
+    private List<Long> restore(Shard shard, byte[] image, boolean imported) throws IOException {
+        DefaultDataService scratch = new DefaultDataService(self.getAddress());
+        StateSnapshot.restore(new ByteArrayInputStream(image), scratch, scratch, scratch, 0);
+        List<Long> channelIds = new ArrayList<>();
+        for (ChannelStatus status: ChannelStatus.values()) {
+            for (Channel channel: scratch.getChannelsByStatus(status)) {
+                if(imported && isServed(channel.getId())){
+                    throw new IllegalStateException("Channel " + channel.getId() + " is already served by shard " + getShardIndex(channel.getId()));
+                }
+                for (StatefulPromise promise: scratch.getOpenIncomingPromises(channel.getId())) {
+                    checkUnused(promise, shard.promiseDataService.getIncomingPromiseById(promise.getPromiseId()));
+                }
+                for (StatefulPromise promise: scratch.getOpenOutgoingPromises(channel.getId())) {
+                    checkUnused(promise, shard.promiseDataService.getOutgoingPromiseById(promise.getPromiseId()));
+                }
+                Optional<Receipt> incoming = scratch.getLatestIncomingReceipt(channel.getId());
+                if(incoming.isPresent()){
+                    checkSameReceipt(incoming.get(), shard.receiptDataService.getIncomingReceiptById(channel.getId(), incoming.get().getReceiptId()));
+                }
+                Optional<Receipt> outgoing = scratch.getLatestOutgoingReceipt(channel.getId());
+                if(outgoing.isPresent()){
+                    checkSameReceipt(outgoing.get(), shard.receiptDataService.getOutgoingReceiptById(channel.getId(), outgoing.get().getReceiptId()));
+                }
+                channelIds.add(channel.getId());
+            }
+        }
+        StateSnapshot.restore(new ByteArrayInputStream(image), shard.channelDataService, shard.promiseDataService, shard.receiptDataService, 0);
+        for (ChannelStatus status: ChannelStatus.values()) {
+            for (Channel channel: scratch.getChannelsByStatus(status)) {
+                reserveIds(channel, scratch.getOpenOutgoingPromises(channel.getId()));
+            }
+        }
+        return channelIds;
+    }
+
+    private boolean isServed(long channelId) {
+        Integer index = assignments.get(channelId);
+        if(index != null && index == EXPORTED){
+            return false;
+        }
+        return nodes.get(getShardIndex(channelId)).shard.channelDataService.getChannelById(channelId).isPresent();
+    }
+
+    /**
+     * Closes the open promises of a channel in the shard it left, so that a stale copy does not reopen them if the
+     * channel comes back.
+     */
+    private static void retire(Shard shard, long channelId) {
+        shard.promiseDataService.closeIncomingPromises(new ArrayList<>(shard.promiseDataService.getOpenIncomingPromises(channelId)));
+        shard.promiseDataService.closeOutgoingPromises(new ArrayList<>(shard.promiseDataService.getOpenOutgoingPromises(channelId)));
+    }
+
+    private static void checkUnused(StatefulPromise promise, Optional<StatefulPromise> existing) {
+        if(existing.isPresent() && existing.get().getChannelId() != promise.getChannelId()){
+            throw new IllegalStateException("Promise id " + promise.getPromiseId() + " of channel " + promise.getChannelId()
+                    + " is already used by channel " + existing.get().getChannelId());
+        }
+    }
+
+    private static void checkSameReceipt(Receipt receipt, Optional<Receipt> existing) {
+        if(existing.isPresent() && !Arrays.equals(PromiseService.hashReceipt(receipt), PromiseService.hashReceipt(existing.get()))){
+            throw new IllegalStateException("Receipt " + receipt.getReceiptId() + " of channel " + receipt.getChannelId()
+                    + " differs from the one already in the shard");
+        }
+    }
+
+    /**
+     * The data services of a shard.
+     */
+    public static class Shard {
+
+        private final IChannelDataService channelDataService;
+
+        private final IPromiseDataService promiseDataService;
+
+        private final IReceiptDataService receiptDataService;
+
+        /**
+         * @param channelDataService
+         * @param promiseDataService
+         * @param receiptDataService
+         */
+        public Shard(IChannelDataService channelDataService, IPromiseDataService promiseDataService, IReceiptDataService receiptDataService) {
+            this.channelDataService = channelDataService;
+            this.promiseDataService = promiseDataService;
+            this.receiptDataService = receiptDataService;
+        }
+
+        public IChannelDataService getChannelDataService() {
+            return channelDataService;
+        }
+
+        public IPromiseDataService getPromiseDataService() {
+            return promiseDataService;
+        }
+
+        public IReceiptDataService getReceiptDataService() {
+            return receiptDataService;
+        }
+    }
+
+    private static class Node {
+
+        private final Shard shard;
+
+        private final StatefulUPCService service;
+
+        private final ReentrantLock lock = new ReentrantLock();
+
+        private Node(Shard shard, StatefulUPCService service) {
+            this.shard = shard;
+            this.service = service;
+        }
+    }
+
+    /**
+     * Allocates the ids of outgoing promises from the router, so they are unique across shards.
+     */
+    private static class RoutedPromiseDataService implements IPromiseDataService {
+
+        private final IPromiseDataService delegate;
+
+        private final AtomicLong nextPromise;
+
+        private RoutedPromiseDataService(IPromiseDataService delegate, AtomicLong nextPromise) {
+            this.delegate = delegate;
+            this.nextPromise = nextPromise;
+        }
+
+        @Override
+        public StatefulPromise addOutgoingPromise(Promise promise, Integer promiseType, Boolean triggerClose) {
+            StatefulPromise statefulPromise = new StatefulPromise(promise, nextPromise.getAndIncrement(), promiseType, triggerClose);
+            delegate.restoreOutgoingPromise(statefulPromise);
+            return statefulPromise;
+        }
+
+        @Override
+        public StatefulPromise addIncomingPromise(Promise promise, Long promiseId, Integer promiseType, Boolean triggerClose) {
+            return delegate.addIncomingPromise(promise, promiseId, promiseType, triggerClose);
+        }
+
+        @Override
+        public void restoreOutgoingPromise(StatefulPromise promise) {
+            delegate.restoreOutgoingPromise(promise);
+        }
+
+        @Override
+        public void updateIncomingPromise(StatefulPromise promise) {
+            delegate.updateIncomingPromise(promise);
+        }
+
+        @Override
+        public void updateOutgoingPromise(StatefulPromise promise) {
+            delegate.updateOutgoingPromise(promise);
+        }
+
+        @Override
+        public Optional<StatefulPromise> getIncomingPromiseById(Long id) {
+            return delegate.getIncomingPromiseById(id);
+        }
+
+        @Override
+        public Optional<StatefulPromise> getOutgoingPromiseById(Long id) {
+            return delegate.getOutgoingPromiseById(id);
+        }
+
+        @Override
+        public Optional<StatefulPromise> getIncomingPromiseByAddress(String address) {
+            return delegate.getIncomingPromiseByAddress(address);
+        }
+
+        @Override
+        public Optional<StatefulPromise> getOutgoingPromiseByAddress(String address) {
+            return delegate.getOutgoingPromiseByAddress(address);
+        }
+
+        @Override
+        public Optional<StatefulPromise> getIncomingPromiseByAddress(long channelId, String address) {
+            return delegate.getIncomingPromiseByAddress(channelId, address);
+        }
+
+        @Override
+        public Optional<StatefulPromise> getOutgoingPromiseByAddress(long channelId, String address) {
+            return delegate.getOutgoingPromiseByAddress(channelId, address);
+        }
+
+        @Override
+        public List<StatefulPromise> getPromisesByChannel(Long channelId) {
+            return delegate.getPromisesByChannel(channelId);
+        }
+
+        @Override
+        public Stream<StatefulPromise> streamPromisesByChannel(long channelId) {
+            return delegate.streamPromisesByChannel(channelId);
+        }
+
+        @Override
+        public List<StatefulPromise> getOpenPromisesByChannel(Long channelId) {
+            return delegate.getOpenPromisesByChannel(channelId);
+        }
+
+        @Override
+        public List<StatefulPromise> getOpenOutgoingPromises(Long channelId) {
+            return delegate.getOpenOutgoingPromises(channelId);
+        }
+
+        @Override
+        public List<StatefulPromise> getOpenIncomingPromises(Long channelId) {
+            return delegate.getOpenIncomingPromises(channelId);
+        }
+
+        @Override
+        public Stream<StatefulPromise> streamOpenOutgoingPromises(long channelId) {
+            return delegate.streamOpenOutgoingPromises(channelId);
+        }
+
+        @Override
+        public Stream<StatefulPromise> streamOpenIncomingPromises(long channelId) {
+            return delegate.streamOpenIncomingPromises(channelId);
+        }
+
+        @Override
+        public UInt256 getIncomingPendingAmount(long channelId) {
+            return delegate.getIncomingPendingAmount(channelId);
+        }
+
+        @Override
+        public UInt256 getOutgoingPendingAmount(long channelId) {
+            return delegate.getOutgoingPendingAmount(channelId);
+        }
+
+        @Override
+        public List<StatefulPromise> getIncomingOpenPromisesWithout(long channelId, Set<Long> toRemove) {
+            return delegate.getIncomingOpenPromisesWithout(channelId, toRemove);
+        }
+
+        @Override
+        public List<StatefulPromise> getOutgoingOpenPromisesWithout(long channelId, Set<Long> toRemove) {
+            return delegate.getOutgoingOpenPromisesWithout(channelId, toRemove);
+        }
+
+        @Override
+        public List<StatefulPromise> getExpiringPromises(long channelId) {
+            return delegate.getExpiringPromises(channelId);
+        }
+
+        @Override
+        public Stream<StatefulPromise> streamIncomingOpenPromisesWithout(long channelId, Set<Long> toRemove) {
+            return delegate.streamIncomingOpenPromisesWithout(channelId, toRemove);
+        }
+
+        @Override
+        public Stream<StatefulPromise> streamOutgoingOpenPromisesWithout(long channelId, Set<Long> toRemove) {
+            return delegate.streamOutgoingOpenPromisesWithout(channelId, toRemove);
+        }
+
+        @Override
+        public Stream<StatefulPromise> streamExpiringPromises(long channelId) {
+            return delegate.streamExpiringPromises(channelId);
+        }
+
+        @Override
+        public Boolean getPromiseExpiring(long channelId) {
+            return delegate.getPromiseExpiring(channelId);
+        }
+
+        @Override
+        public void closeIncomingPromises(List<StatefulPromise> promises) {
+            delegate.closeIncomingPromises(promises);
+        }
+
+        @Override
+        public void closeOutgoingPromises(List<StatefulPromise> promises) {
+            delegate.closeOutgoingPromises(promises);
+        }
+    }
+}
@@ -2,12 +2,14 @@ package com.visa.vr.upc.sdk;
 
 import com.visa.vr.upc.sdk.custody.ISigner;
 import com.visa.vr.upc.sdk.domain.*;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
+import com.visa.vr.upc.sdk.logging.EventLogger;
+import com.visa.vr.upc.sdk.metrics.Metrics;
+import com.visa.vr.upc.sdk.tracing.ISpan;
+import com.visa.vr.upc.sdk.tracing.Tracing;
 
 import java.security.SignatureException;
-import java.util.List;
 import java.util.Set;
+import java.util.stream.Stream;
 
 /**
  * A stateful UPC service. This is not required to use the {@link PromiseService}, but it can help keep
@@ -17,7 +19,7 @@ import java.util.Set;
  */
 public class StatefulUPCService{
 
-    private final Logger log = LoggerFactory.getLogger(this.getClass());
+    private final EventLogger events = EventLogger.getLogger(this.getClass());
 
     private final IPromiseDataService promiseDataService;
 
@@ -50,40 +52,41 @@ public class StatefulUPCService{
      * @param address the address of the party
      * @return
      */
-    public long getCredit(long channelId, String address) {
+    public UInt256 getCredit(long channelId, String address) {
         Channel channel = channelDataService.getChannelById(channelId).orElseThrow(IllegalArgumentException::new);
         return channel.getCredit(address);
     }
 
     /**
      * Gets the amount of available funds held in a channel by the owner of this service. This consists of a party's
-     * deposit and credit, minus the other party's credit and the amount of funds currently locked in pending promises.
+     * deposit and credit, minus the other party's credit and the amount of funds currently locked in pending promises,
+     * or zero if more than that is owed.
      * @param channelId
      * @return
      */
-    public long getSelfAvailableAmount(long channelId){
+    public UInt256 getSelfAvailableAmount(long channelId){
         Channel channel = channelDataService.getChannelById(channelId).orElseThrow(IllegalArgumentException::new);
         String other = channel.getOtherAddress(self.getAddress());
-        return channel.getDeposit(self.getAddress())
-                + channel.getCredit(self.getAddress())
-                - channel.getCredit(other)
-                - promiseDataService.getOutgoingPendingAmount(channelId);
+        return getAvailableAmount(channel.getDeposit(self.getAddress()).add(channel.getCredit(self.getAddress())),
+                channel.getCredit(other).add(promiseDataService.getOutgoingPendingAmount(channelId)));
     }
 
     /**
      * Gets the amount of available funds held in a channel by the counterparty of the owner of this service.
      * This consists of a party's deposit and credit, minus the other party's credit and the amount of funds
-     * currently locked in pending promises.
+     * currently locked in pending promises, or zero if more than that is owed.
      * @param channelId
      * @return
      */
-    public long getOtherAvailableAmount(long channelId){
+    public UInt256 getOtherAvailableAmount(long channelId){
         Channel channel = channelDataService.getChannelById(channelId).orElseThrow(IllegalArgumentException::new);
         String other = channel.getOtherAddress(self.getAddress());
-        return channel.getDeposit(other)
-                + channel.getCredit(other)
-                - channel.getCredit(self.getAddress())
-                - promiseDataService.getIncomingPendingAmount(channelId);
+        return getAvailableAmount(channel.getDeposit(other).add(channel.getCredit(other)),
+                channel.getCredit(self.getAddress()).add(promiseDataService.getIncomingPendingAmount(channelId)));
+    }
+
+    private static UInt256 getAvailableAmount(UInt256 funds, UInt256 owed){
+        return funds.compareTo(owed) > 0 ? funds.subtract(owed) : UInt256.ZERO;
     }
 
     /**
@@ -92,18 +95,32 @@ public class StatefulUPCService{
      * @return
      */
     public Receipt createReceipt(long channelId) {
-        Channel channel = channelDataService.getChannelById(channelId).orElseThrow(IllegalArgumentException::new);
-        if(!channel.checkAddress(self.getAddress())){
-            throw new IllegalArgumentException("Invalid address for channel" + channelId);
+        ISpan span = Tracing.startSpan(Tracing.RECEIPT_SEND);
+        try {
+            span.setAttribute(Tracing.CHANNEL_ID, channelId);
+            long start = System.nanoTime();
+            Channel channel = channelDataService.getChannelById(channelId).orElseThrow(IllegalArgumentException::new);
+            if(!channel.checkAddress(self.getAddress())){
+                throw new IllegalArgumentException("Invalid address for channel" + channelId);
+            }
+            String receiver = channel.getOtherAddress(self.getAddress());
+            long receiptId = receiptDataService.getLatestOutgoingReceipt(channelId).map(Receipt::getReceiptId).orElse(0L) + 1;
+            span.setAttribute(Tracing.RECEIPT_ID, receiptId);
+            UInt256 cumulativeCredit = channel.getTotalCredit(receiver);
+            Stream<StatefulPromise> promises = promiseDataService.streamOpenOutgoingPromises(channelId);
+            Receipt receipt = PromiseService.createReceipt(channelId, channel.getChainId(), self.getAddress(), receiver, receiptId, cumulativeCredit, promises);
+            receipt = PromiseService.signReceipt(receipt, self);
+            try (ISpan storeSpan = Tracing.startSpan(Tracing.DATA_STORE)) {
+                receiptDataService.addOutgoingReceipt(receipt);
+            }
+            Metrics.get().recordNanos(Metrics.RECEIPT_CREATE, System.nanoTime() - start);
+            return receipt;
+        } catch (RuntimeException e) {
+            span.recordException(e);
+            throw e;
+        } finally {
+            span.close();
         }
-        String receiver = channel.getOtherAddress(self.getAddress());
-        long receiptId = receiptDataService.getLatestOutgoingReceipt(channelId).map(r -> r.getReceiptId().longValue()).orElse(0L) + 1;
-        long cumulativeCredit = channel.getTotalCredit(receiver);
-        List<? extends Promise> promises = promiseDataService.getOpenOutgoingPromises(channel.getId());
-        Receipt receipt = PromiseService.createReceipt(channelId, channel.getChainId(), self.getAddress(), receiver, receiptId, cumulativeCredit, promises);
-        receipt = PromiseService.signReceipt(receipt, self);
-        receiptDataService.addOutgoingReceipt(receipt);
-        return receipt;
     }
 
     /**
@@ -116,17 +133,29 @@ public class StatefulUPCService{
      * @return
      */
     public Receipt createReceipt(long channelId, long creditChange, Set<Long> toRemove){
-        Channel channel = channelDataService.getChannelById(channelId).orElseThrow(IllegalArgumentException::new);
-        if(!channel.checkAddress(self.getAddress())){
-            throw new IllegalArgumentException("Invalid address for channel" + channelId);
+        ISpan span = Tracing.startSpan(Tracing.RECEIPT_SEND);
+        try {
+            span.setAttribute(Tracing.CHANNEL_ID, channelId);
+            long start = System.nanoTime();
+            Channel channel = channelDataService.getChannelById(channelId).orElseThrow(IllegalArgumentException::new);
+            if(!channel.checkAddress(self.getAddress())){
+                throw new IllegalArgumentException("Invalid address for channel" + channelId);
+            }
+            String receiver = channel.getOtherAddress(self.getAddress());
+            long receiptId = receiptDataService.getLatestOutgoingReceipt(channelId).map(Receipt::getReceiptId).orElse(0L) + 1;
+            span.setAttribute(Tracing.RECEIPT_ID, receiptId);
+            UInt256 cumulativeCredit = channel.getTotalCredit(receiver).add(creditChange);
+            Stream<StatefulPromise> promises = promiseDataService.streamOutgoingOpenPromisesWithout(channelId, toRemove);
+            Receipt receipt = PromiseService.createReceipt(channelId, channel.getChainId(), self.getAddress(), receiver, receiptId, cumulativeCredit, promises);
+            receipt = PromiseService.signReceipt(receipt, self);
+            Metrics.get().recordNanos(Metrics.RECEIPT_CREATE, System.nanoTime() - start);
+            return receipt;
+        } catch (RuntimeException e) {
+            span.recordException(e);
+            throw e;
+        } finally {
+            span.close();
         }
-        String receiver = channel.getOtherAddress(self.getAddress());
-        long receiptId = receiptDataService.getLatestOutgoingReceipt(channelId).map(r -> r.getReceiptId().longValue()).orElse(0L) + 1;
-        long cumulativeCredit = creditChange + channel.getTotalCredit(receiver);
-        List<? extends Promise> promises = promiseDataService.getOutgoingOpenPromisesWithout(channelId, toRemove);
-        Receipt receipt = PromiseService.createReceipt(channelId, channel.getChainId(), self.getAddress(), receiver, receiptId, cumulativeCredit, promises);
-        receipt = PromiseService.signReceipt(receipt, self);
-        return receipt;
     }
 
     /**
@@ -135,7 +164,7 @@ public class StatefulUPCService{
      * @return
      */
     public MerkleAccumulator getIncomingAccumulator(long channelId){
-        return PromiseService.getAccumulator(promiseDataService.getOpenIncomingPromises(channelId));
+        return PromiseService.getAccumulator(promiseDataService.streamOpenIncomingPromises(channelId));
     }
 
     /**
@@ -149,19 +178,35 @@ public class StatefulUPCService{
      * @throws SignatureException
      */
     public Boolean checkReceipt(Receipt receipt, long channelId, long receiptId, long creditChange, Set<Long> toRemove) throws SignatureException {
+        ISpan span = Tracing.startSpan(Tracing.RECEIPT_RECEIVE);
+        try {
+            span.setAttribute(Tracing.CHANNEL_ID, channelId).setAttribute(Tracing.RECEIPT_ID, receiptId);
+            long start = System.nanoTime();
+            boolean valid = isValidReceipt(receipt, channelId, receiptId, creditChange, toRemove);
+            Metrics.get().recordNanos(Metrics.RECEIPT_CHECK, System.nanoTime() - start, "valid", Boolean.toString(valid));
+            return valid;
+        } catch (RuntimeException e) {
+            span.recordException(e);
+            throw e;
+        } finally {
+            span.close();
+        }
+    }
+
+    private boolean isValidReceipt(Receipt receipt, long channelId, long receiptId, long creditChange, Set<Long> toRemove) throws SignatureException {
         Channel channel = channelDataService.getChannelById(channelId).orElseThrow(IllegalArgumentException::new);
         if(!channel.checkAddress(self.getAddress())){
             throw new IllegalArgumentException("Invalid address for channel" + channelId);
         }
         String sender = channel.getOtherAddress(self.getAddress());
         if(receiptId <= receiptDataService.getLatestIncomingReceipt(channelId).map(r -> r.getReceiptId()).orElse(-1L)){
-            log.info("Receipt has too low of an index");
+            events.debug("receipt.check.rejected").with("channelId", channelId).with("reason", "receiptId").log();
             return false;
         }
-        long cumulativeCredit = creditChange + channel.getTotalCredit(self.getAddress());
-        List<? extends Promise> promises = promiseDataService.getIncomingOpenPromisesWithout(channelId, toRemove);
+        UInt256 cumulativeCredit = channel.getTotalCredit(self.getAddress()).add(creditChange);
+        Stream<StatefulPromise> promises = promiseDataService.streamIncomingOpenPromisesWithout(channelId, toRemove);
         if(!PromiseService.verifyReceipt(receipt, channelId, channel.getChainId(), sender, self.getAddress(), receiptId, cumulativeCredit, promises)){
-            log.info("Receipt did not verify");
+            events.debug("receipt.check.rejected").with("channelId", channelId).with("reason", "verify").log();
             return false;
         }
         return true;
@@ -181,16 +226,34 @@ public class StatefulUPCService{
                                          String bytecode,
                                          IPromiseConstructorParams params,
                                          byte[] salt){
-        Channel channel = channelDataService.getChannelById(channelId).orElseThrow(IllegalArgumentException::new);
-        if(!channel.checkAddress(self.getAddress())){
-            throw new IllegalArgumentException("Invalid address for channel" + channelId);
+        ISpan span = Tracing.startSpan(Tracing.PROMISE_SEND);
+        try {
+            span.setAttribute(Tracing.CHANNEL_ID, channelId);
+            long start = System.nanoTime();
+            Channel channel = channelDataService.getChannelById(channelId).orElseThrow(IllegalArgumentException::new);
+            if(!channel.checkAddress(self.getAddress())){
+                throw new IllegalArgumentException("Invalid address for channel" + channelId);
+            }
+            String receiver = channel.getOtherAddress(self.getAddress());
+            long receiptId = receiptDataService.getLatestOutgoingReceipt(channelId).map(r -> r.getReceiptId()).orElse(0L);
+            Promise promise = PromiseService.createPromise(channelId, channel.getChainId(), channel.getAddress(), self.getAddress(), receiver, receiptId, bytecode, params, salt);
+            promise = PromiseService.signPromise(promise, self);
+            span.setAttribute(Tracing.PROMISE_ADDRESS, promise.getAddress());
+            StatefulPromise statefulPromise;
+            try (ISpan storeSpan = Tracing.startSpan(Tracing.DATA_STORE)) {
+                statefulPromise = promiseDataService.addOutgoingPromise(promise, type, false);
+            }
+            if(statefulPromise.getPromiseId() != null){
+                span.setAttribute(Tracing.PROMISE_ID, statefulPromise.getPromiseId());
+            }
+            Metrics.get().recordNanos(Metrics.PROMISE_CREATE, System.nanoTime() - start);
+            return statefulPromise;
+        } catch (RuntimeException e) {
+            span.recordException(e);
+            throw e;
+        } finally {
+            span.close();
         }
-        String receiver = channel.getOtherAddress(self.getAddress());
-        long receiptId = receiptDataService.getLatestOutgoingReceipt(channelId).map(r -> r.getReceiptId()).orElse(0L);
-        Promise promise = PromiseService.createPromise(channelId, channel.getChainId(), channel.getAddress(), self.getAddress(), receiver, receiptId, bytecode, params, salt);
-        promise = PromiseService.signPromise(promise, self);
-        StatefulPromise statefulPromise = promiseDataService.addOutgoingPromise(promise, type, false);
-        return statefulPromise;
     }
 
     /**
@@ -208,6 +271,26 @@ public class StatefulUPCService{
                                 String bytecode,
                                 IPromiseConstructorParams params,
                                 byte[] salt) throws SignatureException {
+        ISpan span = Tracing.startSpan(Tracing.PROMISE_RECEIVE);
+        try {
+            span.setAttribute(Tracing.CHANNEL_ID, channelId).setAttribute(Tracing.PROMISE_ADDRESS, promise.getAddress());
+            long start = System.nanoTime();
+            boolean valid = isValidPromise(promise, channelId, bytecode, params, salt);
+            Metrics.get().recordNanos(Metrics.PROMISE_CHECK, System.nanoTime() - start, "valid", Boolean.toString(valid));
+            return valid;
+        } catch (RuntimeException e) {
+            span.recordException(e);
+            throw e;
+        } finally {
+            span.close();
+        }
+    }
+
+    private boolean isValidPromise(Promise promise,
+                                   long channelId,
+                                   String bytecode,
+                                   IPromiseConstructorParams params,
+                                   byte[] salt) throws SignatureException {
         Channel channel = channelDataService.getChannelById(channelId).orElseThrow(IllegalArgumentException::new);
         if(!channel.checkAddress(self.getAddress())){
             throw new IllegalArgumentException("Invalid address for channel" + channelId);
@@ -215,11 +298,11 @@ public class StatefulUPCService{
         String sender = channel.getOtherAddress(self.getAddress());
         long receiptId = receiptDataService.getLatestIncomingReceipt(channelId).map(r -> r.getReceiptId()).orElse(0L);
         if(!PromiseService.verifyPromise(promise, channelId, channel.getChainId(), channel.getAddress(), sender, self.getAddress(), receiptId, bytecode, params, salt)){
-            log.info("Promise did not verify");
+            events.debug("promise.check.rejected").with("channelId", channelId).with("reason", "verify").log();
             return false;
         }
-        if(getOtherAvailableAmount(channelId) < promise.getAmount()){
-            log.info("Insufficient amount in channel to cover promise");
+        if(getOtherAvailableAmount(channelId).compareTo(promise.getAmount()) < 0){
+            events.debug("promise.check.rejected").with("channelId", channelId).with("reason", "amount").log();
             return false;
         }
         return true;
@@ -6,21 +6,33 @@ import com.visa.vr.upc.sdk.domain.Receipt;
 import com.visa.vr.upc.sdk.domain.DecoratedUPC;
 import com.visa.vr.upc.sdk.domain.UPCState;
 import com.visa.vr.upc.sdk.generated.UPC2;
+import com.visa.vr.upc.sdk.metrics.Metrics;
+import com.visa.vr.upc.sdk.tx.AdaptiveGasProvider;
+import com.visa.vr.upc.sdk.tx.TransactionPipeline;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.web3j.abi.datatypes.generated.Bytes32;
 import org.web3j.protocol.Web3j;
+import org.web3j.protocol.core.methods.request.Transaction;
+import org.web3j.protocol.core.methods.response.EthEstimateGas;
 import org.web3j.protocol.core.methods.response.TransactionReceipt;
 import org.web3j.tx.TransactionManager;
 import org.web3j.tx.gas.ContractGasProvider;
+import org.web3j.tuples.generated.Tuple2;
 import org.web3j.utils.Numeric;
 
 import java.io.IOException;
 import java.math.BigInteger;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.stream.Collectors;
 
 
 /**
@@ -86,7 +98,7 @@ public class UPCService {
      */
     public static CompletableFuture<TransactionReceipt> deposit(DecoratedUPC decoratedUPC, long amount){
         UPC2 upc = decoratedUPC.getUpc();
-        return upc.depositToken(BigInteger.valueOf(amount)).sendAsync().whenComplete((TransactionReceipt r,  Throwable t) -> {
+        return track(UPC2.FUNC_DEPOSITTOKEN, upc.depositToken(BigInteger.valueOf(amount)).sendAsync()).whenComplete((TransactionReceipt r,  Throwable t) -> {
             if(t != null){
                 log.info("Failed to deposit into UPC Contract with address {}, exception: {}", upc.getContractAddress(), t.getMessage());
                 return;
@@ -142,8 +154,8 @@ public class UPCService {
             proofList.add(Arrays.copyOfRange(proof, i, i + 32));
         }
 
-        return upc.registerPromise(promise.toContractPromise(), promise.getSignature().toContractSignature(), proofList
-                ).sendAsync()
+        return track(UPC2.FUNC_REGISTERPROMISE, upc.registerPromise(promise.toContractPromise(), promise.getSignature().toContractSignature(), proofList
+                ).sendAsync())
                 .whenComplete((TransactionReceipt r, Throwable t) -> {
                    if(t != null){
                        log.info("Failed to deploy promise to UPC Contract by {} with address {}, exception: {}", promise.getSender(), upc.getContractAddress(), t.getMessage());
@@ -157,6 +169,69 @@ public class UPCService {
                 });
     }
 
+    /**
+     * Asynchronously deploys many promises to the UPC smart contract in one transaction. The membership proofs of all
+     * promises that need one are combined into a single Merkle multiproof from the root of the latest receipt.
+     * @param decoratedUPC the UPC smart contract wrapper
+     * @param promises the promises to deploy
+     * @param latestReceipt the latest receipt received by the party deploying the promises, pass null if none was received
+     * @param acc the Merkle accumulator of the latest receipt, pass null if not needed
+     * @return the {@link CompletableFuture} of the {@link TransactionReceipt}
+     */
+    public static CompletableFuture<TransactionReceipt> deployPromises(DecoratedUPC decoratedUPC, List<Promise> promises, Receipt latestReceipt, MerkleAccumulator acc) {
+        Map<String, Promise> needProof = new HashMap<>();
+        List<Promise> noProof = new ArrayList<>();
+        for (Promise promise: promises) {
+            if(latestReceipt != null
+                    && !promise.getSender().equalsIgnoreCase(decoratedUPC.getFromAddress())
+                    && promise.getReceiptId() < latestReceipt.getReceiptId()) {
+                needProof.put(Numeric.toHexString(MerkleAccumulator.keyFromAddress(promise.getAddress())), promise);
+            } else {
+                noProof.add(promise);
+            }
+        }
+
+        List<Promise> ordered = new ArrayList<>(promises.size());
+        MerkleAccumulator.MultiProof multiProof = new MerkleAccumulator.MultiProof(new ArrayList<>(), new ArrayList<>(), new ArrayList<>());
+        if(!needProof.isEmpty()){
+            multiProof = acc.getMultiProof(needProof.keySet().stream().map(Numeric::hexStringToByteArray).collect(Collectors.toList()));
+            // The contract expects the promises that need a proof first, in the leaf order of the multiproof
+            for (byte[] leaf: multiProof.getLeaves()) {
+                ordered.add(needProof.get(Numeric.toHexString(leaf)));
+            }
+        }
+        ordered.addAll(noProof);
+        return deployPromises(decoratedUPC.getUpc(), ordered, multiProof.getProof(), multiProof.getProofFlags());
+    }
+
+    /**
+     * A lower level version of {@link #deployPromises(DecoratedUPC, List, Receipt, MerkleAccumulator)}, which includes the multiproof directly.
+     * @param upc the UPC smart contract wrapper
+     * @param promises the promises to deploy, the ones that need a membership proof first, in the leaf order of the multiproof
+     * @param multiProof the sibling hashes of the multiproof
+     * @param proofFlags the flags of the multiproof
+     * @return the {@link CompletableFuture} of the {@link TransactionReceipt}
+     */
+    public static CompletableFuture<TransactionReceipt> deployPromises(UPC2 upc, List<Promise> promises, List<byte[]> multiProof, List<Boolean> proofFlags) {
+        List<UPC2.Promise> contractPromises = new ArrayList<>(promises.size());
+        List<UPC2.Signature> signatures = new ArrayList<>(promises.size());
+        for (Promise promise: promises) {
+            contractPromises.add(promise.toContractPromise());
+            signatures.add(promise.getSignature().toContractSignature());
+        }
+        return track(UPC2.FUNC_REGISTERPROMISES, upc.registerPromises(contractPromises, signatures, multiProof, proofFlags).sendAsync())
+                .whenComplete((TransactionReceipt r, Throwable t) -> {
+                    if(t != null){
+                        log.info("Failed to deploy {} promises to UPC Contract with address {}, exception: {}", promises.size(), upc.getContractAddress(), t.getMessage());
+                        return;
+                    }
+                    log.info("Deployed {} promises", promises.size());
+                    UPC2.getDeployPromiseEvents(r).stream().forEach((UPC2.DeployPromiseEventResponse e) -> {
+                        log.debug("Deployed promise {} {} {}", e.from, e.id, e.promiseAddress);
+                    });
+                });
+    }
+
     /**
      * Asynchronously deploys a receipt to the UPC smart contract
      * @param decoratedUPC
@@ -165,8 +240,8 @@ public class UPCService {
      */
     public static CompletableFuture<TransactionReceipt> deployReceipt(DecoratedUPC decoratedUPC, Receipt receipt) {
         UPC2 upc = decoratedUPC.getUpc();
-        return upc.registerReceipt(receipt.toContractReceipt(), receipt.getSignature().toContractSignature())
-                .sendAsync().whenComplete((TransactionReceipt r, Throwable t) -> {
+        return track(UPC2.FUNC_REGISTERRECEIPT, upc.registerReceipt(receipt.toContractReceipt(), receipt.getSignature().toContractSignature())
+                .sendAsync()).whenComplete((TransactionReceipt r, Throwable t) -> {
                     if(t != null){
                         log.info("Failed to deploy receipt to UPC Contract by {} with address {}, exception: {}", receipt.getReceiver(), upc.getContractAddress(), t.getMessage());
                         return;
@@ -185,10 +260,10 @@ public class UPCService {
      */
     public static CompletableFuture<TransactionReceipt> deployEmptyReceipt(DecoratedUPC decoratedUPC) {
         UPC2 upc = decoratedUPC.getUpc();
-        return upc.registerReceipt(
+        return track(UPC2.FUNC_REGISTERRECEIPT, upc.registerReceipt(
                         new UPC2.Receipt(BigInteger.ZERO, BigInteger.ZERO, Bytes32.DEFAULT.getValue()),
                         new UPC2.Signature(BigInteger.ZERO, Bytes32.DEFAULT.getValue(), Bytes32.DEFAULT.getValue()))
-                .sendAsync().whenComplete((TransactionReceipt r, Throwable t) -> {
+                .sendAsync()).whenComplete((TransactionReceipt r, Throwable t) -> {
                     if (t != null) {
                         log.info("Failed to deploy empty receipt to UPC Contract by {} with address {}, exception: {}", decoratedUPC.getFromAddress(), upc.getContractAddress(), t.getMessage());
                         return;
@@ -206,7 +281,7 @@ public class UPCService {
      */
     public static CompletableFuture<TransactionReceipt> close(DecoratedUPC decoratedUPC){
         UPC2 upc = decoratedUPC.getUpc();
-        return upc.close().sendAsync().whenComplete((TransactionReceipt r, Throwable t) -> {
+        return track(UPC2.FUNC_CLOSE, upc.close().sendAsync()).whenComplete((TransactionReceipt r, Throwable t) -> {
             if(t != null){
                 log.info("Failed to close the UPC contract address {}, exception: {}", upc.getContractAddress(), t.getMessage());
                 return;
@@ -228,7 +303,7 @@ public class UPCService {
      */
     public static CompletableFuture<TransactionReceipt> withdrawNotClosing(DecoratedUPC decoratedUPC, long amount){
         UPC2 upc = decoratedUPC.getUpc();
-        return upc.withdrawNotClosing(BigInteger.valueOf(amount)).sendAsync().whenComplete((TransactionReceipt r, Throwable t) -> {
+        return track(UPC2.FUNC_WITHDRAWNOTCLOSING, upc.withdrawNotClosing(BigInteger.valueOf(amount)).sendAsync()).whenComplete((TransactionReceipt r, Throwable t) -> {
             if(t != null){
                 log.info("Failed to soft withdraw from UPC contract address {}, exception: {}", upc.getContractAddress(), t.getMessage());
                 return;
@@ -248,7 +323,7 @@ public class UPCService {
      */
     public static CompletableFuture<TransactionReceipt> withdraw(DecoratedUPC decoratedUPC){
         UPC2 upc = decoratedUPC.getUpc();
-        return upc.withdrawClosing().sendAsync().whenComplete((TransactionReceipt r, Throwable t) -> {
+        return track(UPC2.FUNC_WITHDRAWCLOSING, upc.withdrawClosing().sendAsync()).whenComplete((TransactionReceipt r, Throwable t) -> {
             if(t != null){
                 log.info("Failed to hard withdraw from UPC contract address {}, exception: {}", upc.getContractAddress(), t.getMessage());
                 return;
@@ -260,6 +335,298 @@ public class UPCService {
         });
     }
 
+    /**
+     * Pipelined version of {@link #deposit(DecoratedUPC, long)}. Does not wait for earlier transactions of the
+     * pipeline's account to be mined.
+     * @param pipeline
+     * @param decoratedUPC
+     * @param amount
+     * @return the {@link CompletableFuture} of the {@link TransactionReceipt}
+     */
+    public static CompletableFuture<TransactionReceipt> deposit(TransactionPipeline pipeline, DecoratedUPC decoratedUPC, long amount){
+        UPC2 upc = decoratedUPC.getUpc();
+        return track(UPC2.FUNC_DEPOSITTOKEN, pipeline.submit(upc.getContractAddress(), upc.depositToken(BigInteger.valueOf(amount)).encodeFunctionCall(), UPC2.FUNC_DEPOSITTOKEN))
+                .whenComplete((TransactionReceipt r, Throwable t) -> {
+                    if(t != null){
+                        log.info("Failed to deposit into UPC Contract with address {}, exception: {}", upc.getContractAddress(), t.getMessage());
+                        return;
+                    }
+                    log.info("Deposited to channel with address {}", upc.getContractAddress());
+                });
+    }
+
+    /**
+     * Pipelined version of {@link #deployPromise(UPC2, Promise, byte[])}.
+     * @param pipeline
+     * @param upc
+     * @param promise
+     * @param proof
+     * @return the {@link CompletableFuture} of the {@link TransactionReceipt}
+     */
+    public static CompletableFuture<TransactionReceipt> deployPromise(TransactionPipeline pipeline, UPC2 upc, Promise promise, byte[] proof){
+        ArrayList<byte[]> proofList = new ArrayList<>();
+        for(int i = 0; i < proof.length; i+= 32){
+            proofList.add(Arrays.copyOfRange(proof, i, i + 32));
+        }
+        String data = upc.registerPromise(promise.toContractPromise(), promise.getSignature().toContractSignature(), proofList).encodeFunctionCall();
+        return track(UPC2.FUNC_REGISTERPROMISE, pipeline.submit(upc.getContractAddress(), data, UPC2.FUNC_REGISTERPROMISE))
+                .whenComplete((TransactionReceipt r, Throwable t) -> {
+                    if(t != null){
+                        log.info("Failed to deploy promise to UPC Contract by {} with address {}, exception: {}", promise.getSender(), upc.getContractAddress(), t.getMessage());
+                        return;
+                    }
+                    log.info("Deployed promise");
+                });
+    }
+
+    /**
+     * Pipelined version of {@link #deployReceipt(DecoratedUPC, Receipt)}.
+     * @param pipeline
+     * @param decoratedUPC
+     * @param receipt
+     * @return the {@link CompletableFuture} of the {@link TransactionReceipt}
+     */
+    public static CompletableFuture<TransactionReceipt> deployReceipt(TransactionPipeline pipeline, DecoratedUPC decoratedUPC, Receipt receipt){
+        UPC2 upc = decoratedUPC.getUpc();
+        String data = upc.registerReceipt(receipt.toContractReceipt(), receipt.getSignature().toContractSignature()).encodeFunctionCall();
+        return track(UPC2.FUNC_REGISTERRECEIPT, pipeline.submit(upc.getContractAddress(), data, UPC2.FUNC_REGISTERRECEIPT))
+                .whenComplete((TransactionReceipt r, Throwable t) -> {
+                    if(t != null){
+                        log.info("Failed to deploy receipt to UPC Contract by {} with address {}, exception: {}", receipt.getReceiver(), upc.getContractAddress(), t.getMessage());
+                        return;
+                    }
+                    log.info("Deployed receipt");
+                });
+    }
+
+    /**
+     * Pipelined version of {@link #deployEmptyReceipt(DecoratedUPC)}.
+     * @param pipeline
+     * @param decoratedUPC
+     * @return the {@link CompletableFuture} of the {@link TransactionReceipt}
+     */
+    public static CompletableFuture<TransactionReceipt> deployEmptyReceipt(TransactionPipeline pipeline, DecoratedUPC decoratedUPC){
+        UPC2 upc = decoratedUPC.getUpc();
+        String data = upc.registerReceipt(
+                        new UPC2.Receipt(BigInteger.ZERO, BigInteger.ZERO, Bytes32.DEFAULT.getValue()),
+                        new UPC2.Signature(BigInteger.ZERO, Bytes32.DEFAULT.getValue(), Bytes32.DEFAULT.getValue()))
+                .encodeFunctionCall();
+        return track(UPC2.FUNC_REGISTERRECEIPT, pipeline.submit(upc.getContractAddress(), data, UPC2.FUNC_REGISTERRECEIPT))
+                .whenComplete((TransactionReceipt r, Throwable t) -> {
+                    if(t != null){
+                        log.info("Failed to deploy empty receipt to UPC Contract by {} with address {}, exception: {}", decoratedUPC.getFromAddress(), upc.getContractAddress(), t.getMessage());
+                        return;
+                    }
+                    log.info("Deployed receipt");
+                });
+    }
+
+    /**
+     * Pipelined version of {@link #deployPromises(UPC2, List, List, List)}.
+     * @param pipeline
+     * @param upc
+     * @param promises the promises to deploy, the ones that need a membership proof first, in the leaf order of the multiproof
+     * @param multiProof the sibling hashes of the multiproof
+     * @param proofFlags the flags of the multiproof
+     * @return the {@link CompletableFuture} of the {@link TransactionReceipt}
+     */
+    public static CompletableFuture<TransactionReceipt> deployPromises(TransactionPipeline pipeline, UPC2 upc, List<Promise> promises, List<byte[]> multiProof, List<Boolean> proofFlags){
+        List<UPC2.Promise> contractPromises = new ArrayList<>(promises.size());
+        List<UPC2.Signature> signatures = new ArrayList<>(promises.size());
+        for (Promise promise: promises) {
+            contractPromises.add(promise.toContractPromise());
+            signatures.add(promise.getSignature().toContractSignature());
+        }
+        String data = upc.registerPromises(contractPromises, signatures, multiProof, proofFlags).encodeFunctionCall();
+        return track(UPC2.FUNC_REGISTERPROMISES, pipeline.submit(upc.getContractAddress(), data, UPC2.FUNC_REGISTERPROMISES))
+                .whenComplete((TransactionReceipt r, Throwable t) -> {
+                    if(t != null){
+                        log.info("Failed to deploy {} promises to UPC Contract with address {}, exception: {}", promises.size(), upc.getContractAddress(), t.getMessage());
+                        return;
+                    }
+                    log.info("Deployed {} promises", promises.size());
+                });
+    }
+
+    /**
+     * Pipelined version of {@link #close(DecoratedUPC)}.
+     * @param pipeline
+     * @param decoratedUPC
+     * @return the {@link CompletableFuture} of the {@link TransactionReceipt}
+     */
+    public static CompletableFuture<TransactionReceipt> close(TransactionPipeline pipeline, DecoratedUPC decoratedUPC){
+        UPC2 upc = decoratedUPC.getUpc();
+        return track(UPC2.FUNC_CLOSE, pipeline.submit(upc.getContractAddress(), upc.close().encodeFunctionCall(), UPC2.FUNC_CLOSE))
+                .whenComplete((TransactionReceipt r, Throwable t) -> {
+                    if(t != null){
+                        log.info("Failed to close the UPC contract address {}, exception: {}", upc.getContractAddress(), t.getMessage());
+                        return;
+                    }
+                    log.info("Closed channel");
+                });
+    }
+
+    /**
+     * Pipelined version of {@link #withdraw(DecoratedUPC)}. The transaction is sized by the number of promises left to
+     * resolve in this channel, so its gas limit is not taken from a channel with fewer promises.
+     * @param pipeline
+     * @param decoratedUPC
+     * @return the {@link CompletableFuture} of the {@link TransactionReceipt}
+     */
+    public static CompletableFuture<TransactionReceipt> withdraw(TransactionPipeline pipeline, DecoratedUPC decoratedUPC){
+        UPC2 upc = decoratedUPC.getUpc();
+        CompletableFuture<TransactionReceipt> receipt = upc.getResolveProgress().sendAsync()
+                .thenCompose(progress -> pipeline.submit(upc.getContractAddress(), upc.withdrawClosing().encodeFunctionCall(),
+                        UPC2.FUNC_WITHDRAWCLOSING, progress.component2().subtract(progress.component1()).longValue()));
+        return track(UPC2.FUNC_WITHDRAWCLOSING, receipt)
+                .whenComplete((TransactionReceipt r, Throwable t) -> {
+                    if(t != null){
+                        log.info("Failed to hard withdraw from UPC contract address {}, exception: {}", upc.getContractAddress(), t.getMessage());
+                        return;
+                    }
+                    log.info("Initiated hard withdrawal");
+                });
+    }
+
+    /**
+     * Asynchronously estimates the gas limit of a hard withdrawal with an {@link AdaptiveGasProvider}, using the number of
+     * promises left to resolve as the shape, since that is what the gas of withdrawClosing scales with. Afterwards the
+     * provider returns at least this limit for withdrawClosing, also to contract wrappers using it.
+     * @param gasProvider
+     * @param decoratedUPC
+     * @return the {@link CompletableFuture} of the gas limit
+     */
+    public static CompletableFuture<BigInteger> estimateWithdrawGasLimit(AdaptiveGasProvider gasProvider, DecoratedUPC decoratedUPC){
+        UPC2 upc = decoratedUPC.getUpc();
+        return upc.getResolveProgress().sendAsync().thenApply(progress -> gasProvider.estimateGasLimit(
+                decoratedUPC.getFromAddress(), upc.getContractAddress(), upc.withdrawClosing().encodeFunctionCall(),
+                UPC2.FUNC_WITHDRAWCLOSING, progress.component2().subtract(progress.component1()).longValue()));
+    }
+
+    /**
+     * Closes many channels through a pipeline, so that the close transactions are mined together instead of one per block.
+     * @param pipeline
+     * @param channels
+     * @return a {@link CompletableFuture} for each channel, in the given order
+     */
+    public static List<CompletableFuture<TransactionReceipt>> closeAll(TransactionPipeline pipeline, List<DecoratedUPC> channels){
+        return channels.stream().map(c -> close(pipeline, c)).collect(Collectors.toList());
+    }
+
+    /**
+     * Hard withdraws from many closed channels through a pipeline.
+     * @param pipeline
+     * @param channels
+     * @return a {@link CompletableFuture} for each channel, in the given order
+     */
+    public static List<CompletableFuture<TransactionReceipt>> withdrawAll(TransactionPipeline pipeline, List<DecoratedUPC> channels){
+        return channels.stream().map(c -> withdraw(pipeline, c)).collect(Collectors.toList());
+    }
+
+    /**
+     * Asynchronously resolves up to a number of the promises registered to a closed channel, continuing from where the
+     * previous call stopped. With many promises, this keeps each transaction within the block gas limit.
+     * @param decoratedUPC
+     * @param maxCount the maximum number of promises to resolve
+     * @return the {@link CompletableFuture} of the {@link TransactionReceipt}
+     */
+    public static CompletableFuture<TransactionReceipt> resolvePromises(DecoratedUPC decoratedUPC, long maxCount){
+        UPC2 upc = decoratedUPC.getUpc();
+        return track(UPC2.FUNC_RESOLVEPROMISES, upc.resolvePromises(BigInteger.valueOf(maxCount)).sendAsync()).whenComplete((TransactionReceipt r, Throwable t) -> {
+            if(t != null){
+                log.info("Failed to resolve promises of UPC contract address {}, exception: {}", upc.getContractAddress(), t.getMessage());
+                return;
+            }
+            log.info("Resolved up to {} promises", maxCount);
+        });
+    }
+
+    /**
+     * Asynchronously hard withdraws from a closed channel, first resolving its promises in as many transactions as
+     * needed so that no transaction uses more than the given gas. Batch sizes are derived from gas estimates.
+     * @param web3j
+     * @param decoratedUPC
+     * @param maxGasPerTransaction the gas limit each transaction should stay under, e.g. a fraction of the block gas limit
+     * @param executor the executor to wait for the estimates and batches on, one of its threads is blocked until the
+     *                 promises are resolved
+     * @return the {@link CompletableFuture} of the {@link TransactionReceipt} of the withdrawal
+     */
+    public static CompletableFuture<TransactionReceipt> withdrawInBatches(Web3j web3j, DecoratedUPC decoratedUPC, long maxGasPerTransaction, Executor executor){
+        UPC2 upc = decoratedUPC.getUpc();
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                while(true){
+                    BigInteger withdrawGas = estimateGas(web3j, decoratedUPC, upc.withdrawClosing().encodeFunctionCall());
+                    if(withdrawGas != null && withdrawGas.longValue() <= maxGasPerTransaction){
+                        break;
+                    }
+                    Tuple2<BigInteger, BigInteger> progress = upc.getResolveProgress().send();
+                    long remaining = progress.component2().subtract(progress.component1()).longValue();
+                    if(remaining == 0){
+                        // Nothing left to resolve, the withdrawal itself is too expensive or reverts
+                        break;
+                    }
+                    long batchSize = getResolveBatchSize(web3j, decoratedUPC, remaining, maxGasPerTransaction);
+                    log.info("Resolving {} of {} remaining promises of UPC contract {}", batchSize, remaining, upc.getContractAddress());
+                    resolvePromises(decoratedUPC, batchSize).join();
+                }
+            } catch (Exception e) {
+                throw new CompletionException(e);
+            }
+            return null;
+        }, executor).thenCompose(v -> withdraw(decoratedUPC));
+    }
+
+    /**
+     * Finds how many promises can be resolved in one transaction, from the estimated gas of resolving one and two
+     * promises. The estimate is halved until it fits, since promises can differ in resolution cost.
+     */
+    private static long getResolveBatchSize(Web3j web3j, DecoratedUPC decoratedUPC, long remaining, long maxGasPerTransaction) throws IOException {
+        UPC2 upc = decoratedUPC.getUpc();
+        EthEstimateGas oneEstimate = sendEstimateGas(web3j, decoratedUPC, upc.resolvePromises(BigInteger.ONE).encodeFunctionCall());
+        if(oneEstimate.hasError()){
+            // E.g. the channel is not closed or the caller is not a party, which no batch size can fix
+            throw new IllegalStateException("Cannot resolve promises of UPC contract " + upc.getContractAddress() + ": " + oneEstimate.getError().getMessage());
+        }
+        BigInteger one = oneEstimate.getAmountUsed();
+        if(one.longValue() > maxGasPerTransaction){
+            throw new IllegalArgumentException("Cannot resolve a single promise within " + maxGasPerTransaction + " gas");
+        }
+        if(remaining == 1){
+            return 1;
+        }
+        BigInteger two = estimateGas(web3j, decoratedUPC, upc.resolvePromises(BigInteger.valueOf(2)).encodeFunctionCall());
+        long perPromise = two == null ? one.longValue() : Math.max(1, two.subtract(one).longValue());
+        long base = Math.max(0, one.longValue() - perPromise);
+        long batchSize = Math.min(remaining, Math.max(1, (maxGasPerTransaction - base) / perPromise));
+        while(batchSize > 1){
+            BigInteger estimate = estimateGas(web3j, decoratedUPC, upc.resolvePromises(BigInteger.valueOf(batchSize)).encodeFunctionCall());
+            if(estimate != null && estimate.longValue() <= maxGasPerTransaction){
+                break;
+            }
+            batchSize /= 2;
+        }
+        return batchSize;
+    }
+
+    /**
+     * Estimates the gas of a call to a UPC contract.
+     * @return the estimate, or null if the call reverts
+     */
+    private static BigInteger estimateGas(Web3j web3j, DecoratedUPC decoratedUPC, String data) throws IOException {
+        EthEstimateGas estimate = sendEstimateGas(web3j, decoratedUPC, data);
+        if(estimate.hasError()){
+            log.debug("Gas estimation failed for UPC contract {}: {}", decoratedUPC.getUpc().getContractAddress(), estimate.getError().getMessage());
+            return null;
+        }
+        return estimate.getAmountUsed();
+    }
+
+    private static EthEstimateGas sendEstimateGas(Web3j web3j, DecoratedUPC decoratedUPC, String data) throws IOException {
+        return web3j.ethEstimateGas(Transaction.createEthCallTransaction(
+                decoratedUPC.getFromAddress(), decoratedUPC.getUpc().getContractAddress(), data)).send();
+    }
+
     /**
      * Calls {@link #getState(UPC2)}
      * @param decoratedUPC
@@ -282,4 +649,28 @@ public class UPCService {
             }
         });
     }
+
+    /**
+     * Reports the time from submission to mining, the gas used and the cause of failure of a transaction to {@link Metrics}.
+     * @param function the name of the called contract function
+     * @param future the future of the submitted transaction
+     * @return the same future
+     */
+    private static CompletableFuture<TransactionReceipt> track(String function, CompletableFuture<TransactionReceipt> future){
+        long start = System.nanoTime();
+        future.whenComplete((TransactionReceipt r, Throwable t) -> {
+            long nanos = System.nanoTime() - start;
+            if(t != null){
+                Throwable cause = t instanceof CompletionException && t.getCause() != null ? t.getCause() : t;
+                Metrics.get().recordNanos(Metrics.TX_DURATION, nanos, "function", function, "status", "failure");
+                Metrics.get().increment(Metrics.TX_FAILURE, "function", function, "cause", cause.getClass().getSimpleName());
+                return;
+            }
+            Metrics.get().recordNanos(Metrics.TX_DURATION, nanos, "function", function, "status", "success");
+            if(r != null && r.getGasUsedRaw() != null){
+                Metrics.get().recordValue(Metrics.TX_GAS_USED, r.getGasUsed().doubleValue(), "function", function);
+            }
+        });
+        return future;
+    }
 }
@@ -0,0 +1,329 @@
+package com.visa.vr.upc.sdk;
+
+import com.visa.vr.upc.sdk.domain.UPCState;
+import com.visa.vr.upc.sdk.generated.UPC2;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.web3j.abi.FunctionEncoder;
+import org.web3j.abi.FunctionReturnDecoder;
+import org.web3j.abi.TypeReference;
+import org.web3j.abi.datatypes.Address;
+import org.web3j.abi.datatypes.DynamicArray;
+import org.web3j.abi.datatypes.Function;
+import org.web3j.abi.datatypes.Type;
+import org.web3j.abi.datatypes.generated.Uint256;
+import org.web3j.abi.datatypes.generated.Uint8;
+import org.web3j.protocol.Web3j;
+import org.web3j.protocol.core.BatchRequest;
+import org.web3j.protocol.core.DefaultBlockParameterNumber;
+import org.web3j.protocol.core.methods.request.Transaction;
+import org.web3j.protocol.core.methods.response.EthCall;
+import org.web3j.tuples.generated.Tuple4;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reads the views of many UPC contracts (getState, getParams, getUnresolvedPromises) with JSON-RPC batch requests.
+ *
+ * All calls of a read are pinned to the same block, and results are cached until the next block, so repeated reads
+ * within a block do not reach the node. Single-channel reads made within a short window are coalesced into one batch.
+ */
+public class UPCStateReader implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(UPCStateReader.class);
+
+    @SuppressWarnings("unchecked")
+    private static final View<UPCState> STATE = new View<>(
+            new Function(UPC2.FUNC_GETSTATE, Collections.emptyList(), Arrays.<TypeReference<?>>asList(
+                    new TypeReference<Uint8>() {}, new TypeReference<UPC2.Party>() {}, new TypeReference<UPC2.Party>() {}, new TypeReference<Uint256>() {})),
+            values -> UPCState.fromContract(new Tuple4<>(
+                    (BigInteger) values.get(0).getValue(),
+                    (UPC2.Party) values.get(1),
+                    (UPC2.Party) values.get(2),
+                    (BigInteger) values.get(3).getValue())));
+
+    private static final View<UPC2.ChannelParams> PARAMS = new View<>(
+            new Function(UPC2.FUNC_GETPARAMS, Collections.emptyList(), Arrays.<TypeReference<?>>asList(
+                    new TypeReference<UPC2.ChannelParams>() {})),
+            values -> (UPC2.ChannelParams) values.get(0));
+
+    @SuppressWarnings("unchecked")
+    private static final View<List<UPC2.PromiseAddressReceiver>> UNRESOLVED_PROMISES = new View<>(
+            new Function(UPC2.FUNC_GETUNRESOLVEDPROMISES, Collections.emptyList(), Arrays.<TypeReference<?>>asList(
+                    new TypeReference<DynamicArray<UPC2.PromiseAddressReceiver>>() {})),
+            values -> ((DynamicArray<UPC2.PromiseAddressReceiver>) values.get(0)).getValue());
+
+    private final Web3j web3j;
+
+    private final int maxBatchSize;
+
+    private final long coalesceWindowMillis;
+
+    private final long headTtlMillis;
+
+    private final Map<String, Object> cache = new ConcurrentHashMap<>();
+
+    private final Map<View<?>, List<QueuedRead<?>>> queued = new HashMap<>();
+
+    private final ScheduledExecutorService scheduler;
+
+    private volatile BigInteger cacheBlock;
+
+    private volatile long cacheBlockFetchedAt;
+
+    /**
+     * Basic constructor.
+     * @param web3j a {@link Web3j} whose service supports batch requests
+     * @param maxBatchSize the maximum number of calls per batch request
+     * @param coalesceWindowMillis how long single-channel reads wait to be batched with others
+     * @param headTtlMillis how long the latest block number is reused before asking the node again
+     */
+    public UPCStateReader(Web3j web3j, int maxBatchSize, long coalesceWindowMillis, long headTtlMillis) {
+        if(maxBatchSize < 1){
+            throw new IllegalArgumentException("Batch size must be positive");
+        }
+        this.web3j = web3j;
+        this.maxBatchSize = maxBatchSize;
+        this.coalesceWindowMillis = coalesceWindowMillis;
+        this.headTtlMillis = headTtlMillis;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "upc-state-reader");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Gets the states of many channels.
+     * @param addresses the addresses of the UPC contracts
+     * @return the states by address, leaving out contracts whose call failed
+     */
+    public CompletableFuture<Map<String, UPCState>> getStates(List<String> addresses) {
+        return read(STATE, addresses);
+    }
+
+    /**
+     * Gets the channel params of many channels.
+     * @param addresses the addresses of the UPC contracts
+     * @return the params by address, leaving out contracts whose call failed
+     */
+    public CompletableFuture<Map<String, UPC2.ChannelParams>> getParams(List<String> addresses) {
+        return read(PARAMS, addresses);
+    }
+
+    /**
+     * Gets the unresolved promises of many channels.
+     * @param addresses the addresses of the UPC contracts
+     * @return the unresolved promises by address, leaving out contracts whose call failed
+     */
+    public CompletableFuture<Map<String, List<UPC2.PromiseAddressReceiver>>> getUnresolvedPromises(List<String> addresses) {
+        return read(UNRESOLVED_PROMISES, addresses);
+    }
+
+    /**
+     * Gets the state of one channel, batched with other single-channel reads.
+     * @param address
+     * @return
+     */
+    public CompletableFuture<UPCState> getState(String address) {
+        return coalesce(STATE, address);
+    }
+
+    /**
+     * Gets the channel params of one channel, batched with other single-channel reads.
+     * @param address
+     * @return
+     */
+    public CompletableFuture<UPC2.ChannelParams> getParams(String address) {
+        return coalesce(PARAMS, address);
+    }
+
+    /**
+     * Gets the unresolved promises of one channel, batched with other single-channel reads.
+     * @param address
+     * @return
+     */
+    public CompletableFuture<List<UPC2.PromiseAddressReceiver>> getUnresolvedPromises(String address) {
+        return coalesce(UNRESOLVED_PROMISES, address);
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+    }
+
+    private <T> CompletableFuture<T> coalesce(View<T> view, String address) {
+        QueuedRead<T> read = new QueuedRead<>(address);
+        boolean flushNow;
+        synchronized (queued) {
+            List<QueuedRead<?>> reads = queued.computeIfAbsent(view, v -> new ArrayList<>());
+            reads.add(read);
+            flushNow = reads.size() >= maxBatchSize;
+            if(reads.size() == 1 && !flushNow){
+                scheduler.schedule(() -> flush(view), coalesceWindowMillis, TimeUnit.MILLISECONDS);
+            }
+        }
+        if(flushNow){
+            flush(view);
+        }
+        return read.future;
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> void flush(View<T> view) {
+        List<QueuedRead<?>> reads;
+        synchronized (queued) {
+            reads = queued.remove(view);
+        }
+        if(reads == null){
+            return;
+        }
+        List<String> addresses = new ArrayList<>();
+        for (QueuedRead<?> read: reads) {
+            addresses.add(read.address);
+        }
+        read(view, addresses).whenComplete((Map<String, T> results, Throwable t) -> {
+            for (QueuedRead<?> read: reads) {
+                CompletableFuture<T> future = ((QueuedRead<T>) read).future;
+                if(t != null){
+                    future.completeExceptionally(t);
+                } else if(!results.containsKey(read.address)){
+                    future.completeExceptionally(new IllegalStateException("Call to " + view.function.getName() + " failed for " + read.address));
+                } else {
+                    future.complete(results.get(read.address));
+                }
+            }
+        });
+    }
+
+    private <T> CompletableFuture<Map<String, T>> read(View<T> view, List<String> addresses) {
+        return head().thenCompose(block -> {
+            Map<String, T> results = new ConcurrentHashMap<>();
+            List<String> misses = new ArrayList<>();
+            for (String address: addresses) {
+                @SuppressWarnings("unchecked")
+                T cached = (T) cache.get(cacheKey(view, address));
+                if(cached != null){
+                    results.put(address, cached);
+                } else {
+                    misses.add(address);
+                }
+            }
+            List<CompletableFuture<Void>> batches = new ArrayList<>();
+            for(int i = 0; i < misses.size(); i += maxBatchSize){
+                batches.add(readBatch(view, misses.subList(i, Math.min(i + maxBatchSize, misses.size())), block, results));
+            }
+            return CompletableFuture.allOf(batches.toArray(new CompletableFuture[0])).thenApply(v -> {
+                Map<String, T> ordered = new LinkedHashMap<>();
+                for (String address: addresses) {
+                    T result = results.get(address);
+                    if(result != null){
+                        ordered.put(address, result);
+                    }
+                }
+                return ordered;
+            });
+        });
+    }
+
+    private <T> CompletableFuture<Void> readBatch(View<T> view, List<String> addresses, BigInteger block, Map<String, T> results) {
+        BatchRequest batch = web3j.newBatch();
+        DefaultBlockParameterNumber blockParameter = new DefaultBlockParameterNumber(block);
+        for (String address: addresses) {
+            batch.add(web3j.ethCall(Transaction.createEthCallTransaction(Address.DEFAULT.toString(), address, view.data), blockParameter));
+        }
+        return batch.sendAsync().thenAccept(response -> {
+            for(int i = 0; i < addresses.size() && i < response.getResponses().size(); i++){
+                String address = addresses.get(i);
+                EthCall call = (EthCall) response.getResponses().get(i);
+                if(call.hasError() || call.isReverted()){
+                    log.info("Failed to call {} on UPC contract {}, exception: {}", view.function.getName(), address,
+                            call.hasError() ? call.getError().getMessage() : call.getRevertReason());
+                    continue;
+                }
+                T result;
+                try {
+                    result = view.decode(call.getValue());
+                } catch (RuntimeException e) {
+                    log.info("Failed to decode {} result of UPC contract {}, exception: {}", view.function.getName(), address, e.getMessage());
+                    continue;
+                }
+                // Only cache if the block has not moved on in the meantime
+                if(block.equals(cacheBlock)){
+                    cache.put(cacheKey(view, address), result);
+                }
+                results.put(address, result);
+            }
+        }).whenComplete((Void v, Throwable t) -> {
+            if(t != null){
+                log.info("Failed to batch {} {} calls, exception: {}", addresses.size(), view.function.getName(), t.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Returns the latest block number, asking the node at most once per head TTL. Clears the cache when the block changes.
+     * @return
+     */
+    private CompletableFuture<BigInteger> head() {
+        BigInteger block = cacheBlock;
+        if(block != null && System.currentTimeMillis() - cacheBlockFetchedAt < headTtlMillis){
+            return CompletableFuture.completedFuture(block);
+        }
+        return web3j.ethBlockNumber().sendAsync().thenApply(response -> {
+            BigInteger latest = response.getBlockNumber();
+            synchronized (cache) {
+                if(!latest.equals(cacheBlock)){
+                    cache.clear();
+                    cacheBlock = latest;
+                }
+                cacheBlockFetchedAt = System.currentTimeMillis();
+            }
+            return latest;
+        });
+    }
+
+    private static String cacheKey(View<?> view, String address) {
+        return view.function.getName() + ":" + address.toLowerCase();
+    }
+
+    private static class View<T> {
+        private final Function function;
+
+        private final String data;
+
+        private final java.util.function.Function<List<Type>, T> decoder;
+
+        private View(Function function, java.util.function.Function<List<Type>, T> decoder) {
+            this.function = function;
+            this.data = FunctionEncoder.encode(function);
+            this.decoder = decoder;
+        }
+
+        private T decode(String value) {
+            return decoder.apply(FunctionReturnDecoder.decode(value, function.getOutputParameters()));
+        }
+    }
+
+    private static class QueuedRead<T> {
+        private final String address;
+
+        private final CompletableFuture<T> future = new CompletableFuture<>();
+
+        private QueuedRead(String address) {
+            this.address = address;
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package com.visa.vr.upc.sdk.custody;
+
+import org.web3j.crypto.Sign;
+
+import java.util.List;
+
+/**
+ * An {@link ISigner} that can sign several messages in one call, e.g. an HSM where each call is a round trip.
+ * {@link SigningPool} hands it the requests that queued up while it was busy.
+ */
+public interface IBatchSigner extends ISigner {
+
+    /**
+     * Signs each message as {@link #signPrefixedMessage(byte[])} would.
+     * @param messages
+     * @return the signatures, in the order of the messages
+     */
+    List<Sign.SignatureData> signPrefixedMessages(List<byte[]> messages);
+}
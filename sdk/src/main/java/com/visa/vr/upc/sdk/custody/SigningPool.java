@@ -0,0 +1,206 @@
+package com.visa.vr.upc.sdk.custody;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.web3j.crypto.RawTransaction;
+import org.web3j.crypto.Sign;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * An {@link ISigner} decorator that signs messages on a fixed set of worker threads, so a hub with many channels can
+ * sign on all cores and callers can do other work (e.g. build the next accumulator) while a signature is computed.
+ *
+ * Requests wait in a bounded queue; when it is full, {@link #signPrefixedMessageAsync(byte[])} blocks the caller.
+ * If the wrapped signer is an {@link IBatchSigner}, each worker takes up to {@code maxBatchSize} queued requests at a
+ * time and signs them in one call.
+ *
+ * {@link #signPrefixedMessage(byte[])} and transaction signing call the wrapped signer directly on the caller thread.
+ */
+public class SigningPool implements ISigner, AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(SigningPool.class);
+
+    private static final long POLL_MILLIS = 50;
+
+    private final ISigner signer;
+
+    private final BlockingQueue<Request> queue;
+
+    private final Thread[] workers;
+
+    private final int maxBatchSize;
+
+    private final AtomicInteger liveWorkers;
+
+    private volatile boolean closed = false;
+
+    /**
+     * Basic constructor. Starts the worker threads as daemon threads.
+     * @param signer the signer to decorate; must be safe to call from several threads
+     * @param numThreads the number of worker threads, e.g. the number of cores
+     * @param queueCapacity the maximum number of pending requests
+     * @param maxBatchSize the maximum number of requests signed in one call, if the signer is an {@link IBatchSigner}
+     */
+    public SigningPool(ISigner signer, int numThreads, int queueCapacity, int maxBatchSize) {
+        if(numThreads < 1 || queueCapacity < 1 || maxBatchSize < 1){
+            throw new IllegalArgumentException("Number of threads, queue capacity and batch size must be positive");
+        }
+        this.signer = signer;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.maxBatchSize = signer instanceof IBatchSigner ? maxBatchSize : 1;
+        this.workers = new Thread[numThreads];
+        this.liveWorkers = new AtomicInteger(numThreads);
+        for(int i = 0; i < numThreads; i++){
+            workers[i] = new Thread(this::work, "upc-signer-" + i);
+            workers[i].setDaemon(true);
+            workers[i].start();
+        }
+    }
+
+    /**
+     * Queues a message to be signed as {@link ISigner#signPrefixedMessage(byte[])}. Blocks while the queue is full.
+     * @param message
+     * @return a future completed with the signature, or exceptionally if signing fails
+     * @throws RejectedExecutionException if the pool is closed or the caller is interrupted
+     */
+    public CompletableFuture<Sign.SignatureData> signPrefixedMessageAsync(byte[] message) {
+        if(closed){
+            throw new RejectedExecutionException("Signing pool is closed");
+        }
+        Request request = new Request(message);
+        try {
+            queue.put(request);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RejectedExecutionException("Interrupted while waiting for space in signing queue", e);
+        }
+        // If the last worker exited while this request was queued, it may have missed it
+        if(closed && liveWorkers.get() == 0 && queue.remove(request)){
+            throw new RejectedExecutionException("Signing pool is closed");
+        }
+        return request.future;
+    }
+
+    @Override
+    public Sign.SignatureData signPrefixedMessage(byte[] message) {
+        return signer.signPrefixedMessage(message);
+    }
+
+    @Override
+    public byte[] sign(RawTransaction rawTransaction, long chainId) {
+        return signer.sign(rawTransaction, chainId);
+    }
+
+    @Override
+    public String getAddress() {
+        return signer.getAddress();
+    }
+
+    /**
+     * Returns the number of requests waiting for a worker.
+     * @return
+     */
+    public int getQueueSize() {
+        return queue.size();
+    }
+
+    /**
+     * Stops accepting new requests and stops the workers once the requests already queued have been signed. Does not
+     * block; requests that race with closing are either signed or rejected.
+     */
+    @Override
+    public void close() {
+        closed = true;
+    }
+
+    /**
+     * Waits for all workers to stop after {@link #close()}.
+     * @param millis the maximum time to wait per worker
+     * @throws InterruptedException
+     */
+    public void awaitTermination(long millis) throws InterruptedException {
+        for (Thread worker: workers) {
+            worker.join(millis);
+        }
+    }
+
+    private void work() {
+        List<Request> batch = new ArrayList<>(maxBatchSize);
+        try {
+            while(true){
+                batch.clear();
+                Request first = queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if(first == null){
+                    if(closed){
+                        return;
+                    }
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, maxBatchSize - 1);
+                sign(batch);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            if(liveWorkers.decrementAndGet() == 0){
+                rejectQueued();
+            }
+        }
+    }
+
+    /**
+     * Fails the requests queued after the last worker stopped polling.
+     */
+    private void rejectQueued() {
+        List<Request> leftovers = new ArrayList<>();
+        queue.drainTo(leftovers);
+        for (Request request: leftovers) {
+            request.future.completeExceptionally(new RejectedExecutionException("Signing pool is closed"));
+        }
+    }
+
+    private void sign(List<Request> batch) {
+        try {
+            if(batch.size() == 1){
+                Request request = batch.get(0);
+                request.future.complete(signer.signPrefixedMessage(request.message));
+                return;
+            }
+            List<byte[]> messages = new ArrayList<>(batch.size());
+            for (Request request: batch) {
+                messages.add(request.message);
+            }
+            List<Sign.SignatureData> signatures = ((IBatchSigner) signer).signPrefixedMessages(messages);
+            if(signatures.size() != batch.size()){
+                throw new IllegalStateException("Batch signer returned " + signatures.size() + " signatures for " + batch.size() + " messages");
+            }
+            for (int i = 0; i < batch.size(); i++) {
+                batch.get(i).future.complete(signatures.get(i));
+            }
+        } catch (RuntimeException e) {
+            log.info("Failed to sign {} messages, exception: {}", batch.size(), e.getMessage());
+            for (Request request: batch) {
+                request.future.completeExceptionally(e);
+            }
+        }
+    }
+
+    private static class Request {
+        private final byte[] message;
+
+        private final CompletableFuture<Sign.SignatureData> future = new CompletableFuture<>();
+
+        private Request(byte[] message) {
+            this.message = message;
+        }
+    }
+}
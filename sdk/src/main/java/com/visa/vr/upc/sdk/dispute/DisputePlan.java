@@ -0,0 +1,167 @@
+package com.visa.vr.upc.sdk.dispute;
+
+import com.visa.vr.upc.sdk.domain.DecoratedUPC;
+import com.visa.vr.upc.sdk.domain.Promise;
+import com.visa.vr.upc.sdk.domain.Receipt;
+import com.visa.vr.upc.sdk.domain.UInt256;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The on-chain transactions to send for one channel in a dispute, as worked out by {@link DisputePlanner}: an optional
+ * receipt, batches of promises with their precomputed multiproofs, and an optional close.
+ */
+public class DisputePlan {
+
+    private final DecoratedUPC channel;
+
+    private Receipt receipt;
+
+    private boolean emptyReceipt = false;
+
+    private final List<PromiseBatch> batches = new ArrayList<>();
+
+    private boolean close = false;
+
+    private UInt256 totalValue = UInt256.ZERO;
+
+    private long estimatedGas = 0;
+
+    private final Map<Long, String> skipped = new LinkedHashMap<>();
+
+    DisputePlan(DecoratedUPC channel) {
+        this.channel = channel;
+    }
+
+    public DecoratedUPC getChannel() {
+        return channel;
+    }
+
+    /**
+     * Returns the receipt to deploy, or null if none is deployed or the receipt is empty.
+     * @return
+     */
+    public Receipt getReceipt() {
+        return receipt;
+    }
+
+    /**
+     * Returns whether an empty receipt is deployed, because promises are deployed but no receipt was received.
+     * @return
+     */
+    public boolean isEmptyReceipt() {
+        return emptyReceipt;
+    }
+
+    public List<PromiseBatch> getBatches() {
+        return Collections.unmodifiableList(batches);
+    }
+
+    public boolean isClose() {
+        return close;
+    }
+
+    /**
+     * Returns the total amount of the promises deployed.
+     * @return
+     */
+    public UInt256 getTotalValue() {
+        return totalValue;
+    }
+
+    /**
+     * Returns the rough gas of all the transactions of the plan, as used for ranking.
+     * @return
+     */
+    public long getEstimatedGas() {
+        return estimatedGas;
+    }
+
+    /**
+     * Returns the open incoming promises that are not deployed, by promise id, with the reason.
+     * @return
+     */
+    public Map<Long, String> getSkipped() {
+        return Collections.unmodifiableMap(skipped);
+    }
+
+    /**
+     * Returns whether the plan has no transactions.
+     * @return
+     */
+    public boolean isEmpty() {
+        return receipt == null && !emptyReceipt && batches.isEmpty() && !close;
+    }
+
+    void setReceipt(Receipt receipt, boolean emptyReceipt, long gas) {
+        this.receipt = receipt;
+        this.emptyReceipt = emptyReceipt;
+        this.estimatedGas += gas;
+    }
+
+    void addBatch(PromiseBatch batch) {
+        batches.add(batch);
+        totalValue = totalValue.add(batch.value);
+        estimatedGas += batch.gas;
+    }
+
+    void setClose(long gas) {
+        this.close = true;
+        this.estimatedGas += gas;
+    }
+
+    void skip(Long promiseId, String reason) {
+        skipped.put(promiseId, reason);
+    }
+
+    /**
+     * Promises deployed in one registerPromises transaction.
+     */
+    public static class PromiseBatch {
+        private final List<Promise> promises;
+
+        private final List<byte[]> multiProof;
+
+        private final List<Boolean> proofFlags;
+
+        private final UInt256 value;
+
+        private final long gas;
+
+        PromiseBatch(List<Promise> promises, List<byte[]> multiProof, List<Boolean> proofFlags, UInt256 value, long gas) {
+            this.promises = promises;
+            this.multiProof = multiProof;
+            this.proofFlags = proofFlags;
+            this.value = value;
+            this.gas = gas;
+        }
+
+        /**
+         * Returns the promises, the ones that need a membership proof first, in the leaf order of the multiproof.
+         * @return
+         */
+        public List<Promise> getPromises() {
+            return promises;
+        }
+
+        public List<byte[]> getMultiProof() {
+            return multiProof;
+        }
+
+        public List<Boolean> getProofFlags() {
+            return proofFlags;
+        }
+
+        public UInt256 getValue() {
+            return value;
+        }
+
+        public long getGas() {
+            return gas;
+        }
+    }
+}
@@ -0,0 +1,338 @@
+package com.visa.vr.upc.sdk.dispute;
+
+import com.visa.vr.upc.sdk.IChannelDataService;
+import com.visa.vr.upc.sdk.IPromiseDataService;
+import com.visa.vr.upc.sdk.IReceiptDataService;
+import com.visa.vr.upc.sdk.MerkleAccumulator;
+import com.visa.vr.upc.sdk.PromiseService;
+import com.visa.vr.upc.sdk.UPCService;
+import com.visa.vr.upc.sdk.UPCStateReader;
+import com.visa.vr.upc.sdk.domain.Channel;
+import com.visa.vr.upc.sdk.domain.DecoratedUPC;
+import com.visa.vr.upc.sdk.domain.Promise;
+import com.visa.vr.upc.sdk.domain.Receipt;
+import com.visa.vr.upc.sdk.domain.StatefulPromise;
+import com.visa.vr.upc.sdk.domain.UInt256;
+import com.visa.vr.upc.sdk.domain.UPCState;
+import com.visa.vr.upc.sdk.generated.UPC2;
+import com.visa.vr.upc.sdk.simulation.SimulationResult;
+import com.visa.vr.upc.sdk.simulation.UPCSimulator;
+import com.visa.vr.upc.sdk.tx.TransactionPipeline;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.web3j.protocol.core.methods.response.TransactionReceipt;
+import org.web3j.utils.Numeric;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
+
+/**
+ * Works out which receipts and promises a party should deploy when a counterparty goes dark, and sends them.
+ *
+ * For each channel, the latest incoming receipt is deployed if not yet registered, then the open incoming promises
+ * that are worth their gas, most valuable per gas first, in as few registerPromises transactions as the gas budget
+ * allows, then close. Every step is checked against a {@link UPCSimulator} of the channel first, so calls that would
+ * revert are left out. The multiproofs of all batches are computed while planning, and the transactions of all
+ * channels are sent through a {@link TransactionPipeline}, so hundreds of disputes fit in the claim window.
+ *
+ * Promise-specific steps, like revealing the secret of an HTLC, are left to the caller once the promises are deployed.
+ */
+public class DisputePlanner {
+
+    private static final Logger log = LoggerFactory.getLogger(DisputePlanner.class);
+
+    /**
+     * Rough gas of registering a promise, excluding its bytecode.
+     */
+    public static final long GAS_PER_PROMISE = 60_000;
+
+    /**
+     * Rough gas per byte of promise bytecode, for the calldata and the deployed code.
+     */
+    public static final long GAS_PER_BYTECODE_BYTE = 220;
+
+    public static final long RECEIPT_GAS = 80_000;
+
+    public static final long CLOSE_GAS = 50_000;
+
+    private final IPromiseDataService promiseDataService;
+
+    private final IReceiptDataService receiptDataService;
+
+    private final IChannelDataService channelDataService;
+
+    private final UPCStateReader stateReader;
+
+    private final long maxGasPerTransaction;
+
+    private final double minValuePerGas;
+
+    /**
+     * Basic constructor.
+     * @param promiseDataService
+     * @param receiptDataService
+     * @param channelDataService
+     * @param stateReader reads the states of all disputed channels in batches
+     * @param maxGasPerTransaction the gas budget of one registerPromises transaction
+     * @param minValuePerGas the minimum promise amount per unit of gas for a promise to be worth deploying, 0 to deploy all
+     */
+    public DisputePlanner(IPromiseDataService promiseDataService,
+                          IReceiptDataService receiptDataService,
+                          IChannelDataService channelDataService,
+                          UPCStateReader stateReader,
+                          long maxGasPerTransaction,
+                          double minValuePerGas) {
+        if(maxGasPerTransaction < GAS_PER_PROMISE){
+            throw new IllegalArgumentException("Gas budget cannot fit a promise");
+        }
+        this.promiseDataService = promiseDataService;
+        this.receiptDataService = receiptDataService;
+        this.channelDataService = channelDataService;
+        this.stateReader = stateReader;
+        this.maxGasPerTransaction = maxGasPerTransaction;
+        this.minValuePerGas = minValuePerGas;
+    }
+
+    /**
+     * Plans the disputes of many channels, reading their on-chain state in batches. Channels whose state cannot be read
+     * are left out.
+     * @param channels the UPC contract wrappers, loaded by the disputing party
+     * @return the plans, most valuable first
+     */
+    public CompletableFuture<List<DisputePlan>> planAll(List<DecoratedUPC> channels) {
+        List<String> addresses = channels.stream().map(c -> c.getUpc().getContractAddress()).collect(Collectors.toList());
+        CompletableFuture<Map<String, UPCState>> states = stateReader.getStates(addresses);
+        CompletableFuture<Map<String, UPC2.ChannelParams>> params = stateReader.getParams(addresses);
+        CompletableFuture<Map<String, List<UPC2.PromiseAddressReceiver>>> unresolved = stateReader.getUnresolvedPromises(addresses);
+        return CompletableFuture.allOf(states, params, unresolved).thenApply(v -> {
+            long timestamp = System.currentTimeMillis() / 1000;
+            List<DisputePlan> plans = new ArrayList<>();
+            for (DecoratedUPC channel: channels) {
+                String address = channel.getUpc().getContractAddress();
+                UPCState state = states.join().get(address);
+                UPC2.ChannelParams channelParams = params.join().get(address);
+                List<UPC2.PromiseAddressReceiver> promises = unresolved.join().get(address);
+                if(state == null || channelParams == null || promises == null){
+                    log.info("Failed to plan dispute of UPC contract {}, exception: state could not be read", address);
+                    continue;
+                }
+                try {
+                    plans.add(plan(channel, channelParams, state, promises.size(), timestamp));
+                } catch (RuntimeException e) {
+                    log.info("Failed to plan dispute of UPC contract {}, exception: {}", address, e.getMessage());
+                }
+            }
+            plans.sort(Comparator.comparing(DisputePlan::getTotalValue).reversed());
+            return plans;
+        });
+    }
+
+    /**
+     * Plans the dispute of one channel from its on-chain state.
+     * @param decoratedUPC the UPC contract wrapper, loaded by the disputing party
+     * @param params
+     * @param state
+     * @param unresolvedPromiseCount
+     * @param timestamp the block timestamp to plan for, in seconds
+     * @return
+     */
+    public DisputePlan plan(DecoratedUPC decoratedUPC, UPC2.ChannelParams params, UPCState state, int unresolvedPromiseCount, long timestamp) {
+        String address = decoratedUPC.getUpc().getContractAddress();
+        String self = decoratedUPC.getFromAddress();
+        Channel channel = channelDataService.getChannelByAddress(address).orElseThrow(IllegalArgumentException::new);
+        UPCSimulator simulator = UPCSimulator.fromState(address, params, state, unresolvedPromiseCount);
+        simulator.setTimestamp(timestamp);
+        DisputePlan plan = new DisputePlan(decoratedUPC);
+
+        // Register the latest incoming receipt, or an empty one if promises need it
+        Receipt receipt = null;
+        boolean emptyReceipt = false;
+        if(!simulator.isReceiptRegistered(self)){
+            Optional<Receipt> latest = receiptDataService.getLatestIncomingReceipt(channel.getId());
+            receipt = latest.orElseGet(() -> PromiseService.createReceipt(channel.getId(), channel.getChainId(), channel.getOtherAddress(self), self, 0, 0, new byte[32]));
+            emptyReceipt = !latest.isPresent();
+            SimulationResult result = simulator.registerReceipt(self, receipt);
+            if(!result.isSuccess()){
+                log.info("Receipt of UPC contract {} will not be deployed: {}", address, result.getReason());
+                receipt = null;
+            }
+        }
+
+        MerkleAccumulator acc = getRegisteredAccumulator(channel, simulator, self);
+        long rid = simulator.getReceiptId(self).longValue();
+        List<Promise> deployed = selectPromises(channel, simulator, self, acc, plan);
+        if(receipt != null && (!emptyReceipt || !deployed.isEmpty())){
+            plan.setReceipt(emptyReceipt ? null : receipt, emptyReceipt, RECEIPT_GAS);
+        }
+        if(!deployed.isEmpty()){
+            batch(deployed, acc, rid, plan);
+        }
+
+        SimulationResult close = simulator.close(self);
+        if(close.isSuccess()){
+            plan.setClose(CLOSE_GAS);
+        } else {
+            log.debug("UPC contract {} will not be closed: {}", address, close.getReason());
+        }
+        return plan;
+    }
+
+    /**
+     * Sends the transactions of a plan through a pipeline, in order.
+     * @param pipeline
+     * @param plan
+     * @return a {@link CompletableFuture} for each transaction, in order
+     */
+    public static List<CompletableFuture<TransactionReceipt>> execute(TransactionPipeline pipeline, DisputePlan plan) {
+        DecoratedUPC channel = plan.getChannel();
+        List<CompletableFuture<TransactionReceipt>> futures = new ArrayList<>();
+        if(plan.isEmptyReceipt()){
+            futures.add(UPCService.deployEmptyReceipt(pipeline, channel));
+        } else if(plan.getReceipt() != null){
+            futures.add(UPCService.deployReceipt(pipeline, channel, plan.getReceipt()));
+        }
+        for (DisputePlan.PromiseBatch batch: plan.getBatches()) {
+            futures.add(UPCService.deployPromises(pipeline, channel.getUpc(), batch.getPromises(), batch.getMultiProof(), batch.getProofFlags()));
+        }
+        if(plan.isClose()){
+            futures.add(UPCService.close(pipeline, channel));
+        }
+        return futures;
+    }
+
+    /**
+     * Sends the transactions of many plans through a pipeline, most valuable plan first.
+     * @param pipeline
+     * @param plans
+     * @return the {@link CompletableFuture}s of each plan's transactions, by contract address
+     */
+    public static Map<String, List<CompletableFuture<TransactionReceipt>>> executeAll(TransactionPipeline pipeline, List<DisputePlan> plans) {
+        List<DisputePlan> ordered = new ArrayList<>(plans);
+        ordered.sort(Comparator.comparing(DisputePlan::getTotalValue).reversed());
+        Map<String, List<CompletableFuture<TransactionReceipt>>> futures = new LinkedHashMap<>();
+        for (DisputePlan plan: ordered) {
+            if(!plan.isEmpty()){
+                futures.put(plan.getChannel().getUpc().getContractAddress(), execute(pipeline, plan));
+            }
+        }
+        return futures;
+    }
+
+    /**
+     * Picks the open incoming promises worth deploying, most valuable per gas first, and applies them to the simulator.
+     */
+    private List<Promise> selectPromises(Channel channel, UPCSimulator simulator, String self, MerkleAccumulator acc, DisputePlan plan) {
+        List<StatefulPromise> candidates = new ArrayList<>();
+        for (StatefulPromise promise: promiseDataService.getOpenIncomingPromises(channel.getId())) {
+            if(promise.getExpiration() <= simulator.getTimestamp()){
+                plan.skip(promise.getPromiseId(), "expired");
+            } else if(promise.getAmount().doubleValue() < minValuePerGas * gasOf(promise)){
+                plan.skip(promise.getPromiseId(), "not worth the gas");
+            } else {
+                candidates.add(promise);
+            }
+        }
+        candidates.sort(Comparator.comparingDouble((StatefulPromise p) -> p.getAmount().doubleValue() / gasOf(p)).reversed());
+
+        List<Promise> selected = new ArrayList<>();
+        for (StatefulPromise promise: candidates) {
+            byte[] proof = null;
+            if(acc != null && promise.getReceiptId() < simulator.getReceiptId(self).longValue()){
+                try {
+                    proof = PromiseService.getAccumulatorProof(acc, promise);
+                } catch (IOException | RuntimeException e) {
+                    // Not in the accumulator, the simulator rejects it below
+                }
+            }
+            SimulationResult result = simulator.registerPromise(self, promise, proof);
+            if(result.isSuccess()){
+                selected.add(promise);
+            } else {
+                plan.skip(promise.getPromiseId(), result.getReason());
+            }
+        }
+        return selected;
+    }
+
+    /**
+     * Packs the selected promises into transactions within the gas budget, and computes the multiproof of each.
+     */
+    private void batch(List<Promise> promises, MerkleAccumulator acc, long rid, DisputePlan plan) {
+        List<Promise> current = new ArrayList<>();
+        long gas = 0;
+        for (Promise promise: promises) {
+            long promiseGas = gasOf(promise);
+            if(!current.isEmpty() && gas + promiseGas > maxGasPerTransaction){
+                plan.addBatch(toBatch(current, acc, rid, gas));
+                current = new ArrayList<>();
+                gas = 0;
+            }
+            current.add(promise);
+            gas += promiseGas;
+        }
+        plan.addBatch(toBatch(current, acc, rid, gas));
+    }
+
+    private static DisputePlan.PromiseBatch toBatch(List<Promise> promises, MerkleAccumulator acc, long rid, long gas) {
+        Map<String, Promise> needProof = new HashMap<>();
+        List<Promise> noProof = new ArrayList<>();
+        UInt256 value = UInt256.ZERO;
+        for (Promise promise: promises) {
+            value = value.add(promise.getAmount());
+            if(acc != null && promise.getReceiptId() < rid){
+                needProof.put(Numeric.toHexString(MerkleAccumulator.keyFromAddress(promise.getAddress())), promise);
+            } else {
+                noProof.add(promise);
+            }
+        }
+        List<Promise> ordered = new ArrayList<>(promises.size());
+        MerkleAccumulator.MultiProof multiProof = new MerkleAccumulator.MultiProof(new ArrayList<>(), new ArrayList<>(), new ArrayList<>());
+        if(!needProof.isEmpty()){
+            multiProof = acc.getMultiProof(needProof.keySet().stream().map(Numeric::hexStringToByteArray).collect(Collectors.toList()));
+            // The contract expects the promises that need a proof first, in the leaf order of the multiproof
+            for (byte[] leaf: multiProof.getLeaves()) {
+                ordered.add(needProof.get(Numeric.toHexString(leaf)));
+            }
+        }
+        ordered.addAll(noProof);
+        return new DisputePlan.PromiseBatch(ordered, multiProof.getProof(), multiProof.getProofFlags(), value, gas);
+    }
+
+    /**
+     * Rebuilds the accumulator of the receipt registered for this party, from the open incoming promises sent before it.
+     * @return the accumulator, or null if no promise needs a proof or it does not match the registered receipt
+     */
+    private MerkleAccumulator getRegisteredAccumulator(Channel channel, UPCSimulator simulator, String self) {
+        long rid = simulator.getReceiptId(self).longValue();
+        if(rid == 0){
+            return null;
+        }
+        Optional<Receipt> receipt = receiptDataService.getIncomingReceiptById(channel.getId(), rid);
+        if(!receipt.isPresent()){
+            log.info("Registered receipt {} of channel {} is not known", rid, channel.getId());
+            return null;
+        }
+        List<StatefulPromise> inReceipt = promiseDataService.getOpenIncomingPromises(channel.getId()).stream()
+                .filter(p -> p.getReceiptId() < rid)
+                .collect(Collectors.toList());
+        MerkleAccumulator acc = PromiseService.getAccumulator(inReceipt);
+        if(!Arrays.equals(acc.getRootHash(), receipt.get().getAccumulatorRoot())){
+            log.info("Open incoming promises of channel {} do not match the accumulator of receipt {}", channel.getId(), rid);
+            return null;
+        }
+        return acc;
+    }
+
+    private static long gasOf(Promise promise) {
+        return GAS_PER_PROMISE + GAS_PER_BYTECODE_BYTE * promise.getCompactBytecode().length();
+    }
+}
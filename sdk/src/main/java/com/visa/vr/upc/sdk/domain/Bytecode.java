@@ -0,0 +1,217 @@
+package com.visa.vr.upc.sdk.domain;
+
+import org.bouncycastle.crypto.digests.KeccakDigest;
+import org.web3j.utils.Numeric;
+
+import java.io.ObjectStreamException;
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The deployable bytecode of a promise, held as a shared contract binary (e.g. {@code HTLC.BINARY}) and the encoded
+ * constructor parameters as raw bytes. Binaries are interned, so many promises of the same contract share one copy,
+ * and the full bytecode is only rebuilt when it is needed, e.g. to deploy the promise.
+ */
+public final class Bytecode implements Serializable {
+
+    private static final Map<String, Template> TEMPLATES = new ConcurrentHashMap<>();
+
+    /**
+     * Templates by the string the caller passed, so a constant such as {@code HTLC.BINARY} is found by its cached
+     * hash and reference without cleaning and lowercasing it again.
+     */
+    private static final Map<String, Template> BY_BINARY = new ConcurrentHashMap<>();
+
+    private static final Template NO_TEMPLATE = new Template("");
+
+    private final Template template;
+
+    private final byte[] args;
+
+    private Bytecode(Template template, byte[] args) {
+        this.template = template;
+        this.args = args;
+    }
+
+    /**
+     * Registers a contract binary, so that {@link #of(String)} splits the bytecode that starts with it.
+     * Binaries passed to {@link #of(String, String)} are registered as well.
+     * @param binary the contract binary, in hex
+     */
+    public static void registerTemplate(String binary) {
+        intern(binary);
+    }
+
+    /**
+     * @param binary the contract binary, in hex
+     * @param encodedArgs the encoded constructor parameters, in hex
+     * @return
+     */
+    public static Bytecode of(String binary, String encodedArgs) {
+        return new Bytecode(intern(binary), Numeric.hexStringToByteArray(encodedArgs));
+    }
+
+    /**
+     * @param binary the contract binary, in hex
+     * @param encodedArgs the encoded constructor parameters
+     * @return
+     */
+    public static Bytecode of(String binary, byte[] encodedArgs) {
+        return new Bytecode(intern(binary), encodedArgs.clone());
+    }
+
+    /**
+     * Splits a full bytecode on the longest registered binary it starts with. Bytecode that does not start with a
+     * registered binary is kept whole.
+     * @param bytecode the full bytecode, in hex
+     * @return
+     */
+    public static Bytecode of(String bytecode) {
+        String hex = Numeric.cleanHexPrefix(bytecode).toLowerCase();
+        Template match = NO_TEMPLATE;
+        for (Template template: TEMPLATES.values()) {
+            if(template.hex.length() > match.hex.length() && hex.startsWith(template.hex) && (hex.length() - template.hex.length()) % 2 == 0){
+                match = template;
+            }
+        }
+        return new Bytecode(match, Numeric.hexStringToByteArray(hex.substring(match.hex.length())));
+    }
+
+    /**
+     * Returns the contract binary, in hex without the 0x prefix.
+     * @return
+     */
+    public String getTemplate() {
+        return template.hex;
+    }
+
+    /**
+     * Returns a copy of the encoded constructor parameters.
+     * @return
+     */
+    public byte[] getArgs() {
+        return args.clone();
+    }
+
+    /**
+     * Returns the length of the full bytecode in bytes, without rebuilding it.
+     * @return
+     */
+    public int length() {
+        return template.bytes.length + args.length;
+    }
+
+    /**
+     * Rebuilds the full bytecode.
+     * @return
+     */
+    public byte[] toBytes() {
+        byte[] bytes = Arrays.copyOf(template.bytes, length());
+        System.arraycopy(args, 0, bytes, template.bytes.length, args.length);
+        return bytes;
+    }
+
+    /**
+     * Returns the keccak256 hash of the full bytecode, without rebuilding it. The digest state after the binary is
+     * kept with the interned binary, so only the constructor parameters are hashed.
+     * @return
+     */
+    public byte[] keccak256() {
+        KeccakDigest digest = new KeccakDigest(template.digest);
+        digest.update(args, 0, args.length);
+        byte[] hash = new byte[digest.getDigestSize()];
+        digest.doFinal(hash, 0);
+        return hash;
+    }
+
+    /**
+     * Rebuilds the full bytecode, in hex with the 0x prefix.
+     * @return
+     */
+    public String toHexString() {
+        return Numeric.toHexString(toBytes());
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof Bytecode)) {
+            return false;
+        }
+        Bytecode other = (Bytecode) o;
+        if(template == other.template){
+            return Arrays.equals(args, other.args);
+        }
+        // The same bytecode may be split differently, e.g. if its binary was registered after of(String)
+        int length = length();
+        if(length != other.length()){
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if(byteAt(i) != other.byteAt(i)){
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Same as {@code Arrays.hashCode(toBytes())}, continuing from the hash of the binary.
+     */
+    @Override
+    public int hashCode() {
+        int hash = template.hash;
+        for (byte b: args) {
+            hash = 31 * hash + b;
+        }
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        return toHexString();
+    }
+
+    private byte byteAt(int i) {
+        return i < template.bytes.length ? template.bytes[i] : args[i - template.bytes.length];
+    }
+
+    private static Template intern(String binary) {
+        Template template = BY_BINARY.get(binary);
+        if(template == null){
+            String hex = Numeric.cleanHexPrefix(binary).toLowerCase();
+            template = hex.isEmpty() ? NO_TEMPLATE : TEMPLATES.computeIfAbsent(hex, Template::new);
+            BY_BINARY.putIfAbsent(binary, template);
+        }
+        return template;
+    }
+
+    private static final class Template implements Serializable {
+        private final String hex;
+
+        private final byte[] bytes;
+
+        private final transient int hash;
+
+        private final transient KeccakDigest digest;
+
+        private Template(String hex) {
+            this.hex = hex;
+            this.bytes = Numeric.hexStringToByteArray(hex);
+            this.hash = Arrays.hashCode(bytes);
+            this.digest = new KeccakDigest(256);
+            digest.update(bytes, 0, bytes.length);
+        }
+
+        /**
+         * Shares the binary with the promises already in memory after deserialization.
+         */
+        private Object readResolve() throws ObjectStreamException {
+            return intern(hex);
+        }
+    }
+}
@@ -13,9 +13,9 @@ public class Channel {
 
     private Long id;
 
-    private Long chainId;
+    private long chainId;
 
-    private Long claimDuration;
+    private long claimDuration;
 
     private String tokenAddress;
 
@@ -27,17 +27,17 @@ public class Channel {
 
     private String hubAddress;
 
-    private Long clientCredit;
+    private UInt256 clientCredit;
 
-    private Long hubCredit;
+    private UInt256 hubCredit;
 
-    private Long prevClientCredit;
+    private UInt256 prevClientCredit;
 
-    private Long prevHubCredit;
+    private UInt256 prevHubCredit;
 
-    private Long clientDeposit;
+    private UInt256 clientDeposit;
 
-    private Long hubDeposit;
+    private UInt256 hubDeposit;
 
     /**
      * Main constructor
@@ -53,12 +53,12 @@ public class Channel {
         this.claimDuration = claimDuration;
         this.tokenAddress = tokenAddress;
         this.status = ChannelStatus.STARTED;
-        this.clientCredit = 0L;
-        this.prevClientCredit = 0L;
-        this.hubCredit = 0L;
-        this.prevHubCredit = 0L;
-        this.clientDeposit = 0L;
-        this.hubDeposit = 0L;
+        this.clientCredit = UInt256.ZERO;
+        this.prevClientCredit = UInt256.ZERO;
+        this.hubCredit = UInt256.ZERO;
+        this.prevHubCredit = UInt256.ZERO;
+        this.clientDeposit = UInt256.ZERO;
+        this.hubDeposit = UInt256.ZERO;
     }
 
     /**
@@ -124,7 +124,7 @@ public class Channel {
      * @param address
      * @return
      */
-    public long getCredit(String address){
+    public UInt256 getCredit(String address){
         if(AddressUtils.isEqual(clientAddress, address)){
             return clientCredit;
         }
@@ -139,7 +139,7 @@ public class Channel {
      * @param address
      * @return
      */
-    public long getDeposit(String address){
+    public UInt256 getDeposit(String address){
         if(AddressUtils.isEqual(clientAddress, address)){
             return clientDeposit;
         }
@@ -154,7 +154,7 @@ public class Channel {
      * @param address
      * @param credit
      */
-    public void setCredit(String address, long credit){
+    public void setCredit(String address, UInt256 credit){
         if(AddressUtils.isEqual(clientAddress, address)){
             clientCredit = credit;
             return;
@@ -166,12 +166,21 @@ public class Channel {
         throw new IllegalArgumentException("Address not member of channel");
     }
 
+    /**
+     * See {@link #setCredit(String, UInt256)}
+     * @param address
+     * @param credit
+     */
+    public void setCredit(String address, long credit){
+        setCredit(address, UInt256.valueOf(credit));
+    }
+
     /**
      * Sets the deposit amount associated with the given party
      * @param address
      * @param deposit
      */
-    public void setDeposit(String address, long deposit){
+    public void setDeposit(String address, UInt256 deposit){
         if(AddressUtils.isEqual(clientAddress, address)){
             clientDeposit = deposit;
             return;
@@ -183,21 +192,40 @@ public class Channel {
         throw new IllegalArgumentException("Address not member of channel");
     }
 
+    /**
+     * See {@link #setDeposit(String, UInt256)}
+     * @param address
+     * @param deposit
+     */
+    public void setDeposit(String address, long deposit){
+        setDeposit(address, UInt256.valueOf(deposit));
+    }
+
+    /**
+     * Adds to the credit amount associated with the given party.
+     * @param address
+     * @param toAdd
+     */
+    public void addCredit(String address, UInt256 toAdd){
+        setCredit(address, getCredit(address).add(toAdd));
+    }
+
     /**
      * Adds to the credit amount associated with the given party. Can be negative.
      * @param address
      * @param toAdd
      */
     public void addCredit(String address, long toAdd){
-        if(AddressUtils.isEqual(clientAddress, address)){
-            clientCredit += toAdd;
-            return;
-        }
-        if(AddressUtils.isEqual(hubAddress, address)){
-            hubCredit += toAdd;
-            return;
-        }
-        throw new IllegalArgumentException("Address not member of channel");
+        setCredit(address, getCredit(address).add(toAdd));
+    }
+
+    /**
+     * Adds to the deposit amount associated with the given party.
+     * @param address
+     * @param toAdd
+     */
+    public void addDeposit(String address, UInt256 toAdd){
+        setDeposit(address, getDeposit(address).add(toAdd));
     }
 
     /**
@@ -206,32 +234,24 @@ public class Channel {
      * @param toAdd
      */
     public void addDeposit(String address, long toAdd){
-        if(AddressUtils.isEqual(clientAddress, address)){
-            clientDeposit += toAdd;
-            return;
-        }
-        if(AddressUtils.isEqual(hubAddress, address)){
-            hubDeposit += toAdd;
-            return;
-        }
-        throw new IllegalArgumentException("Address not member of channel");
+        setDeposit(address, getDeposit(address).add(toAdd));
     }
 
-    public long getTotalCredit(String address){
+    public UInt256 getTotalCredit(String address){
         if(AddressUtils.isEqual(clientAddress, address)){
-            return clientCredit + prevClientCredit;
+            return clientCredit.add(prevClientCredit);
         }
         if(AddressUtils.isEqual(hubAddress, address)){
-            return hubCredit + prevHubCredit;
+            return hubCredit.add(prevHubCredit);
         }
         throw new IllegalArgumentException("Address not member of channel");
     }
 
     public void rolloverCredit(){
-        prevClientCredit += clientCredit;
-        prevHubCredit += hubCredit;
-        clientCredit = 0L;
-        hubCredit = 0L;
+        prevClientCredit = prevClientCredit.add(clientCredit);
+        prevHubCredit = prevHubCredit.add(hubCredit);
+        clientCredit = UInt256.ZERO;
+        hubCredit = UInt256.ZERO;
     }
 
     public Long getId() {
@@ -242,19 +262,19 @@ public class Channel {
         this.id = id;
     }
 
-    public Long getChainId() {
+    public long getChainId() {
         return chainId;
     }
 
-    public void setChainId(Long chainId) {
+    public void setChainId(long chainId) {
         this.chainId = chainId;
     }
 
-    public Long getClaimDuration() {
+    public long getClaimDuration() {
         return claimDuration;
     }
 
-    public void setClaimDuration(Long claimDuration) {
+    public void setClaimDuration(long claimDuration) {
         this.claimDuration = claimDuration;
     }
 
@@ -298,51 +318,75 @@ public class Channel {
         this.hubAddress = hubAddress;
     }
 
-    public Long getClientCredit() {
+    public UInt256 getClientCredit() {
         return clientCredit;
     }
 
-    public void setClientCredit(long clientCredit) {
+    public void setClientCredit(UInt256 clientCredit) {
         this.clientCredit = clientCredit;
     }
 
-    public Long getHubCredit() {
+    public void setClientCredit(long clientCredit) {
+        this.clientCredit = UInt256.valueOf(clientCredit);
+    }
+
+    public UInt256 getHubCredit() {
         return hubCredit;
     }
 
-    public void setHubCredit(long hubCredit) {
+    public void setHubCredit(UInt256 hubCredit) {
         this.hubCredit = hubCredit;
     }
 
-    public Long getPrevClientCredit() {
+    public void setHubCredit(long hubCredit) {
+        this.hubCredit = UInt256.valueOf(hubCredit);
+    }
+
+    public UInt256 getPrevClientCredit() {
         return prevClientCredit;
     }
 
-    public void setPrevClientCredit(Long prevClientCredit) {
+    public void setPrevClientCredit(UInt256 prevClientCredit) {
         this.prevClientCredit = prevClientCredit;
     }
 
-    public Long getPrevHubCredit() {
+    public void setPrevClientCredit(long prevClientCredit) {
+        this.prevClientCredit = UInt256.valueOf(prevClientCredit);
+    }
+
+    public UInt256 getPrevHubCredit() {
         return prevHubCredit;
     }
 
-    public void setPrevHubCredit(Long prevHubCredit) {
+    public void setPrevHubCredit(UInt256 prevHubCredit) {
         this.prevHubCredit = prevHubCredit;
     }
 
-    public Long getClientDeposit() {
+    public void setPrevHubCredit(long prevHubCredit) {
+        this.prevHubCredit = UInt256.valueOf(prevHubCredit);
+    }
+
+    public UInt256 getClientDeposit() {
         return clientDeposit;
     }
 
-    public void setClientDeposit(long clientDeposit) {
+    public void setClientDeposit(UInt256 clientDeposit) {
         this.clientDeposit = clientDeposit;
     }
 
-    public Long getHubDeposit() {
+    public void setClientDeposit(long clientDeposit) {
+        this.clientDeposit = UInt256.valueOf(clientDeposit);
+    }
+
+    public UInt256 getHubDeposit() {
         return hubDeposit;
     }
 
-    public void setHubDeposit(long hubDeposit) {
+    public void setHubDeposit(UInt256 hubDeposit) {
         this.hubDeposit = hubDeposit;
     }
+
+    public void setHubDeposit(long hubDeposit) {
+        this.hubDeposit = UInt256.valueOf(hubDeposit);
+    }
 }
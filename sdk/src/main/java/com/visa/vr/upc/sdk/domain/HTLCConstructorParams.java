@@ -11,19 +11,23 @@ import java.util.Arrays;
  */
 public class HTLCConstructorParams implements IPromiseConstructorParams {
 
-    private Long amount;
+    private UInt256 amount;
     private byte[] hash;
     private Long expiration;
 
     @Override
-    public Long getAmount() {
+    public UInt256 getAmount() {
         return amount;
     }
 
-    public void setAmount(Long amount) {
+    public void setAmount(UInt256 amount) {
         this.amount = amount;
     }
 
+    public void setAmount(long amount) {
+        this.amount = UInt256.valueOf(amount);
+    }
+
     public byte[] getHash() {
         return hash;
     }
@@ -41,15 +45,19 @@ public class HTLCConstructorParams implements IPromiseConstructorParams {
         this.expiration = expiration;
     }
 
-    public HTLCConstructorParams(long amount, byte[] hash, long expiration) {
+    public HTLCConstructorParams(UInt256 amount, byte[] hash, long expiration) {
         this.amount = amount;
         this.hash = hash;
         this.expiration = expiration;
     }
 
+    public HTLCConstructorParams(long amount, byte[] hash, long expiration) {
+        this(UInt256.valueOf(amount), hash, expiration);
+    }
+
     @Override
     public String encodePacked() {
-        String encodedConstructor = FunctionEncoder.encodeConstructor(Arrays.<Type>asList(new org.web3j.abi.datatypes.generated.Uint256(amount),
+        String encodedConstructor = FunctionEncoder.encodeConstructor(Arrays.<Type>asList(new org.web3j.abi.datatypes.generated.Uint256(amount.toBigInteger()),
                 new org.web3j.abi.datatypes.generated.Bytes32(hash),
                 new org.web3j.abi.datatypes.generated.Uint256(expiration)));
         return encodedConstructor;
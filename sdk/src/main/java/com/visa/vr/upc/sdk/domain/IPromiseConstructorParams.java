@@ -11,7 +11,7 @@ public interface IPromiseConstructorParams {
      */
     String encodePacked();
 
-    Long getAmount();
+    UInt256 getAmount();
 
     Long getExpiration();
 }
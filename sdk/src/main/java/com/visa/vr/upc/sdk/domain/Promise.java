@@ -1,7 +1,6 @@
 package com.visa.vr.upc.sdk.domain;
 
 import com.visa.vr.upc.sdk.generated.UPC2;
-import org.web3j.utils.Numeric;
 
 import java.io.Serializable;
 import java.math.BigInteger;
@@ -11,9 +10,9 @@ import java.math.BigInteger;
  */
 public class Promise implements Serializable {
 
-    private Long channelId;
+    private long channelId;
 
-    private Long chainId;
+    private long chainId;
 
     private String sender;
 
@@ -21,17 +20,17 @@ public class Promise implements Serializable {
 
     private String address;
 
-    private String bytecode;
+    private Bytecode bytecode;
 
-    private Long receiptId;
+    private long receiptId;
 
-    private Long amount;
+    private UInt256 amount;
 
     private byte[] salt;
 
     private Signature signature;
 
-    private Long expiration;
+    private long expiration;
 
     /**
      * An empty constructor.
@@ -56,19 +55,19 @@ public class Promise implements Serializable {
         this.expiration = promise.expiration;
     }
 
-    public Long getChannelId() {
+    public long getChannelId() {
         return channelId;
     }
 
-    public void setChannelId(Long channelId) {
+    public void setChannelId(long channelId) {
         this.channelId = channelId;
     }
 
-    public Long getChainId() {
+    public long getChainId() {
         return chainId;
     }
 
-    public void setChainId(Long chainId) {
+    public void setChainId(long chainId) {
         this.chainId = chainId;
     }
 
@@ -96,30 +95,50 @@ public class Promise implements Serializable {
         this.address = address;
     }
 
+    /**
+     * Rebuilds the full bytecode from the contract binary and the constructor parameters.
+     * @return the bytecode in hex, or null if not set
+     */
     public String getBytecode() {
-        return bytecode;
+        return bytecode == null ? null : bytecode.toHexString();
     }
 
+    /**
+     * @param bytecode the full bytecode in hex, split on the longest contract binary registered with
+     *                 {@link Bytecode#registerTemplate(String)}
+     */
     public void setBytecode(String bytecode) {
+        this.bytecode = bytecode == null ? null : Bytecode.of(bytecode);
+    }
+
+    public Bytecode getCompactBytecode() {
+        return bytecode;
+    }
+
+    public void setBytecode(Bytecode bytecode) {
         this.bytecode = bytecode;
     }
 
-    public Long getReceiptId() {
+    public long getReceiptId() {
         return receiptId;
     }
 
-    public void setReceiptId(Long receiptId) {
+    public void setReceiptId(long receiptId) {
         this.receiptId = receiptId;
     }
 
-    public Long getAmount() {
+    public UInt256 getAmount() {
         return amount;
     }
 
-    public void setAmount(Long amount) {
+    public void setAmount(UInt256 amount) {
         this.amount = amount;
     }
 
+    public void setAmount(long amount) {
+        this.amount = UInt256.valueOf(amount);
+    }
+
     public byte[] getSalt() {
         return salt;
     }
@@ -136,20 +155,32 @@ public class Promise implements Serializable {
         this.signature = signature;
     }
 
-    public Long getExpiration() {
+    public long getExpiration() {
         return expiration;
     }
 
-    public void setExpiration(Long expiration) {
+    public void setExpiration(long expiration) {
         this.expiration = expiration;
     }
 
+    /**
+     * Returns a builder initialized with the fields of this promise, to derive a modified copy.
+     * @return
+     */
+    public Builder toBuilder() {
+        return new Builder(new Promise(this));
+    }
+
+    public static Builder builder() {
+        return new Builder(new Promise());
+    }
+
     /**
      * Converts the promise to a {@link com.visa.vr.upc.sdk.generated.UPC2.Promise} to be used in the smart contract.
      * @return
      */
     public UPC2.Promise toContractPromise(){
-        return new UPC2.Promise(sender, receiver, BigInteger.valueOf(receiptId), new BigInteger(1, salt), Numeric.hexStringToByteArray(bytecode));
+        return new UPC2.Promise(sender, receiver, BigInteger.valueOf(receiptId), new BigInteger(1, salt), bytecode.toBytes());
     }
 
     @Override
@@ -164,4 +195,84 @@ public class Promise implements Serializable {
                 ", expiration=" + expiration +
                 '}';
     }
+
+    /**
+     * Builds a {@link Promise}. A builder should only be used once.
+     */
+    public static class Builder {
+        private final Promise promise;
+
+        private Builder(Promise promise) {
+            this.promise = promise;
+        }
+
+        public Builder channelId(long channelId) {
+            promise.channelId = channelId;
+            return this;
+        }
+
+        public Builder chainId(long chainId) {
+            promise.chainId = chainId;
+            return this;
+        }
+
+        public Builder sender(String sender) {
+            promise.sender = sender;
+            return this;
+        }
+
+        public Builder receiver(String receiver) {
+            promise.receiver = receiver;
+            return this;
+        }
+
+        public Builder address(String address) {
+            promise.address = address;
+            return this;
+        }
+
+        public Builder bytecode(String bytecode) {
+            promise.setBytecode(bytecode);
+            return this;
+        }
+
+        public Builder bytecode(Bytecode bytecode) {
+            promise.bytecode = bytecode;
+            return this;
+        }
+
+        public Builder receiptId(long receiptId) {
+            promise.receiptId = receiptId;
+            return this;
+        }
+
+        public Builder amount(UInt256 amount) {
+            promise.amount = amount;
+            return this;
+        }
+
+        public Builder amount(long amount) {
+            promise.amount = UInt256.valueOf(amount);
+            return this;
+        }
+
+        public Builder salt(byte[] salt) {
+            promise.salt = salt;
+            return this;
+        }
+
+        public Builder signature(Signature signature) {
+            promise.signature = signature;
+            return this;
+        }
+
+        public Builder expiration(long expiration) {
+            promise.expiration = expiration;
+            return this;
+        }
+
+        public Promise build() {
+            return promise;
+        }
+    }
 }
@@ -13,13 +13,13 @@ public class Receipt {
 
     private String receiver;
 
-    private Long channelId;
+    private long channelId;
 
-    private Long chainId;
+    private long chainId;
 
-    private Long cumulativeCredit;
+    private UInt256 cumulativeCredit;
 
-    private Long receiptId;
+    private long receiptId;
 
     private byte[] accumulatorRoot;
 
@@ -61,35 +61,39 @@ public class Receipt {
         this.receiver = receiver;
     }
 
-    public Long getChannelId() {
+    public long getChannelId() {
         return channelId;
     }
 
-    public void setChannelId(Long channelId) {
+    public void setChannelId(long channelId) {
         this.channelId = channelId;
     }
 
-    public Long getChainId() {
+    public long getChainId() {
         return chainId;
     }
 
-    public void setChainId(Long chainId) {
+    public void setChainId(long chainId) {
         this.chainId = chainId;
     }
 
-    public Long getCumulativeCredit() {
+    public UInt256 getCumulativeCredit() {
         return cumulativeCredit;
     }
 
-    public void setCumulativeCredit(Long cumulativeCredit) {
+    public void setCumulativeCredit(UInt256 cumulativeCredit) {
         this.cumulativeCredit = cumulativeCredit;
     }
 
-    public Long getReceiptId() {
+    public void setCumulativeCredit(long cumulativeCredit) {
+        this.cumulativeCredit = UInt256.valueOf(cumulativeCredit);
+    }
+
+    public long getReceiptId() {
         return receiptId;
     }
 
-    public void setReceiptId(Long receiptId) {
+    public void setReceiptId(long receiptId) {
         this.receiptId = receiptId;
     }
 
@@ -109,11 +113,83 @@ public class Receipt {
         this.signature = signature;
     }
 
+    /**
+     * Returns a builder initialized with the fields of this receipt, to derive a modified copy.
+     * @return
+     */
+    public Builder toBuilder() {
+        return new Builder(new Receipt(this));
+    }
+
+    public static Builder builder() {
+        return new Builder(new Receipt());
+    }
+
     /**
      * Converts to a {@link com.visa.vr.upc.sdk.generated.UPC2.Receipt} for use by the smart contract
      * @return
      */
     public UPC2.Receipt toContractReceipt(){
-        return new UPC2.Receipt(BigInteger.valueOf(receiptId), BigInteger.valueOf(cumulativeCredit), accumulatorRoot);
+        return new UPC2.Receipt(BigInteger.valueOf(receiptId), cumulativeCredit.toBigInteger(), accumulatorRoot);
+    }
+
+    /**
+     * Builds a {@link Receipt}. A builder should only be used once.
+     */
+    public static class Builder {
+        private final Receipt receipt;
+
+        private Builder(Receipt receipt) {
+            this.receipt = receipt;
+        }
+
+        public Builder sender(String sender) {
+            receipt.sender = sender;
+            return this;
+        }
+
+        public Builder receiver(String receiver) {
+            receipt.receiver = receiver;
+            return this;
+        }
+
+        public Builder channelId(long channelId) {
+            receipt.channelId = channelId;
+            return this;
+        }
+
+        public Builder chainId(long chainId) {
+            receipt.chainId = chainId;
+            return this;
+        }
+
+        public Builder cumulativeCredit(UInt256 cumulativeCredit) {
+            receipt.cumulativeCredit = cumulativeCredit;
+            return this;
+        }
+
+        public Builder cumulativeCredit(long cumulativeCredit) {
+            receipt.cumulativeCredit = UInt256.valueOf(cumulativeCredit);
+            return this;
+        }
+
+        public Builder receiptId(long receiptId) {
+            receipt.receiptId = receiptId;
+            return this;
+        }
+
+        public Builder accumulatorRoot(byte[] accumulatorRoot) {
+            receipt.accumulatorRoot = accumulatorRoot;
+            return this;
+        }
+
+        public Builder signature(Signature signature) {
+            receipt.signature = signature;
+            return this;
+        }
+
+        public Receipt build() {
+            return receipt;
+        }
     }
 }
@@ -0,0 +1,225 @@
+package com.visa.vr.upc.sdk.domain;
+
+import java.io.Serializable;
+import java.math.BigInteger;
+
+/**
+ * An immutable unsigned 256-bit integer, as the uint256 token amounts of the UPC contract. The value is held in four
+ * longs, so adding, subtracting and comparing amounts does not allocate {@link BigInteger}s. Arithmetic is checked:
+ * overflow and underflow throw an {@link ArithmeticException} instead of wrapping around.
+ */
+public final class UInt256 implements Comparable<UInt256>, Serializable {
+
+    public static final UInt256 ZERO = new UInt256(0, 0, 0, 0);
+
+    public static final UInt256 MAX_VALUE = new UInt256(-1L, -1L, -1L, -1L);
+
+    private static final BigInteger TWO_POW_64 = BigInteger.ONE.shiftLeft(64);
+
+    // Most significant word first
+    private final long w0;
+    private final long w1;
+    private final long w2;
+    private final long w3;
+
+    private UInt256(long w0, long w1, long w2, long w3) {
+        this.w0 = w0;
+        this.w1 = w1;
+        this.w2 = w2;
+        this.w3 = w3;
+    }
+
+    /**
+     * @param value a non-negative value
+     * @return
+     */
+    public static UInt256 valueOf(long value) {
+        if (value < 0) {
+            throw new IllegalArgumentException("uint256 value is negative: " + value);
+        }
+        return value == 0 ? ZERO : new UInt256(0, 0, 0, value);
+    }
+
+    /**
+     * @param value a value between 0 and 2^256 - 1
+     * @return
+     */
+    public static UInt256 valueOf(BigInteger value) {
+        if (value.signum() < 0 || value.bitLength() > 256) {
+            throw new IllegalArgumentException("Value does not fit in uint256: " + value);
+        }
+        if (value.bitLength() < 64) {
+            return valueOf(value.longValue());
+        }
+        return new UInt256(value.shiftRight(192).longValue(), value.shiftRight(128).longValue(),
+                value.shiftRight(64).longValue(), value.longValue());
+    }
+
+    /**
+     * Reads a big-endian uint256, as in ABI encoding.
+     * @param bytes
+     * @param offset the offset of the 32 bytes to read
+     * @return
+     */
+    public static UInt256 fromBytes(byte[] bytes, int offset) {
+        return new UInt256(readLong(bytes, offset), readLong(bytes, offset + 8), readLong(bytes, offset + 16), readLong(bytes, offset + 24));
+    }
+
+    public UInt256 add(UInt256 other) {
+        long r3 = w3 + other.w3;
+        long c = carry(w3, r3, 0);
+        long r2 = w2 + other.w2 + c;
+        c = carry(w2, r2, c);
+        long r1 = w1 + other.w1 + c;
+        c = carry(w1, r1, c);
+        long r0 = w0 + other.w0 + c;
+        if (carry(w0, r0, c) != 0) {
+            throw new ArithmeticException("uint256 overflow");
+        }
+        return new UInt256(r0, r1, r2, r3);
+    }
+
+    public UInt256 subtract(UInt256 other) {
+        long r3 = w3 - other.w3;
+        long b = borrow(w3, other.w3, 0);
+        long r2 = w2 - other.w2 - b;
+        b = borrow(w2, other.w2, b);
+        long r1 = w1 - other.w1 - b;
+        b = borrow(w1, other.w1, b);
+        long r0 = w0 - other.w0 - b;
+        if (borrow(w0, other.w0, b) != 0) {
+            throw new ArithmeticException("uint256 underflow");
+        }
+        return new UInt256(r0, r1, r2, r3);
+    }
+
+    /**
+     * Adds a signed delta, e.g. a change of credit that can be negative.
+     * @param delta
+     * @return
+     */
+    public UInt256 add(long delta) {
+        if (delta >= 0) {
+            return add(valueOf(delta));
+        }
+        return delta == Long.MIN_VALUE
+                ? subtract(valueOf(Long.MAX_VALUE)).subtract(valueOf(1))
+                : subtract(valueOf(-delta));
+    }
+
+    public boolean isZero() {
+        return (w0 | w1 | w2 | w3) == 0;
+    }
+
+    /**
+     * Returns the value as a long.
+     * @return
+     * @throws ArithmeticException if the value does not fit in a long
+     */
+    public long longValueExact() {
+        if ((w0 | w1 | w2) != 0 || w3 < 0) {
+            throw new ArithmeticException("uint256 value does not fit in a long: " + this);
+        }
+        return w3;
+    }
+
+    /**
+     * Returns the closest double, for ratios and estimates where the exact value is not needed.
+     * @return
+     */
+    public double doubleValue() {
+        return ((unsignedToDouble(w0) * 0x1p64 + unsignedToDouble(w1)) * 0x1p64 + unsignedToDouble(w2)) * 0x1p64 + unsignedToDouble(w3);
+    }
+
+    public BigInteger toBigInteger() {
+        if ((w0 | w1 | w2) == 0 && w3 >= 0) {
+            return BigInteger.valueOf(w3);
+        }
+        return toUnsignedBigInteger(w0).multiply(TWO_POW_64).add(toUnsignedBigInteger(w1))
+                .multiply(TWO_POW_64).add(toUnsignedBigInteger(w2))
+                .multiply(TWO_POW_64).add(toUnsignedBigInteger(w3));
+    }
+
+    /**
+     * Writes the value as 32 big-endian bytes, as in ABI encoding.
+     * @param dest
+     * @param offset
+     */
+    public void writeTo(byte[] dest, int offset) {
+        writeLong(w0, dest, offset);
+        writeLong(w1, dest, offset + 8);
+        writeLong(w2, dest, offset + 16);
+        writeLong(w3, dest, offset + 24);
+    }
+
+    @Override
+    public int compareTo(UInt256 other) {
+        int c = Long.compareUnsigned(w0, other.w0);
+        if (c != 0) {
+            return c;
+        }
+        c = Long.compareUnsigned(w1, other.w1);
+        if (c != 0) {
+            return c;
+        }
+        c = Long.compareUnsigned(w2, other.w2);
+        return c != 0 ? c : Long.compareUnsigned(w3, other.w3);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof UInt256)) {
+            return false;
+        }
+        UInt256 other = (UInt256) o;
+        return w0 == other.w0 && w1 == other.w1 && w2 == other.w2 && w3 == other.w3;
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * (31 * (31 * Long.hashCode(w0) + Long.hashCode(w1)) + Long.hashCode(w2)) + Long.hashCode(w3);
+    }
+
+    @Override
+    public String toString() {
+        return toBigInteger().toString();
+    }
+
+    private static long carry(long a, long sum, long carryIn) {
+        // The sum of a, another word and the carry in wrapped around iff it is below a, or equal to a with a carry in
+        return Long.compareUnsigned(sum, a) < 0 || (carryIn != 0 && sum == a) ? 1 : 0;
+    }
+
+    private static long borrow(long a, long b, long borrowIn) {
+        int c = Long.compareUnsigned(a, b);
+        return c < 0 || (c == 0 && borrowIn != 0) ? 1 : 0;
+    }
+
+    private static double unsignedToDouble(long word) {
+        double value = (double) (word >>> 1) * 2;
+        return value + (word & 1);
+    }
+
+    private static BigInteger toUnsignedBigInteger(long word) {
+        BigInteger value = BigInteger.valueOf(word & Long.MAX_VALUE);
+        return word < 0 ? value.setBit(63) : value;
+    }
+
+    private static long readLong(byte[] bytes, int offset) {
+        long value = 0;
+        for (int i = 0; i < 8; i++) {
+            value = (value << 8) | (bytes[offset + i] & 0xFF);
+        }
+        return value;
+    }
+
+    private static void writeLong(long value, byte[] dest, int offset) {
+        for (int i = 7; i >= 0; i--) {
+            dest[offset + i] = (byte) value;
+            value >>>= 8;
+        }
+    }
+}
@@ -12,14 +12,17 @@ public class UPCState {
 
     private final ChannelStatus channelStatus;
 
+    private final int contractStatus;
+
     private final long expiry;
 
     private final UPC2.Party hub;
 
     private final UPC2.Party client;
 
-    private UPCState(ChannelStatus channelStatus, UPC2.Party hub, UPC2.Party client, long expiry){
-        this.channelStatus = channelStatus;
+    private UPCState(int contractStatus, UPC2.Party hub, UPC2.Party client, long expiry){
+        this.channelStatus = ChannelStatus.fromUPCContract(contractStatus);
+        this.contractStatus = contractStatus;
         this.expiry = expiry;
         this.hub = hub;
         this.client = client;
@@ -31,7 +34,7 @@ public class UPCState {
      * @return
      */
     public static UPCState fromContract(Tuple4<BigInteger, UPC2.Party, UPC2.Party, BigInteger> contractState) {
-        return new UPCState(ChannelStatus.fromUPCContract(contractState.component1().intValue()),
+        return new UPCState(contractState.component1().intValue(),
                 contractState.component2(),
                 contractState.component3(),
                 contractState.component4().longValue());
@@ -42,6 +45,14 @@ public class UPCState {
         return channelStatus;
     }
 
+    /**
+     * Returns the status exactly as stored by the contract: 0 ACTIVE, 1 PAUSE, 2 CLOSING, 3 CLOSED.
+     * @return
+     */
+    public int getContractStatus() {
+        return contractStatus;
+    }
+
     public long getExpiry() {
         return expiry;
     }
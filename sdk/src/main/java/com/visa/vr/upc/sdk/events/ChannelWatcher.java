@@ -11,10 +11,12 @@ import org.web3j.protocol.core.DefaultBlockParameter;
 import org.web3j.protocol.core.DefaultBlockParameterName;
 import org.web3j.protocol.core.DefaultBlockParameterNumber;
 import org.web3j.protocol.core.methods.request.EthFilter;
+import org.web3j.protocol.core.methods.response.Log;
 import org.web3j.tx.ReadonlyTransactionManager;
 import org.web3j.tx.gas.DefaultGasProvider;
 
 import java.io.IOException;
+import java.math.BigInteger;
 import java.util.List;
 
 /**
@@ -24,6 +26,8 @@ public class ChannelWatcher {
 
     private Web3j web3;
 
+    private PushLogSource logSource;
+
     private List<String> watchedChannels;
 
     private DisposableSubscriber<UPC2.DepositEventResponse> depositSubscriber;
@@ -92,6 +96,18 @@ public class ChannelWatcher {
         );
     }
 
+    /**
+     * Constructor for push mode. Events are taken from a single log subscription of the given {@link PushLogSource}
+     * instead of one eth_getLogs filter per event type.
+     * @param web3
+     * @param logSource
+     * @param eventHandler
+     */
+    public ChannelWatcher(Web3j web3, PushLogSource logSource, UPCEventHandler eventHandler){
+        this(web3, eventHandler);
+        this.logSource = logSource;
+    }
+
     private static UPC2 getReadOnlyUPC(Web3j web3){
         return UPC2.load(Address.DEFAULT.toString(), web3, new ReadonlyTransactionManager(web3, Address.DEFAULT.toString()), new DefaultGasProvider());
     }
@@ -201,6 +217,10 @@ public class ChannelWatcher {
     }
 
     private void setSubscriptions() throws IOException {
+        if(logSource != null){
+            setPushSubscriptions(web3.ethBlockNumber().send().getBlockNumber());
+            return;
+        }
         DefaultBlockParameter now = new DefaultBlockParameterNumber(web3.ethBlockNumber().send().getBlockNumber());
         setClosingSubscriber = ChannelWatcher.getSetClosingEvents(web3, now, DefaultBlockParameterName.LATEST, watchedChannels)
                 .subscribeWith(setClosingFactory.getSubscriber());
@@ -216,6 +236,29 @@ public class ChannelWatcher {
                 .subscribeWith(depositFactory.getSubscriber());
     }
 
+    private void setPushSubscriptions(BigInteger fromBlock) {
+        Flowable<Log> logs = logSource.open(watchedChannels, fromBlock);
+        setClosingSubscriber = logs.filter(l -> UPCEventDecoder.isEvent(l, UPCEventDecoder.SETCLOSING_TOPIC))
+                .map(UPCEventDecoder::toSetClosingEvent)
+                .subscribeWith(setClosingFactory.getSubscriber());
+        closeSubscriber = logs.filter(l -> UPCEventDecoder.isEvent(l, UPCEventDecoder.CLOSE_TOPIC))
+                .map(UPCEventDecoder::toCloseEvent)
+                .subscribeWith(closeFactory.getSubscriber());
+        deployPromiseSubscriber = logs.filter(l -> UPCEventDecoder.isEvent(l, UPCEventDecoder.DEPLOYPROMISE_TOPIC))
+                .map(UPCEventDecoder::toDeployPromiseEvent)
+                .subscribeWith(deployPromiseFactory.getSubscriber());
+        withdrawRequestSubscriber = logs.filter(l -> UPCEventDecoder.isEvent(l, UPCEventDecoder.WITHDRAWREQUEST_TOPIC))
+                .map(UPCEventDecoder::toWithdrawRequestEvent)
+                .subscribeWith(withdrawRequestFactory.getSubscriber());
+        withdrawSubscriber = logs.filter(l -> UPCEventDecoder.isEvent(l, UPCEventDecoder.WITHDRAW_TOPIC))
+                .map(UPCEventDecoder::toWithdrawEvent)
+                .subscribeWith(withdrawFactory.getSubscriber());
+        depositSubscriber = logs.filter(l -> UPCEventDecoder.isEvent(l, UPCEventDecoder.DEPOSIT_TOPIC))
+                .map(UPCEventDecoder::toDepositEvent)
+                .subscribeWith(depositFactory.getSubscriber());
+        logSource.connect();
+    }
+
     private void disposeSubscriptions(){
         depositSubscriber.dispose();
         setClosingSubscriber.dispose();
@@ -227,6 +270,13 @@ public class ChannelWatcher {
 
     private void refreshSubscriptions() throws IOException {
         disposeSubscriptions();
+        if(logSource != null){
+            // Resume from the last block seen, so nothing is missed while re-subscribing
+            BigInteger lastBlock = logSource.getLastBlock();
+            logSource.stop();
+            setPushSubscriptions(lastBlock.max(BigInteger.ZERO));
+            return;
+        }
         setSubscriptions();
     }
 }
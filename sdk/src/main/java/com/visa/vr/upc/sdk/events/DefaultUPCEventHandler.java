@@ -7,9 +7,9 @@ import com.visa.vr.upc.sdk.domain.Channel;
 import com.visa.vr.upc.sdk.domain.ChannelStatus;
 import com.visa.vr.upc.sdk.domain.PromiseStatus;
 import com.visa.vr.upc.sdk.domain.StatefulPromise;
+import com.visa.vr.upc.sdk.domain.UInt256;
 import com.visa.vr.upc.sdk.generated.UPC2;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
+import com.visa.vr.upc.sdk.logging.EventLogger;
 
 import java.util.Optional;
 
@@ -19,7 +19,7 @@ import java.util.Optional;
  */
 public class DefaultUPCEventHandler extends UPCEventHandler {
 
-    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+    private final EventLogger events = EventLogger.getLogger(this.getClass());
 
     private final IChannelDataService channelDataService;
 
@@ -31,7 +31,15 @@ public class DefaultUPCEventHandler extends UPCEventHandler {
                                   IChannelDataService channelDataService,
                                   IPromiseDataService promiseDataService,
                                   IReceiptDataService receiptDataService) {
-        super(upcHandledEvents);
+        this(upcHandledEvents, null, channelDataService, promiseDataService, receiptDataService);
+    }
+
+    public DefaultUPCEventHandler(IUPCHandledEvents upcHandledEvents,
+                                  OrderedEventDispatcher dispatcher,
+                                  IChannelDataService channelDataService,
+                                  IPromiseDataService promiseDataService,
+                                  IReceiptDataService receiptDataService) {
+        super(upcHandledEvents, dispatcher);
         this.channelDataService = channelDataService;
         this.promiseDataService = promiseDataService;
         this.receiptDataService = receiptDataService;
@@ -39,23 +47,23 @@ public class DefaultUPCEventHandler extends UPCEventHandler {
 
     @Override
     public void internalHandleDeposit(UPC2.DepositEventResponse event) {
-        logger.info("Recording a deposit");
+        events.debug("record.deposit").with("channelId", () -> event.id).with("tx", () -> event.log.getTransactionHash()).log();
         String address = event.log.getAddress();
         Channel channel = channelDataService.getChannelById(event.id.longValue()).orElseThrow(RuntimeException::new);
-        channel.addDeposit(event.from, event.amount.longValue());
+        channel.addDeposit(event.from, UInt256.valueOf(event.amount));
         channelDataService.updateChannel(channel);
     }
 
     @Override
     public void internalHandleSetClosing(UPC2.SetClosingEventResponse event) {
-        logger.info("Recording a set closing");
+        events.debug("record.set_closing").with("channelId", () -> event.id).with("tx", () -> event.log.getTransactionHash()).log();
         String address = event.log.getAddress();
         closeChannel(event.id.longValue());
     }
 
     @Override
     public void internalHandleClose(UPC2.CloseEventResponse event) {
-        logger.info("Recording a close");
+        events.debug("record.close").with("channelId", () -> event.id).with("tx", () -> event.log.getTransactionHash()).log();
         Channel channel = channelDataService.getChannelById(event.id.longValue()).orElseThrow(RuntimeException::new);
         channel.setStatus(ChannelStatus.CLOSED);
         channelDataService.updateChannel(channel);
@@ -63,11 +71,12 @@ public class DefaultUPCEventHandler extends UPCEventHandler {
 
     @Override
     public void internalHandleDeployPromise(UPC2.DeployPromiseEventResponse event) {
-        logger.info("Recording a deploy promise");
-        Optional<StatefulPromise> incomingPromise = promiseDataService.getIncomingPromiseByAddress(event.promiseAddress);
-        Optional<StatefulPromise> outgoingPromise = promiseDataService.getOutgoingPromiseByAddress(event.promiseAddress);
+        long channelId = event.id.longValue();
+        events.debug("record.deploy_promise").with("channelId", channelId).with("promise", () -> event.promiseAddress).log();
+        Optional<StatefulPromise> incomingPromise = promiseDataService.getIncomingPromiseByAddress(channelId, event.promiseAddress);
+        Optional<StatefulPromise> outgoingPromise = promiseDataService.getOutgoingPromiseByAddress(channelId, event.promiseAddress);
         if(incomingPromise.isPresent() && outgoingPromise.isPresent()){
-            logger.info("Warning: both incoming and outgoing promise have the same address.");
+            events.info("record.deploy_promise.ambiguous").with("channelId", channelId).with("promise", () -> event.promiseAddress).log();
         }
         StatefulPromise promise;
         if(incomingPromise.isPresent()){
@@ -82,17 +91,17 @@ public class DefaultUPCEventHandler extends UPCEventHandler {
             promiseDataService.updateOutgoingPromise(promise);
             return;
         }
-        logger.info("Could not find promise with deployed address");
+        events.info("record.deploy_promise.unknown").with("channelId", channelId).with("promise", () -> event.promiseAddress).log();
     }
 
     @Override
     public void internalHandleWithdrawRequest(UPC2.WithdrawRequestEventResponse event){
-        logger.info("Recording a withdraw request");
+        events.debug("record.withdraw_request").with("channelId", () -> event.id).with("tx", () -> event.log.getTransactionHash()).log();
     }
 
     @Override
     public void internalHandleWithdraw(UPC2.WithdrawEventResponse event) {
-        logger.info("Recording a withdrawal");
+        events.debug("record.withdraw").with("channelId", () -> event.id).with("tx", () -> event.log.getTransactionHash()).log();
         if(event.fullWithdrawal){
             Channel channel = channelDataService.getChannelById(event.id.longValue()).orElseThrow(RuntimeException::new);
             channel.setStatus(ChannelStatus.WITHDRAWN);
@@ -100,12 +109,12 @@ public class DefaultUPCEventHandler extends UPCEventHandler {
         }
         else{
             Channel channel = channelDataService.getChannelById(event.id.longValue()).orElseThrow(RuntimeException::new);
-            channel.setClientDeposit(event.clientDeposit.longValue());
-            channel.setHubDeposit(event.hubDeposit.longValue());
-            channel.setPrevClientCredit(event.clientPrevCredit.longValue());
-            channel.setPrevHubCredit(event.hubPrevCredit.longValue());
-            channel.setClientCredit(0L);
-            channel.setHubCredit(0L);
+            channel.setClientDeposit(UInt256.valueOf(event.clientDeposit));
+            channel.setHubDeposit(UInt256.valueOf(event.hubDeposit));
+            channel.setPrevClientCredit(UInt256.valueOf(event.clientPrevCredit));
+            channel.setPrevHubCredit(UInt256.valueOf(event.hubPrevCredit));
+            channel.setClientCredit(UInt256.ZERO);
+            channel.setHubCredit(UInt256.ZERO);
             channelDataService.updateChannel(channel);
         }
     }
@@ -4,6 +4,20 @@ package com.visa.vr.upc.sdk.events;
  * An interface to keep track of which events have already been handled. The implementation should be thread-safe.
  */
 public interface IUPCHandledEvents {
+
+    /**
+     * The kinds of events that are tracked.
+     */
+    enum Kind {
+        CHANNEL_CLOSING,
+        DEPOSIT,
+        CLOSE,
+        SET_CLOSING,
+        DEPLOY_PROMISE,
+        WITHDRAW_REQUEST,
+        WITHDRAWAL
+    }
+
     public Boolean isChannelClosing(long channelId);
 
     public Boolean isDepositHandled(String hash);
@@ -12,9 +26,24 @@ public interface IUPCHandledEvents {
 
     public Boolean isSetClosingHandled(String hash);
 
-    public Boolean isDeployPromiseHandled(String hash);
+    /**
+     * @param key the transaction hash and log index of the event, joined by a colon, since one transaction can deploy
+     *            several promises
+     * @return
+     */
+    public Boolean isDeployPromiseHandled(String key);
 
     public Boolean isWithdrawRequestHandled(String hash);
 
     public Boolean isWithdrawalHandled(String hash);
+
+    /**
+     * Forgets that an event was handled, e.g. because it could not be dispatched, so that it is handled when it is
+     * delivered again. The default implementation does nothing, in which case such an event is lost.
+     * @param kind
+     * @param key the transaction hash of the event, the transaction hash and log index for {@link Kind#DEPLOY_PROMISE},
+     *            or the channel id for {@link Kind#CHANNEL_CLOSING}
+     */
+    default void unmarkHandled(Kind kind, String key) {
+    }
 }
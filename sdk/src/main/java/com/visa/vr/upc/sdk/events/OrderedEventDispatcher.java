@@ -0,0 +1,254 @@
+package com.visa.vr.upc.sdk.events;
+
+import com.visa.vr.upc.sdk.logging.EventLogger;
+import com.visa.vr.upc.sdk.metrics.Metrics;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Dispatches event handling work onto a fixed set of worker lanes, partitioned by channel id. All work for a channel
+ * goes to the same lane, so it is handled in the order it was dispatched, while different channels are handled in parallel.
+ *
+ * Each lane has a bounded queue. When a queue is full, the {@link BackpressurePolicy} decides whether the dispatching
+ * thread (usually the web3j polling thread) waits for space or the work is rejected. Log filters do not replay, so
+ * an event rejected from a live subscription is lost; use {@link BackpressurePolicy#BLOCK} if every event must be
+ * handled.
+ */
+public class OrderedEventDispatcher implements AutoCloseable {
+
+    private static final EventLogger events = EventLogger.getLogger(OrderedEventDispatcher.class);
+
+    /**
+     * What to do when the lane of a channel is full.
+     */
+    public enum BackpressurePolicy {
+        /**
+         * Block the dispatching thread until there is space in the lane.
+         */
+        BLOCK,
+        /**
+         * Throw a {@link RejectedExecutionException} to the dispatching thread. The subscriber factories log and drop
+         * rejected events, so the subscription keeps running.
+         */
+        REJECT
+    }
+
+    private static final long POLL_MILLIS = 50;
+
+    private final Lane[] lanes;
+
+    private final BackpressurePolicy policy;
+
+    private final LongAdder dispatched = new LongAdder();
+
+    private final LongAdder completed = new LongAdder();
+
+    private final LongAdder failed = new LongAdder();
+
+    private final LongAdder rejected = new LongAdder();
+
+    private final LongAdder handlerNanos = new LongAdder();
+
+    private final AtomicLong maxHandlerNanos = new AtomicLong();
+
+    private volatile boolean closed = false;
+
+    /**
+     * Basic constructor. Starts one daemon thread per lane.
+     * @param numLanes the number of lanes (and worker threads)
+     * @param queueCapacity the maximum number of pending events per lane
+     * @param policy what to do when a lane is full
+     */
+    public OrderedEventDispatcher(int numLanes, int queueCapacity, BackpressurePolicy policy) {
+        if(numLanes < 1 || queueCapacity < 1){
+            throw new IllegalArgumentException("Number of lanes and queue capacity must be positive");
+        }
+        this.policy = policy;
+        this.lanes = new Lane[numLanes];
+        for(int i = 0; i < numLanes; i++){
+            lanes[i] = new Lane(i, queueCapacity);
+            lanes[i].thread.start();
+        }
+    }
+
+    /**
+     * Dispatches a task for a channel. Tasks for the same channel run in the order they are dispatched.
+     * If called from the lane that owns the channel (e.g. a handler dispatching follow-up work), the task runs inline.
+     * @param channelId the channel the task belongs to
+     * @param task the handling work
+     * @throws RejectedExecutionException if the dispatcher is closed, or the lane is full and the policy is {@link BackpressurePolicy#REJECT}
+     */
+    public void dispatch(long channelId, Runnable task) {
+        if(closed){
+            throw new RejectedExecutionException("Dispatcher is closed");
+        }
+        Lane lane = laneFor(channelId);
+        dispatched.increment();
+        if(Thread.currentThread() == lane.thread){
+            run(task);
+            return;
+        }
+        Metrics.get().recordValue(Metrics.EVENT_QUEUE_DEPTH, lane.queue.size());
+        if(policy == BackpressurePolicy.REJECT){
+            if(!lane.queue.offer(task)){
+                rejected.increment();
+                Metrics.get().increment(Metrics.EVENT_REJECTED);
+                throw new RejectedExecutionException("Event queue full for channel " + channelId);
+            }
+        } else {
+            try {
+                lane.queue.put(task);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                rejected.increment();
+                throw new RejectedExecutionException("Interrupted while waiting for space in event queue", e);
+            }
+        }
+        // If the lane stopped while the task was queued, it may have missed it
+        if(lane.stopped && lane.queue.remove(task)){
+            rejected.increment();
+            throw new RejectedExecutionException("Dispatcher is closed");
+        }
+    }
+
+    /**
+     * Stops accepting new work and stops the lanes once the work already queued has been handled. Does not block, even
+     * if a lane is full and its handler is stuck.
+     */
+    @Override
+    public void close() {
+        closed = true;
+    }
+
+    /**
+     * Waits for all lanes to stop after {@link #close()}.
+     * @param millis the maximum time to wait per lane
+     * @throws InterruptedException
+     */
+    public void awaitTermination(long millis) throws InterruptedException {
+        for (Lane lane: lanes) {
+            lane.thread.join(millis);
+        }
+    }
+
+    public int getNumLanes() {
+        return lanes.length;
+    }
+
+    /**
+     * Returns the number of tasks waiting in a single lane.
+     * @param lane the lane index
+     * @return
+     */
+    public int getQueueDepth(int lane) {
+        return lanes[lane].queue.size();
+    }
+
+    /**
+     * Returns the number of tasks waiting across all lanes.
+     * @return
+     */
+    public int getQueueDepth() {
+        int depth = 0;
+        for (Lane lane: lanes) {
+            depth += lane.queue.size();
+        }
+        return depth;
+    }
+
+    public long getDispatchedCount() {
+        return dispatched.sum();
+    }
+
+    public long getCompletedCount() {
+        return completed.sum();
+    }
+
+    public long getFailedCount() {
+        return failed.sum();
+    }
+
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+
+    /**
+     * Returns the mean time spent in handlers, in nanoseconds.
+     * @return
+     */
+    public long getAverageHandlerLatencyNanos() {
+        long count = completed.sum() + failed.sum();
+        return count == 0 ? 0 : handlerNanos.sum() / count;
+    }
+
+    /**
+     * Returns the longest time spent in a single handler, in nanoseconds.
+     * @return
+     */
+    public long getMaxHandlerLatencyNanos() {
+        return maxHandlerNanos.get();
+    }
+
+    private Lane laneFor(long channelId) {
+        return lanes[(int) Math.floorMod(channelId, (long) lanes.length)];
+    }
+
+    private void run(Runnable task) {
+        long start = System.nanoTime();
+        String status = "success";
+        try {
+            task.run();
+            completed.increment();
+        } catch (RuntimeException e) {
+            status = "failure";
+            failed.increment();
+            events.error("dispatcher.handler", e).log();
+        } finally {
+            long elapsed = System.nanoTime() - start;
+            handlerNanos.add(elapsed);
+            maxHandlerNanos.accumulateAndGet(elapsed, Math::max);
+            Metrics.get().recordNanos(Metrics.EVENT_HANDLER, elapsed, "status", status);
+        }
+    }
+
+    private class Lane implements Runnable {
+        private final BlockingQueue<Runnable> queue;
+
+        private final Thread thread;
+
+        private volatile boolean stopped = false;
+
+        private Lane(int index, int queueCapacity) {
+            this.queue = new ArrayBlockingQueue<>(queueCapacity);
+            this.thread = new Thread(this, "upc-event-lane-" + index);
+            this.thread.setDaemon(true);
+        }
+
+        @Override
+        public void run() {
+            try {
+                while(true){
+                    Runnable task = queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                    if(task != null){
+                        OrderedEventDispatcher.this.run(task);
+                    } else if(closed){
+                        break;
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            stopped = true;
+            // Handle the tasks queued while the lane was stopping; later ones are rejected by dispatch
+            Runnable task;
+            while((task = queue.poll()) != null){
+                OrderedEventDispatcher.this.run(task);
+            }
+        }
+    }
+}
@@ -0,0 +1,346 @@
+package com.visa.vr.upc.sdk.events;
+
+import com.visa.vr.upc.sdk.metrics.Metrics;
+import io.reactivex.Flowable;
+import io.reactivex.disposables.Disposable;
+import io.reactivex.processors.FlowableProcessor;
+import io.reactivex.processors.PublishProcessor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.web3j.protocol.Web3j;
+import org.web3j.protocol.Web3jService;
+import org.web3j.protocol.core.DefaultBlockParameterNumber;
+import org.web3j.protocol.core.methods.request.EthFilter;
+import org.web3j.protocol.core.methods.response.EthLog;
+import org.web3j.protocol.core.methods.response.Log;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A source of UPC contract logs that are pushed by the node over an eth_subscribe("logs") WebSocket subscription.
+ *
+ * If the subscription cannot be established or fails, the source falls back to polling eth_getLogs over a separate
+ * (usually HTTP) connection, and periodically tries to subscribe again. Every time a subscription is (re)established,
+ * the logs between the last seen block and the current head are fetched with eth_getLogs, so that no logs are missed
+ * while the subscription was down. Logs are de-duplicated, and emitted in order on a single thread at a time.
+ */
+public class PushLogSource {
+
+    private static final Logger log = LoggerFactory.getLogger(PushLogSource.class);
+
+    private static final int SEEN_LOGS_CAPACITY = 10000;
+
+    public enum Mode {
+        STOPPED,
+        PUSH,
+        POLLING
+    }
+
+    private final Callable<Web3jService> pushConnector;
+
+    private final Web3j pollWeb3j;
+
+    private final long pollIntervalMillis;
+
+    private final long resubscribeIntervalMillis;
+
+    private final Object lock = new Object();
+
+    private final List<Log> buffered = new ArrayList<>();
+
+    private final Map<String, Boolean> seen = new LinkedHashMap<String, Boolean>(){
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+            return size() > SEEN_LOGS_CAPACITY;
+        }
+    };
+
+    private FlowableProcessor<Log> processor;
+
+    private ScheduledExecutorService scheduler;
+
+    private ScheduledFuture<?> pollTask;
+
+    private Disposable subscription;
+
+    private Web3jService pushService;
+
+    private List<String> addresses;
+
+    private BigInteger lastBlock;
+
+    private boolean filling;
+
+    private boolean resubscribeScheduled;
+
+    private volatile Mode mode = Mode.STOPPED;
+
+    /**
+     * Basic constructor.
+     * @param pushConnector creates a new, connected WebSocket service, e.g. a {@link org.web3j.protocol.websocket.WebSocketService},
+     *                      called on every subscription attempt since a closed WebSocket cannot be reused
+     * @param pollWeb3j the {@link Web3j} used for gap-filling and polling
+     * @param pollIntervalMillis how often to poll while the subscription is down
+     * @param resubscribeIntervalMillis how long to wait before trying to subscribe again
+     */
+    public PushLogSource(Callable<Web3jService> pushConnector, Web3j pollWeb3j, long pollIntervalMillis, long resubscribeIntervalMillis) {
+        this.pushConnector = pushConnector;
+        this.pollWeb3j = pollWeb3j;
+        this.pollIntervalMillis = pollIntervalMillis;
+        this.resubscribeIntervalMillis = resubscribeIntervalMillis;
+    }
+
+    /**
+     * Opens the log stream for a list of contract addresses. No logs are emitted until {@link #connect()} is called,
+     * so that subscribers can be attached first. A stopped source can be opened again, and will not re-emit logs it
+     * has recently emitted.
+     * @param addresses the addresses of the watched channels
+     * @param fromBlock the first block to emit logs from
+     * @return the stream of logs
+     */
+    public Flowable<Log> open(List<String> addresses, BigInteger fromBlock) {
+        synchronized (lock) {
+            if(mode != Mode.STOPPED){
+                throw new IllegalStateException("Log source already open");
+            }
+            this.addresses = new ArrayList<>(addresses);
+            this.lastBlock = fromBlock.subtract(BigInteger.ONE);
+            this.processor = PublishProcessor.<Log>create().toSerialized();
+            this.mode = Mode.POLLING;
+            return processor;
+        }
+    }
+
+    /**
+     * Starts emitting logs, trying to subscribe first.
+     */
+    public void connect() {
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "upc-log-source");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.execute(this::subscribe);
+    }
+
+    /**
+     * Stops the subscription and any polling, and completes the log stream.
+     */
+    public void stop() {
+        synchronized (lock) {
+            if(mode == Mode.STOPPED){
+                return;
+            }
+            mode = Mode.STOPPED;
+            disposeSubscription();
+            if(scheduler != null){
+                scheduler.shutdownNow();
+            }
+            processor.onComplete();
+        }
+    }
+
+    /**
+     * Returns whether logs are currently pushed or polled.
+     * @return
+     */
+    public Mode getMode() {
+        return mode;
+    }
+
+    /**
+     * Returns the highest block that logs have been seen or scanned for.
+     * @return
+     */
+    public BigInteger getLastBlock() {
+        synchronized (lock) {
+            return lastBlock;
+        }
+    }
+
+    private void subscribe() {
+        synchronized (lock) {
+            resubscribeScheduled = false;
+            if(mode == Mode.STOPPED){
+                return;
+            }
+        }
+        Web3jService service;
+        try {
+            service = pushConnector.call();
+        } catch (Exception e) {
+            log.info("Failed to connect for log subscription, exception: {}", e.getMessage());
+            fallBack();
+            return;
+        }
+        synchronized (lock) {
+            if(mode == Mode.STOPPED){
+                closeQuietly(service);
+                return;
+            }
+            filling = true;
+            buffered.clear();
+            pushService = service;
+            subscription = Web3j.build(service).logsNotifications(addresses, Collections.emptyList()).subscribe(
+                    n -> onPushedLog(toLog(n.getParams().getResult())),
+                    this::onSubscriptionError);
+        }
+        try {
+            fill();
+        } catch (IOException e) {
+            log.info("Failed to fill log gap after subscribing, exception: {}", e.getMessage());
+            fallBack();
+            return;
+        }
+        synchronized (lock) {
+            for (Log l: buffered) {
+                emit(l);
+            }
+            buffered.clear();
+            filling = false;
+            if(mode == Mode.STOPPED || subscription == null){
+                // Stopped, or the subscription failed while filling
+                return;
+            }
+            mode = Mode.PUSH;
+            if(pollTask != null){
+                pollTask.cancel(false);
+                pollTask = null;
+            }
+        }
+        log.info("Subscribed to logs of {} channels", addresses.size());
+    }
+
+    private void onPushedLog(Log l) {
+        synchronized (lock) {
+            if(filling){
+                buffered.add(l);
+            } else {
+                emit(l);
+            }
+        }
+    }
+
+    private void onSubscriptionError(Throwable t) {
+        log.info("Log subscription failed, falling back to polling, exception: {}", t.getMessage());
+        fallBack();
+    }
+
+    private void fallBack() {
+        synchronized (lock) {
+            if(mode == Mode.STOPPED){
+                return;
+            }
+            mode = Mode.POLLING;
+            filling = false;
+            buffered.clear();
+            disposeSubscription();
+            if(pollTask == null){
+                pollTask = scheduler.scheduleWithFixedDelay(this::poll, 0, pollIntervalMillis, TimeUnit.MILLISECONDS);
+            }
+            if(!resubscribeScheduled){
+                resubscribeScheduled = true;
+                scheduler.schedule(this::subscribe, resubscribeIntervalMillis, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    private void poll() {
+        try {
+            fill();
+        } catch (IOException | RuntimeException e) {
+            log.info("Failed to poll logs, exception: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Emits all logs from the last seen block (inclusive) up to the current head.
+     * @throws IOException
+     */
+    private void fill() throws IOException {
+        BigInteger from;
+        synchronized (lock) {
+            from = lastBlock.max(BigInteger.ZERO);
+        }
+        BigInteger head = pollWeb3j.ethBlockNumber().send().getBlockNumber();
+        Metrics.get().recordValue(Metrics.WATCHER_LAG, head.subtract(from).max(BigInteger.ZERO).doubleValue());
+        if(from.compareTo(head) > 0){
+            return;
+        }
+        EthFilter filter = new EthFilter(new DefaultBlockParameterNumber(from), new DefaultBlockParameterNumber(head), addresses);
+        EthLog ethLog = pollWeb3j.ethGetLogs(filter).send();
+        if(ethLog.hasError()){
+            throw new IOException(ethLog.getError().getMessage());
+        }
+        synchronized (lock) {
+            if(mode == Mode.STOPPED){
+                return;
+            }
+            for (EthLog.LogResult<?> result: ethLog.getLogs()) {
+                emit((Log) result.get());
+            }
+            lastBlock = lastBlock.max(head);
+        }
+    }
+
+    /**
+     * Must be called while holding the lock.
+     * @param l
+     */
+    private void emit(Log l) {
+        String key = l.getTransactionHash() + ":" + l.getLogIndexRaw();
+        if(seen.put(key, Boolean.TRUE) != null){
+            return;
+        }
+        if(l.getBlockNumberRaw() != null && l.getBlockNumber().compareTo(lastBlock) > 0){
+            lastBlock = l.getBlockNumber();
+        }
+        processor.onNext(l);
+    }
+
+    /**
+     * Must be called while holding the lock.
+     */
+    private void disposeSubscription() {
+        if(subscription != null){
+            subscription.dispose();
+            subscription = null;
+        }
+        if(pushService != null){
+            closeQuietly(pushService);
+            pushService = null;
+        }
+    }
+
+    private static void closeQuietly(Web3jService service) {
+        try {
+            service.close();
+        } catch (IOException e) {
+            log.info("Failed to close log subscription connection, exception: {}", e.getMessage());
+        }
+    }
+
+    private static Log toLog(org.web3j.protocol.websocket.events.Log pushed) {
+        return new Log(false,
+                pushed.getLogIndex(),
+                pushed.getTransactionIndex(),
+                pushed.getTransactionHash(),
+                pushed.getBlockHash(),
+                pushed.getBlockNumber(),
+                pushed.getAddress(),
+                pushed.getData(),
+                null,
+                pushed.getTopics());
+    }
+}
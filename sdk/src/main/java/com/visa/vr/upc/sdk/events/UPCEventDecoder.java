@@ -0,0 +1,115 @@
+package com.visa.vr.upc.sdk.events;
+
+import com.visa.vr.upc.sdk.generated.UPC2;
+import org.web3j.abi.EventEncoder;
+import org.web3j.abi.EventValues;
+import org.web3j.abi.datatypes.Event;
+import org.web3j.abi.datatypes.Type;
+import org.web3j.protocol.core.methods.response.Log;
+import org.web3j.tx.Contract;
+
+import java.math.BigInteger;
+import java.util.List;
+
+/**
+ * Decodes raw UPC contract logs into the event responses of the smart contract wrapper {@link UPC2}. This is used
+ * when logs do not come from the wrapper's own flowables, e.g. from a WebSocket subscription.
+ */
+public class UPCEventDecoder {
+
+    public static final String DEPOSIT_TOPIC = EventEncoder.encode(UPC2.DEPOSIT_EVENT);
+
+    public static final String CLOSE_TOPIC = EventEncoder.encode(UPC2.CLOSE_EVENT);
+
+    public static final String DEPLOYPROMISE_TOPIC = EventEncoder.encode(UPC2.DEPLOYPROMISE_EVENT);
+
+    public static final String SETCLOSING_TOPIC = EventEncoder.encode(UPC2.SETCLOSING_EVENT);
+
+    public static final String WITHDRAWREQUEST_TOPIC = EventEncoder.encode(UPC2.WITHDRAWREQUEST_EVENT);
+
+    public static final String WITHDRAW_TOPIC = EventEncoder.encode(UPC2.WITHDRAW_EVENT);
+
+    /**
+     * Checks whether a log is of the given event type.
+     * @param log
+     * @param topic the encoded event signature, e.g. {@link #DEPOSIT_TOPIC}
+     * @return
+     */
+    public static boolean isEvent(Log log, String topic){
+        List<String> topics = log.getTopics();
+        return topics != null && !topics.isEmpty() && topic.equalsIgnoreCase(topics.get(0));
+    }
+
+    public static UPC2.DepositEventResponse toDepositEvent(Log log){
+        EventValues values = extract(UPC2.DEPOSIT_EVENT, log);
+        UPC2.DepositEventResponse event = new UPC2.DepositEventResponse();
+        event.log = log;
+        event.from = (String) values.getIndexedValues().get(0).getValue();
+        event.id = (BigInteger) values.getIndexedValues().get(1).getValue();
+        event.amount = (BigInteger) values.getNonIndexedValues().get(0).getValue();
+        return event;
+    }
+
+    public static UPC2.CloseEventResponse toCloseEvent(Log log){
+        EventValues values = extract(UPC2.CLOSE_EVENT, log);
+        UPC2.CloseEventResponse event = new UPC2.CloseEventResponse();
+        event.log = log;
+        event.from = (String) values.getIndexedValues().get(0).getValue();
+        event.id = (BigInteger) values.getIndexedValues().get(1).getValue();
+        return event;
+    }
+
+    public static UPC2.DeployPromiseEventResponse toDeployPromiseEvent(Log log){
+        EventValues values = extract(UPC2.DEPLOYPROMISE_EVENT, log);
+        UPC2.DeployPromiseEventResponse event = new UPC2.DeployPromiseEventResponse();
+        event.log = log;
+        event.from = (String) values.getIndexedValues().get(0).getValue();
+        event.id = (BigInteger) values.getIndexedValues().get(1).getValue();
+        event.promiseAddress = (String) values.getNonIndexedValues().get(0).getValue();
+        return event;
+    }
+
+    public static UPC2.SetClosingEventResponse toSetClosingEvent(Log log){
+        EventValues values = extract(UPC2.SETCLOSING_EVENT, log);
+        UPC2.SetClosingEventResponse event = new UPC2.SetClosingEventResponse();
+        event.log = log;
+        event.from = (String) values.getIndexedValues().get(0).getValue();
+        event.id = (BigInteger) values.getIndexedValues().get(1).getValue();
+        event.channelExpiry = (BigInteger) values.getNonIndexedValues().get(0).getValue();
+        return event;
+    }
+
+    public static UPC2.WithdrawRequestEventResponse toWithdrawRequestEvent(Log log){
+        EventValues values = extract(UPC2.WITHDRAWREQUEST_EVENT, log);
+        UPC2.WithdrawRequestEventResponse event = new UPC2.WithdrawRequestEventResponse();
+        event.log = log;
+        event.from = (String) values.getIndexedValues().get(0).getValue();
+        event.id = (BigInteger) values.getIndexedValues().get(1).getValue();
+        event.amount = (BigInteger) values.getNonIndexedValues().get(0).getValue();
+        return event;
+    }
+
+    public static UPC2.WithdrawEventResponse toWithdrawEvent(Log log){
+        EventValues values = extract(UPC2.WITHDRAW_EVENT, log);
+        List<Type> nonIndexed = values.getNonIndexedValues();
+        UPC2.WithdrawEventResponse event = new UPC2.WithdrawEventResponse();
+        event.log = log;
+        event.id = (BigInteger) values.getIndexedValues().get(0).getValue();
+        event.fullWithdrawal = (Boolean) nonIndexed.get(0).getValue();
+        event.clientAmount = (BigInteger) nonIndexed.get(1).getValue();
+        event.hubAmount = (BigInteger) nonIndexed.get(2).getValue();
+        event.clientDeposit = (BigInteger) nonIndexed.get(3).getValue();
+        event.hubDeposit = (BigInteger) nonIndexed.get(4).getValue();
+        event.clientPrevCredit = (BigInteger) nonIndexed.get(5).getValue();
+        event.hubPrevCredit = (BigInteger) nonIndexed.get(6).getValue();
+        return event;
+    }
+
+    private static EventValues extract(Event event, Log log){
+        EventValues values = Contract.staticExtractEventParameters(event, log);
+        if(values == null){
+            throw new IllegalArgumentException("Log is not a " + event.getName() + " event");
+        }
+        return values;
+    }
+}
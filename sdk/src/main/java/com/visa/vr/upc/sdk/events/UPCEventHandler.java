@@ -2,56 +2,98 @@ package com.visa.vr.upc.sdk.events;
 
 import com.visa.vr.upc.sdk.generated.UPC2;
 
+import java.util.concurrent.RejectedExecutionException;
+
 /**
  * Abstract class that provides functions to handle events. Each event should be handled only once.
+ *
+ * By default, events are handled on the calling thread. If an {@link OrderedEventDispatcher} is given, events are
+ * handed off to it instead, so that events of one channel are handled in order while channels are handled in parallel.
+ * An event that the dispatcher rejects is unmarked with {@link IUPCHandledEvents#unmarkHandled} and the
+ * {@link RejectedExecutionException} is rethrown. The subscriber factories in {@code events.callback} catch it and log
+ * it, since the live subscription does not redeliver the event; it is only handled if the logs are replayed, e.g. by a
+ * watcher started again from an earlier block.
  */
 public abstract class UPCEventHandler {
 
     private final IUPCHandledEvents upcHandledEvents;
 
+    private final OrderedEventDispatcher dispatcher;
+
     public UPCEventHandler(IUPCHandledEvents upcHandledEvents){
+        this(upcHandledEvents, null);
+    }
+
+    /**
+     * Constructor that handles events asynchronously.
+     * @param upcHandledEvents
+     * @param dispatcher the dispatcher to hand events off to, or null to handle events on the calling thread
+     */
+    public UPCEventHandler(IUPCHandledEvents upcHandledEvents, OrderedEventDispatcher dispatcher){
         this.upcHandledEvents = upcHandledEvents;
+        this.dispatcher = dispatcher;
     }
 
     public void handleDeposit(UPC2.DepositEventResponse event){
-        if(!upcHandledEvents.isDepositHandled(event.log.getTransactionHash())){
-            internalHandleDeposit(event);
+        String hash = event.log.getTransactionHash();
+        if(!upcHandledEvents.isDepositHandled(hash)){
+            dispatch(event.id.longValue(), () -> internalHandleDeposit(event), IUPCHandledEvents.Kind.DEPOSIT, hash);
         }
     }
 
     public void handleSetClosing(UPC2.SetClosingEventResponse event){
-        if(!upcHandledEvents.isSetClosingHandled(event.log.getTransactionHash())){
-            internalHandleSetClosing(event);
+        String hash = event.log.getTransactionHash();
+        if(!upcHandledEvents.isSetClosingHandled(hash)){
+            dispatch(event.id.longValue(), () -> internalHandleSetClosing(event), IUPCHandledEvents.Kind.SET_CLOSING, hash);
         }
     }
 
     public void handleClose(UPC2.CloseEventResponse event){
-        if(!upcHandledEvents.isCloseHandled(event.log.getTransactionHash())){
-            internalHandleClose(event);
+        String hash = event.log.getTransactionHash();
+        if(!upcHandledEvents.isCloseHandled(hash)){
+            dispatch(event.id.longValue(), () -> internalHandleClose(event), IUPCHandledEvents.Kind.CLOSE, hash);
         }
     }
 
     public void handleDeployPromise(UPC2.DeployPromiseEventResponse event){
-        if(!upcHandledEvents.isDeployPromiseHandled(event.log.getTransactionHash())){
-            internalHandleDeployPromise(event);
+        // A batch registration emits one event per promise in the same transaction
+        String key = event.log.getTransactionHash() + ":" + event.log.getLogIndexRaw();
+        if(!upcHandledEvents.isDeployPromiseHandled(key)){
+            dispatch(event.id.longValue(), () -> internalHandleDeployPromise(event), IUPCHandledEvents.Kind.DEPLOY_PROMISE, key);
         }
     }
 
     public void handleWithdrawRequest(UPC2.WithdrawRequestEventResponse event){
-        if(!upcHandledEvents.isWithdrawRequestHandled(event.log.getTransactionHash())){
-            internalHandleWithdrawRequest(event);
+        String hash = event.log.getTransactionHash();
+        if(!upcHandledEvents.isWithdrawRequestHandled(hash)){
+            dispatch(event.id.longValue(), () -> internalHandleWithdrawRequest(event), IUPCHandledEvents.Kind.WITHDRAW_REQUEST, hash);
         }
     }
 
     public void handleWithdraw(UPC2.WithdrawEventResponse event){
-        if(!upcHandledEvents.isWithdrawalHandled(event.log.getTransactionHash())){
-            internalHandleWithdraw(event);
+        String hash = event.log.getTransactionHash();
+        if(!upcHandledEvents.isWithdrawalHandled(hash)){
+            dispatch(event.id.longValue(), () -> internalHandleWithdraw(event), IUPCHandledEvents.Kind.WITHDRAWAL, hash);
         }
     }
 
     public void closeChannel(long channelId){
         if(!upcHandledEvents.isChannelClosing(channelId)){
-            internalCloseChannel(channelId);
+            dispatch(channelId, () -> internalCloseChannel(channelId), IUPCHandledEvents.Kind.CHANNEL_CLOSING, Long.toString(channelId));
+        }
+    }
+
+    private void dispatch(long channelId, Runnable task, IUPCHandledEvents.Kind kind, String key){
+        if(dispatcher == null){
+            task.run();
+            return;
+        }
+        try {
+            dispatcher.dispatch(channelId, task);
+        } catch (RejectedExecutionException e) {
+            // The event was marked as handled before it was dispatched, so it would be dropped if the logs are replayed
+            upcHandledEvents.unmarkHandled(kind, key);
+            throw e;
         }
     }
 
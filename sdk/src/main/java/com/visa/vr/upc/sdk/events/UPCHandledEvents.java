@@ -50,8 +50,8 @@ public class UPCHandledEvents implements IUPCHandledEvents {
         return this.handledSetClosings.putIfAbsent(hash, true) != null;
     }
 
-    public Boolean isDeployPromiseHandled(String hash){
-        return this.handledDeployedPromises.putIfAbsent(hash, true) != null;
+    public Boolean isDeployPromiseHandled(String key){
+        return this.handledDeployedPromises.putIfAbsent(key, true) != null;
     }
 
     @Override
@@ -63,4 +63,31 @@ public class UPCHandledEvents implements IUPCHandledEvents {
         return this.handledWithdrawals.putIfAbsent(hash, true) != null;
     }
 
+    @Override
+    public void unmarkHandled(Kind kind, String key) {
+        switch (kind) {
+            case CHANNEL_CLOSING:
+                closingChannels.remove(Long.parseLong(key));
+                break;
+            case DEPOSIT:
+                handledDeposits.remove(key);
+                break;
+            case CLOSE:
+                handledCloses.remove(key);
+                break;
+            case SET_CLOSING:
+                handledSetClosings.remove(key);
+                break;
+            case DEPLOY_PROMISE:
+                handledDeployedPromises.remove(key);
+                break;
+            case WITHDRAW_REQUEST:
+                handledWithdrawRequests.remove(key);
+                break;
+            case WITHDRAWAL:
+                handledWithdrawals.remove(key);
+                break;
+        }
+    }
+
 }
@@ -2,10 +2,13 @@ package com.visa.vr.upc.sdk.events.callback;
 
 import com.visa.vr.upc.sdk.events.UPCEventHandler;
 import com.visa.vr.upc.sdk.generated.UPC2;
+import com.visa.vr.upc.sdk.logging.EventLogger;
 import io.reactivex.subscribers.DisposableSubscriber;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.concurrent.RejectedExecutionException;
+
 /**
  * A factoy that creates {@link DisposableSubscriber}'s for close events.
  */
@@ -15,6 +18,8 @@ public class DefaultCloseSubscriberFactory implements IDisposableSubscriberFacto
 
     private final Logger logger = LoggerFactory.getLogger(this.getClass());
 
+    private final EventLogger events = EventLogger.getLogger(this.getClass());
+
     public DefaultCloseSubscriberFactory(UPCEventHandler eventHandler) {
         this.eventHandler = eventHandler;
     }
@@ -22,16 +27,18 @@ public class DefaultCloseSubscriberFactory implements IDisposableSubscriberFacto
     private class CloseEventSubscriber extends DisposableSubscriber<UPC2.CloseEventResponse> {
         @Override
         public void onNext(UPC2.CloseEventResponse closeEventResponse) {
-            logger.info("Subscriber hit close event");
-            eventHandler.handleClose(closeEventResponse);
+            events.debug("subscriber.close").with("tx", () -> closeEventResponse.log.getTransactionHash()).log();
+            try {
+                eventHandler.handleClose(closeEventResponse);
+            } catch (RejectedExecutionException e) {
+                // Throwing would terminate the subscription; the dispatcher counts the rejected event
+                events.info("subscriber.close.rejected").with("tx", () -> closeEventResponse.log.getTransactionHash()).with("reason", e.getMessage()).log();
+            }
         }
 
         @Override
         public void onError(Throwable throwable) {
-            logger.info("Close error");
-
-            throwable.printStackTrace();
-
+            events.error("subscriber.close", throwable).log();
         }
 
         @Override
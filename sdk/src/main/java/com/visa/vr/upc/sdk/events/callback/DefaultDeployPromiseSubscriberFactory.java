@@ -2,11 +2,14 @@ package com.visa.vr.upc.sdk.events.callback;
 
 import com.visa.vr.upc.sdk.events.UPCEventHandler;
 import com.visa.vr.upc.sdk.generated.UPC2;
+import com.visa.vr.upc.sdk.logging.EventLogger;
 import io.reactivex.subscribers.DisposableSubscriber;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.concurrent.RejectedExecutionException;
+
 /**
  * A factoy that creates {@link DisposableSubscriber}'s for deploy promise events.
  */
@@ -16,6 +19,8 @@ public class DefaultDeployPromiseSubscriberFactory implements IDisposableSubscri
 
     private final Logger logger = LoggerFactory.getLogger(this.getClass());
 
+    private final EventLogger events = EventLogger.getLogger(this.getClass());
+
     public DefaultDeployPromiseSubscriberFactory(UPCEventHandler eventHandler) {
         this.eventHandler = eventHandler;
     }
@@ -23,16 +28,18 @@ public class DefaultDeployPromiseSubscriberFactory implements IDisposableSubscri
     private class DeployPromiseEventSubscriber extends DisposableSubscriber<UPC2.DeployPromiseEventResponse> {
         @Override
         public void onNext(UPC2.DeployPromiseEventResponse deployPromiseEventResponse) {
-            logger.info("Subscriber hit deploy promise event event");
-            eventHandler.handleDeployPromise(deployPromiseEventResponse);
+            events.debug("subscriber.deploy_promise").with("tx", () -> deployPromiseEventResponse.log.getTransactionHash()).log();
+            try {
+                eventHandler.handleDeployPromise(deployPromiseEventResponse);
+            } catch (RejectedExecutionException e) {
+                // Throwing would terminate the subscription; the dispatcher counts the rejected event
+                events.info("subscriber.deploy_promise.rejected").with("tx", () -> deployPromiseEventResponse.log.getTransactionHash()).with("reason", e.getMessage()).log();
+            }
         }
 
         @Override
         public void onError(Throwable throwable) {
-            logger.info("Deploy promise error");
-            throwable.printStackTrace();
-            logger.info("ERROR: {} ::: ", throwable, throwable.getCause());
-
+            events.error("subscriber.deploy_promise", throwable).log();
         }
 
         @Override
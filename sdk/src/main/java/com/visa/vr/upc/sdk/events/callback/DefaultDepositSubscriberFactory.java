@@ -2,10 +2,13 @@ package com.visa.vr.upc.sdk.events.callback;
 
 import com.visa.vr.upc.sdk.events.UPCEventHandler;
 import com.visa.vr.upc.sdk.generated.UPC2;
+import com.visa.vr.upc.sdk.logging.EventLogger;
 import io.reactivex.subscribers.DisposableSubscriber;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.concurrent.RejectedExecutionException;
+
 /**
  * A factoy that creates {@link DisposableSubscriber}'s for deposit events.
  */
@@ -15,6 +18,8 @@ public class DefaultDepositSubscriberFactory implements IDisposableSubscriberFac
 
     private final Logger logger = LoggerFactory.getLogger(this.getClass());
 
+    private final EventLogger events = EventLogger.getLogger(this.getClass());
+
     public DefaultDepositSubscriberFactory(UPCEventHandler eventHandler) {
         this.eventHandler = eventHandler;
     }
@@ -22,15 +27,18 @@ public class DefaultDepositSubscriberFactory implements IDisposableSubscriberFac
     private class DepositEventSubscriber extends DisposableSubscriber<UPC2.DepositEventResponse> {
         @Override
         public void onNext(UPC2.DepositEventResponse depositEventResponse) {
-            logger.info("Subscriber hit deposit event");
-            eventHandler.handleDeposit(depositEventResponse);
+            events.debug("subscriber.deposit").with("tx", () -> depositEventResponse.log.getTransactionHash()).log();
+            try {
+                eventHandler.handleDeposit(depositEventResponse);
+            } catch (RejectedExecutionException e) {
+                // Throwing would terminate the subscription; the dispatcher counts the rejected event
+                events.info("subscriber.deposit.rejected").with("tx", () -> depositEventResponse.log.getTransactionHash()).with("reason", e.getMessage()).log();
+            }
         }
 
         @Override
         public void onError(Throwable throwable) {
-            logger.info("Deposit error");
-
-            throwable.printStackTrace();
+            events.error("subscriber.deposit", throwable).log();
         }
 
         @Override
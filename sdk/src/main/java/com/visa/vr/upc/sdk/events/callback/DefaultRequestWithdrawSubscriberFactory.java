@@ -2,10 +2,13 @@ package com.visa.vr.upc.sdk.events.callback;
 
 import com.visa.vr.upc.sdk.events.UPCEventHandler;
 import com.visa.vr.upc.sdk.generated.UPC2;
+import com.visa.vr.upc.sdk.logging.EventLogger;
 import io.reactivex.subscribers.DisposableSubscriber;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.concurrent.RejectedExecutionException;
+
 /**
  * A factoy that creates {@link DisposableSubscriber}'s for withdraw request events.
  */
@@ -15,6 +18,8 @@ public class DefaultRequestWithdrawSubscriberFactory implements IDisposableSubsc
 
     private final Logger logger = LoggerFactory.getLogger(this.getClass());
 
+    private final EventLogger events = EventLogger.getLogger(this.getClass());
+
     public DefaultRequestWithdrawSubscriberFactory(UPCEventHandler eventHandler) {
 
         this.eventHandler = eventHandler;
@@ -23,16 +28,18 @@ public class DefaultRequestWithdrawSubscriberFactory implements IDisposableSubsc
     private class WithdrawRequestEventSubscriber extends DisposableSubscriber<UPC2.WithdrawRequestEventResponse> {
         @Override
         public void onNext(UPC2.WithdrawRequestEventResponse withdrawRequestEventResponse) {
-            logger.info("Subscriber hit withdraw request event");
-            eventHandler.handleWithdrawRequest(withdrawRequestEventResponse);
+            events.debug("subscriber.withdraw_request").with("tx", () -> withdrawRequestEventResponse.log.getTransactionHash()).log();
+            try {
+                eventHandler.handleWithdrawRequest(withdrawRequestEventResponse);
+            } catch (RejectedExecutionException e) {
+                // Throwing would terminate the subscription; the dispatcher counts the rejected event
+                events.info("subscriber.withdraw_request.rejected").with("tx", () -> withdrawRequestEventResponse.log.getTransactionHash()).with("reason", e.getMessage()).log();
+            }
         }
 
         @Override
         public void onError(Throwable throwable) {
-            logger.info("Withdraw request error");
-
-            throwable.printStackTrace();
-
+            events.error("subscriber.withdraw_request", throwable).log();
         }
 
         @Override
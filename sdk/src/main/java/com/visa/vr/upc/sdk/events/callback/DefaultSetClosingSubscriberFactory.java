@@ -2,10 +2,13 @@ package com.visa.vr.upc.sdk.events.callback;
 
 import com.visa.vr.upc.sdk.events.UPCEventHandler;
 import com.visa.vr.upc.sdk.generated.UPC2;
+import com.visa.vr.upc.sdk.logging.EventLogger;
 import io.reactivex.subscribers.DisposableSubscriber;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.concurrent.RejectedExecutionException;
+
 /**
  * A factoy that creates {@link DisposableSubscriber}'s for set closing events.
  */
@@ -15,6 +18,8 @@ public class DefaultSetClosingSubscriberFactory implements IDisposableSubscriber
 
     private final Logger logger = LoggerFactory.getLogger(this.getClass());
 
+    private final EventLogger events = EventLogger.getLogger(this.getClass());
+
     public DefaultSetClosingSubscriberFactory(UPCEventHandler eventHandler) {
         this.eventHandler = eventHandler;
     }
@@ -23,16 +28,18 @@ public class DefaultSetClosingSubscriberFactory implements IDisposableSubscriber
     private class SetClosingEventSubscriber extends DisposableSubscriber<UPC2.SetClosingEventResponse> {
         @Override
         public void onNext(UPC2.SetClosingEventResponse setClosingEventResponse) {
-            logger.info("Subscriber hit close event");
-            eventHandler.handleSetClosing(setClosingEventResponse);
+            events.debug("subscriber.set_closing").with("tx", () -> setClosingEventResponse.log.getTransactionHash()).log();
+            try {
+                eventHandler.handleSetClosing(setClosingEventResponse);
+            } catch (RejectedExecutionException e) {
+                // Throwing would terminate the subscription; the dispatcher counts the rejected event
+                events.info("subscriber.set_closing.rejected").with("tx", () -> setClosingEventResponse.log.getTransactionHash()).with("reason", e.getMessage()).log();
+            }
         }
 
         @Override
         public void onError(Throwable throwable) {
-            logger.info("Set closing error");
-
-            throwable.printStackTrace();
-
+            events.error("subscriber.set_closing", throwable).log();
         }
 
         @Override
@@ -2,10 +2,13 @@ package com.visa.vr.upc.sdk.events.callback;
 
 import com.visa.vr.upc.sdk.events.UPCEventHandler;
 import com.visa.vr.upc.sdk.generated.UPC2;
+import com.visa.vr.upc.sdk.logging.EventLogger;
 import io.reactivex.subscribers.DisposableSubscriber;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.concurrent.RejectedExecutionException;
+
 /**
  * A factoy that creates {@link DisposableSubscriber}'s for withdraw events.
  */
@@ -15,6 +18,8 @@ public class DefaultWithdrawSubscriberFactory implements IDisposableSubscriberFa
 
     private final Logger logger = LoggerFactory.getLogger(this.getClass());
 
+    private final EventLogger events = EventLogger.getLogger(this.getClass());
+
     public DefaultWithdrawSubscriberFactory(UPCEventHandler eventHandler) {
 
         this.eventHandler = eventHandler;
@@ -23,16 +28,18 @@ public class DefaultWithdrawSubscriberFactory implements IDisposableSubscriberFa
     private class WithdrawEventSubscriber extends DisposableSubscriber<UPC2.WithdrawEventResponse> {
         @Override
         public void onNext(UPC2.WithdrawEventResponse withdrawEventResponse) {
-            logger.info("Subscriber hit withdraw event");
-            eventHandler.handleWithdraw(withdrawEventResponse);
+            events.debug("subscriber.withdraw").with("tx", () -> withdrawEventResponse.log.getTransactionHash()).log();
+            try {
+                eventHandler.handleWithdraw(withdrawEventResponse);
+            } catch (RejectedExecutionException e) {
+                // Throwing would terminate the subscription; the dispatcher counts the rejected event
+                events.info("subscriber.withdraw.rejected").with("tx", () -> withdrawEventResponse.log.getTransactionHash()).with("reason", e.getMessage()).log();
+            }
         }
 
         @Override
         public void onError(Throwable throwable) {
-            logger.info("Withdraw error");
-
-            throwable.printStackTrace();
-
+            events.error("subscriber.withdraw", throwable).log();
         }
 
         @Override
@@ -0,0 +1,225 @@
+package com.visa.vr.upc.sdk.logging;
+
+import com.visa.vr.upc.sdk.metrics.Metrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Logs named events with key/value fields, for paths that run on every payment or contract event. Each event name
+ * is logged at most once per interval; the number of occurrences skipped in between is added as the
+ * {@code suppressed} field of the next line. Fields are given as suppliers and only evaluated if the line is logged.
+ *
+ * A line reads {@code event=receipt.rejected channelId=12 reason=hash suppressed=41}.
+ *
+ * Errors are also counted in {@link Metrics#ERROR}, tagged with the event name and exception type, whether or not
+ * they are logged.
+ */
+public final class EventLogger {
+
+    /**
+     * The default minimum time between two lines of the same event.
+     */
+    public static final long DEFAULT_INTERVAL_MILLIS = 1000;
+
+    private static final Event NOOP_EVENT = new Event(null, null, null, 0);
+
+    private final Logger log;
+
+    private final long intervalNanos;
+
+    private final ConcurrentHashMap<String, RateLimit> limits = new ConcurrentHashMap<>();
+
+    /**
+     * @param log the logger to write to
+     * @param intervalMillis the minimum time between two lines of the same event, 0 to log every occurrence
+     */
+    public EventLogger(Logger log, long intervalMillis) {
+        if(intervalMillis < 0){
+            throw new IllegalArgumentException("Interval must not be negative");
+        }
+        this.log = log;
+        this.intervalNanos = TimeUnit.MILLISECONDS.toNanos(intervalMillis);
+    }
+
+    /**
+     * Returns an event logger writing to the logger of the given class, with the default interval.
+     * @param type
+     * @return
+     */
+    public static EventLogger getLogger(Class<?> type) {
+        return new EventLogger(LoggerFactory.getLogger(type), DEFAULT_INTERVAL_MILLIS);
+    }
+
+    /**
+     * Starts a debug line. Nothing is evaluated if debug is disabled or the event was logged within the interval.
+     * @param event
+     * @return
+     */
+    public Event debug(String event) {
+        if(!log.isDebugEnabled()){
+            return NOOP_EVENT;
+        }
+        return start(Level.DEBUG, event, null);
+    }
+
+    /**
+     * Starts an info line, rate limited like {@link #debug(String)}.
+     * @param event
+     * @return
+     */
+    public Event info(String event) {
+        if(!log.isInfoEnabled()){
+            return NOOP_EVENT;
+        }
+        return start(Level.INFO, event, null);
+    }
+
+    /**
+     * Counts an error in {@link Metrics#ERROR} and starts a warn line with the exception message. The stack trace is
+     * only logged if debug is enabled.
+     * @param event
+     * @param error
+     * @return
+     */
+    public Event error(String event, Throwable error) {
+        Metrics.get().increment(Metrics.ERROR, "event", event, "cause", error.getClass().getSimpleName());
+        if(!log.isWarnEnabled()){
+            return NOOP_EVENT;
+        }
+        return start(Level.WARN, event, error).with("error", error::getMessage);
+    }
+
+    private Event start(Level level, String event, Throwable error) {
+        long suppressed = acquire(event);
+        if(suppressed < 0){
+            return NOOP_EVENT;
+        }
+        return new Event(this, level, error, suppressed).with("event", event);
+    }
+
+    /**
+     * @return the number of occurrences suppressed since the last line of the event, or -1 if this one is suppressed
+     */
+    private long acquire(String event) {
+        if(intervalNanos == 0){
+            return 0;
+        }
+        RateLimit limit = limits.computeIfAbsent(event, e -> new RateLimit());
+        long now = System.nanoTime();
+        long next = limit.next.get();
+        if(now - next >= 0 && limit.next.compareAndSet(next, now + intervalNanos)){
+            return limit.suppressed.getAndSet(0);
+        }
+        limit.suppressed.incrementAndGet();
+        return -1;
+    }
+
+    private void write(Level level, String line, Throwable error) {
+        switch (level) {
+            case DEBUG:
+                log.debug(line);
+                break;
+            case INFO:
+                log.info(line);
+                break;
+            default:
+                if(log.isDebugEnabled()){
+                    log.warn(line, error);
+                } else {
+                    log.warn(line);
+                }
+        }
+    }
+
+    private enum Level {
+        DEBUG, INFO, WARN
+    }
+
+    private static final class RateLimit {
+        // Starts in the past, so the first occurrence is logged
+        private final AtomicLong next = new AtomicLong(System.nanoTime());
+
+        private final AtomicLong suppressed = new AtomicLong();
+    }
+
+    /**
+     * A line being built. Finish it with {@link #log()}.
+     */
+    public static final class Event {
+        private final EventLogger logger;
+
+        private final Level level;
+
+        private final Throwable error;
+
+        private final long suppressed;
+
+        private final StringBuilder line;
+
+        private Event(EventLogger logger, Level level, Throwable error, long suppressed) {
+            this.logger = logger;
+            this.level = level;
+            this.error = error;
+            this.suppressed = suppressed;
+            this.line = logger == null ? null : new StringBuilder(64);
+        }
+
+        /**
+         * Adds a field.
+         * @param key
+         * @param value
+         * @return
+         */
+        public Event with(String key, long value) {
+            if(line != null){
+                separate().append(key).append('=').append(value);
+            }
+            return this;
+        }
+
+        /**
+         * Adds a field.
+         * @param key
+         * @param value
+         * @return
+         */
+        public Event with(String key, String value) {
+            if(line != null){
+                separate().append(key).append('=').append(value);
+            }
+            return this;
+        }
+
+        /**
+         * Adds a field, evaluated only if the line is logged.
+         * @param key
+         * @param value
+         * @return
+         */
+        public Event with(String key, Supplier<?> value) {
+            if(line != null){
+                separate().append(key).append('=').append(value.get());
+            }
+            return this;
+        }
+
+        public void log() {
+            if(line == null){
+                return;
+            }
+            if(suppressed > 0){
+                with("suppressed", suppressed);
+            }
+            logger.write(level, line.toString(), error);
+        }
+
+        private StringBuilder separate() {
+            return line.length() == 0 ? line : line.append(' ');
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package com.visa.vr.upc.sdk.metrics;
+
+/**
+ * A minimal metrics SPI, so the SDK can be instrumented without depending on a metrics library. The three methods map
+ * directly onto Micrometer: {@link #increment} to a {@code Counter}, {@link #recordNanos} to a {@code Timer} and
+ * {@link #recordValue} to a {@code DistributionSummary}, with the tags passed to {@code Tags.of(String...)}.
+ *
+ * Tags are given as alternating keys and values. Implementations must be thread safe and should not block.
+ * The metric names are the constants of {@link Metrics}.
+ */
+public interface IMetrics {
+
+    /**
+     * Increments a counter by one.
+     * @param name
+     * @param tags alternating tag keys and values
+     */
+    void increment(String name, String... tags);
+
+    /**
+     * Records a duration.
+     * @param name
+     * @param nanos
+     * @param tags alternating tag keys and values
+     */
+    void recordNanos(String name, long nanos, String... tags);
+
+    /**
+     * Records a value into a distribution, e.g. a size or an amount of gas.
+     * @param name
+     * @param value
+     * @param tags alternating tag keys and values
+     */
+    void recordValue(String name, double value, String... tags);
+}
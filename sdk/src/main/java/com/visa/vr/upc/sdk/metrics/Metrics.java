@@ -0,0 +1,122 @@
+package com.visa.vr.upc.sdk.metrics;
+
+/**
+ * Holds the {@link IMetrics} the SDK reports to, and the names of the metrics it reports. Nothing is recorded until
+ * an implementation is set with {@link #set(IMetrics)}.
+ */
+public final class Metrics {
+
+    /**
+     * Timer of {@code StatefulUPCService.createPromise}.
+     */
+    public static final String PROMISE_CREATE = "upc.promise.create";
+
+    /**
+     * Timer of {@code StatefulUPCService.checkPromise}, tagged with {@code valid}.
+     */
+    public static final String PROMISE_CHECK = "upc.promise.check";
+
+    /**
+     * Timer of {@code StatefulUPCService.createReceipt}.
+     */
+    public static final String RECEIPT_CREATE = "upc.receipt.create";
+
+    /**
+     * Timer of {@code StatefulUPCService.checkReceipt}, tagged with {@code valid}.
+     */
+    public static final String RECEIPT_CHECK = "upc.receipt.check";
+
+    /**
+     * Timer of building a Merkle accumulator.
+     */
+    public static final String ACCUMULATOR_BUILD = "upc.accumulator.build";
+
+    /**
+     * Distribution of the number of keys of the Merkle accumulators built.
+     */
+    public static final String ACCUMULATOR_SIZE = "upc.accumulator.size";
+
+    /**
+     * Timer of hashing and signing a promise or receipt, tagged with {@code type}.
+     */
+    public static final String SIGN = "upc.sign";
+
+    /**
+     * Timer of recovering and checking the signer of a promise or receipt, tagged with {@code type} and {@code valid}.
+     */
+    public static final String VERIFY = "upc.verify";
+
+    /**
+     * Timer from submitting a UPC transaction to its receipt, tagged with {@code function} and {@code status}.
+     */
+    public static final String TX_DURATION = "upc.tx.duration";
+
+    /**
+     * Distribution of the gas used by mined UPC transactions, tagged with {@code function}.
+     */
+    public static final String TX_GAS_USED = "upc.tx.gas.used";
+
+    /**
+     * Counter of failed UPC transactions, tagged with {@code function} and {@code cause}.
+     */
+    public static final String TX_FAILURE = "upc.tx.failure";
+
+    /**
+     * Distribution of how many blocks the log source was behind the chain head when it polled.
+     */
+    public static final String WATCHER_LAG = "upc.watcher.lag";
+
+    /**
+     * Timer of event handlers run by an {@code OrderedEventDispatcher}, tagged with {@code status}.
+     */
+    public static final String EVENT_HANDLER = "upc.event.handler";
+
+    /**
+     * Distribution of the depth of the lane an event is dispatched to, before it is queued.
+     */
+    public static final String EVENT_QUEUE_DEPTH = "upc.event.queue.depth";
+
+    /**
+     * Counter of events rejected by a full lane of an {@code OrderedEventDispatcher}.
+     */
+    public static final String EVENT_REJECTED = "upc.event.rejected";
+
+    /**
+     * Counter of errors reported through {@code EventLogger.error}, tagged with {@code event} and {@code cause}.
+     */
+    public static final String ERROR = "upc.error";
+
+    /**
+     * Records nothing.
+     */
+    public static final IMetrics NOOP = new IMetrics() {
+        @Override
+        public void increment(String name, String... tags) {
+        }
+
+        @Override
+        public void recordNanos(String name, long nanos, String... tags) {
+        }
+
+        @Override
+        public void recordValue(String name, double value, String... tags) {
+        }
+    };
+
+    private static volatile IMetrics metrics = NOOP;
+
+    private Metrics() {
+    }
+
+    public static IMetrics get() {
+        return metrics;
+    }
+
+    /**
+     * Sets the implementation all SDK metrics are reported to.
+     * @param metrics the implementation, or null to stop reporting
+     */
+    public static void set(IMetrics metrics) {
+        Metrics.metrics = metrics != null ? metrics : NOOP;
+    }
+}
@@ -0,0 +1,43 @@
+package com.visa.vr.upc.sdk.simulation;
+
+/**
+ * The outcome of a simulated contract call. Failures carry the reason the contract would revert with.
+ */
+public class SimulationResult {
+
+    private static final SimulationResult SUCCESS = new SimulationResult(true, null);
+
+    private final boolean success;
+
+    private final String reason;
+
+    private SimulationResult(boolean success, String reason) {
+        this.success = success;
+        this.reason = reason;
+    }
+
+    public static SimulationResult success() {
+        return SUCCESS;
+    }
+
+    public static SimulationResult failure(String reason) {
+        return new SimulationResult(false, reason);
+    }
+
+    public boolean isSuccess() {
+        return success;
+    }
+
+    /**
+     * Returns the revert reason, or null if the call succeeds.
+     * @return
+     */
+    public String getReason() {
+        return reason;
+    }
+
+    @Override
+    public String toString() {
+        return success ? "success" : "failure: " + reason;
+    }
+}
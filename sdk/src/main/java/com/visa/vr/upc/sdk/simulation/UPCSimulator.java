@@ -0,0 +1,483 @@
+package com.visa.vr.upc.sdk.simulation;
+
+import com.visa.vr.upc.sdk.AddressUtils;
+import com.visa.vr.upc.sdk.MerkleAccumulator;
+import com.visa.vr.upc.sdk.PromiseService;
+import com.visa.vr.upc.sdk.domain.Bytecode;
+import com.visa.vr.upc.sdk.domain.Promise;
+import com.visa.vr.upc.sdk.domain.Receipt;
+import com.visa.vr.upc.sdk.domain.Signature;
+import com.visa.vr.upc.sdk.domain.UPCState;
+import com.visa.vr.upc.sdk.generated.UPC2;
+import org.web3j.crypto.Keys;
+import org.web3j.crypto.Sign;
+
+import java.math.BigInteger;
+import java.security.SignatureException;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * A local model of a UPC2 contract's state machine, for checking whether a call would succeed without asking the node.
+ *
+ * The model is hydrated from the contract state and mirrors the contract's checks in the same order, with the same
+ * revert reasons where the contract gives one: channel status, receipt ids, signatures, accumulator membership and the
+ * unresolved promise limit.
+ * The apply methods also update the model as the contract would, so a sequence of calls can be planned on a copy.
+ * Token balances and the amounts promises resolve to are not known locally and are not modelled.
+ */
+public class UPCSimulator {
+
+    /**
+     * The channel status as in the contract, in the same order.
+     */
+    public enum Status {ACTIVE, PAUSE, CLOSING, CLOSED}
+
+    public static final int UNRESOLVED_PROMISE_LIMIT = 2000;
+
+    private final String channelAddress;
+
+    private final long chainId;
+
+    private final long channelId;
+
+    private final long claimDuration;
+
+    private final PartyState hub;
+
+    private final PartyState client;
+
+    private final Set<String> deployedPromises;
+
+    private Status status;
+
+    private long expiry;
+
+    private int unresolvedPromiseCount;
+
+    private long timestamp;
+
+    private UPCSimulator(String channelAddress, long chainId, long channelId, long claimDuration, PartyState hub, PartyState client,
+                         Set<String> deployedPromises, Status status, long expiry, int unresolvedPromiseCount, long timestamp) {
+        this.channelAddress = channelAddress;
+        this.chainId = chainId;
+        this.channelId = channelId;
+        this.claimDuration = claimDuration;
+        this.hub = hub;
+        this.client = client;
+        this.deployedPromises = deployedPromises;
+        this.status = status;
+        this.expiry = expiry;
+        this.unresolvedPromiseCount = unresolvedPromiseCount;
+        this.timestamp = timestamp;
+    }
+
+    /**
+     * Builds a model from the contract state. The block timestamp starts at the current time.
+     * @param channelAddress the address of the UPC contract, used to derive promise addresses
+     * @param params the channel params, from {@link UPC2#getParams()}
+     * @param state the channel state, from {@link com.visa.vr.upc.sdk.UPCService#getState(UPC2)}
+     * @param unresolvedPromiseCount the number of registered promises, from {@link UPC2#getUnresolvedPromises()}
+     * @return
+     */
+    public static UPCSimulator fromState(String channelAddress, UPC2.ChannelParams params, UPCState state, int unresolvedPromiseCount) {
+        if(state.getContractStatus() < 0 || state.getContractStatus() >= Status.values().length){
+            throw new IllegalArgumentException("Unknown contract status " + state.getContractStatus());
+        }
+        return new UPCSimulator(channelAddress, params.chainId.longValue(), params.cid.longValue(), params.claimDuration.longValue(),
+                new PartyState(state.getHub()), new PartyState(state.getClient()), new HashSet<>(),
+                Status.values()[state.getContractStatus()], state.getExpiry(), unresolvedPromiseCount, System.currentTimeMillis() / 1000);
+    }
+
+    /**
+     * Returns an independent copy of this model, e.g. to try out a sequence of calls.
+     * @return
+     */
+    public UPCSimulator copy() {
+        return new UPCSimulator(channelAddress, chainId, channelId, claimDuration, new PartyState(hub), new PartyState(client),
+                new HashSet<>(deployedPromises), status, expiry, unresolvedPromiseCount, timestamp);
+    }
+
+    /**
+     * Checks registerReceipt.
+     * @param sender the address sending the transaction
+     * @param receipt the receipt signed by the other party
+     * @return
+     */
+    public SimulationResult checkRegisterReceipt(String sender, Receipt receipt) {
+        SimulationResult result = checkParticipant(sender);
+        if(!result.isSuccess()){
+            return result;
+        }
+        if(status == Status.CLOSED){
+            return SimulationResult.failure("Channel is not active or paused");
+        }
+        PartyState thisParty = getParty(sender);
+        BigInteger rid = BigInteger.valueOf(receipt.getReceiptId());
+        if(!(rid.compareTo(thisParty.rid) > 0 || (thisParty.rid.signum() == 0 && rid.signum() == 0))){
+            return SimulationResult.failure("Receipt id is not greater than the registered receipt id");
+        }
+        if(thisParty.receiptRegistered){
+            return SimulationResult.failure("Receipt already registered");
+        }
+        boolean emptyReceipt = rid.signum() == 0 && receipt.getCumulativeCredit().isZero();
+        if(!emptyReceipt && !isSignedBy(getOtherParty(sender).addr, receiptHash(receipt), receipt.getSignature())){
+            return SimulationResult.failure("signature of other-party on receipt does not verify");
+        }
+        return SimulationResult.success();
+    }
+
+    /**
+     * Checks registerReceipt and, if it succeeds, applies it to the model.
+     * @param sender
+     * @param receipt
+     * @return
+     */
+    public SimulationResult registerReceipt(String sender, Receipt receipt) {
+        SimulationResult result = checkRegisterReceipt(sender, receipt);
+        if(result.isSuccess()){
+            PartyState thisParty = getParty(sender);
+            thisParty.rid = BigInteger.valueOf(receipt.getReceiptId());
+            thisParty.credit = receipt.getCumulativeCredit().toBigInteger();
+            thisParty.acc = receipt.getAccumulatorRoot();
+            thisParty.receiptRegistered = true;
+            setPaused();
+        }
+        return result;
+    }
+
+    /**
+     * Checks registerPromise.
+     * @param sender the address sending the transaction
+     * @param promise
+     * @param proof the membership proof of the promise in the sender's registered accumulator, as from
+     *              {@link MerkleAccumulator#getInclusionProof(byte[])}; only checked if the promise needs one
+     * @return
+     */
+    public SimulationResult checkRegisterPromise(String sender, Promise promise, byte[] proof) {
+        return checkRegisterPromise(sender, promise, proof, PromiseService.getCreate2Address(channelAddress, promise.getSalt(), promise.getCompactBytecode()));
+    }
+
+    private SimulationResult checkRegisterPromise(String sender, Promise promise, byte[] proof, String promiseAddress) {
+        SimulationResult result = checkParticipant(sender);
+        if(!result.isSuccess()){
+            return result;
+        }
+        if(status == Status.CLOSED){
+            return SimulationResult.failure("Channel is not active or paused");
+        }
+        if(unresolvedPromiseCount >= UNRESOLVED_PROMISE_LIMIT){
+            return SimulationResult.failure("Unresolved promises array is maxed out.");
+        }
+        boolean fromClient = AddressUtils.isEqual(promise.getSender(), client.addr) && AddressUtils.isEqual(promise.getReceiver(), hub.addr);
+        boolean fromHub = AddressUtils.isEqual(promise.getSender(), hub.addr) && AddressUtils.isEqual(promise.getReceiver(), client.addr);
+        if(!fromClient && !fromHub){
+            return SimulationResult.failure("sender and receiver of promise are not correctly set");
+        }
+        PartyState thisParty = getParty(sender);
+        if(AddressUtils.isEqual(thisParty.addr, promise.getReceiver())){
+            if(!isSignedBy(promise.getSender(), promiseHash(promise, promiseAddress), promise.getSignature())){
+                return SimulationResult.failure("signature of promise sender does not verify");
+            }
+            if(!thisParty.receiptRegistered){
+                return SimulationResult.failure("receipt of the receiver needs to be registered first (to make sure this promise is not being double spent)");
+            }
+            BigInteger rid = BigInteger.valueOf(promise.getReceiptId());
+            boolean needsProof = rid.compareTo(thisParty.rid) < 0 && thisParty.rid.signum() != 0;
+            if(needsProof && (proof == null || !MerkleAccumulator.verifyInclusionProof(thisParty.acc, MerkleAccumulator.keyFromAddress(promiseAddress), proof))){
+                return SimulationResult.failure("membership proof of the promise inside the accumulator not verified");
+            }
+        }
+        if(promise.getCompactBytecode().length() == 0){
+            return SimulationResult.failure("Create2: bytecode length is zero");
+        }
+        if(deployedPromises.contains(promiseAddress.toLowerCase())){
+            return SimulationResult.failure("Create2: Failed on deploy");
+        }
+        return checkSetClosing();
+    }
+
+    /**
+     * Checks registerPromise and, if it succeeds, applies it to the model.
+     * @param sender
+     * @param promise
+     * @param proof
+     * @return
+     */
+    public SimulationResult registerPromise(String sender, Promise promise, byte[] proof) {
+        String promiseAddress = PromiseService.getCreate2Address(channelAddress, promise.getSalt(), promise.getCompactBytecode());
+        SimulationResult result = checkRegisterPromise(sender, promise, proof, promiseAddress);
+        if(result.isSuccess()){
+            deployedPromises.add(promiseAddress.toLowerCase());
+            unresolvedPromiseCount++;
+            setClosing();
+        }
+        return result;
+    }
+
+    /**
+     * Checks withdrawNotClosing. The settlement is checked for underflow, but not against the token balance of the contract.
+     * @param sender the address sending the transaction
+     * @param amount
+     * @return
+     */
+    public SimulationResult checkWithdrawNotClosing(String sender, long amount) {
+        return copy().withdrawNotClosing(sender, amount);
+    }
+
+    /**
+     * Checks withdrawNotClosing and, if it succeeds, applies it to the model, settling the channel if both parties
+     * agreed to resume off-chain or the channel expired.
+     * @param sender
+     * @param amount
+     * @return
+     */
+    public SimulationResult withdrawNotClosing(String sender, long amount) {
+        SimulationResult result = checkParticipant(sender);
+        if(!result.isSuccess()){
+            return result;
+        }
+        if(status != Status.ACTIVE && status != Status.PAUSE){
+            return SimulationResult.failure("Channel is not active or paused");
+        }
+        PartyState thisParty = getParty(sender);
+        if(!((hub.resumeOffchain || thisParty == hub) && (client.resumeOffchain || thisParty == client)) && timestamp < expiry){
+            thisParty.withdrawAmount = BigInteger.valueOf(amount);
+            thisParty.resumeOffchain = true;
+            setPaused();
+            return SimulationResult.success();
+        }
+        BigInteger hubGain = hub.credit.subtract(hub.prevCredit);
+        BigInteger clientGain = client.credit.subtract(client.prevCredit);
+        BigInteger hubDeposit = hub.deposit.add(hubGain).subtract(clientGain);
+        BigInteger clientDeposit = client.deposit.add(clientGain).subtract(hubGain);
+        if(hubGain.signum() < 0 || clientGain.signum() < 0 || hubDeposit.signum() < 0 || clientDeposit.signum() < 0){
+            return SimulationResult.failure("Arithmetic underflow in settlement");
+        }
+        thisParty.withdrawAmount = BigInteger.valueOf(amount);
+        thisParty.resumeOffchain = true;
+        hub.deposit = hubDeposit;
+        client.deposit = clientDeposit;
+        for (PartyState party: new PartyState[]{hub, client}) {
+            if(party.deposit.signum() > 0 && party.withdrawAmount.compareTo(party.deposit) <= 0){
+                party.deposit = party.deposit.subtract(party.withdrawAmount);
+            }
+        }
+        resumeChannel();
+        setPaused();
+        return SimulationResult.success();
+    }
+
+    /**
+     * Checks close.
+     * @param sender the address sending the transaction
+     * @return
+     */
+    public SimulationResult checkClose(String sender) {
+        SimulationResult result = checkParticipant(sender);
+        if(!result.isSuccess()){
+            return result;
+        }
+        if(status == Status.CLOSED){
+            return SimulationResult.failure("Channel is not active or paused");
+        }
+        // setClosing checks the expiry after the body, which closes the channel if the other party already finalized
+        if(getOtherParty(sender).finalizeClose){
+            return SimulationResult.success();
+        }
+        return checkSetClosing();
+    }
+
+    /**
+     * Checks close and, if it succeeds, applies it to the model.
+     * @param sender
+     * @return
+     */
+    public SimulationResult close(String sender) {
+        SimulationResult result = checkClose(sender);
+        if(result.isSuccess()){
+            getParty(sender).finalizeClose = true;
+            if(hub.finalizeClose && client.finalizeClose){
+                status = Status.CLOSED;
+            }
+            // As in the contract, setClosing runs after the body
+            setClosing();
+        }
+        return result;
+    }
+
+    /**
+     * Checks the status requirements of withdrawClosing and resolvePromises. Whether the deposits cover the credits
+     * depends on what the promises resolve to, which is not known locally.
+     * @param sender the address sending the transaction
+     * @return
+     */
+    public SimulationResult checkWithdrawClosing(String sender) {
+        if(!(status == Status.CLOSED || (status == Status.CLOSING && timestamp >= expiry))){
+            return SimulationResult.failure("Channel is not closed");
+        }
+        return checkParticipant(sender);
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public long getExpiry() {
+        return expiry;
+    }
+
+    public int getUnresolvedPromiseCount() {
+        return unresolvedPromiseCount;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    /**
+     * Sets the block timestamp the next calls are simulated at, in seconds.
+     * @param timestamp
+     */
+    public void setTimestamp(long timestamp) {
+        this.timestamp = timestamp;
+    }
+
+    public BigInteger getDeposit(String address) {
+        return getParty(address).deposit;
+    }
+
+    public BigInteger getCredit(String address) {
+        return getParty(address).credit;
+    }
+
+    public BigInteger getReceiptId(String address) {
+        return getParty(address).rid;
+    }
+
+    public boolean isReceiptRegistered(String address) {
+        return getParty(address).receiptRegistered;
+    }
+
+    private SimulationResult checkParticipant(String sender) {
+        if(!AddressUtils.isEqual(sender, hub.addr) && !AddressUtils.isEqual(sender, client.addr)){
+            return SimulationResult.failure("Sender is not a channel participant");
+        }
+        return SimulationResult.success();
+    }
+
+    /**
+     * The check setClosing makes after the body of the call.
+     */
+    private SimulationResult checkSetClosing() {
+        if(status == Status.CLOSING && timestamp >= expiry){
+            return SimulationResult.failure("Expiry has passed");
+        }
+        return SimulationResult.success();
+    }
+
+    private void setClosing() {
+        if(status != Status.CLOSING){
+            expiry = timestamp + claimDuration;
+            status = Status.CLOSING;
+        }
+    }
+
+    private void setPaused() {
+        if(status == Status.ACTIVE){
+            expiry = timestamp + claimDuration;
+            status = Status.PAUSE;
+        }
+    }
+
+    private void resumeChannel() {
+        for (PartyState party: new PartyState[]{hub, client}) {
+            party.resumeOffchain = false;
+            party.receiptRegistered = false;
+            party.withdrawAmount = BigInteger.ZERO;
+            party.prevCredit = party.credit;
+        }
+        status = Status.ACTIVE;
+    }
+
+    private PartyState getParty(String address) {
+        return AddressUtils.isEqual(address, hub.addr) ? hub : client;
+    }
+
+    private PartyState getOtherParty(String address) {
+        return AddressUtils.isEqual(address, hub.addr) ? client : hub;
+    }
+
+    /**
+     * Hashes a receipt with this channel's ids, as the contract does.
+     */
+    private byte[] receiptHash(Receipt receipt) {
+        return PromiseService.hashReceipt(receipt.toBuilder().chainId(chainId).channelId(channelId).build());
+    }
+
+    /**
+     * Hashes a promise with this channel's ids and the promise's derived address, as the contract does.
+     */
+    private byte[] promiseHash(Promise promise, String promiseAddress) {
+        return PromiseService.hashPromise(promise.toBuilder().chainId(chainId).channelId(channelId).address(promiseAddress).build());
+    }
+
+    private static boolean isSignedBy(String address, byte[] hash, Signature signature) {
+        if(signature == null){
+            return false;
+        }
+        try {
+            return AddressUtils.isEqual(address, Keys.getAddress(Sign.signedPrefixedMessageToKey(hash, signature.toSignatureData())));
+        } catch (SignatureException | RuntimeException e) {
+            return false;
+        }
+    }
+
+    private static class PartyState {
+        private final String addr;
+
+        private BigInteger deposit;
+
+        private BigInteger rid;
+
+        private BigInteger credit;
+
+        private BigInteger prevCredit;
+
+        private BigInteger withdrawAmount;
+
+        private boolean receiptRegistered;
+
+        private boolean resumeOffchain;
+
+        private boolean finalizeClose;
+
+        private byte[] acc;
+
+        private PartyState(UPC2.Party party) {
+            this.addr = party.addr;
+            this.deposit = party.deposit;
+            this.rid = party.rid;
+            this.credit = party.credit;
+            this.prevCredit = party.prevCredit;
+            this.withdrawAmount = party.withdrawAmount;
+            this.receiptRegistered = party.receiptRegistered;
+            this.resumeOffchain = party.resumeOffchain;
+            this.finalizeClose = party.finalizeClose;
+            this.acc = party.acc;
+        }
+
+        private PartyState(PartyState party) {
+            this.addr = party.addr;
+            this.deposit = party.deposit;
+            this.rid = party.rid;
+            this.credit = party.credit;
+            this.prevCredit = party.prevCredit;
+            this.withdrawAmount = party.withdrawAmount;
+            this.receiptRegistered = party.receiptRegistered;
+            this.resumeOffchain = party.resumeOffchain;
+            this.finalizeClose = party.finalizeClose;
+            this.acc = party.acc;
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.visa.vr.upc.sdk.store;
+
+import com.visa.vr.upc.sdk.domain.Channel;
+import com.visa.vr.upc.sdk.domain.ChannelStatus;
+import com.visa.vr.upc.sdk.domain.UInt256;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * Writes and reads all the fields of a {@link Channel}.
+ */
+final class ChannelCodec {
+
+    private ChannelCodec() {
+    }
+
+    static void write(DataOutputStream out, Channel channel) throws IOException {
+        int flags = (channel.getHubAddress() != null ? 1 : 0)
+                | (channel.getClientAddress() != null ? 2 : 0)
+                | (channel.getTokenAddress() != null ? 4 : 0)
+                | (channel.getAddress() != null ? 8 : 0)
+                | (channel.getClientCredit() != null ? 16 : 0)
+                | (channel.getHubCredit() != null ? 32 : 0)
+                | (channel.getPrevClientCredit() != null ? 64 : 0)
+                | (channel.getPrevHubCredit() != null ? 128 : 0)
+                | (channel.getClientDeposit() != null ? 256 : 0)
+                | (channel.getHubDeposit() != null ? 512 : 0);
+        out.writeLong(channel.getId());
+        out.writeShort(flags);
+        writeString(out, channel.getHubAddress());
+        writeString(out, channel.getClientAddress());
+        out.writeLong(channel.getChainId());
+        out.writeLong(channel.getClaimDuration());
+        writeString(out, channel.getTokenAddress());
+        out.writeByte(channel.getStatus().ordinal());
+        writeString(out, channel.getAddress());
+        writeAmount(out, channel.getClientCredit());
+        writeAmount(out, channel.getHubCredit());
+        writeAmount(out, channel.getPrevClientCredit());
+        writeAmount(out, channel.getPrevHubCredit());
+        writeAmount(out, channel.getClientDeposit());
+        writeAmount(out, channel.getHubDeposit());
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if(value != null){
+            out.writeUTF(value);
+        }
+    }
+
+    private static void writeAmount(DataOutputStream out, UInt256 amount) throws IOException {
+        if(amount != null){
+            byte[] bytes = new byte[32];
+            amount.writeTo(bytes, 0);
+            out.write(bytes);
+        }
+    }
+
+    static Channel read(DataInputStream in) throws IOException {
+        long id = in.readLong();
+        int flags = in.readUnsignedShort();
+        Channel channel = new Channel(readString(in, flags, 1), readString(in, flags, 2), in.readLong(), in.readLong(), readString(in, flags, 4));
+        channel.setId(id);
+        channel.setStatus(ChannelStatus.values()[in.readUnsignedByte()]);
+        channel.setAddress(readString(in, flags, 8));
+        channel.setClientCredit(readAmount(in, flags, 16));
+        channel.setHubCredit(readAmount(in, flags, 32));
+        channel.setPrevClientCredit(readAmount(in, flags, 64));
+        channel.setPrevHubCredit(readAmount(in, flags, 128));
+        channel.setClientDeposit(readAmount(in, flags, 256));
+        channel.setHubDeposit(readAmount(in, flags, 512));
+        return channel;
+    }
+
+    private static String readString(DataInputStream in, int flags, int flag) throws IOException {
+        return (flags & flag) != 0 ? in.readUTF() : null;
+    }
+
+    private static UInt256 readAmount(DataInputStream in, int flags, int flag) throws IOException {
+        if((flags & flag) == 0){
+            return null;
+        }
+        byte[] amount = new byte[32];
+        in.readFully(amount);
+        return UInt256.fromBytes(amount, 0);
+    }
+}
@@ -0,0 +1,229 @@
+package com.visa.vr.upc.sdk.store;
+
+import com.visa.vr.upc.sdk.domain.Bytecode;
+import com.visa.vr.upc.sdk.domain.StatefulPromise;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+/**
+ * Holds promises that are no longer open (closed, deployed or rejected) in a compact binary form, in memory or in
+ * an append-only file. Bytecode is either dropped, or kept as a reference to its contract binary (see {@link Bytecode})
+ * and the constructor parameters, so each binary is stored once per archive.
+ *
+ * Promises are decoded on every read, so the returned objects are copies. This class is not thread safe.
+ */
+public class PromiseArchive implements Closeable {
+
+    private static final int NO_BYTECODE = 0;
+    private static final int TEMPLATE_BYTECODE = 1;
+
+    private final boolean keepBytecode;
+
+    private final List<String> templates = new ArrayList<>();
+
+    private final HashMap<String, Integer> templateIndexes = new HashMap<>();
+
+    private final HashMap<Long, LinkedHashSet<Long>> idsByChannel = new HashMap<>();
+
+    // Either the records themselves, or their offsets in the file
+    private final HashMap<Long, byte[]> records;
+
+    private final HashMap<Long, Long> offsets;
+
+    private final RandomAccessFile file;
+
+    private PromiseArchive(boolean keepBytecode, RandomAccessFile file) {
+        this.keepBytecode = keepBytecode;
+        this.file = file;
+        this.records = file == null ? new HashMap<>() : null;
+        this.offsets = file == null ? null : new HashMap<>();
+    }
+
+    /**
+     * @param keepBytecode false to drop the bytecode of archived promises
+     * @return an archive that keeps its records in memory
+     */
+    public static PromiseArchive inMemory(boolean keepBytecode) {
+        return new PromiseArchive(keepBytecode, null);
+    }
+
+    /**
+     * Creates an archive that appends its records to a file, and only keeps their offsets in memory. An existing file
+     * is truncated.
+     * @param path
+     * @param keepBytecode false to drop the bytecode of archived promises
+     * @return
+     * @throws IOException
+     */
+    public static PromiseArchive onDisk(Path path, boolean keepBytecode) throws IOException {
+        RandomAccessFile file = new RandomAccessFile(path.toFile(), "rw");
+        file.setLength(0);
+        return new PromiseArchive(keepBytecode, file);
+    }
+
+    /**
+     * Adds or replaces a promise.
+     * @param promise
+     */
+    public void put(StatefulPromise promise) {
+        long id = promise.getPromiseId();
+        byte[] record = encode(promise);
+        if(file == null){
+            records.put(id, record);
+        } else {
+            try {
+                long offset = file.length();
+                file.seek(offset);
+                file.writeInt(record.length);
+                file.write(record);
+                offsets.put(id, offset);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        idsByChannel.computeIfAbsent(promise.getChannelId(), c -> new LinkedHashSet<>()).add(id);
+    }
+
+    /**
+     * Removes a promise, e.g. when it is opened again.
+     * @param promiseId
+     * @return the removed promise, if it was archived
+     */
+    public Optional<StatefulPromise> remove(long promiseId) {
+        Optional<StatefulPromise> promise = get(promiseId);
+        if(promise.isPresent()){
+            if(file == null){
+                records.remove(promiseId);
+            } else {
+                offsets.remove(promiseId);
+            }
+            LinkedHashSet<Long> ids = idsByChannel.get(promise.get().getChannelId());
+            if(ids != null){
+                ids.remove(promiseId);
+            }
+        }
+        return promise;
+    }
+
+    public boolean contains(long promiseId) {
+        return file == null ? records.containsKey(promiseId) : offsets.containsKey(promiseId);
+    }
+
+    public Optional<StatefulPromise> get(long promiseId) {
+        byte[] record;
+        if(file == null){
+            record = records.get(promiseId);
+        } else {
+            Long offset = offsets.get(promiseId);
+            record = offset == null ? null : read(offset);
+        }
+        return record == null ? Optional.empty() : Optional.of(decode(record));
+    }
+
+    /**
+     * @param channelId
+     * @return the archived promises of a channel, in the order they were archived
+     */
+    public List<StatefulPromise> getByChannel(long channelId) {
+        LinkedHashSet<Long> ids = idsByChannel.get(channelId);
+        if(ids == null){
+            return Collections.emptyList();
+        }
+        List<StatefulPromise> promises = new ArrayList<>(ids.size());
+        for (long id: ids) {
+            get(id).ifPresent(promises::add);
+        }
+        return promises;
+    }
+
+    /**
+     * Streams the archived promises of a channel, decoding them one at a time as the stream is consumed. The archive
+     * must not be modified until the stream is consumed.
+     * @param channelId
+     * @return
+     */
+    public Stream<StatefulPromise> streamByChannel(long channelId) {
+        LinkedHashSet<Long> ids = idsByChannel.get(channelId);
+        if(ids == null){
+            return Stream.empty();
+        }
+        return ids.stream().map(this::get).filter(Optional::isPresent).map(Optional::get);
+    }
+
+    public int size() {
+        return file == null ? records.size() : offsets.size();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if(file != null){
+            file.close();
+        }
+    }
+
+    private byte[] read(long offset) {
+        try {
+            file.seek(offset);
+            byte[] record = new byte[file.readInt()];
+            file.readFully(record);
+            return record;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private byte[] encode(StatefulPromise promise) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            PromiseCodec.write(out, promise);
+            writeBytecode(out, promise.getCompactBytecode());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private void writeBytecode(DataOutputStream out, Bytecode bytecode) throws IOException {
+        if(!keepBytecode || bytecode == null){
+            out.writeByte(NO_BYTECODE);
+            return;
+        }
+        Integer index = templateIndexes.get(bytecode.getTemplate());
+        if(index == null){
+            index = templates.size();
+            templates.add(bytecode.getTemplate());
+            templateIndexes.put(bytecode.getTemplate(), index);
+        }
+        out.writeByte(TEMPLATE_BYTECODE);
+        out.writeInt(index);
+        PromiseCodec.writeBytes(out, bytecode.getArgs());
+    }
+
+    private StatefulPromise decode(byte[] record) {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(record))) {
+            StatefulPromise promise = PromiseCodec.read(in);
+            if(in.readUnsignedByte() == TEMPLATE_BYTECODE){
+                String template = templates.get(in.readInt());
+                promise.setBytecode(Bytecode.of(template, PromiseCodec.readBytes(in)));
+            }
+            return promise;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
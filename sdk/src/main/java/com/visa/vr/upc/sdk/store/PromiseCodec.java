@@ -0,0 +1,176 @@
+package com.visa.vr.upc.sdk.store;
+
+import com.visa.vr.upc.sdk.domain.Bytecode;
+import com.visa.vr.upc.sdk.domain.Promise;
+import com.visa.vr.upc.sdk.domain.PromiseStatus;
+import com.visa.vr.upc.sdk.domain.Signature;
+import com.visa.vr.upc.sdk.domain.StatefulPromise;
+import com.visa.vr.upc.sdk.domain.UInt256;
+import org.web3j.crypto.Sign;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes and reads the fields of a {@link StatefulPromise}, except its bytecode, which the callers store in their own
+ * way (see {@link PromiseArchive} and {@link StateSnapshot}).
+ */
+final class PromiseCodec {
+
+    private static final int HAS_SENDER = 1;
+    private static final int HAS_RECEIVER = 2;
+    private static final int HAS_ADDRESS = 4;
+    private static final int HAS_AMOUNT = 8;
+    private static final int HAS_SALT = 16;
+    private static final int HAS_SIGNATURE = 32;
+    private static final int HAS_TYPE = 64;
+    private static final int TRIGGER_CLOSE = 128;
+
+    private static final int NO_BYTECODE = 0;
+    private static final int KNOWN_TEMPLATE = 1;
+    private static final int NEW_TEMPLATE = 2;
+
+    private PromiseCodec() {
+    }
+
+    static void write(DataOutputStream out, StatefulPromise promise) throws IOException {
+        Signature signature = promise.getSignature();
+        int flags = (promise.getSender() != null ? HAS_SENDER : 0)
+                | (promise.getReceiver() != null ? HAS_RECEIVER : 0)
+                | (promise.getAddress() != null ? HAS_ADDRESS : 0)
+                | (promise.getAmount() != null ? HAS_AMOUNT : 0)
+                | (promise.getSalt() != null ? HAS_SALT : 0)
+                | (signature != null ? HAS_SIGNATURE : 0)
+                | (promise.getPromiseType() != null ? HAS_TYPE : 0)
+                | (Boolean.TRUE.equals(promise.getTriggerClose()) ? TRIGGER_CLOSE : 0);
+        out.writeByte(flags);
+        out.writeLong(promise.getPromiseId());
+        out.writeLong(promise.getChannelId());
+        out.writeLong(promise.getChainId());
+        out.writeLong(promise.getReceiptId());
+        out.writeLong(promise.getExpiration());
+        out.writeByte(promise.getStatus().ordinal());
+        if(promise.getPromiseType() != null){
+            out.writeInt(promise.getPromiseType());
+        }
+        if(promise.getSender() != null){
+            out.writeUTF(promise.getSender());
+        }
+        if(promise.getReceiver() != null){
+            out.writeUTF(promise.getReceiver());
+        }
+        if(promise.getAddress() != null){
+            out.writeUTF(promise.getAddress());
+        }
+        if(promise.getAmount() != null){
+            byte[] amount = new byte[32];
+            promise.getAmount().writeTo(amount, 0);
+            out.write(amount);
+        }
+        if(promise.getSalt() != null){
+            writeBytes(out, promise.getSalt());
+        }
+        if(signature != null){
+            out.writeInt(signature.getV());
+            writeBytes(out, signature.getR());
+            writeBytes(out, signature.getS());
+        }
+    }
+
+    static StatefulPromise read(DataInputStream in) throws IOException {
+        int flags = in.readUnsignedByte();
+        long promiseId = in.readLong();
+        Promise.Builder builder = Promise.builder()
+                .channelId(in.readLong())
+                .chainId(in.readLong())
+                .receiptId(in.readLong())
+                .expiration(in.readLong());
+        PromiseStatus status = PromiseStatus.values()[in.readUnsignedByte()];
+        Integer promiseType = (flags & HAS_TYPE) != 0 ? in.readInt() : null;
+        if((flags & HAS_SENDER) != 0){
+            builder.sender(in.readUTF());
+        }
+        if((flags & HAS_RECEIVER) != 0){
+            builder.receiver(in.readUTF());
+        }
+        if((flags & HAS_ADDRESS) != 0){
+            builder.address(in.readUTF());
+        }
+        if((flags & HAS_AMOUNT) != 0){
+            byte[] amount = new byte[32];
+            in.readFully(amount);
+            builder.amount(UInt256.fromBytes(amount, 0));
+        }
+        if((flags & HAS_SALT) != 0){
+            builder.salt(readBytes(in));
+        }
+        if((flags & HAS_SIGNATURE) != 0){
+            byte v = (byte) in.readInt();
+            builder.signature(new Signature(new Sign.SignatureData(v, readBytes(in), readBytes(in))));
+        }
+        StatefulPromise promise = new StatefulPromise(builder.build(), promiseId, promiseType, (flags & TRIGGER_CLOSE) != 0);
+        promise.setStatus(status);
+        return promise;
+    }
+
+    /**
+     * Writes the bytecode of a promise to a stream, with each contract binary written in full only the first time.
+     * @param out
+     * @param bytecode
+     * @param templates the indexes of the binaries already written to the stream
+     * @throws IOException
+     */
+    static void writeBytecode(DataOutputStream out, Bytecode bytecode, Map<String, Integer> templates) throws IOException {
+        if(bytecode == null){
+            out.writeByte(NO_BYTECODE);
+            return;
+        }
+        Integer index = templates.get(bytecode.getTemplate());
+        if(index == null){
+            index = templates.size();
+            templates.put(bytecode.getTemplate(), index);
+            out.writeByte(NEW_TEMPLATE);
+            writeBytes(out, bytecode.getTemplate().getBytes(StandardCharsets.US_ASCII));
+        } else {
+            out.writeByte(KNOWN_TEMPLATE);
+        }
+        out.writeInt(index);
+        writeBytes(out, bytecode.getArgs());
+    }
+
+    /**
+     * Reads a promise followed by its bytecode, as written by {@link #write(DataOutputStream, StatefulPromise)} and
+     * {@link #writeBytecode(DataOutputStream, Bytecode, Map)}.
+     * @param in
+     * @param templates the binaries already read from the stream
+     * @return
+     * @throws IOException
+     */
+    static StatefulPromise read(DataInputStream in, List<String> templates) throws IOException {
+        StatefulPromise promise = read(in);
+        int mode = in.readUnsignedByte();
+        if(mode == NEW_TEMPLATE){
+            templates.add(new String(readBytes(in), StandardCharsets.US_ASCII));
+        }
+        if(mode != NO_BYTECODE){
+            String template = templates.get(in.readInt());
+            promise.setBytecode(Bytecode.of(template, readBytes(in)));
+        }
+        return promise;
+    }
+
+    static void writeBytes(DataOutputStream out, byte[] bytes) throws IOException {
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    static byte[] readBytes(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return bytes;
+    }
+}
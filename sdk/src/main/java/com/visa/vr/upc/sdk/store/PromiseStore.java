@@ -0,0 +1,163 @@
+package com.visa.vr.upc.sdk.store;
+
+import com.visa.vr.upc.sdk.AddressUtils;
+import com.visa.vr.upc.sdk.domain.PromiseStatus;
+import com.visa.vr.upc.sdk.domain.StatefulPromise;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+/**
+ * Holds the promises of one direction (incoming or outgoing) of many channels in two tiers. Open promises are kept
+ * as objects, grouped by channel, so open-promise queries only touch the open promises of one channel. Promises
+ * that are updated to any other status are moved to a {@link PromiseArchive}, and moved back if they are opened again.
+ *
+ * All promises are indexed by channel and address. This class is not thread safe.
+ */
+public class PromiseStore {
+
+    private final HashMap<Long, StatefulPromise> open = new HashMap<>();
+
+    // In insertion order, i.e. by increasing id for promises created locally
+    private final HashMap<Long, LinkedHashMap<Long, StatefulPromise>> openByChannel = new HashMap<>();
+
+    private final HashMap<Long, HashMap<String, Long>> idsByAddress = new HashMap<>();
+
+    private final PromiseArchive archive;
+
+    public PromiseStore(PromiseArchive archive) {
+        this.archive = archive;
+    }
+
+    /**
+     * Adds a new promise, to the open or archived tier depending on its status.
+     * @param promise
+     */
+    public void add(StatefulPromise promise) {
+        store(promise);
+    }
+
+    /**
+     * Updates a promise, moving it between tiers if its status changed.
+     * @param promise
+     * @throws IllegalArgumentException if the promise is not in the store
+     */
+    public void update(StatefulPromise promise) {
+        long id = promise.getPromiseId();
+        if(!open.containsKey(id) && !archive.contains(id)){
+            throw new IllegalArgumentException("Promise not found");
+        }
+        store(promise);
+    }
+
+    public Optional<StatefulPromise> get(long promiseId) {
+        StatefulPromise promise = open.get(promiseId);
+        return promise != null ? Optional.of(promise) : archive.get(promiseId);
+    }
+
+    /**
+     * Finds a promise of a channel by its address.
+     * @param channelId
+     * @param address
+     * @return
+     */
+    public Optional<StatefulPromise> getByAddress(long channelId, String address) {
+        HashMap<String, Long> channelIndex = idsByAddress.get(channelId);
+        if(channelIndex == null){
+            return Optional.empty();
+        }
+        Long id = channelIndex.get(AddressUtils.normalize(address));
+        return id == null ? Optional.empty() : get(id);
+    }
+
+    /**
+     * Finds a promise of any channel by its address.
+     * @param address
+     * @return
+     */
+    public Optional<StatefulPromise> getByAddress(String address) {
+        String normalized = AddressUtils.normalize(address);
+        for (HashMap<String, Long> channelIndex: idsByAddress.values()) {
+            Long id = channelIndex.get(normalized);
+            if(id != null){
+                return get(id);
+            }
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * @param channelId
+     * @return the open promises of a channel
+     */
+    public List<StatefulPromise> getOpen(long channelId) {
+        LinkedHashMap<Long, StatefulPromise> promises = openByChannel.get(channelId);
+        return promises == null ? new ArrayList<>() : new ArrayList<>(promises.values());
+    }
+
+    /**
+     * @param channelId
+     * @return the open and archived promises of a channel
+     */
+    public List<StatefulPromise> getAll(long channelId) {
+        List<StatefulPromise> promises = getOpen(channelId);
+        promises.addAll(archive.getByChannel(channelId));
+        return promises;
+    }
+
+    /**
+     * Streams the open promises of a channel without copying them. The store must not be modified until the stream is
+     * consumed.
+     * @param channelId
+     * @return
+     */
+    public Stream<StatefulPromise> streamOpen(long channelId) {
+        LinkedHashMap<Long, StatefulPromise> promises = openByChannel.get(channelId);
+        return promises == null ? Stream.empty() : promises.values().stream();
+    }
+
+    /**
+     * Streams the open and archived promises of a channel, see {@link #streamOpen(long)}.
+     * @param channelId
+     * @return
+     */
+    public Stream<StatefulPromise> streamAll(long channelId) {
+        return Stream.concat(streamOpen(channelId), archive.streamByChannel(channelId));
+    }
+
+    public int getOpenCount() {
+        return open.size();
+    }
+
+    public PromiseArchive getArchive() {
+        return archive;
+    }
+
+    private void store(StatefulPromise promise) {
+        long id = promise.getPromiseId();
+        if(promise.getStatus() == PromiseStatus.OPEN){
+            if(archive.contains(id)){
+                archive.remove(id);
+            }
+            open.put(id, promise);
+            openByChannel.computeIfAbsent(promise.getChannelId(), c -> new LinkedHashMap<>()).put(id, promise);
+        } else {
+            if(open.remove(id) != null){
+                LinkedHashMap<Long, StatefulPromise> channelPromises = openByChannel.get(promise.getChannelId());
+                channelPromises.remove(id);
+                if(channelPromises.isEmpty()){
+                    openByChannel.remove(promise.getChannelId());
+                }
+            }
+            archive.put(promise);
+        }
+        if(promise.getAddress() != null){
+            idsByAddress.computeIfAbsent(promise.getChannelId(), c -> new HashMap<>())
+                    .put(AddressUtils.normalize(promise.getAddress()), id);
+        }
+    }
+}
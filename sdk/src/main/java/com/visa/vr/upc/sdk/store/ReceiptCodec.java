@@ -0,0 +1,146 @@
+package com.visa.vr.upc.sdk.store;
+
+import com.visa.vr.upc.sdk.domain.Receipt;
+import com.visa.vr.upc.sdk.domain.Signature;
+import com.visa.vr.upc.sdk.domain.UInt256;
+import org.web3j.crypto.Sign;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Encodes lists of receipts into compact, deflate-compressed bytes, e.g. for archiving receipts that are no longer
+ * needed in memory. Receipts of one channel share most of their fields, so a segment compresses well.
+ */
+public final class ReceiptCodec {
+
+    private static final int VERSION = 1;
+
+    private static final int HAS_SENDER = 1;
+    private static final int HAS_RECEIVER = 2;
+    private static final int HAS_CREDIT = 4;
+    private static final int HAS_ROOT = 8;
+    private static final int HAS_SIGNATURE = 16;
+
+    private ReceiptCodec() {
+    }
+
+    /**
+     * @param receipts
+     * @return the compressed encoding
+     */
+    public static byte[] encode(List<Receipt> receipts) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(new DeflaterOutputStream(bytes, new Deflater(Deflater.BEST_SPEED)))) {
+            out.writeByte(VERSION);
+            out.writeInt(receipts.size());
+            for (Receipt receipt: receipts) {
+                write(out, receipt);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * @param data bytes returned by {@link #encode(List)}
+     * @return the receipts, in the encoded order
+     * @throws IllegalArgumentException if the data is not a valid encoding
+     */
+    public static List<Receipt> decode(byte[] data) {
+        try (DataInputStream in = new DataInputStream(new InflaterInputStream(new ByteArrayInputStream(data)))) {
+            int version = in.readUnsignedByte();
+            if(version != VERSION){
+                throw new IllegalArgumentException("Unsupported receipt encoding version " + version);
+            }
+            int count = in.readInt();
+            List<Receipt> receipts = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                receipts.add(read(in));
+            }
+            return receipts;
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Invalid receipt encoding", e);
+        }
+    }
+
+    static void write(DataOutputStream out, Receipt receipt) throws IOException {
+        Signature signature = receipt.getSignature();
+        int flags = (receipt.getSender() != null ? HAS_SENDER : 0)
+                | (receipt.getReceiver() != null ? HAS_RECEIVER : 0)
+                | (receipt.getCumulativeCredit() != null ? HAS_CREDIT : 0)
+                | (receipt.getAccumulatorRoot() != null ? HAS_ROOT : 0)
+                | (signature != null ? HAS_SIGNATURE : 0);
+        out.writeByte(flags);
+        out.writeLong(receipt.getChannelId());
+        out.writeLong(receipt.getChainId());
+        out.writeLong(receipt.getReceiptId());
+        if(receipt.getSender() != null){
+            out.writeUTF(receipt.getSender());
+        }
+        if(receipt.getReceiver() != null){
+            out.writeUTF(receipt.getReceiver());
+        }
+        if(receipt.getCumulativeCredit() != null){
+            byte[] credit = new byte[32];
+            receipt.getCumulativeCredit().writeTo(credit, 0);
+            out.write(credit);
+        }
+        if(receipt.getAccumulatorRoot() != null){
+            writeBytes(out, receipt.getAccumulatorRoot());
+        }
+        if(signature != null){
+            out.writeInt(signature.getV());
+            writeBytes(out, signature.getR());
+            writeBytes(out, signature.getS());
+        }
+    }
+
+    static Receipt read(DataInputStream in) throws IOException {
+        int flags = in.readUnsignedByte();
+        Receipt.Builder builder = Receipt.builder()
+                .channelId(in.readLong())
+                .chainId(in.readLong())
+                .receiptId(in.readLong());
+        if((flags & HAS_SENDER) != 0){
+            builder.sender(in.readUTF());
+        }
+        if((flags & HAS_RECEIVER) != 0){
+            builder.receiver(in.readUTF());
+        }
+        if((flags & HAS_CREDIT) != 0){
+            byte[] credit = new byte[32];
+            in.readFully(credit);
+            builder.cumulativeCredit(UInt256.fromBytes(credit, 0));
+        }
+        if((flags & HAS_ROOT) != 0){
+            builder.accumulatorRoot(readBytes(in));
+        }
+        if((flags & HAS_SIGNATURE) != 0){
+            byte v = (byte) in.readInt();
+            builder.signature(new Signature(new Sign.SignatureData(v, readBytes(in), readBytes(in))));
+        }
+        return builder.build();
+    }
+
+    private static void writeBytes(DataOutputStream out, byte[] bytes) throws IOException {
+        out.writeShort(bytes.length);
+        out.write(bytes);
+    }
+
+    private static byte[] readBytes(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readUnsignedShort()];
+        in.readFully(bytes);
+        return bytes;
+    }
+}
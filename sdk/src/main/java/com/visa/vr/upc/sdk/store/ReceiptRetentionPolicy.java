@@ -0,0 +1,62 @@
+package com.visa.vr.upc.sdk.store;
+
+/**
+ * Decides which receipts a {@link ReceiptStore} keeps in memory. Credit is cumulative, so only the latest receipt of
+ * each channel and direction is needed for disputes; older receipts can be archived or dropped.
+ */
+public final class ReceiptRetentionPolicy {
+
+    private static final ReceiptRetentionPolicy KEEP_ALL = new ReceiptRetentionPolicy(Integer.MAX_VALUE, false);
+
+    private final int keepLatest;
+
+    private final boolean archive;
+
+    private ReceiptRetentionPolicy(int keepLatest, boolean archive) {
+        this.keepLatest = keepLatest;
+        this.archive = archive;
+    }
+
+    /**
+     * Keeps every receipt in memory.
+     * @return
+     */
+    public static ReceiptRetentionPolicy keepAll() {
+        return KEEP_ALL;
+    }
+
+    /**
+     * Keeps the latest receipts of each channel and drops the others. A dropped receipt is not accepted again, nor is
+     * any receipt with a lower id.
+     * @param count the number of receipts to keep, at least 1
+     * @return
+     */
+    public static ReceiptRetentionPolicy keepLatest(int count) {
+        return new ReceiptRetentionPolicy(checkCount(count), false);
+    }
+
+    /**
+     * Keeps the latest receipts of each channel in memory and moves the others to compressed segments, where they
+     * can still be looked up by id.
+     * @param count the number of receipts to keep in memory, at least 1
+     * @return
+     */
+    public static ReceiptRetentionPolicy archiveAllButLatest(int count) {
+        return new ReceiptRetentionPolicy(checkCount(count), true);
+    }
+
+    public int getKeepLatest() {
+        return keepLatest;
+    }
+
+    public boolean isArchive() {
+        return archive;
+    }
+
+    private static int checkCount(int count) {
+        if(count < 1){
+            throw new IllegalArgumentException("At least the latest receipt must be kept");
+        }
+        return count;
+    }
+}
@@ -0,0 +1,175 @@
+package com.visa.vr.upc.sdk.store;
+
+import com.visa.vr.upc.sdk.domain.Receipt;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+
+/**
+ * Holds the receipts of one direction (incoming or outgoing) of many channels, applying a
+ * {@link ReceiptRetentionPolicy}. The latest receipt of a channel is found in constant time.
+ *
+ * When a channel holds twice the number of receipts to keep, it is compacted: the older receipts are dropped, or
+ * archived into a segment encoded with {@link ReceiptCodec}. This class is not thread safe.
+ */
+public class ReceiptStore {
+
+    private final ReceiptRetentionPolicy policy;
+
+    private final HashMap<Long, ChannelReceipts> channels = new HashMap<>();
+
+    public ReceiptStore(ReceiptRetentionPolicy policy) {
+        this.policy = policy;
+    }
+
+    /**
+     * @param receipt
+     * @throws IllegalArgumentException if the channel already has a receipt with the same id, or if the retention
+     *                                  policy already dropped receipts with the same or a higher id
+     */
+    public void add(Receipt receipt) {
+        ChannelReceipts receipts = channels.computeIfAbsent(receipt.getChannelId(), id -> new ChannelReceipts());
+        long receiptId = receipt.getReceiptId();
+        if(receipts.retained.containsKey(receiptId) || receipts.findArchived(receiptId) != null){
+            throw new IllegalArgumentException("Receipt already exists");
+        }
+        if(receiptId <= receipts.droppedUpTo){
+            throw new IllegalArgumentException("Receipt is older than the receipts already dropped");
+        }
+        receipts.retained.put(receiptId, receipt);
+        if(receipts.latest == null || receiptId > receipts.latest.getReceiptId()){
+            receipts.latest = receipt;
+        }
+        if(receipts.retained.size() >= 2L * policy.getKeepLatest()){
+            compact(receipts);
+        }
+    }
+
+    /**
+     * Receipts dropped by the retention policy are not found, see {@link #getDroppedUpTo(long)}.
+     * @param channelId
+     * @param receiptId
+     * @return
+     */
+    public Optional<Receipt> get(long channelId, long receiptId) {
+        ChannelReceipts receipts = channels.get(channelId);
+        if(receipts == null){
+            return Optional.empty();
+        }
+        Receipt receipt = receipts.retained.get(receiptId);
+        return Optional.ofNullable(receipt != null ? receipt : receipts.findArchived(receiptId));
+    }
+
+    public Optional<Receipt> getLatest(long channelId) {
+        ChannelReceipts receipts = channels.get(channelId);
+        return Optional.ofNullable(receipts == null ? null : receipts.latest);
+    }
+
+    /**
+     * Applies the retention policy to a channel now, instead of waiting for it to reach twice the number of receipts
+     * to keep.
+     * @param channelId
+     */
+    public void compact(long channelId) {
+        ChannelReceipts receipts = channels.get(channelId);
+        if(receipts != null){
+            compact(receipts);
+        }
+    }
+
+    /**
+     * Returns the number of receipts of a channel held in memory.
+     * @param channelId
+     * @return
+     */
+    public int getRetainedCount(long channelId) {
+        ChannelReceipts receipts = channels.get(channelId);
+        return receipts == null ? 0 : receipts.retained.size();
+    }
+
+    /**
+     * Returns the number of receipts of a channel held in archived segments.
+     * @param channelId
+     * @return
+     */
+    public int getArchivedCount(long channelId) {
+        ChannelReceipts receipts = channels.get(channelId);
+        return receipts == null ? 0 : receipts.segments.stream().mapToInt(s -> s.count).sum();
+    }
+
+    /**
+     * Returns the highest receipt id of a channel dropped by the retention policy. Receipts up to it are neither
+     * found nor accepted again.
+     * @param channelId
+     * @return the receipt id, or {@link Long#MIN_VALUE} if no receipt was dropped
+     */
+    public long getDroppedUpTo(long channelId) {
+        ChannelReceipts receipts = channels.get(channelId);
+        return receipts == null ? Long.MIN_VALUE : receipts.droppedUpTo;
+    }
+
+    private void compact(ChannelReceipts receipts) {
+        int toRemove = receipts.retained.size() - policy.getKeepLatest();
+        if(toRemove <= 0){
+            return;
+        }
+        List<Receipt> removed = new ArrayList<>(toRemove);
+        Iterator<Map.Entry<Long, Receipt>> it = receipts.retained.entrySet().iterator();
+        while(removed.size() < toRemove){
+            removed.add(it.next().getValue());
+            it.remove();
+        }
+        if(policy.isArchive()){
+            receipts.segments.add(new Segment(removed));
+        } else {
+            receipts.droppedUpTo = Math.max(receipts.droppedUpTo, removed.get(removed.size() - 1).getReceiptId());
+        }
+    }
+
+    private static class ChannelReceipts {
+        // Ordered by receipt id, so the oldest are compacted first
+        private final TreeMap<Long, Receipt> retained = new TreeMap<>();
+
+        private final List<Segment> segments = new ArrayList<>();
+
+        private Receipt latest;
+
+        // The highest receipt id dropped by compaction
+        private long droppedUpTo = Long.MIN_VALUE;
+
+        private Receipt findArchived(long receiptId) {
+            for (Segment segment: segments) {
+                if(receiptId >= segment.firstId && receiptId <= segment.lastId){
+                    for (Receipt receipt: ReceiptCodec.decode(segment.data)) {
+                        if(receipt.getReceiptId() == receiptId){
+                            return receipt;
+                        }
+                    }
+                }
+            }
+            return null;
+        }
+    }
+
+    private static class Segment {
+        private final long firstId;
+
+        private final long lastId;
+
+        private final int count;
+
+        private final byte[] data;
+
+        private Segment(List<Receipt> receipts) {
+            this.firstId = receipts.get(0).getReceiptId();
+            this.lastId = receipts.get(receipts.size() - 1).getReceiptId();
+            this.count = receipts.size();
+            this.data = ReceiptCodec.encode(receipts);
+        }
+    }
+}
@@ -0,0 +1,187 @@
+package com.visa.vr.upc.sdk.store;
+
+import com.visa.vr.upc.sdk.IChannelDataService;
+import com.visa.vr.upc.sdk.IPromiseDataService;
+import com.visa.vr.upc.sdk.IReceiptDataService;
+import com.visa.vr.upc.sdk.logging.EventLogger;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A hot standby of a hub: connects to a {@link ReplicatedDataService} and applies its snapshot and change log to
+ * its own data services, on a daemon thread. To take over from a failed hub, close the replica and build a
+ * {@link com.visa.vr.upc.sdk.StatefulUPCService} on its data services, which already hold the state of the hub up
+ * to {@link #getAppliedSequence()}. A new replica can be connected on the same data services after a disconnection,
+ * since the snapshot it starts from replaces their state.
+ */
+public class Replica implements AutoCloseable {
+
+    private static final EventLogger events = EventLogger.getLogger(Replica.class);
+
+    // Under steady load frames keep arriving, so acknowledge at least this often
+    private static final int ACK_EVERY_FRAMES = 64;
+    private static final long ACK_EVERY_MILLIS = 5;
+
+    private final IChannelDataService channelDataService;
+
+    private final IPromiseDataService promiseDataService;
+
+    private final IReceiptDataService receiptDataService;
+
+    private final Socket socket;
+
+    private final Thread worker;
+
+    // The binaries received from the hub, see PromiseCodec#writeBytecode
+    private final List<String> templates = new ArrayList<>();
+
+    private volatile long appliedSequence = 0;
+
+    private volatile boolean connected = true;
+
+    private volatile boolean closed = false;
+
+    /**
+     * Connects to a hub on the loopback interface and starts applying its changes.
+     * @param port the port of the {@link ReplicatedDataService}
+     * @param channelDataService
+     * @param promiseDataService
+     * @param receiptDataService
+     * @throws IOException if the hub cannot be reached
+     */
+    public Replica(int port, IChannelDataService channelDataService, IPromiseDataService promiseDataService, IReceiptDataService receiptDataService) throws IOException {
+        this.channelDataService = channelDataService;
+        this.promiseDataService = promiseDataService;
+        this.receiptDataService = receiptDataService;
+        this.socket = new Socket(InetAddress.getLoopbackAddress(), port);
+        socket.setTcpNoDelay(true);
+        this.worker = new Thread(this::run, "upc-replica");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    /**
+     * Returns the sequence number of the last change applied, or 0 if the snapshot was not applied yet.
+     * @return
+     */
+    public long getAppliedSequence() {
+        return appliedSequence;
+    }
+
+    /**
+     * Returns whether the replica is still connected to the hub.
+     * @return
+     */
+    public boolean isConnected() {
+        return connected;
+    }
+
+    /**
+     * Disconnects from the hub, e.g. to take over from it. Changes already received may still be applied until
+     * {@link #awaitTermination(long)} returns.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        try {
+            socket.close();
+        } catch (IOException ignored) {
+        }
+    }
+
+    /**
+     * Waits for the replica to stop applying changes after {@link #close()} or a disconnection.
+     * @param millis the maximum time to wait
+     * @throws InterruptedException
+     */
+    public void awaitTermination(long millis) throws InterruptedException {
+        worker.join(millis);
+    }
+
+    private void run() {
+        try {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream(), 64 * 1024));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            boolean restored = false;
+            int unacked = 0;
+            long lastAck = System.currentTimeMillis();
+            while(!closed){
+                int type = in.readUnsignedByte();
+                long seq = in.readLong();
+                byte[] data = new byte[in.readInt()];
+                in.readFully(data);
+                // Acknowledge the last of the frames that arrived together, or periodically if more keep arriving
+                unacked += 1;
+                boolean acknowledge = in.available() == 0 || unacked >= ACK_EVERY_FRAMES || System.currentTimeMillis() - lastAck >= ACK_EVERY_MILLIS;
+                if(acknowledge){
+                    ack(out, ReplicatedDataService.ACK_RECEIVED, seq);
+                }
+                if(type == ReplicatedDataService.SNAPSHOT){
+                    templates.clear();
+                    StateSnapshot.restore(new ByteArrayInputStream(data), channelDataService, promiseDataService, receiptDataService, 0);
+                    restored = true;
+                } else if(!restored || seq != appliedSequence + 1){
+                    throw new IllegalStateException("Change " + seq + " does not follow " + appliedSequence);
+                } else {
+                    apply(new DataInputStream(new ByteArrayInputStream(data)));
+                }
+                appliedSequence = seq;
+                if(acknowledge){
+                    ack(out, ReplicatedDataService.ACK_APPLIED, seq);
+                    unacked = 0;
+                    lastAck = System.currentTimeMillis();
+                }
+            }
+        } catch (IOException e) {
+            if(!closed){
+                events.info("replica.disconnected").with("sequence", appliedSequence).with("reason", e.toString()).log();
+            }
+        } catch (RuntimeException e) {
+            events.error("replica.apply", e).with("sequence", appliedSequence).log();
+        }
+        connected = false;
+        close();
+    }
+
+    private void apply(DataInputStream in) throws IOException {
+        int change = in.readUnsignedByte();
+        switch (change) {
+            case ReplicatedDataService.CHANNEL:
+                StateSnapshot.applyChannel(channelDataService, ChannelCodec.read(in));
+                break;
+            case ReplicatedDataService.INCOMING_PROMISE:
+                StateSnapshot.applyIncomingPromise(promiseDataService, PromiseCodec.read(in, templates));
+                break;
+            case ReplicatedDataService.OUTGOING_PROMISE:
+                StateSnapshot.applyOutgoingPromise(promiseDataService, PromiseCodec.read(in, templates));
+                break;
+            case ReplicatedDataService.INCOMING_RECEIPT:
+                long receiptId = in.readLong();
+                StateSnapshot.applyIncomingReceipt(receiptDataService, ReceiptCodec.read(in), receiptId);
+                break;
+            case ReplicatedDataService.OUTGOING_RECEIPT:
+                StateSnapshot.applyOutgoingReceipt(receiptDataService, ReceiptCodec.read(in));
+                break;
+            case ReplicatedDataService.COMPACT:
+                receiptDataService.compact(in.readLong());
+                break;
+            default:
+                throw new IllegalStateException("Unknown change " + change);
+        }
+    }
+
+    private static void ack(DataOutputStream out, int type, long seq) throws IOException {
+        out.writeByte(type);
+        out.writeLong(seq);
+        out.flush();
+    }
+}
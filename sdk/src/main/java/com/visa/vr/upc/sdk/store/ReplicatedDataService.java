@@ -0,0 +1,738 @@
+package com.visa.vr.upc.sdk.store;
+
+import com.visa.vr.upc.sdk.IChannelDataService;
+import com.visa.vr.upc.sdk.IPromiseDataService;
+import com.visa.vr.upc.sdk.IReceiptDataService;
+import com.visa.vr.upc.sdk.domain.Channel;
+import com.visa.vr.upc.sdk.domain.ChannelStatus;
+import com.visa.vr.upc.sdk.domain.Promise;
+import com.visa.vr.upc.sdk.domain.PromiseStatus;
+import com.visa.vr.upc.sdk.domain.Receipt;
+import com.visa.vr.upc.sdk.domain.StatefulPromise;
+import com.visa.vr.upc.sdk.domain.UInt256;
+import com.visa.vr.upc.sdk.logging.EventLogger;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * A data service decorator that streams every mutation to a hot standby {@link Replica} over a local socket, as an
+ * ordered change log with sequence numbers. When a replica connects, it first receives a full {@link StateSnapshot}
+ * taken between two mutations, then every change after it, so it holds the same state as the hub and can take over
+ * as soon as the hub fails.
+ *
+ * Mutations are applied to the wrapped services and appended to the log under one lock, so the log has the order in
+ * which they were applied. Depending on the {@link AckLevel}, a mutation then returns immediately or waits for the
+ * replica to acknowledge it. A replica that does not keep up within the acknowledgement timeout is disconnected and
+ * has to connect again, while the hub keeps running. Reads go straight to the wrapped services.
+ */
+public class ReplicatedDataService implements IChannelDataService, IPromiseDataService, IReceiptDataService, AutoCloseable {
+
+    private static final EventLogger events = EventLogger.getLogger(ReplicatedDataService.class);
+
+    /**
+     * How long a mutation waits for the replica.
+     */
+    public enum AckLevel {
+        /**
+         * Return once the change is queued for the replica.
+         */
+        NONE,
+        /**
+         * Wait until the replica has received the change.
+         */
+        RECEIVED,
+        /**
+         * Wait until the replica has applied the change to its data services.
+         */
+        APPLIED
+    }
+
+    // Frames sent to the replica
+    static final int SNAPSHOT = 1;
+    static final int CHANGE = 2;
+
+    // Acknowledgements sent back by the replica
+    static final int ACK_RECEIVED = 1;
+    static final int ACK_APPLIED = 2;
+
+    // Changes
+    static final int CHANNEL = 1;
+    static final int INCOMING_PROMISE = 2;
+    static final int OUTGOING_PROMISE = 3;
+    static final int INCOMING_RECEIPT = 4;
+    static final int OUTGOING_RECEIPT = 5;
+    static final int COMPACT = 6;
+
+    private final IChannelDataService channelDataService;
+
+    private final IPromiseDataService promiseDataService;
+
+    private final IReceiptDataService receiptDataService;
+
+    private final AckLevel ackLevel;
+
+    private final long ackTimeoutMillis;
+
+    private final int queueCapacity;
+
+    private final ServerSocket server;
+
+    private final Thread acceptor;
+
+    private final ByteArrayOutputStream buffer = new ByteArrayOutputStream(512);
+
+    private final DataOutputStream bufferOut = new DataOutputStream(buffer);
+
+    // The binaries already sent to the current replica, see PromiseCodec#writeBytecode
+    private final Map<String, Integer> templates = new HashMap<>();
+
+    private long sequence = 0;
+
+    private volatile Connection connection;
+
+    private volatile boolean closed = false;
+
+    /**
+     * Basic constructor. Listens for a replica on the loopback interface, on a daemon thread.
+     * @param channelDataService
+     * @param promiseDataService
+     * @param receiptDataService
+     * @param port the port to listen on, or 0 for any free port (see {@link #getPort()})
+     * @param ackLevel how long mutations wait for the replica
+     * @param ackTimeoutMillis the maximum time to wait for the replica, before it is disconnected
+     * @param queueCapacity the maximum number of changes queued for the replica
+     * @throws IOException if the port cannot be opened
+     */
+    public ReplicatedDataService(IChannelDataService channelDataService, IPromiseDataService promiseDataService, IReceiptDataService receiptDataService,
+                                 int port, AckLevel ackLevel, long ackTimeoutMillis, int queueCapacity) throws IOException {
+        if(ackTimeoutMillis < 1 || queueCapacity < 1){
+            throw new IllegalArgumentException("Acknowledgement timeout and queue capacity must be positive");
+        }
+        this.channelDataService = channelDataService;
+        this.promiseDataService = promiseDataService;
+        this.receiptDataService = receiptDataService;
+        this.ackLevel = ackLevel;
+        this.ackTimeoutMillis = ackTimeoutMillis;
+        this.queueCapacity = queueCapacity;
+        this.server = new ServerSocket(port, 1, InetAddress.getLoopbackAddress());
+        this.acceptor = new Thread(this::accept, "upc-replication-accept");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    /**
+     * Returns the port the service listens on for a replica.
+     * @return
+     */
+    public int getPort() {
+        return server.getLocalPort();
+    }
+
+    /**
+     * Returns the sequence number of the last change sent to the current replica, or 0 if none is connected.
+     * @return
+     */
+    public synchronized long getSequence() {
+        return connection == null ? 0 : sequence;
+    }
+
+    /**
+     * Returns whether a replica is connected.
+     * @return
+     */
+    public boolean isReplicaConnected() {
+        Connection c = connection;
+        return c != null && !c.closed;
+    }
+
+    /**
+     * Stops listening and disconnects the replica. The wrapped services are not closed.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        try {
+            server.close();
+        } catch (IOException e) {
+            events.error("replication.close", e).log();
+        }
+        synchronized (this) {
+            if(connection != null){
+                connection.close();
+                connection = null;
+            }
+        }
+    }
+
+    @Override
+    public Channel createChannel(Channel channel) {
+        long seq;
+        awaitCapacity();
+        synchronized (this) {
+            Channel created = channelDataService.createChannel(channel);
+            seq = publish(CHANNEL, out -> ChannelCodec.write(out, created));
+            channel = created;
+        }
+        awaitAck(seq);
+        return channel;
+    }
+
+    @Override
+    public void addChannel(Channel channel) {
+        long seq;
+        awaitCapacity();
+        synchronized (this) {
+            channelDataService.addChannel(channel);
+            seq = publish(CHANNEL, out -> ChannelCodec.write(out, channel));
+        }
+        awaitAck(seq);
+    }
+
+    @Override
+    public void updateChannel(Channel channel) {
+        long seq;
+        awaitCapacity();
+        synchronized (this) {
+            channelDataService.updateChannel(channel);
+            seq = publish(CHANNEL, out -> ChannelCodec.write(out, channel));
+        }
+        awaitAck(seq);
+    }
+
+    @Override
+    public Optional<Channel> getChannelById(Long id) {
+        return channelDataService.getChannelById(id);
+    }
+
+    @Override
+    public Optional<Channel> getChannelByAddress(String address) {
+        return channelDataService.getChannelByAddress(address);
+    }
+
+    @Override
+    public List<Channel> getChannelsByStatus(ChannelStatus status) {
+        return channelDataService.getChannelsByStatus(status);
+    }
+
+    @Override
+    public StatefulPromise addOutgoingPromise(Promise promise, Integer promiseType, Boolean triggerClose) {
+        StatefulPromise added;
+        long seq;
+        awaitCapacity();
+        synchronized (this) {
+            added = promiseDataService.addOutgoingPromise(promise, promiseType, triggerClose);
+            seq = publishPromise(OUTGOING_PROMISE, added);
+        }
+        awaitAck(seq);
+        return added;
+    }
+
+    @Override
+    public StatefulPromise addIncomingPromise(Promise promise, Long promiseId, Integer promiseType, Boolean triggerClose) {
+        StatefulPromise added;
+        long seq;
+        awaitCapacity();
+        synchronized (this) {
+            added = promiseDataService.addIncomingPromise(promise, promiseId, promiseType, triggerClose);
+            seq = publishPromise(INCOMING_PROMISE, added);
+        }
+        awaitAck(seq);
+        return added;
+    }
+
+    @Override
+    public void restoreOutgoingPromise(StatefulPromise promise) {
+        long seq;
+        awaitCapacity();
+        synchronized (this) {
+            promiseDataService.restoreOutgoingPromise(promise);
+            seq = publishPromise(OUTGOING_PROMISE, promise);
+        }
+        awaitAck(seq);
+    }
+
+    @Override
+    public void updateIncomingPromise(StatefulPromise promise) {
+        long seq;
+        awaitCapacity();
+        synchronized (this) {
+            promiseDataService.updateIncomingPromise(promise);
+            seq = publishPromise(INCOMING_PROMISE, promise);
+        }
+        awaitAck(seq);
+    }
+
+    @Override
+    public void updateOutgoingPromise(StatefulPromise promise) {
+        long seq;
+        awaitCapacity();
+        synchronized (this) {
+            promiseDataService.updateOutgoingPromise(promise);
+            seq = publishPromise(OUTGOING_PROMISE, promise);
+        }
+        awaitAck(seq);
+    }
+
+    @Override
+    public Optional<StatefulPromise> getIncomingPromiseById(Long id) {
+        return promiseDataService.getIncomingPromiseById(id);
+    }
+
+    @Override
+    public Optional<StatefulPromise> getOutgoingPromiseById(Long id) {
+        return promiseDataService.getOutgoingPromiseById(id);
+    }
+
+    @Override
+    public Optional<StatefulPromise> getIncomingPromiseByAddress(String address) {
+        return promiseDataService.getIncomingPromiseByAddress(address);
+    }
+
+    @Override
+    public Optional<StatefulPromise> getOutgoingPromiseByAddress(String address) {
+        return promiseDataService.getOutgoingPromiseByAddress(address);
+    }
+
+    @Override
+    public Optional<StatefulPromise> getIncomingPromiseByAddress(long channelId, String address) {
+        return promiseDataService.getIncomingPromiseByAddress(channelId, address);
+    }
+
+    @Override
+    public Optional<StatefulPromise> getOutgoingPromiseByAddress(long channelId, String address) {
+        return promiseDataService.getOutgoingPromiseByAddress(channelId, address);
+    }
+
+    @Override
+    public List<StatefulPromise> getPromisesByChannel(Long channelId) {
+        return promiseDataService.getPromisesByChannel(channelId);
+    }
+
+    @Override
+    public Stream<StatefulPromise> streamPromisesByChannel(long channelId) {
+        return promiseDataService.streamPromisesByChannel(channelId);
+    }
+
+    @Override
+    public List<StatefulPromise> getOpenPromisesByChannel(Long channelId) {
+        return promiseDataService.getOpenPromisesByChannel(channelId);
+    }
+
+    @Override
+    public List<StatefulPromise> getOpenOutgoingPromises(Long channelId) {
+        return promiseDataService.getOpenOutgoingPromises(channelId);
+    }
+
+    @Override
+    public List<StatefulPromise> getOpenIncomingPromises(Long channelId) {
+        return promiseDataService.getOpenIncomingPromises(channelId);
+    }
+
+    @Override
+    public Stream<StatefulPromise> streamOpenOutgoingPromises(long channelId) {
+        return promiseDataService.streamOpenOutgoingPromises(channelId);
+    }
+
+    @Override
+    public Stream<StatefulPromise> streamOpenIncomingPromises(long channelId) {
+        return promiseDataService.streamOpenIncomingPromises(channelId);
+    }
+
+    @Override
+    public UInt256 getIncomingPendingAmount(long channelId) {
+        return promiseDataService.getIncomingPendingAmount(channelId);
+    }
+
+    @Override
+    public UInt256 getOutgoingPendingAmount(long channelId) {
+        return promiseDataService.getOutgoingPendingAmount(channelId);
+    }
+
+    @Override
+    public List<StatefulPromise> getIncomingOpenPromisesWithout(long channelId, Set<Long> toRemove) {
+        return promiseDataService.getIncomingOpenPromisesWithout(channelId, toRemove);
+    }
+
+    @Override
+    public List<StatefulPromise> getOutgoingOpenPromisesWithout(long channelId, Set<Long> toRemove) {
+        return promiseDataService.getOutgoingOpenPromisesWithout(channelId, toRemove);
+    }
+
+    @Override
+    public List<StatefulPromise> getExpiringPromises(long channelId) {
+        return promiseDataService.getExpiringPromises(channelId);
+    }
+
+    @Override
+    public Stream<StatefulPromise> streamIncomingOpenPromisesWithout(long channelId, Set<Long> toRemove) {
+        return promiseDataService.streamIncomingOpenPromisesWithout(channelId, toRemove);
+    }
+
+    @Override
+    public Stream<StatefulPromise> streamOutgoingOpenPromisesWithout(long channelId, Set<Long> toRemove) {
+        return promiseDataService.streamOutgoingOpenPromisesWithout(channelId, toRemove);
+    }
+
+    @Override
+    public Stream<StatefulPromise> streamExpiringPromises(long channelId) {
+        return promiseDataService.streamExpiringPromises(channelId);
+    }
+
+    @Override
+    public Boolean getPromiseExpiring(long channelId) {
+        return promiseDataService.getPromiseExpiring(channelId);
+    }
+
+    @Override
+    public void closeIncomingPromises(List<StatefulPromise> promises) {
+        long seq = 0;
+        awaitCapacity();
+        synchronized (this) {
+            promiseDataService.closeIncomingPromises(promises);
+            for (StatefulPromise promise: promises) {
+                seq = publishPromise(INCOMING_PROMISE, closed(promise));
+            }
+        }
+        awaitAck(seq);
+    }
+
+    @Override
+    public void closeOutgoingPromises(List<StatefulPromise> promises) {
+        long seq = 0;
+        awaitCapacity();
+        synchronized (this) {
+            promiseDataService.closeOutgoingPromises(promises);
+            for (StatefulPromise promise: promises) {
+                seq = publishPromise(OUTGOING_PROMISE, closed(promise));
+            }
+        }
+        awaitAck(seq);
+    }
+
+    @Override
+    public void addOutgoingReceipt(Receipt receipt) {
+        long seq;
+        awaitCapacity();
+        synchronized (this) {
+            receiptDataService.addOutgoingReceipt(receipt);
+            seq = publish(OUTGOING_RECEIPT, out -> ReceiptCodec.write(out, receipt));
+        }
+        awaitAck(seq);
+    }
+
+    @Override
+    public void addIncomingReceipt(Receipt receipt, Long receiptId) {
+        long seq;
+        awaitCapacity();
+        synchronized (this) {
+            receiptDataService.addIncomingReceipt(receipt, receiptId);
+            seq = publish(INCOMING_RECEIPT, out -> {
+                out.writeLong(receiptId);
+                ReceiptCodec.write(out, receipt);
+            });
+        }
+        awaitAck(seq);
+    }
+
+    @Override
+    public Optional<Receipt> getIncomingReceiptById(long channelId, long receiptId) {
+        return receiptDataService.getIncomingReceiptById(channelId, receiptId);
+    }
+
+    @Override
+    public Optional<Receipt> getOutgoingReceiptById(long channelId, long receiptId) {
+        return receiptDataService.getOutgoingReceiptById(channelId, receiptId);
+    }
+
+    @Override
+    public Optional<Receipt> getLatestIncomingReceipt(long channelId) {
+        return receiptDataService.getLatestIncomingReceipt(channelId);
+    }
+
+    @Override
+    public Optional<Receipt> getLatestOutgoingReceipt(long channelId) {
+        return receiptDataService.getLatestOutgoingReceipt(channelId);
+    }
+
+    @Override
+    public void compact(long channelId) {
+        long seq;
+        awaitCapacity();
+        synchronized (this) {
+            receiptDataService.compact(channelId);
+            seq = publish(COMPACT, out -> out.writeLong(channelId));
+        }
+        awaitAck(seq);
+    }
+
+    /**
+     * The wrapped service is not required to update the status of the caller's objects, so the replica is sent a
+     * closed copy.
+     */
+    private static StatefulPromise closed(StatefulPromise promise) {
+        StatefulPromise copy = new StatefulPromise(promise, promise.getPromiseId(), promise.getPromiseType(), promise.getTriggerClose());
+        copy.setStatus(PromiseStatus.CLOSED);
+        return copy;
+    }
+
+    private long publishPromise(int change, StatefulPromise promise) {
+        return publish(change, out -> {
+            PromiseCodec.write(out, promise);
+            PromiseCodec.writeBytecode(out, promise.getCompactBytecode(), templates);
+        });
+    }
+
+    /**
+     * Appends a change to the log of the current replica. Must be called while holding the lock.
+     * @return the sequence number of the change, or 0 if no replica is connected
+     */
+    private long publish(int change, ChangeWriter writer) {
+        Connection c = connection;
+        if(c == null || c.closed){
+            return 0;
+        }
+        buffer.reset();
+        try {
+            bufferOut.writeByte(change);
+            writer.write(bufferOut);
+        } catch (IOException e) {
+            // Writing to memory does not fail
+            throw new IllegalStateException(e);
+        }
+        sequence += 1;
+        // Never wait while holding the lock, see awaitCapacity
+        if(!c.queue.offer(new Frame(CHANGE, sequence, buffer.toByteArray()))){
+            events.info("replication.queue_full").with("sequence", sequence).log();
+            c.close();
+            return 0;
+        }
+        return sequence;
+    }
+
+    /**
+     * Waits before taking the lock until the queue of the replica has room, so that a burst of changes is slowed
+     * down to the speed of the replica. A replica that does not make room within the acknowledgement timeout is
+     * disconnected.
+     */
+    private void awaitCapacity() {
+        Connection c = connection;
+        if(c != null && !c.awaitCapacity(ackTimeoutMillis)){
+            events.info("replication.queue_full").with("sequence", sequence).log();
+            c.close();
+        }
+    }
+
+    private void awaitAck(long seq) {
+        Connection c = connection;
+        if(ackLevel == AckLevel.NONE || seq == 0 || c == null){
+            return;
+        }
+        if(!c.awaitAck(seq, ackLevel == AckLevel.APPLIED ? ACK_APPLIED : ACK_RECEIVED, ackTimeoutMillis)){
+            events.info("replication.ack_timeout").with("sequence", seq).log();
+            c.close();
+        }
+    }
+
+    private void accept() {
+        while(!closed){
+            Socket socket;
+            try {
+                socket = server.accept();
+                socket.setTcpNoDelay(true);
+            } catch (IOException e) {
+                if(!closed){
+                    events.error("replication.accept", e).log();
+                }
+                return;
+            }
+            try {
+                synchronized (this) {
+                    if(connection != null){
+                        connection.close();
+                    }
+                    // The replica starts from a snapshot taken between two mutations
+                    templates.clear();
+                    ByteArrayOutputStream image = new ByteArrayOutputStream();
+                    new StateSnapshot(channelDataService, promiseDataService, receiptDataService).write(image);
+                    connection = new Connection(socket, queueCapacity);
+                    connection.queue.add(new Frame(SNAPSHOT, sequence, image.toByteArray()));
+                    connection.start();
+                }
+                events.info("replication.connected").with("replica", socket.getRemoteSocketAddress().toString()).with("sequence", sequence).log();
+            } catch (IOException e) {
+                events.error("replication.snapshot", e).log();
+                try {
+                    socket.close();
+                } catch (IOException ignored) {
+                }
+            }
+        }
+    }
+
+    private interface ChangeWriter {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    private static class Frame {
+        private final int type;
+
+        private final long sequence;
+
+        private final byte[] data;
+
+        private Frame(int type, long sequence, byte[] data) {
+            this.type = type;
+            this.sequence = sequence;
+            this.data = data;
+        }
+    }
+
+    /**
+     * A connected replica, with a thread that sends the queued frames and one that reads the acknowledgements.
+     */
+    private static class Connection {
+        private final Socket socket;
+
+        private final BlockingQueue<Frame> queue;
+
+        private final Thread sender;
+
+        private final Thread receiver;
+
+        private long received = 0;
+
+        private long applied = 0;
+
+        private volatile boolean closed = false;
+
+        private Connection(Socket socket, int queueCapacity) {
+            this.socket = socket;
+            // One extra slot for the snapshot
+            this.queue = new ArrayBlockingQueue<>(queueCapacity + 1);
+            this.sender = new Thread(this::send, "upc-replication-send");
+            this.receiver = new Thread(this::receive, "upc-replication-ack");
+            sender.setDaemon(true);
+            receiver.setDaemon(true);
+        }
+
+        private void start() {
+            sender.start();
+            receiver.start();
+        }
+
+        private void send() {
+            try {
+                DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), 64 * 1024));
+                while(!closed){
+                    Frame frame = queue.poll(100, TimeUnit.MILLISECONDS);
+                    if(frame == null){
+                        continue;
+                    }
+                    // Send everything that is queued before flushing, so bursts of changes share packets
+                    do {
+                        out.writeByte(frame.type);
+                        out.writeLong(frame.sequence);
+                        out.writeInt(frame.data.length);
+                        out.write(frame.data);
+                    } while((frame = queue.poll()) != null);
+                    out.flush();
+                    synchronized (this) {
+                        notifyAll();
+                    }
+                }
+            } catch (IOException e) {
+                if(!closed){
+                    events.error("replication.send", e).log();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            close();
+        }
+
+        private void receive() {
+            try {
+                DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+                while(!closed){
+                    int type = in.readUnsignedByte();
+                    long seq = in.readLong();
+                    synchronized (this) {
+                        if(type == ACK_APPLIED){
+                            applied = Math.max(applied, seq);
+                        }
+                        received = Math.max(received, type == ACK_APPLIED ? applied : seq);
+                        notifyAll();
+                    }
+                }
+            } catch (IOException e) {
+                if(!closed){
+                    events.info("replication.disconnected").with("reason", e.toString()).log();
+                }
+            }
+            close();
+        }
+
+        private synchronized boolean awaitCapacity(long timeoutMillis) {
+            long deadline = System.currentTimeMillis() + timeoutMillis;
+            try {
+                while(!closed && queue.remainingCapacity() == 0){
+                    long remaining = deadline - System.currentTimeMillis();
+                    if(remaining <= 0){
+                        return false;
+                    }
+                    wait(remaining);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+            return true;
+        }
+
+        private synchronized boolean awaitAck(long seq, int level, long timeoutMillis) {
+            long deadline = System.currentTimeMillis() + timeoutMillis;
+            try {
+                while(!closed && (level == ACK_APPLIED ? applied : received) < seq){
+                    long remaining = deadline - System.currentTimeMillis();
+                    if(remaining <= 0){
+                        return false;
+                    }
+                    wait(remaining);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+            // A replica that disconnected is not waited for
+            return true;
+        }
+
+        private void close() {
+            closed = true;
+            synchronized (this) {
+                notifyAll();
+            }
+            try {
+                socket.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+}
@@ -0,0 +1,576 @@
+package com.visa.vr.upc.sdk.store;
+
+import com.visa.vr.upc.sdk.IChannelDataService;
+import com.visa.vr.upc.sdk.IPromiseDataService;
+import com.visa.vr.upc.sdk.IReceiptDataService;
+import com.visa.vr.upc.sdk.PromiseService;
+import com.visa.vr.upc.sdk.domain.Channel;
+import com.visa.vr.upc.sdk.domain.ChannelStatus;
+import com.visa.vr.upc.sdk.domain.PromiseStatus;
+import com.visa.vr.upc.sdk.domain.Receipt;
+import com.visa.vr.upc.sdk.domain.StatefulPromise;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UTFDataFormatException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.LongPredicate;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+import java.util.zip.ZipException;
+
+/**
+ * Freezes the off-chain state of a hub, i.e. its channels, open promises, latest receipts and the accumulator roots
+ * of the open promises, into a compact binary image that can be restored into any data service implementation, e.g.
+ * on a standby for failover. Restoring is idempotent: records that exist are updated, and receipts that exist are kept,
+ * so an image can be restored again into the same services, e.g. when a standby reconnects. A full image holds all
+ * open promises of its channels, so open promises of those channels that it does not hold are closed. After a full image, {@link #writeDelta(OutputStream)} only writes what changed since
+ * the previous image, including the promises that are no longer open, so a standby can follow the hub by restoring
+ * the images in order.
+ *
+ * <p>An image is deflate-compressed and ends with a CRC32 checksum of its content. Images are decoded and checked
+ * entirely, and the accumulator roots are checked against the promises the services would hold afterwards, before
+ * anything is restored. Each image must be written to its own stream, e.g. a file or a message.</p>
+ *
+ * <p>An image is only consistent if the data services are not modified while it is written. This class is not thread
+ * safe.</p>
+ */
+public class StateSnapshot {
+
+    private static final Logger log = LoggerFactory.getLogger(StateSnapshot.class);
+
+    private static final int MAGIC = 0x55504353;
+
+    private static final int VERSION = 1;
+
+    private static final int FULL = 0;
+    private static final int DELTA = 1;
+
+    private static final int END = 0;
+    private static final int CHANNEL = 1;
+    private static final int INCOMING_PROMISE = 2;
+    private static final int OUTGOING_PROMISE = 3;
+    private static final int INCOMING_RECEIPT = 4;
+    private static final int OUTGOING_RECEIPT = 5;
+    private static final int ACCUMULATORS = 6;
+
+    private final IChannelDataService channelDataService;
+
+    private final IPromiseDataService promiseDataService;
+
+    private final IReceiptDataService receiptDataService;
+
+    private final LongPredicate channelFilter;
+
+    private long sequence = 0;
+
+    // Fingerprints of the records written in the previous image, to find what changed since
+    private Map<Long, Long> channelPrints = new HashMap<>();
+    private Map<Long, Long> incomingPrints = new HashMap<>();
+    private Map<Long, Long> outgoingPrints = new HashMap<>();
+    private Map<Long, Long> incomingReceiptPrints = new HashMap<>();
+    private Map<Long, Long> outgoingReceiptPrints = new HashMap<>();
+
+    /**
+     * @param channelDataService
+     * @param promiseDataService
+     * @param receiptDataService
+     */
+    public StateSnapshot(IChannelDataService channelDataService, IPromiseDataService promiseDataService, IReceiptDataService receiptDataService) {
+        this(channelDataService, promiseDataService, receiptDataService, channelId -> true);
+    }
+
+    /**
+     * Creates a snapshot of some of the channels only, e.g. to move them to another hub.
+     * @param channelDataService
+     * @param promiseDataService
+     * @param receiptDataService
+     * @param channelFilter whether to include the channel with a given id
+     */
+    public StateSnapshot(IChannelDataService channelDataService, IPromiseDataService promiseDataService, IReceiptDataService receiptDataService,
+                         LongPredicate channelFilter) {
+        this.channelDataService = channelDataService;
+        this.promiseDataService = promiseDataService;
+        this.receiptDataService = receiptDataService;
+        this.channelFilter = channelFilter;
+    }
+
+    /**
+     * Writes a full image of the state.
+     * @param out the stream to write to, which is not closed
+     * @return the sequence number of the image
+     * @throws IOException
+     */
+    public long write(OutputStream out) throws IOException {
+        return write(out, false);
+    }
+
+    /**
+     * Writes the changes since the previous image written by this object, or a full image if there is none.
+     * @param out the stream to write to, which is not closed
+     * @return the sequence number of the image
+     * @throws IOException
+     */
+    public long writeDelta(OutputStream out) throws IOException {
+        return write(out, sequence > 0);
+    }
+
+    /**
+     * Returns the sequence number of the last image written, or 0 if none was written.
+     * @return
+     */
+    public long getSequence() {
+        return sequence;
+    }
+
+    /**
+     * Restores an image into data services. A full image can be restored into any services, including ones it was
+     * already restored into or that hold an older state of its channels, a delta only into the services the image it
+     * follows was restored into. Nothing is restored if the image is corrupt or does not match its accumulator roots.
+     * @param in the stream to read the image from
+     * @param channelDataService
+     * @param promiseDataService
+     * @param receiptDataService
+     * @param lastSequence the sequence number of the last image restored into the services, or 0 if none was
+     * @return the sequence number of the restored image
+     * @throws IOException if the stream cannot be read
+     * @throws IllegalArgumentException if the image is corrupt, or is a delta that does not follow the last image
+     * @throws IllegalStateException if the promises after restoring would not match the accumulator roots of the image
+     */
+    public static long restore(InputStream in, IChannelDataService channelDataService, IPromiseDataService promiseDataService,
+                               IReceiptDataService receiptDataService, long lastSequence) throws IOException {
+        long start = System.currentTimeMillis();
+        Image image = read(in);
+        if(image.type == DELTA && image.baseSequence != lastSequence){
+            throw new IllegalArgumentException("Delta " + image.sequence + " follows image " + image.baseSequence + ", not " + lastSequence);
+        }
+        checkAccumulators(image, promiseDataService);
+        for (Channel channel: image.channels) {
+            applyChannel(channelDataService, channel);
+        }
+        if(image.type == FULL){
+            closeStalePromises(image, promiseDataService);
+        }
+        for (StatefulPromise promise: image.incomingPromises) {
+            applyIncomingPromise(promiseDataService, promise);
+        }
+        for (StatefulPromise promise: image.outgoingPromises) {
+            applyOutgoingPromise(promiseDataService, promise);
+        }
+        for (Receipt receipt: image.incomingReceipts) {
+            applyIncomingReceipt(receiptDataService, receipt, receipt.getReceiptId());
+        }
+        for (Receipt receipt: image.outgoingReceipts) {
+            applyOutgoingReceipt(receiptDataService, receipt);
+        }
+        log.info("Restored image {} with {} channels and {} promises in {} ms", image.sequence, image.channels.size(),
+                image.incomingPromises.size() + image.outgoingPromises.size(), System.currentTimeMillis() - start);
+        return image.sequence;
+    }
+
+    /**
+     * Adds a channel, or updates it if it exists.
+     */
+    static void applyChannel(IChannelDataService channelDataService, Channel channel) {
+        if(channelDataService.getChannelById(channel.getId()).isPresent()){
+            channelDataService.updateChannel(channel);
+        } else {
+            channelDataService.addChannel(channel);
+        }
+    }
+
+    /**
+     * Adds an incoming promise with its id and status, or updates it if it exists.
+     */
+    static void applyIncomingPromise(IPromiseDataService promiseDataService, StatefulPromise promise) {
+        if(promiseDataService.getIncomingPromiseById(promise.getPromiseId()).isPresent()){
+            promiseDataService.updateIncomingPromise(promise);
+            return;
+        }
+        StatefulPromise added = promiseDataService.addIncomingPromise(promise, promise.getPromiseId(), promise.getPromiseType(), promise.getTriggerClose());
+        if(added.getStatus() != promise.getStatus()){
+            added.setStatus(promise.getStatus());
+            promiseDataService.updateIncomingPromise(added);
+        }
+    }
+
+    /**
+     * Adds an outgoing promise with its id and status, or updates it if it exists.
+     */
+    static void applyOutgoingPromise(IPromiseDataService promiseDataService, StatefulPromise promise) {
+        if(promiseDataService.getOutgoingPromiseById(promise.getPromiseId()).isPresent()){
+            promiseDataService.updateOutgoingPromise(promise);
+        } else {
+            promiseDataService.restoreOutgoingPromise(promise);
+        }
+    }
+
+    /**
+     * Adds an incoming receipt unless the channel already has a receipt with its id. Receipts are signed and never
+     * change, so an existing one is the same receipt restored before.
+     */
+    static void applyIncomingReceipt(IReceiptDataService receiptDataService, Receipt receipt, long receiptId) {
+        if(!receiptDataService.getIncomingReceiptById(receipt.getChannelId(), receiptId).isPresent()){
+            try {
+                receiptDataService.addIncomingReceipt(receipt, receiptId);
+            } catch (IllegalArgumentException e) {
+                skipDroppedReceipt(receiptDataService.getLatestIncomingReceipt(receipt.getChannelId()), receiptId, e);
+            }
+        }
+    }
+
+    /**
+     * Adds an outgoing receipt unless the channel already has a receipt with its id.
+     */
+    static void applyOutgoingReceipt(IReceiptDataService receiptDataService, Receipt receipt) {
+        if(!receiptDataService.getOutgoingReceiptById(receipt.getChannelId(), receipt.getReceiptId()).isPresent()){
+            try {
+                receiptDataService.addOutgoingReceipt(receipt);
+            } catch (IllegalArgumentException e) {
+                skipDroppedReceipt(receiptDataService.getLatestOutgoingReceipt(receipt.getChannelId()), receipt.getReceiptId(), e);
+            }
+        }
+    }
+
+    /**
+     * A service that drops old receipts (see {@link ReceiptStore}) rejects the ones it already dropped. They are not
+     * needed as long as it holds a newer receipt, otherwise the rejection is rethrown.
+     */
+    private static void skipDroppedReceipt(Optional<Receipt> latest, long receiptId, IllegalArgumentException e) {
+        if(!latest.isPresent() || latest.get().getReceiptId() <= receiptId){
+            throw e;
+        }
+        log.debug("Skipped receipt {} older than the latest receipt {}: {}", receiptId, latest.get().getReceiptId(), e.getMessage());
+    }
+
+    /**
+     * Checks that the open promises of each channel with accumulator roots in the image match the roots. These are the
+     * ones in the image, overlaid on the ones in the services if the image is a delta.
+     */
+    private static void checkAccumulators(Image image, IPromiseDataService promiseDataService) {
+        boolean full = image.type == FULL;
+        for (Map.Entry<Long, byte[][]> roots: image.accumulatorRoots.entrySet()) {
+            long channelId = roots.getKey();
+            List<StatefulPromise> incoming = overlay(full ? new ArrayList<>() : promiseDataService.getOpenIncomingPromises(channelId), image.incomingPromises, channelId);
+            List<StatefulPromise> outgoing = overlay(full ? new ArrayList<>() : promiseDataService.getOpenOutgoingPromises(channelId), image.outgoingPromises, channelId);
+            if(!Arrays.equals(roots.getValue()[0], getRoot(incoming)) || !Arrays.equals(roots.getValue()[1], getRoot(outgoing))){
+                throw new IllegalStateException("Promises of channel " + channelId + " do not match the accumulators of image " + image.sequence);
+            }
+        }
+    }
+
+    /**
+     * Closes the open promises of the channels of a full image that the image does not hold, e.g. the ones closed on
+     * the hub while a standby was disconnected.
+     */
+    private static void closeStalePromises(Image image, IPromiseDataService promiseDataService) {
+        Set<Long> incomingIds = new HashSet<>();
+        for (StatefulPromise promise: image.incomingPromises) {
+            incomingIds.add(promise.getPromiseId());
+        }
+        Set<Long> outgoingIds = new HashSet<>();
+        for (StatefulPromise promise: image.outgoingPromises) {
+            outgoingIds.add(promise.getPromiseId());
+        }
+        for (Channel channel: image.channels) {
+            List<StatefulPromise> incoming = new ArrayList<>(promiseDataService.getOpenIncomingPromises(channel.getId()));
+            incoming.removeIf(p -> incomingIds.contains(p.getPromiseId()));
+            if(!incoming.isEmpty()){
+                promiseDataService.closeIncomingPromises(incoming);
+            }
+            List<StatefulPromise> outgoing = new ArrayList<>(promiseDataService.getOpenOutgoingPromises(channel.getId()));
+            outgoing.removeIf(p -> outgoingIds.contains(p.getPromiseId()));
+            if(!outgoing.isEmpty()){
+                promiseDataService.closeOutgoingPromises(outgoing);
+            }
+        }
+    }
+
+    private static List<StatefulPromise> overlay(List<StatefulPromise> open, List<StatefulPromise> restored, long channelId) {
+        Map<Long, StatefulPromise> promises = new HashMap<>();
+        for (StatefulPromise promise: open) {
+            promises.put(promise.getPromiseId(), promise);
+        }
+        for (StatefulPromise promise: restored) {
+            if(promise.getChannelId() != channelId){
+                continue;
+            }
+            if(promise.getStatus() == PromiseStatus.OPEN){
+                promises.put(promise.getPromiseId(), promise);
+            } else {
+                promises.remove(promise.getPromiseId());
+            }
+        }
+        return new ArrayList<>(promises.values());
+    }
+
+    private long write(OutputStream out, boolean delta) throws IOException {
+        long start = System.currentTimeMillis();
+        DataOutputStream header = new DataOutputStream(out);
+        header.writeInt(MAGIC);
+        header.writeByte(VERSION);
+        header.flush();
+
+        DeflaterOutputStream deflater = new DeflaterOutputStream(out, new Deflater(Deflater.BEST_SPEED));
+        CheckedOutputStream checked = new CheckedOutputStream(deflater, new CRC32());
+        Writer writer = new Writer(new DataOutputStream(checked), delta);
+        writer.out.writeByte(delta ? DELTA : FULL);
+        writer.out.writeLong(sequence + 1);
+        writer.out.writeLong(sequence);
+
+        Map<Long, Long> newChannelPrints = new HashMap<>();
+        Map<Long, Long> newIncomingPrints = new HashMap<>();
+        Map<Long, Long> newOutgoingPrints = new HashMap<>();
+        Map<Long, Long> newIncomingReceiptPrints = new HashMap<>();
+        Map<Long, Long> newOutgoingReceiptPrints = new HashMap<>();
+        for (ChannelStatus status: ChannelStatus.values()) {
+            for (Channel channel: channelDataService.getChannelsByStatus(status)) {
+                long channelId = channel.getId();
+                if(!channelFilter.test(channelId)){
+                    continue;
+                }
+                writer.channel(channel, channelPrints, newChannelPrints);
+                List<StatefulPromise> incoming = promiseDataService.getOpenIncomingPromises(channelId);
+                List<StatefulPromise> outgoing = promiseDataService.getOpenOutgoingPromises(channelId);
+                boolean changed = writer.promises(INCOMING_PROMISE, incoming, incomingPrints, newIncomingPrints);
+                changed |= writer.promises(OUTGOING_PROMISE, outgoing, outgoingPrints, newOutgoingPrints);
+                if(!delta || changed){
+                    writer.accumulators(channelId, incoming, outgoing);
+                }
+                Optional<Receipt> incomingReceipt = receiptDataService.getLatestIncomingReceipt(channelId);
+                if(incomingReceipt.isPresent()){
+                    writer.receipt(INCOMING_RECEIPT, incomingReceipt.get(), incomingReceiptPrints, newIncomingReceiptPrints);
+                }
+                Optional<Receipt> outgoingReceipt = receiptDataService.getLatestOutgoingReceipt(channelId);
+                if(outgoingReceipt.isPresent()){
+                    writer.receipt(OUTGOING_RECEIPT, outgoingReceipt.get(), outgoingReceiptPrints, newOutgoingReceiptPrints);
+                }
+            }
+        }
+        if(delta){
+            // Promises that were open in the previous image and are no longer, with their new status
+            Set<Long> changedChannels = new HashSet<>();
+            for (long id: removed(incomingPrints, newIncomingPrints)) {
+                Optional<StatefulPromise> promise = promiseDataService.getIncomingPromiseById(id);
+                if(promise.isPresent()){
+                    writer.promise(INCOMING_PROMISE, promise.get());
+                    changedChannels.add(promise.get().getChannelId());
+                }
+            }
+            for (long id: removed(outgoingPrints, newOutgoingPrints)) {
+                Optional<StatefulPromise> promise = promiseDataService.getOutgoingPromiseById(id);
+                if(promise.isPresent()){
+                    writer.promise(OUTGOING_PROMISE, promise.get());
+                    changedChannels.add(promise.get().getChannelId());
+                }
+            }
+            changedChannels.removeAll(writer.accumulatorChannels);
+            for (long channelId: changedChannels) {
+                writer.accumulators(channelId, promiseDataService.getOpenIncomingPromises(channelId), promiseDataService.getOpenOutgoingPromises(channelId));
+            }
+        }
+        writer.out.writeByte(END);
+        writer.out.flush();
+        // The checksum itself goes around the checked stream
+        new DataOutputStream(deflater).writeLong(checked.getChecksum().getValue());
+        deflater.finish();
+        out.flush();
+
+        channelPrints = newChannelPrints;
+        incomingPrints = newIncomingPrints;
+        outgoingPrints = newOutgoingPrints;
+        incomingReceiptPrints = newIncomingReceiptPrints;
+        outgoingReceiptPrints = newOutgoingReceiptPrints;
+        sequence += 1;
+        log.info("Wrote {} image {} with {} records in {} ms", delta ? "delta" : "full", sequence, writer.records, System.currentTimeMillis() - start);
+        return sequence;
+    }
+
+    private static Image read(InputStream in) throws IOException {
+        DataInputStream header = new DataInputStream(in);
+        if(header.readInt() != MAGIC){
+            throw new IllegalArgumentException("Not a state snapshot");
+        }
+        int version = header.readUnsignedByte();
+        if(version != VERSION){
+            throw new IllegalArgumentException("Unsupported snapshot version " + version);
+        }
+        InflaterInputStream inflater = new InflaterInputStream(in);
+        CheckedInputStream checked = new CheckedInputStream(inflater, new CRC32());
+        DataInputStream data = new DataInputStream(checked);
+        Image image = new Image();
+        List<String> templates = new ArrayList<>();
+        try {
+            image.type = data.readUnsignedByte();
+            image.sequence = data.readLong();
+            image.baseSequence = data.readLong();
+            int record;
+            while((record = data.readUnsignedByte()) != END){
+                switch (record) {
+                    case CHANNEL:
+                        image.channels.add(ChannelCodec.read(data));
+                        break;
+                    case INCOMING_PROMISE:
+                        image.incomingPromises.add(PromiseCodec.read(data, templates));
+                        break;
+                    case OUTGOING_PROMISE:
+                        image.outgoingPromises.add(PromiseCodec.read(data, templates));
+                        break;
+                    case INCOMING_RECEIPT:
+                        image.incomingReceipts.add(ReceiptCodec.read(data));
+                        break;
+                    case OUTGOING_RECEIPT:
+                        image.outgoingReceipts.add(ReceiptCodec.read(data));
+                        break;
+                    case ACCUMULATORS:
+                        image.accumulatorRoots.put(data.readLong(), new byte[][]{PromiseCodec.readBytes(data), PromiseCodec.readBytes(data)});
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Unknown snapshot record " + record);
+                }
+            }
+            long checksum = checked.getChecksum().getValue();
+            if(new DataInputStream(inflater).readLong() != checksum){
+                throw new IllegalArgumentException("Snapshot checksum does not match");
+            }
+        } catch (EOFException | UTFDataFormatException | ZipException | IndexOutOfBoundsException | NegativeArraySizeException e) {
+            throw new IllegalArgumentException("Corrupt snapshot", e);
+        }
+        return image;
+    }
+
+    private static byte[] getRoot(List<StatefulPromise> promises) {
+        return PromiseService.getAccumulator(promises).getRootHash();
+    }
+
+    private static Set<Long> removed(Map<Long, Long> before, Map<Long, Long> after) {
+        Set<Long> removed = new HashSet<>(before.keySet());
+        removed.removeAll(after.keySet());
+        return removed;
+    }
+
+    /**
+     * Writes the records of one image, skipping the ones that did not change if it is a delta.
+     */
+    private static class Writer {
+        private final DataOutputStream out;
+
+        private final boolean delta;
+
+        private final ByteArrayOutputStream scratch = new ByteArrayOutputStream(256);
+
+        private final DataOutputStream scratchOut = new DataOutputStream(scratch);
+
+        private final Map<String, Integer> templates = new HashMap<>();
+
+        private final Set<Long> accumulatorChannels = new HashSet<>();
+
+        private int records = 0;
+
+        private Writer(DataOutputStream out, boolean delta) {
+            this.out = out;
+            this.delta = delta;
+        }
+
+        private void channel(Channel channel, Map<Long, Long> prints, Map<Long, Long> newPrints) throws IOException {
+            scratch.reset();
+            ChannelCodec.write(scratchOut, channel);
+            if(changed(channel.getId(), prints, newPrints)){
+                out.writeByte(CHANNEL);
+                flushScratch();
+            }
+        }
+
+        private boolean promises(int type, List<StatefulPromise> promises, Map<Long, Long> prints, Map<Long, Long> newPrints) throws IOException {
+            boolean changed = false;
+            for (StatefulPromise promise: promises) {
+                // The bytecode of a promise never changes, so only the other fields are compared
+                scratch.reset();
+                PromiseCodec.write(scratchOut, promise);
+                if(changed(promise.getPromiseId(), prints, newPrints)){
+                    out.writeByte(type);
+                    flushScratch();
+                    PromiseCodec.writeBytecode(out, promise.getCompactBytecode(), templates);
+                    changed = true;
+                }
+            }
+            return changed;
+        }
+
+        private void promise(int type, StatefulPromise promise) throws IOException {
+            out.writeByte(type);
+            PromiseCodec.write(out, promise);
+            PromiseCodec.writeBytecode(out, promise.getCompactBytecode(), templates);
+            records += 1;
+        }
+
+        private void accumulators(long channelId, List<StatefulPromise> incoming, List<StatefulPromise> outgoing) throws IOException {
+            out.writeByte(ACCUMULATORS);
+            out.writeLong(channelId);
+            PromiseCodec.writeBytes(out, getRoot(incoming));
+            PromiseCodec.writeBytes(out, getRoot(outgoing));
+            accumulatorChannels.add(channelId);
+        }
+
+        private void receipt(int type, Receipt receipt, Map<Long, Long> prints, Map<Long, Long> newPrints) throws IOException {
+            scratch.reset();
+            ReceiptCodec.write(scratchOut, receipt);
+            if(changed(receipt.getChannelId(), prints, newPrints)){
+                out.writeByte(type);
+                flushScratch();
+            }
+        }
+
+        private boolean changed(long key, Map<Long, Long> prints, Map<Long, Long> newPrints) {
+            long print = fingerprint(scratch.toByteArray());
+            newPrints.put(key, print);
+            Long previous = prints.get(key);
+            return !delta || previous == null || previous != print;
+        }
+
+        private void flushScratch() throws IOException {
+            scratch.writeTo(out);
+            records += 1;
+        }
+
+        private static long fingerprint(byte[] bytes) {
+            // 64-bit FNV-1a
+            long hash = 0xcbf29ce484222325L;
+            for (byte b: bytes) {
+                hash ^= b & 0xFF;
+                hash *= 0x100000001b3L;
+            }
+            return hash;
+        }
+    }
+
+    private static class Image {
+        private int type;
+        private long sequence;
+        private long baseSequence;
+        private final List<Channel> channels = new ArrayList<>();
+        private final List<StatefulPromise> incomingPromises = new ArrayList<>();
+        private final List<StatefulPromise> outgoingPromises = new ArrayList<>();
+        private final List<Receipt> incomingReceipts = new ArrayList<>();
+        private final List<Receipt> outgoingReceipts = new ArrayList<>();
+        private final Map<Long, byte[][]> accumulatorRoots = new HashMap<>();
+    }
+}
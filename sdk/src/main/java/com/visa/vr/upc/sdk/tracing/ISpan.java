@@ -0,0 +1,34 @@
+package com.visa.vr.upc.sdk.tracing;
+
+/**
+ * A timed operation of a trace, e.g. one stage of creating a promise. A span is ended by {@link #close()}, so it can
+ * be used in a try-with-resources block. Spans are used by the thread that started them only.
+ */
+public interface ISpan extends AutoCloseable {
+
+    /**
+     * @param key
+     * @param value
+     * @return this span
+     */
+    ISpan setAttribute(String key, long value);
+
+    /**
+     * @param key
+     * @param value
+     * @return this span
+     */
+    ISpan setAttribute(String key, String value);
+
+    /**
+     * Marks the span as failed.
+     * @param exception
+     */
+    void recordException(Throwable exception);
+
+    /**
+     * Ends the span.
+     */
+    @Override
+    void close();
+}
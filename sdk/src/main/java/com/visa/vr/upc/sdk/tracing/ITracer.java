@@ -0,0 +1,20 @@
+package com.visa.vr.upc.sdk.tracing;
+
+/**
+ * A minimal tracing SPI, so the SDK can be traced without depending on a tracing library. It maps onto OpenTelemetry:
+ * {@link #startSpan(String, ISpan)} to {@code tracer.spanBuilder(name).setParent(...).startSpan()}, and the methods
+ * of {@link ISpan} to {@code setAttribute}, {@code recordException} and {@code end}.
+ *
+ * The SDK starts spans through {@link Tracing#startSpan(String)}, which tracks the current span of each thread and
+ * applies sampling, so implementations only create and export spans. Implementations must be thread safe.
+ */
+public interface ITracer {
+
+    /**
+     * Starts a span.
+     * @param name
+     * @param parent the span this span is a part of, as returned by this tracer, or null for the root span of a trace
+     * @return
+     */
+    ISpan startSpan(String name, ISpan parent);
+}
@@ -0,0 +1,129 @@
+package com.visa.vr.upc.sdk.tracing;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * An {@link ITracer} that keeps ended spans in memory, e.g. to check the traces of a test or to dump the slowest
+ * traces of a load test.
+ */
+public class InMemoryTracer implements ITracer {
+
+    private final AtomicLong nextId = new AtomicLong(1);
+
+    private final ConcurrentLinkedQueue<RecordedSpan> finishedSpans = new ConcurrentLinkedQueue<>();
+
+    @Override
+    public ISpan startSpan(String name, ISpan parent) {
+        long spanId = nextId.getAndIncrement();
+        if(parent instanceof RecordedSpan){
+            RecordedSpan p = (RecordedSpan) parent;
+            return new RecordedSpan(name, p.traceId, spanId, p.spanId);
+        }
+        return new RecordedSpan(name, spanId, spanId, 0);
+    }
+
+    /**
+     * Returns the ended spans, in the order they ended.
+     * @return
+     */
+    public List<RecordedSpan> getFinishedSpans() {
+        return new ArrayList<>(finishedSpans);
+    }
+
+    public void reset() {
+        finishedSpans.clear();
+    }
+
+    /**
+     * A span of an {@link InMemoryTracer}. The trace id is the span id of the root span.
+     */
+    public class RecordedSpan implements ISpan {
+        private final String name;
+
+        private final long traceId;
+
+        private final long spanId;
+
+        private final long parentSpanId;
+
+        private final long startNanos = System.nanoTime();
+
+        private final Map<String, Object> attributes = new LinkedHashMap<>();
+
+        private volatile long endNanos = -1;
+
+        private Throwable exception;
+
+        private RecordedSpan(String name, long traceId, long spanId, long parentSpanId) {
+            this.name = name;
+            this.traceId = traceId;
+            this.spanId = spanId;
+            this.parentSpanId = parentSpanId;
+        }
+
+        @Override
+        public ISpan setAttribute(String key, long value) {
+            attributes.put(key, value);
+            return this;
+        }
+
+        @Override
+        public ISpan setAttribute(String key, String value) {
+            attributes.put(key, value);
+            return this;
+        }
+
+        @Override
+        public void recordException(Throwable exception) {
+            this.exception = exception;
+        }
+
+        @Override
+        public void close() {
+            if(endNanos < 0){
+                endNanos = System.nanoTime();
+                finishedSpans.add(this);
+            }
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public long getTraceId() {
+            return traceId;
+        }
+
+        public long getSpanId() {
+            return spanId;
+        }
+
+        /**
+         * @return the id of the parent span, or 0 for a root span
+         */
+        public long getParentSpanId() {
+            return parentSpanId;
+        }
+
+        public Map<String, Object> getAttributes() {
+            return Collections.unmodifiableMap(attributes);
+        }
+
+        public Throwable getException() {
+            return exception;
+        }
+
+        /**
+         * @return the duration in nanoseconds, or -1 if the span has not ended
+         */
+        public long getDurationNanos() {
+            return endNanos < 0 ? -1 : endNanos - startNanos;
+        }
+    }
+}
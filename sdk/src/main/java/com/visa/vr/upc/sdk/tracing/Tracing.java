@@ -0,0 +1,203 @@
+package com.visa.vr.upc.sdk.tracing;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Holds the {@link ITracer} the SDK reports spans to, and the names of the spans and attributes it reports. Nothing
+ * is traced until a tracer is set with {@link #set(ITracer, double)}.
+ *
+ * Spans started on a thread while another span of that thread is open become its children. Sampling is decided once
+ * per trace, when its root span is started; the spans of a trace that is not sampled cost one allocation each.
+ */
+public final class Tracing {
+
+    /**
+     * Root span of {@code StatefulUPCService.createPromise}.
+     */
+    public static final String PROMISE_SEND = "upc.promise.send";
+
+    /**
+     * Root span of {@code StatefulUPCService.checkPromise}.
+     */
+    public static final String PROMISE_RECEIVE = "upc.promise.receive";
+
+    /**
+     * Root span of {@code StatefulUPCService.createReceipt}.
+     */
+    public static final String RECEIPT_SEND = "upc.receipt.send";
+
+    /**
+     * Root span of {@code StatefulUPCService.checkReceipt}.
+     */
+    public static final String RECEIPT_RECEIVE = "upc.receipt.receive";
+
+    public static final String PROMISE_CREATE = "upc.promise.create";
+
+    public static final String PROMISE_BYTECODE = "upc.promise.bytecode";
+
+    /**
+     * Computing the CREATE2 address of a promise.
+     */
+    public static final String PROMISE_CREATE2 = "upc.promise.create2";
+
+    public static final String PROMISE_HASH = "upc.promise.hash";
+
+    public static final String PROMISE_SIGN = "upc.promise.sign";
+
+    public static final String PROMISE_VERIFY = "upc.promise.verify";
+
+    public static final String RECEIPT_CREATE = "upc.receipt.create";
+
+    public static final String RECEIPT_SIGN = "upc.receipt.sign";
+
+    public static final String RECEIPT_VERIFY = "upc.receipt.verify";
+
+    /**
+     * Building the Merkle accumulator of the open promises of a receipt.
+     */
+    public static final String ACCUMULATOR_BUILD = "upc.accumulator.build";
+
+    /**
+     * Recovering the signer of a promise or receipt.
+     */
+    public static final String SIGNATURE_RECOVER = "upc.signature.recover";
+
+    /**
+     * Storing a promise or receipt in a data service.
+     */
+    public static final String DATA_STORE = "upc.data.store";
+
+    public static final String CHANNEL_ID = "upc.channel.id";
+
+    /**
+     * The id of a promise in the data service, once it is stored.
+     */
+    public static final String PROMISE_ID = "upc.promise.id";
+
+    public static final String PROMISE_ADDRESS = "upc.promise.address";
+
+    public static final String RECEIPT_ID = "upc.receipt.id";
+
+    /**
+     * Does nothing.
+     */
+    public static final ISpan NOOP_SPAN = new ISpan() {
+        @Override
+        public ISpan setAttribute(String key, long value) {
+            return this;
+        }
+
+        @Override
+        public ISpan setAttribute(String key, String value) {
+            return this;
+        }
+
+        @Override
+        public void recordException(Throwable exception) {
+        }
+
+        @Override
+        public void close() {
+        }
+    };
+
+    /**
+     * Starts no spans.
+     */
+    public static final ITracer NOOP = (name, parent) -> NOOP_SPAN;
+
+    private static final ThreadLocal<Scope> CURRENT = new ThreadLocal<>();
+
+    private static volatile ITracer tracer = NOOP;
+
+    private static volatile double samplingRatio = 1;
+
+    private Tracing() {
+    }
+
+    public static ITracer get() {
+        return tracer;
+    }
+
+    /**
+     * Sets the tracer all SDK spans are reported to, tracing every operation.
+     * @param tracer the tracer, or null to stop tracing
+     */
+    public static void set(ITracer tracer) {
+        set(tracer, 1);
+    }
+
+    /**
+     * Sets the tracer all SDK spans are reported to.
+     * @param tracer the tracer, or null to stop tracing
+     * @param samplingRatio the fraction of traces to report, between 0 and 1
+     */
+    public static void set(ITracer tracer, double samplingRatio) {
+        if(!(samplingRatio >= 0 && samplingRatio <= 1)){
+            throw new IllegalArgumentException("Sampling ratio must be between 0 and 1");
+        }
+        Tracing.samplingRatio = samplingRatio;
+        Tracing.tracer = tracer != null ? tracer : NOOP;
+    }
+
+    /**
+     * Starts a span as a child of the current span of this thread, and makes it the current span until it is closed.
+     * @param name
+     * @return
+     */
+    public static ISpan startSpan(String name) {
+        ITracer t = tracer;
+        if(t == NOOP){
+            return NOOP_SPAN;
+        }
+        Scope parent = CURRENT.get();
+        ISpan span;
+        if(parent == null){
+            span = ThreadLocalRandom.current().nextDouble() < samplingRatio ? t.startSpan(name, null) : NOOP_SPAN;
+        } else {
+            span = parent.span == NOOP_SPAN ? NOOP_SPAN : t.startSpan(name, parent.span);
+        }
+        Scope scope = new Scope(span, parent);
+        CURRENT.set(scope);
+        return scope;
+    }
+
+    /**
+     * Restores the parent as the current span of the thread when the span is closed.
+     */
+    private static final class Scope implements ISpan {
+        private final ISpan span;
+
+        private final Scope parent;
+
+        private Scope(ISpan span, Scope parent) {
+            this.span = span;
+            this.parent = parent;
+        }
+
+        @Override
+        public ISpan setAttribute(String key, long value) {
+            span.setAttribute(key, value);
+            return this;
+        }
+
+        @Override
+        public ISpan setAttribute(String key, String value) {
+            span.setAttribute(key, value);
+            return this;
+        }
+
+        @Override
+        public void recordException(Throwable exception) {
+            span.recordException(exception);
+        }
+
+        @Override
+        public void close() {
+            span.close();
+            if(CURRENT.get() == this){
+                CURRENT.set(parent);
+            }
+        }
+    }
+}
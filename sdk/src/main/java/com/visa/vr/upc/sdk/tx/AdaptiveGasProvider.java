@@ -0,0 +1,308 @@
+package com.visa.vr.upc.sdk.tx;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.web3j.protocol.Web3j;
+import org.web3j.protocol.core.DefaultBlockParameterName;
+import org.web3j.protocol.core.methods.request.Transaction;
+import org.web3j.protocol.core.methods.response.EthEstimateGas;
+import org.web3j.protocol.core.methods.response.EthFeeHistory;
+import org.web3j.protocol.core.methods.response.EthGasPrice;
+import org.web3j.tx.gas.ContractEIP1559GasProvider;
+import org.web3j.utils.Numeric;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A gas provider that sizes gas limits from node estimates instead of sending every transaction with the block gas limit.
+ *
+ * Estimates are cached per function and input shape, since the gas of UPC calls mostly depends on the size of their
+ * input (e.g. registerPromise on the proof length and promise bytecode size, withdrawClosing on the number of
+ * unresolved promises). Shapes are bucketed by powers of two, and an estimate is scaled up linearly for larger shapes
+ * in the same bucket. Fees are priced from a window of recent blocks with eth_feeHistory, falling back to legacy
+ * eth_gasPrice pricing on nodes without EIP-1559.
+ */
+public class AdaptiveGasProvider implements ContractEIP1559GasProvider {
+
+    private static final Logger log = LoggerFactory.getLogger(AdaptiveGasProvider.class);
+
+    private final Web3j web3j;
+
+    private final long chainId;
+
+    private final BigInteger fallbackGasLimit;
+
+    private final double headroom;
+
+    private final int feeHistoryBlocks;
+
+    private final double rewardPercentile;
+
+    private final long feeTtlMillis;
+
+    private final Map<String, Estimate> estimates = new ConcurrentHashMap<>();
+
+    private final Map<String, BigInteger> maxLimits = new ConcurrentHashMap<>();
+
+    private volatile Fees fees;
+
+    /**
+     * Basic constructor.
+     * @param web3j
+     * @param chainId
+     * @param fallbackGasLimit used when a call cannot be estimated, e.g. the block gas limit
+     * @param headroom the factor applied to estimates, e.g. 1.2
+     * @param feeHistoryBlocks the number of recent blocks the fees are priced from
+     * @param rewardPercentile the percentile of the priority fees paid in those blocks to offer, e.g. 50
+     * @param feeTtlMillis how long fees are reused before asking the node again
+     */
+    public AdaptiveGasProvider(Web3j web3j, long chainId, BigInteger fallbackGasLimit, double headroom,
+                               int feeHistoryBlocks, double rewardPercentile, long feeTtlMillis) {
+        if(headroom < 1){
+            throw new IllegalArgumentException("Headroom must be at least 1");
+        }
+        if(feeHistoryBlocks < 1){
+            throw new IllegalArgumentException("Fee history window must be positive");
+        }
+        this.web3j = web3j;
+        this.chainId = chainId;
+        this.fallbackGasLimit = fallbackGasLimit;
+        this.headroom = headroom;
+        this.feeHistoryBlocks = feeHistoryBlocks;
+        this.rewardPercentile = rewardPercentile;
+        this.feeTtlMillis = feeTtlMillis;
+    }
+
+    /**
+     * Returns the gas limit for a call whose gas depends on the size of its calldata. These estimates are cached
+     * apart from those with an explicit shape, so the two never reuse each other's estimates.
+     * @param from
+     * @param to
+     * @param data
+     * @param functionName
+     * @return
+     */
+    public BigInteger estimateGasLimit(String from, String to, String data, String functionName) {
+        return estimateGasLimit(from, to, data, functionName, "calldata", Numeric.cleanHexPrefix(data).length() / 2);
+    }
+
+    /**
+     * Returns the gas limit for a call, reusing a cached estimate for the same function and shape bucket. Falls back
+     * to the fallback gas limit if the call cannot be estimated, e.g. because it depends on a transaction that is not
+     * yet mined.
+     * @param from the sender
+     * @param to the contract address
+     * @param data the encoded function call
+     * @param functionName
+     * @param shape the size of the input the gas depends on, e.g. the number of unresolved promises
+     * @return the estimate with headroom
+     */
+    public BigInteger estimateGasLimit(String from, String to, String data, String functionName, long shape) {
+        return estimateGasLimit(from, to, data, functionName, "shape", shape);
+    }
+
+    private BigInteger estimateGasLimit(String from, String to, String data, String functionName, String shapeKind, long shape) {
+        String key = functionName + ":" + shapeKind + ":" + bucket(shape);
+        Estimate cached = estimates.get(key);
+        BigInteger gas;
+        if(cached != null){
+            gas = cached.scale(shape);
+        } else {
+            try {
+                EthEstimateGas response = web3j.ethEstimateGas(Transaction.createEthCallTransaction(from, to, data)).send();
+                if(response.hasError()){
+                    log.info("Failed to estimate gas of {} on {}, exception: {}", functionName, to, response.getError().getMessage());
+                    return fallbackGasLimit;
+                }
+                gas = response.getAmountUsed();
+            } catch (IOException e) {
+                log.info("Failed to estimate gas of {} on {}, exception: {}", functionName, to, e.getMessage());
+                return fallbackGasLimit;
+            }
+            estimates.put(key, new Estimate(gas, Math.max(1, shape)));
+        }
+        BigInteger limit = new BigDecimal(gas).multiply(BigDecimal.valueOf(headroom)).setScale(0, RoundingMode.CEILING).toBigInteger().min(fallbackGasLimit);
+        maxLimits.merge(functionName, limit, BigInteger::max);
+        return limit;
+    }
+
+    /**
+     * Forgets all cached estimates, e.g. after a contract upgrade.
+     */
+    public void clearEstimates() {
+        estimates.clear();
+        maxLimits.clear();
+    }
+
+    /**
+     * Returns the largest gas limit estimated for a function so far, or the fallback gas limit if it was never estimated.
+     * Contract wrappers only pass the function name, so call {@link #estimateGasLimit(String, String, String, String, long)}
+     * first to size their transactions.
+     * @param contractFunc
+     * @return
+     */
+    @Override
+    public BigInteger getGasLimit(String contractFunc) {
+        return maxLimits.getOrDefault(contractFunc, fallbackGasLimit);
+    }
+
+    @Override
+    public BigInteger getGasLimit() {
+        return fallbackGasLimit;
+    }
+
+    /**
+     * Returns the max fee per gas if EIP-1559 is enabled, otherwise the legacy gas price.
+     * @param contractFunc
+     * @return
+     */
+    @Override
+    public BigInteger getGasPrice(String contractFunc) {
+        Fees current = fees();
+        return current.eip1559 ? current.maxFeePerGas : current.gasPrice;
+    }
+
+    @Override
+    public BigInteger getGasPrice() {
+        return getGasPrice(null);
+    }
+
+    @Override
+    public boolean isEIP1559Enabled() {
+        return fees().eip1559;
+    }
+
+    @Override
+    public long getChainId() {
+        return chainId;
+    }
+
+    @Override
+    public BigInteger getMaxFeePerGas(String contractFunc) {
+        return fees().maxFeePerGas;
+    }
+
+    @Override
+    public BigInteger getMaxPriorityFeePerGas(String contractFunc) {
+        return fees().maxPriorityFeePerGas;
+    }
+
+    private Fees fees() {
+        Fees current = fees;
+        if(current != null && System.currentTimeMillis() - current.fetchedAt < feeTtlMillis){
+            return current;
+        }
+        synchronized (this) {
+            if(fees == current){
+                Fees fetched = fetchFees();
+                if(fetched != null){
+                    fees = fetched;
+                } else if(current == null){
+                    throw new IllegalStateException("Failed to get fees from the node");
+                }
+            }
+            return fees;
+        }
+    }
+
+    /**
+     * Prices the next block's fees: the max priority fee is the median, over the window, of the chosen reward
+     * percentile, and the max fee leaves room for the base fee to double.
+     * @return the fees, or null if neither fee history nor gas price could be fetched
+     */
+    private Fees fetchFees() {
+        try {
+            EthFeeHistory response = web3j.ethFeeHistory(feeHistoryBlocks, DefaultBlockParameterName.LATEST,
+                    Collections.singletonList(rewardPercentile)).send();
+            EthFeeHistory.FeeHistory history = response.hasError() ? null : response.getFeeHistory();
+            if(history != null && history.getBaseFeePerGas() != null && !history.getBaseFeePerGas().isEmpty()){
+                List<BigInteger> baseFees = history.getBaseFeePerGas();
+                // The last base fee is the one of the next block
+                BigInteger nextBaseFee = baseFees.get(baseFees.size() - 1);
+                BigInteger priorityFee = medianReward(history.getReward());
+                return new Fees(true, nextBaseFee.shiftLeft(1).add(priorityFee), priorityFee, null);
+            }
+            log.info("Fee history not available, falling back to legacy gas price");
+        } catch (IOException | RuntimeException e) {
+            log.info("Failed to get fee history, exception: {}", e.getMessage());
+        }
+        try {
+            EthGasPrice gasPrice = web3j.ethGasPrice().send();
+            if(!gasPrice.hasError()){
+                return new Fees(false, null, null, gasPrice.getGasPrice());
+            }
+            log.info("Failed to get gas price, exception: {}", gasPrice.getError().getMessage());
+        } catch (IOException e) {
+            log.info("Failed to get gas price, exception: {}", e.getMessage());
+        }
+        return null;
+    }
+
+    private static BigInteger medianReward(List<List<BigInteger>> rewards) {
+        List<BigInteger> values = new ArrayList<>();
+        if(rewards != null){
+            for (List<BigInteger> reward: rewards) {
+                if(reward != null && !reward.isEmpty()){
+                    values.add(reward.get(0));
+                }
+            }
+        }
+        if(values.isEmpty()){
+            return BigInteger.ZERO;
+        }
+        Collections.sort(values);
+        return values.get(values.size() / 2);
+    }
+
+    private static int bucket(long shape) {
+        return shape <= 1 ? 0 : 64 - Long.numberOfLeadingZeros(shape - 1);
+    }
+
+    private static class Estimate {
+        private final BigInteger gas;
+
+        private final long shape;
+
+        private Estimate(BigInteger gas, long shape) {
+            this.gas = gas;
+            this.shape = shape;
+        }
+
+        /**
+         * Scales the estimate up for a larger shape, never down.
+         */
+        private BigInteger scale(long shape) {
+            if(shape <= this.shape){
+                return gas;
+            }
+            return gas.multiply(BigInteger.valueOf(shape)).add(BigInteger.valueOf(this.shape - 1)).divide(BigInteger.valueOf(this.shape));
+        }
+    }
+
+    private static class Fees {
+        private final boolean eip1559;
+
+        private final BigInteger maxFeePerGas;
+
+        private final BigInteger maxPriorityFeePerGas;
+
+        private final BigInteger gasPrice;
+
+        private final long fetchedAt = System.currentTimeMillis();
+
+        private Fees(boolean eip1559, BigInteger maxFeePerGas, BigInteger maxPriorityFeePerGas, BigInteger gasPrice) {
+            this.eip1559 = eip1559;
+            this.maxFeePerGas = maxFeePerGas;
+            this.maxPriorityFeePerGas = maxPriorityFeePerGas;
+            this.gasPrice = gasPrice;
+        }
+    }
+}
@@ -0,0 +1,238 @@
+package com.visa.vr.upc.sdk.tx;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.web3j.protocol.Web3j;
+import org.web3j.protocol.Web3jService;
+import org.web3j.protocol.core.BatchRequest;
+import org.web3j.protocol.core.BatchResponse;
+import org.web3j.protocol.core.Request;
+import org.web3j.protocol.core.Response;
+import org.web3j.protocol.core.methods.response.EthGetTransactionReceipt;
+import org.web3j.protocol.core.methods.response.TransactionReceipt;
+import org.web3j.protocol.exceptions.TransactionException;
+import org.web3j.utils.Numeric;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tracks the receipts of many pending transactions with a single poller.
+ *
+ * On every new block, all receipts of the block are fetched with one eth_getBlockReceipts call and matched against the
+ * tracked transactions. Transactions that are newly tracked (and may have been mined before tracking started) are
+ * looked up once with a batched eth_getTransactionReceipt. If the node does not support eth_getBlockReceipts, or falls
+ * too far behind, all tracked transactions are looked up with a batched eth_getTransactionReceipt instead.
+ */
+public class ReceiptTracker implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(ReceiptTracker.class);
+
+    private static final int MAX_BLOCKS_PER_POLL = 32;
+
+    private static final int METHOD_NOT_FOUND = -32601;
+
+    private final Web3jService web3jService;
+
+    private final Web3j web3j;
+
+    private final long timeoutMillis;
+
+    private final Map<String, Tracked> pending = new ConcurrentHashMap<>();
+
+    private final ConcurrentLinkedQueue<Tracked> fresh = new ConcurrentLinkedQueue<>();
+
+    private final ScheduledExecutorService poller;
+
+    private BigInteger lastBlock;
+
+    private volatile boolean blockReceiptsSupported = true;
+
+    /**
+     * Basic constructor. Starts the poller.
+     * @param web3jService the service used for the RPC calls, which must support batch requests
+     * @param pollIntervalMillis how often to check for new blocks, usually a fraction of the block time
+     * @param timeoutMillis how long to wait for a receipt before failing
+     */
+    public ReceiptTracker(Web3jService web3jService, long pollIntervalMillis, long timeoutMillis) {
+        this.web3jService = web3jService;
+        this.web3j = Web3j.build(web3jService);
+        this.timeoutMillis = timeoutMillis;
+        this.poller = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "upc-receipt-tracker");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.poller.scheduleWithFixedDelay(this::poll, pollIntervalMillis, pollIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Tracks a transaction. Tracking the same hash twice returns the same future.
+     * @param transactionHash
+     * @return the {@link CompletableFuture} of the {@link TransactionReceipt}, which fails with a
+     * {@link TransactionException} if no receipt is found in time
+     */
+    public CompletableFuture<TransactionReceipt> track(String transactionHash) {
+        String key = transactionHash.toLowerCase();
+        Tracked tracked = pending.computeIfAbsent(key, k -> {
+            Tracked t = new Tracked(k);
+            fresh.add(t);
+            return t;
+        });
+        return tracked.future;
+    }
+
+    /**
+     * Stops polling and fails all tracked transactions.
+     */
+    @Override
+    public void close() {
+        poller.shutdownNow();
+        for (Tracked tracked: pending.values()) {
+            tracked.future.completeExceptionally(new IllegalStateException("Receipt tracker closed"));
+        }
+        pending.clear();
+    }
+
+    /**
+     * Returns the number of transactions waiting for a receipt.
+     * @return
+     */
+    public int getPendingCount() {
+        return pending.size();
+    }
+
+    /**
+     * Returns whether receipts are fetched per block with eth_getBlockReceipts.
+     * @return
+     */
+    public boolean isBlockReceiptsSupported() {
+        return blockReceiptsSupported;
+    }
+
+    private void poll() {
+        try {
+            if(pending.isEmpty()){
+                lastBlock = null;
+                return;
+            }
+            List<Tracked> newlyTracked = new ArrayList<>();
+            Tracked t;
+            while((t = fresh.poll()) != null){
+                newlyTracked.add(t);
+            }
+            BigInteger head = web3j.ethBlockNumber().send().getBlockNumber();
+            if(!blockReceiptsSupported || lastBlock == null || head.subtract(lastBlock).intValue() > MAX_BLOCKS_PER_POLL){
+                lookUp(new ArrayList<>(pending.values()));
+            } else {
+                for(BigInteger b = lastBlock.add(BigInteger.ONE); b.compareTo(head) <= 0; b = b.add(BigInteger.ONE)){
+                    if(!scanBlock(b)){
+                        lookUp(new ArrayList<>(pending.values()));
+                        break;
+                    }
+                }
+                lookUp(newlyTracked);
+            }
+            lastBlock = head;
+            expire();
+        } catch (IOException | RuntimeException e) {
+            log.info("Failed to poll transaction receipts, exception: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Completes the tracked transactions mined in a block.
+     * @param block
+     * @return false if the block receipts could not be fetched
+     * @throws IOException
+     */
+    private boolean scanBlock(BigInteger block) throws IOException {
+        EthBlockReceipts response = new Request<>("eth_getBlockReceipts",
+                Collections.singletonList(Numeric.encodeQuantity(block)),
+                web3jService,
+                EthBlockReceipts.class).send();
+        if(response.hasError()){
+            if(response.getError().getCode() == METHOD_NOT_FOUND){
+                log.info("Node does not support eth_getBlockReceipts, falling back to batched receipt lookups");
+                blockReceiptsSupported = false;
+            }
+            return false;
+        }
+        if(response.getResult() == null){
+            return false;
+        }
+        for (TransactionReceipt receipt: response.getResult()) {
+            Tracked tracked = pending.remove(receipt.getTransactionHash().toLowerCase());
+            if(tracked != null){
+                tracked.future.complete(receipt);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Looks up the receipts of some tracked transactions in one batch.
+     * @param transactions
+     * @throws IOException
+     */
+    private void lookUp(List<Tracked> transactions) throws IOException {
+        List<Tracked> stillPending = new ArrayList<>();
+        BatchRequest batch = web3j.newBatch();
+        for (Tracked tracked: transactions) {
+            if(!tracked.future.isDone()){
+                stillPending.add(tracked);
+                batch.add(web3j.ethGetTransactionReceipt(tracked.hash));
+            }
+        }
+        if(stillPending.isEmpty()){
+            return;
+        }
+        BatchResponse responses = batch.send();
+        List<? extends Response<?>> results = responses.getResponses();
+        for(int i = 0; i < stillPending.size() && i < results.size(); i++){
+            Tracked tracked = stillPending.get(i);
+            ((EthGetTransactionReceipt) results.get(i)).getTransactionReceipt().ifPresent(receipt -> {
+                pending.remove(tracked.hash);
+                tracked.future.complete(receipt);
+            });
+        }
+    }
+
+    private void expire() {
+        long now = System.currentTimeMillis();
+        for (Tracked tracked: pending.values()) {
+            if(now - tracked.trackedAt > timeoutMillis && pending.remove(tracked.hash, tracked)){
+                tracked.future.completeExceptionally(new TransactionException(
+                        "Transaction receipt was not generated after " + timeoutMillis + "ms", tracked.hash));
+            }
+        }
+    }
+
+    /**
+     * The response of eth_getBlockReceipts.
+     */
+    public static class EthBlockReceipts extends Response<List<TransactionReceipt>> {
+    }
+
+    private static class Tracked {
+        private final String hash;
+
+        private final long trackedAt = System.currentTimeMillis();
+
+        private final CompletableFuture<TransactionReceipt> future = new CompletableFuture<>();
+
+        private Tracked(String hash) {
+            this.hash = hash;
+        }
+    }
+}
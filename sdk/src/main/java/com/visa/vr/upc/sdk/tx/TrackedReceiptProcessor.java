@@ -0,0 +1,39 @@
+package com.visa.vr.upc.sdk.tx;
+
+import org.web3j.protocol.Web3j;
+import org.web3j.protocol.core.methods.response.TransactionReceipt;
+import org.web3j.protocol.exceptions.TransactionException;
+import org.web3j.tx.response.TransactionReceiptProcessor;
+
+import java.io.IOException;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * A {@link TransactionReceiptProcessor} that waits on a shared {@link ReceiptTracker} instead of polling for each
+ * transaction. Pass it to a {@link org.web3j.tx.RawTransactionManager} so that the sendAsync calls in
+ * {@link com.visa.vr.upc.sdk.UPCService} share one poller.
+ */
+public class TrackedReceiptProcessor extends TransactionReceiptProcessor {
+
+    private final ReceiptTracker tracker;
+
+    public TrackedReceiptProcessor(Web3j web3j, ReceiptTracker tracker) {
+        super(web3j);
+        this.tracker = tracker;
+    }
+
+    @Override
+    public TransactionReceipt waitForTransactionReceipt(String transactionHash) throws IOException, TransactionException {
+        try {
+            return tracker.track(transactionHash).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new TransactionException(e);
+        } catch (ExecutionException e) {
+            if(e.getCause() instanceof TransactionException){
+                throw (TransactionException) e.getCause();
+            }
+            throw new TransactionException(e.getCause());
+        }
+    }
+}
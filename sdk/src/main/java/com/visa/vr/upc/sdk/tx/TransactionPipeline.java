@@ -0,0 +1,275 @@
+package com.visa.vr.upc.sdk.tx;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.web3j.crypto.Hash;
+import org.web3j.crypto.RawTransaction;
+import org.web3j.protocol.Web3j;
+import org.web3j.protocol.core.DefaultBlockParameterName;
+import org.web3j.protocol.core.methods.response.EthSendTransaction;
+import org.web3j.protocol.core.methods.response.TransactionReceipt;
+import org.web3j.protocol.exceptions.TransactionException;
+import org.web3j.service.TxSignService;
+import org.web3j.tx.gas.ContractEIP1559GasProvider;
+import org.web3j.tx.gas.ContractGasProvider;
+import org.web3j.utils.Numeric;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Submits transactions from a single account without waiting for each one to be mined.
+ *
+ * Nonces are allocated locally, so many independent transactions (e.g. closing many channels) can be in the mempool
+ * at once, up to a configurable in-flight window. Transactions are signed and sent in submission order by a single
+ * sender thread. If sending fails, the same transaction is retried with a re-synced nonce before any later
+ * transaction is sent, so the nonce sequence has no gaps. Receipts for all in-flight transactions are waited on with
+ * a shared {@link ReceiptTracker}, instead of one poller per transaction.
+ */
+public class TransactionPipeline implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(TransactionPipeline.class);
+
+    private final Web3j web3j;
+
+    private final TxSignService signer;
+
+    private final long chainId;
+
+    private final ContractGasProvider gasProvider;
+
+    private final Semaphore window;
+
+    private final int maxRetries;
+
+    private final long retryDelayMillis;
+
+    private final ReceiptTracker tracker;
+
+    private final BlockingQueue<PendingTransaction> queue = new LinkedBlockingQueue<>();
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    private final Thread sender;
+
+    private BigInteger nonce;
+
+    private volatile boolean resyncNonce = false;
+
+    private volatile boolean closed = false;
+
+    /**
+     * Basic constructor. Starts the sender thread.
+     * @param web3j
+     * @param tracker waits for the receipts, may be shared with other pipelines
+     * @param signer signs the transactions, e.g. an {@link com.visa.vr.upc.sdk.custody.ISigner}
+     * @param chainId
+     * @param gasProvider if this is an enabled {@link ContractEIP1559GasProvider}, EIP-1559 transactions are sent. If this
+     *                    is an {@link AdaptiveGasProvider}, each transaction's gas limit is estimated from its calldata
+     * @param maxInFlight the maximum number of sent transactions without a receipt
+     * @param maxRetries how many times sending a transaction is retried before it fails
+     * @param retryDelayMillis how long to wait before retrying
+     */
+    public TransactionPipeline(Web3j web3j, ReceiptTracker tracker, TxSignService signer, long chainId, ContractGasProvider gasProvider,
+                               int maxInFlight, int maxRetries, long retryDelayMillis) {
+        if(maxInFlight < 1){
+            throw new IllegalArgumentException("In-flight window must be positive");
+        }
+        this.web3j = web3j;
+        this.tracker = tracker;
+        this.signer = signer;
+        this.chainId = chainId;
+        this.gasProvider = gasProvider;
+        this.window = new Semaphore(maxInFlight);
+        this.maxRetries = maxRetries;
+        this.retryDelayMillis = retryDelayMillis;
+        this.sender = new Thread(this::sendLoop, "upc-tx-sender");
+        this.sender.setDaemon(true);
+        this.sender.start();
+    }
+
+    /**
+     * Queues a contract call for sending.
+     * @param to the contract address
+     * @param data the encoded function call, e.g. from {@link org.web3j.protocol.core.RemoteFunctionCall#encodeFunctionCall()}
+     * @param functionName the name of the function, passed to the gas provider
+     * @return the {@link CompletableFuture} of the {@link TransactionReceipt}, which fails with a {@link TransactionException} if the transaction reverts
+     */
+    public CompletableFuture<TransactionReceipt> submit(String to, String data, String functionName) {
+        return submit(to, data, functionName, null);
+    }
+
+    /**
+     * Queues a contract call whose gas depends on contract state rather than on its calldata, e.g. withdrawClosing on
+     * the number of unresolved promises.
+     * @param to the contract address
+     * @param data the encoded function call
+     * @param functionName the name of the function, passed to the gas provider
+     * @param shape the size of the state the gas depends on, passed to {@link AdaptiveGasProvider#estimateGasLimit(String, String, String, String, long)}
+     * @return the {@link CompletableFuture} of the {@link TransactionReceipt}
+     */
+    public CompletableFuture<TransactionReceipt> submit(String to, String data, String functionName, long shape) {
+        return submit(to, data, functionName, Long.valueOf(shape));
+    }
+
+    private CompletableFuture<TransactionReceipt> submit(String to, String data, String functionName, Long shape) {
+        if(closed){
+            throw new RejectedExecutionException("Transaction pipeline is closed");
+        }
+        PendingTransaction tx = new PendingTransaction(to, data, functionName, shape);
+        queue.add(tx);
+        return tx.future;
+    }
+
+    /**
+     * Stops sending. Queued transactions fail; in-flight transactions are still tracked by the {@link ReceiptTracker}.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        sender.interrupt();
+        IllegalStateException e = new IllegalStateException("Transaction pipeline closed");
+        PendingTransaction tx;
+        while((tx = queue.poll()) != null){
+            tx.future.completeExceptionally(e);
+        }
+    }
+
+    /**
+     * Returns the number of transactions waiting to be sent.
+     * @return
+     */
+    public int getQueuedCount() {
+        return queue.size();
+    }
+
+    /**
+     * Returns the number of sent transactions waiting for a receipt.
+     * @return
+     */
+    public int getInFlightCount() {
+        return inFlight.get();
+    }
+
+    private void sendLoop() {
+        while(!closed){
+            PendingTransaction tx;
+            try {
+                tx = queue.take();
+            } catch (InterruptedException e) {
+                return;
+            }
+            try {
+                window.acquire();
+            } catch (InterruptedException e) {
+                tx.future.completeExceptionally(new IllegalStateException("Transaction pipeline closed"));
+                return;
+            }
+            if(!sendWithRetry(tx)){
+                window.release();
+            }
+        }
+    }
+
+    /**
+     * Sends a transaction, re-syncing the nonce and retrying on failure.
+     * @param tx
+     * @return whether the transaction is in flight
+     */
+    private boolean sendWithRetry(PendingTransaction tx) {
+        Exception lastError = null;
+        for(int attempt = 0; attempt <= maxRetries && !closed; attempt++){
+            try {
+                if(nonce == null || resyncNonce){
+                    resyncNonce = false;
+                    nonce = web3j.ethGetTransactionCount(signer.getAddress(), DefaultBlockParameterName.PENDING).send().getTransactionCount();
+                }
+                byte[] signed = signer.sign(createTransaction(tx, nonce), chainId);
+                String hash = Numeric.toHexString(Hash.sha3(signed));
+                EthSendTransaction response = web3j.ethSendRawTransaction(Numeric.toHexString(signed)).send();
+                if(response.hasError() && !response.getError().getMessage().contains("already known")){
+                    throw new IOException(response.getError().getMessage());
+                }
+                nonce = nonce.add(BigInteger.ONE);
+                log.debug("Sent transaction {} to {} with nonce {}", hash, tx.to, tx.nonce);
+                inFlight.incrementAndGet();
+                tracker.track(hash).whenComplete((TransactionReceipt r, Throwable t) -> complete(tx, hash, r, t));
+                return true;
+            } catch (IOException | RuntimeException e) {
+                lastError = e;
+                log.info("Failed to send transaction to {}, attempt {}, exception: {}", tx.to, attempt + 1, e.getMessage());
+                nonce = null;
+                try {
+                    Thread.sleep(retryDelayMillis);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+        }
+        tx.future.completeExceptionally(new TransactionException(lastError != null ? lastError : new IllegalStateException("Transaction pipeline closed")));
+        return false;
+    }
+
+    private RawTransaction createTransaction(PendingTransaction tx, BigInteger nonce) {
+        tx.nonce = nonce;
+        BigInteger gasLimit;
+        if(!(gasProvider instanceof AdaptiveGasProvider)){
+            gasLimit = gasProvider.getGasLimit(tx.functionName);
+        } else if(tx.shape != null){
+            gasLimit = ((AdaptiveGasProvider) gasProvider).estimateGasLimit(signer.getAddress(), tx.to, tx.data, tx.functionName, tx.shape);
+        } else {
+            gasLimit = ((AdaptiveGasProvider) gasProvider).estimateGasLimit(signer.getAddress(), tx.to, tx.data, tx.functionName);
+        }
+        if(gasProvider instanceof ContractEIP1559GasProvider && ((ContractEIP1559GasProvider) gasProvider).isEIP1559Enabled()){
+            ContractEIP1559GasProvider eip1559 = (ContractEIP1559GasProvider) gasProvider;
+            return RawTransaction.createTransaction(chainId, nonce, gasLimit, tx.to, BigInteger.ZERO, tx.data,
+                    eip1559.getMaxPriorityFeePerGas(tx.functionName), eip1559.getMaxFeePerGas(tx.functionName));
+        }
+        return RawTransaction.createTransaction(nonce, gasProvider.getGasPrice(tx.functionName), gasLimit, tx.to, BigInteger.ZERO, tx.data);
+    }
+
+    private void complete(PendingTransaction tx, String hash, TransactionReceipt receipt, Throwable t) {
+        inFlight.decrementAndGet();
+        window.release();
+        if(t != null){
+            // The transaction may have been dropped, so its nonce could be free again
+            resyncNonce = true;
+            tx.future.completeExceptionally(t);
+            return;
+        }
+        if(!receipt.isStatusOK()){
+            tx.future.completeExceptionally(new TransactionException(
+                    String.format("Transaction %s has failed with status: %s", hash, receipt.getStatus()), receipt));
+            return;
+        }
+        tx.future.complete(receipt);
+    }
+
+    private static class PendingTransaction {
+        private final String to;
+
+        private final String data;
+
+        private final String functionName;
+
+        private final Long shape;
+
+        private final CompletableFuture<TransactionReceipt> future = new CompletableFuture<>();
+
+        private volatile BigInteger nonce;
+
+        private PendingTransaction(String to, String data, String functionName, Long shape) {
+            this.to = to;
+            this.data = data;
+            this.functionName = functionName;
+            this.shape = shape;
+        }
+    }
+}
@@ -605,6 +605,222 @@ public class HTLCFlows {
 
     }
 
+    @Test
+    public void HTLC_Deploy_Promises_Batch_Flow() throws Exception {
+
+        logger.info("INITIALIZE SERVICES FOR BOTH HUB AND CLIENT");
+        DefaultDataService clientDataService = new DefaultDataService(client.getAddress());
+        DefaultDataService hubDataService = new DefaultDataService(hub.getAddress());
+
+        StatefulUPCService clientUPCService = new StatefulUPCService(client, clientDataService, clientDataService, clientDataService);
+        StatefulUPCService hubUPCService = new StatefulUPCService(hub, hubDataService, hubDataService, hubDataService);
+
+        logger.info("CREATE A CHANNEL");
+        Channel initChannel = new Channel(hub.getAddress(), client.getAddress(), HTLCFlows.chainId, 120, hubToken.getContractAddress());
+        Channel channel = hubDataService.createChannel(initChannel);
+
+        UPC2.ChannelParams channelParams = channel.toContractParams();
+        logger.info("Deploying channel");
+        DecoratedUPC hubUPC = UPCService.createChannel(web3, hubTransactionManager, gasProvider, channelParams).join();
+        channel.setAddress(hubUPC.getUpc().getContractAddress());
+        logger.info("Deployed channel");
+
+        hubDataService.updateChannel(channel);
+        DecoratedUPC clientUPC = UPCService.loadUPCContract(web3, channel.getAddress(), clientTransactionManager, gasProvider);
+        clientDataService.addChannel(channel);
+
+        logger.info("DEPOSIT INTO CHANNEL");
+        clientToken.approve(channel.getAddress(), BigInteger.valueOf(100)).send();
+        hubToken.approve(channel.getAddress(), BigInteger.valueOf(100)).send();
+        CompletableFuture.allOf(UPCService.deposit(clientUPC, 100), UPCService.deposit(hubUPC, 100)).join();
+
+        UPCState state = UPCState.fromContract(hubUPC.getUpc().getState().send());
+        channel.addDeposit(hub.getAddress(), state.getHub().deposit.longValue());
+        channel.addDeposit(client.getAddress(), state.getClient().deposit.longValue());
+        hubDataService.updateChannel(channel);
+        clientDataService.updateChannel(channel);
+
+        // Client creates three HTLC promises to the hub before any receipt
+        byte[] secret = Numeric.hexStringToByteArray("0xdeadbeefdeafbeefdeadbeefdeadbeefdeadbeefdeafbeefdeadbeefdeadbeef");
+        List<StatefulPromise> beforeReceipt = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            byte[] salt = getSalt();
+            HTLCConstructorParams params = new HTLCConstructorParams(10, Hash.sha256(secret), Instant.now().getEpochSecond() + 300);
+            StatefulPromise htlc = clientUPCService.createPromise(channel.getId(), 1, HTLC.BINARY, params, salt);
+            if(!hubUPCService.checkPromise(htlc, channel.getId(), HTLC.BINARY, params, salt)){
+                throw new RuntimeException("Promise verify failed");
+            }
+            hubDataService.addIncomingPromise(htlc, htlc.getPromiseId(), htlc.getPromiseType(), true);
+            beforeReceipt.add(htlc);
+        }
+
+        // Client pays the first promise, the other two stay open and go into the accumulator of the receipt
+        StatefulPromise paid = beforeReceipt.get(0);
+        Receipt receipt1 = clientUPCService.createReceipt(channel.getId(), 10, Collections.singleton(paid.getPromiseId()));
+        if(!hubUPCService.checkReceipt(receipt1, channel.getId(), receipt1.getReceiptId(), 10, Collections.singleton(paid.getPromiseId()))){
+            throw new RuntimeException("Receipt verify failed");
+        }
+        hubDataService.closeIncomingPromises(Collections.singletonList(paid));
+        hubDataService.addIncomingReceipt(receipt1, receipt1.getReceiptId());
+        channel.setCredit(hub.getAddress(), receipt1.getCumulativeCredit());
+        hubDataService.updateChannel(channel);
+
+        clientDataService.closeOutgoingPromises(Collections.singletonList(paid));
+        clientDataService.addOutgoingReceipt(receipt1);
+        clientDataService.updateChannel(channel);
+
+        // The accumulator must match the root of receipt1, so it is built before the next promise arrives
+        MerkleAccumulator acc = hubUPCService.getIncomingAccumulator(channel.getId());
+
+        // Client creates a promise after the receipt, which needs no membership proof
+        byte[] salt4 = getSalt();
+        HTLCConstructorParams params4 = new HTLCConstructorParams(10, Hash.sha256(secret), Instant.now().getEpochSecond() + 300);
+        StatefulPromise afterReceipt = clientUPCService.createPromise(channel.getId(), 1, HTLC.BINARY, params4, salt4);
+        if(!hubUPCService.checkPromise(afterReceipt, channel.getId(), HTLC.BINARY, params4, salt4)){
+            throw new RuntimeException("Promise verify failed");
+        }
+        hubDataService.addIncomingPromise(afterReceipt, afterReceipt.getPromiseId(), afterReceipt.getPromiseType(), true);
+
+        logChannelView(hubUPCService, clientUPCService, channel.getId());
+
+        // Hub registers the receipt, then the mixed batch in one transaction, listing the promise without a proof first
+        UPCService.deployReceipt(hubUPC, receipt1).join();
+        List<Promise> batch = Arrays.asList(afterReceipt, beforeReceipt.get(1), beforeReceipt.get(2));
+        TransactionReceipt batchReceipt = UPCService.deployPromises(hubUPC, batch, receipt1, acc).join();
+        assertEquals(3, UPC2.getDeployPromiseEvents(batchReceipt).size());
+
+        @SuppressWarnings("unchecked")
+        List<UPC2.PromiseAddressReceiver> unresolved = hubUPC.getUpc().getUnresolvedPromises().send();
+        Set<String> registered = new HashSet<>();
+        for (UPC2.PromiseAddressReceiver p: unresolved) {
+            registered.add(p.addr.toLowerCase());
+            assertEquals(hub.getAddress().toLowerCase(), p.receiver.toLowerCase());
+        }
+        Set<String> expected = new HashSet<>();
+        for (Promise p: batch) {
+            expected.add(p.getAddress().toLowerCase());
+        }
+        assertEquals(expected, registered);
+
+        for (Promise p: batch) {
+            HTLC.load(p.getAddress(), web3, hubTransactionManager, gasProvider).revealKey(secret).send();
+        }
+        UPCService.close(hubUPC).join();
+        channel.setStatus(ChannelStatus.CLOSED);
+        hubDataService.updateChannel(channel);
+        clientDataService.updateChannel(channel);
+        state = UPCState.fromContract(hubUPC.getUpc().getState().send());
+        long secondsUntilWithdraw = BigInteger.valueOf(state.getExpiry()).add(BigInteger.valueOf(30)).subtract(BigInteger.valueOf(Instant.now().getEpochSecond())).longValue();
+        logger.info("Seconds until withdraw: {}", secondsUntilWithdraw);
+
+        ScheduledExecutorService scheduledExecutorService = Executors.newSingleThreadScheduledExecutor();
+        scheduledExecutorService.schedule(() -> {
+            logger.info("Channel should be closed");
+            UPCService.withdraw(hubUPC).join();
+            logChannelView(hubUPCService, clientUPCService, channel.getId());
+        }, secondsUntilWithdraw, TimeUnit.SECONDS).get();
+
+        BigInteger hubBalance = hubToken.balanceOf(hub.getAddress()).send();
+        BigInteger clientBalance = hubToken.balanceOf(client.getAddress()).send();
+        logger.info("Token balance of Hub: {}", hubBalance);
+        logger.info("Token balance of Client: {}", clientBalance);
+
+        assertEquals(hubBalance.longValue(), 540L);
+        assertEquals(clientBalance.longValue(), 460L);
+
+    }
+
+    @Test
+    public void HTLC_Resolve_In_Batches_Flow() throws Exception {
+
+        logger.info("INITIALIZE SERVICES FOR BOTH HUB AND CLIENT");
+        DefaultDataService clientDataService = new DefaultDataService(client.getAddress());
+        DefaultDataService hubDataService = new DefaultDataService(hub.getAddress());
+
+        StatefulUPCService clientUPCService = new StatefulUPCService(client, clientDataService, clientDataService, clientDataService);
+        StatefulUPCService hubUPCService = new StatefulUPCService(hub, hubDataService, hubDataService, hubDataService);
+
+        logger.info("CREATE A CHANNEL");
+        Channel initChannel = new Channel(hub.getAddress(), client.getAddress(), HTLCFlows.chainId, 120, hubToken.getContractAddress());
+        Channel channel = hubDataService.createChannel(initChannel);
+
+        UPC2.ChannelParams channelParams = channel.toContractParams();
+        logger.info("Deploying channel");
+        DecoratedUPC hubUPC = UPCService.createChannel(web3, hubTransactionManager, gasProvider, channelParams).join();
+        channel.setAddress(hubUPC.getUpc().getContractAddress());
+        logger.info("Deployed channel");
+
+        hubDataService.updateChannel(channel);
+        DecoratedUPC clientUPC = UPCService.loadUPCContract(web3, channel.getAddress(), clientTransactionManager, gasProvider);
+        clientDataService.addChannel(channel);
+
+        logger.info("DEPOSIT INTO CHANNEL");
+        clientToken.approve(channel.getAddress(), BigInteger.valueOf(100)).send();
+        hubToken.approve(channel.getAddress(), BigInteger.valueOf(100)).send();
+        CompletableFuture.allOf(UPCService.deposit(clientUPC, 100), UPCService.deposit(hubUPC, 100)).join();
+
+        UPCState state = UPCState.fromContract(hubUPC.getUpc().getState().send());
+        channel.addDeposit(hub.getAddress(), state.getHub().deposit.longValue());
+        channel.addDeposit(client.getAddress(), state.getClient().deposit.longValue());
+        hubDataService.updateChannel(channel);
+        clientDataService.updateChannel(channel);
+
+        // Client creates three HTLC promises to the hub and never sends a receipt
+        byte[] secret = Numeric.hexStringToByteArray("0xdeadbeefdeafbeefdeadbeefdeadbeefdeadbeefdeafbeefdeadbeefdeadbeef");
+        List<Promise> promises = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            byte[] salt = getSalt();
+            HTLCConstructorParams params = new HTLCConstructorParams(10, Hash.sha256(secret), Instant.now().getEpochSecond() + 300);
+            StatefulPromise htlc = clientUPCService.createPromise(channel.getId(), 1, HTLC.BINARY, params, salt);
+            if(!hubUPCService.checkPromise(htlc, channel.getId(), HTLC.BINARY, params, salt)){
+                throw new RuntimeException("Promise verify failed");
+            }
+            hubDataService.addIncomingPromise(htlc, htlc.getPromiseId(), htlc.getPromiseType(), true);
+            promises.add(htlc);
+        }
+
+        UPCService.deployPromises(hubUPC, promises, null, null).join();
+        for (Promise p: promises) {
+            HTLC.load(p.getAddress(), web3, hubTransactionManager, gasProvider).revealKey(secret).send();
+        }
+        UPCService.close(hubUPC).join();
+        channel.setStatus(ChannelStatus.CLOSED);
+        hubDataService.updateChannel(channel);
+        clientDataService.updateChannel(channel);
+        state = UPCState.fromContract(hubUPC.getUpc().getState().send());
+        long secondsUntilWithdraw = BigInteger.valueOf(state.getExpiry()).add(BigInteger.valueOf(30)).subtract(BigInteger.valueOf(Instant.now().getEpochSecond())).longValue();
+        logger.info("Seconds until withdraw: {}", secondsUntilWithdraw);
+
+        ScheduledExecutorService scheduledExecutorService = Executors.newSingleThreadScheduledExecutor();
+        scheduledExecutorService.schedule(() -> {
+            logger.info("Channel should be closed");
+            try {
+                // Each call continues from where the previous one stopped
+                UPCService.resolvePromises(hubUPC, 2).join();
+                assertEquals(BigInteger.valueOf(2), hubUPC.getUpc().getResolveProgress().send().component1());
+                UPCService.resolvePromises(hubUPC, 2).join();
+                assertEquals(BigInteger.valueOf(3), hubUPC.getUpc().getResolveProgress().send().component1());
+                assertEquals(BigInteger.valueOf(3), hubUPC.getUpc().getResolveProgress().send().component2());
+                // The registered promises are kept until the contract self-destructs
+                assertEquals(3, hubUPC.getUpc().getUnresolvedPromises().send().size());
+            } catch (Exception e) {
+                throw new CompletionException(e);
+            }
+            UPCService.withdraw(hubUPC).join();
+            logChannelView(hubUPCService, clientUPCService, channel.getId());
+        }, secondsUntilWithdraw, TimeUnit.SECONDS).get();
+
+        BigInteger hubBalance = hubToken.balanceOf(hub.getAddress()).send();
+        BigInteger clientBalance = hubToken.balanceOf(client.getAddress()).send();
+        logger.info("Token balance of Hub: {}", hubBalance);
+        logger.info("Token balance of Client: {}", clientBalance);
+
+        // Promises resolved in earlier batches are credited once
+        assertEquals(hubBalance.longValue(), 530L);
+        assertEquals(clientBalance.longValue(), 470L);
+
+    }
+
     @Test
     public void HTLC_Deploy_Promise_Without_Receipt_Flow() throws Exception {
 
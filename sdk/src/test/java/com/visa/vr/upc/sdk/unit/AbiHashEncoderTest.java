@@ -0,0 +1,49 @@
+package com.visa.vr.upc.sdk.unit;
+
+import com.visa.vr.upc.sdk.AbiHashEncoder;
+import org.junit.jupiter.api.Test;
+import org.web3j.abi.FunctionEncoder;
+import org.web3j.abi.datatypes.Address;
+import org.web3j.abi.datatypes.Type;
+import org.web3j.abi.datatypes.generated.Bytes32;
+import org.web3j.abi.datatypes.generated.Uint256;
+import org.web3j.crypto.Hash;
+import org.web3j.utils.Numeric;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AbiHashEncoderTest {
+
+    private static byte[] expectedHash(Type... types) {
+        return Numeric.hexStringToByteArray(Hash.sha3(FunctionEncoder.encodeConstructor(Arrays.asList(types))));
+    }
+
+    @Test
+    void hashMatchesFunctionEncoder() {
+        Random random = new Random(7);
+        for (int i = 0; i < 50; i++) {
+            long value = random.nextLong() & Long.MAX_VALUE;
+            byte[] addressBytes = new byte[20];
+            random.nextBytes(addressBytes);
+            String address = Numeric.toHexString(addressBytes);
+            byte[] bytes = new byte[32];
+            random.nextBytes(bytes);
+
+            assertArrayEquals(expectedHash(new Uint256(value), new Address(address), new Bytes32(bytes)),
+                    AbiHashEncoder.start().uint256(value).address(address.toUpperCase().replace("0X", "0x")).bytes32(bytes).hash());
+        }
+        // Short addresses and addresses without a prefix are left padded, as in web3j
+        assertArrayEquals(expectedHash(new Address("0xabc"), new Uint256(0)), AbiHashEncoder.start().address("abc").uint256(0).hash());
+    }
+
+    @Test
+    void invalidValuesAreRejected() {
+        assertThrows(IllegalArgumentException.class, () -> AbiHashEncoder.start().uint256(-1));
+        assertThrows(IllegalArgumentException.class, () -> AbiHashEncoder.start().address("0xzz"));
+        assertThrows(IllegalArgumentException.class, () -> AbiHashEncoder.start().bytes32(new byte[31]));
+        assertArrayEquals(expectedHash(new Uint256(1)), AbiHashEncoder.start().uint256(1).hash());
+    }
+}
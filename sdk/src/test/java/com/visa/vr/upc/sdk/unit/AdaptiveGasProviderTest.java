@@ -0,0 +1,164 @@
+package com.visa.vr.upc.sdk.unit;
+
+import com.visa.vr.upc.sdk.tx.AdaptiveGasProvider;
+import io.reactivex.Flowable;
+import org.junit.jupiter.api.Test;
+import org.web3j.protocol.Web3j;
+import org.web3j.protocol.Web3jService;
+import org.web3j.protocol.core.BatchRequest;
+import org.web3j.protocol.core.BatchResponse;
+import org.web3j.protocol.core.Request;
+import org.web3j.protocol.core.Response;
+import org.web3j.protocol.core.methods.request.Transaction;
+import org.web3j.protocol.core.methods.response.EthEstimateGas;
+import org.web3j.protocol.core.methods.response.EthFeeHistory;
+import org.web3j.protocol.core.methods.response.EthGasPrice;
+import org.web3j.protocol.websocket.events.Notification;
+import org.web3j.utils.Numeric;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AdaptiveGasProviderTest {
+
+    private static final String FROM = "0x00000000000000000000000000000000000000a1";
+
+    private static final String CHANNEL = "0x00000000000000000000000000000000000000aa";
+
+    private static final BigInteger BLOCK_GAS_LIMIT = BigInteger.valueOf(30_000_000);
+
+    @Test
+    void estimatesAreCachedPerFunctionAndShape() {
+        FakeNode node = new FakeNode(true);
+        AdaptiveGasProvider gasProvider = new AdaptiveGasProvider(Web3j.build(node), 1337, BLOCK_GAS_LIMIT, 1.5, 4, 50, 60_000);
+
+        // 21000 + 100 per calldata byte, with 50% headroom
+        assertEquals(BigInteger.valueOf(46500), gasProvider.estimateGasLimit(FROM, CHANNEL, data(100), "registerPromise"));
+        assertEquals(BigInteger.valueOf(46500), gasProvider.estimateGasLimit(FROM, CHANNEL, data(90), "registerPromise"));
+        assertEquals(1, node.estimates.get());
+
+        // Same bucket but larger, so the cached estimate is scaled up
+        BigInteger scaled = gasProvider.estimateGasLimit(FROM, CHANNEL, data(120), "registerPromise");
+        assertTrue(scaled.compareTo(BigInteger.valueOf(46500)) > 0);
+        assertEquals(1, node.estimates.get());
+
+        gasProvider.estimateGasLimit(FROM, CHANNEL, data(1000), "registerPromise");
+        gasProvider.estimateGasLimit(FROM, CHANNEL, data(100), "close");
+        assertEquals(3, node.estimates.get());
+        assertEquals(BigInteger.valueOf(181500), gasProvider.getGasLimit("registerPromise"));
+        assertEquals(BLOCK_GAS_LIMIT, gasProvider.getGasLimit("withdrawClosing"));
+
+        node.failEstimates = true;
+        assertEquals(BLOCK_GAS_LIMIT, gasProvider.estimateGasLimit(FROM, CHANNEL, "0x", "withdrawClosing", 5000));
+    }
+
+    @Test
+    void explicitShapesDoNotReuseCalldataEstimates() {
+        FakeNode node = new FakeNode(true);
+        AdaptiveGasProvider gasProvider = new AdaptiveGasProvider(Web3j.build(node), 1337, BLOCK_GAS_LIMIT, 1.5, 4, 50, 60_000);
+
+        gasProvider.estimateGasLimit(FROM, CHANNEL, data(4), "withdrawClosing");
+        assertEquals(1, node.estimates.get());
+        // Same function and bucket, but sized by the unresolved promises instead of the calldata
+        gasProvider.estimateGasLimit(FROM, CHANNEL, data(4), "withdrawClosing", 4);
+        assertEquals(2, node.estimates.get());
+        gasProvider.estimateGasLimit(FROM, CHANNEL, data(4), "withdrawClosing", 4);
+        gasProvider.estimateGasLimit(FROM, CHANNEL, data(4), "withdrawClosing");
+        assertEquals(2, node.estimates.get());
+    }
+
+    @Test
+    void feesArePricedFromFeeHistoryOrGasPrice() {
+        AdaptiveGasProvider gasProvider = new AdaptiveGasProvider(Web3j.build(new FakeNode(true)), 1337, BLOCK_GAS_LIMIT, 1.2, 3, 50, 60_000);
+        assertTrue(gasProvider.isEIP1559Enabled());
+        assertEquals(BigInteger.valueOf(2), gasProvider.getMaxPriorityFeePerGas("close"));
+        assertEquals(BigInteger.valueOf(2 * 120 + 2), gasProvider.getMaxFeePerGas("close"));
+
+        AdaptiveGasProvider legacy = new AdaptiveGasProvider(Web3j.build(new FakeNode(false)), 1337, BLOCK_GAS_LIMIT, 1.2, 3, 50, 60_000);
+        assertFalse(legacy.isEIP1559Enabled());
+        assertEquals(BigInteger.valueOf(77), legacy.getGasPrice("close"));
+    }
+
+    private static String data(int bytes) {
+        return Numeric.toHexString(new byte[bytes]);
+    }
+
+    /**
+     * Estimates 21000 gas plus 100 per calldata byte, and answers fee history with a next base fee of 120 and priority fees 1, 3, 2.
+     */
+    private static class FakeNode implements Web3jService {
+
+        private final boolean supportsFeeHistory;
+
+        private final AtomicInteger estimates = new AtomicInteger();
+
+        private volatile boolean failEstimates = false;
+
+        private FakeNode(boolean supportsFeeHistory) {
+            this.supportsFeeHistory = supportsFeeHistory;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <T extends Response> T send(Request request, Class<T> responseType) throws IOException {
+            switch (request.getMethod()){
+                case "eth_estimateGas":
+                    EthEstimateGas estimate = new EthEstimateGas();
+                    if(failEstimates){
+                        estimate.setError(new Response.Error(3, "execution reverted"));
+                        return (T) estimate;
+                    }
+                    estimates.incrementAndGet();
+                    String data = ((Transaction) request.getParams().get(0)).getData();
+                    estimate.setResult(Numeric.encodeQuantity(BigInteger.valueOf(21000 + 100L * (Numeric.cleanHexPrefix(data).length() / 2))));
+                    return (T) estimate;
+                case "eth_feeHistory":
+                    EthFeeHistory feeHistory = new EthFeeHistory();
+                    if(!supportsFeeHistory){
+                        feeHistory.setError(new Response.Error(-32601, "the method eth_feeHistory does not exist"));
+                        return (T) feeHistory;
+                    }
+                    feeHistory.setResult(new EthFeeHistory.FeeHistory("0x1",
+                            Arrays.asList(Collections.singletonList("0x1"), Collections.singletonList("0x3"), Collections.singletonList("0x2")),
+                            Arrays.asList("0x5a", "0x64", "0x6e", "0x78"), Arrays.asList(0.5, 0.5, 0.5)));
+                    return (T) feeHistory;
+                case "eth_gasPrice":
+                    EthGasPrice gasPrice = new EthGasPrice();
+                    gasPrice.setResult("0x4d");
+                    return (T) gasPrice;
+                default:
+                    throw new IOException("Unsupported method " + request.getMethod());
+            }
+        }
+
+        @Override
+        public <T extends Response> CompletableFuture<T> sendAsync(Request request, Class<T> responseType) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public BatchResponse sendBatch(BatchRequest batchRequest) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public CompletableFuture<BatchResponse> sendBatchAsync(BatchRequest batchRequest) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public <T extends Notification<?>> Flowable<T> subscribe(Request request, String unsubscribeMethod, Class<T> responseType) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
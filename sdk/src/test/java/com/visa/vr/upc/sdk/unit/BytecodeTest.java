@@ -0,0 +1,84 @@
+package com.visa.vr.upc.sdk.unit;
+
+import com.visa.vr.upc.sdk.PromiseService;
+import com.visa.vr.upc.sdk.domain.Bytecode;
+import com.visa.vr.upc.sdk.domain.Promise;
+import org.junit.jupiter.api.Test;
+import org.web3j.crypto.Hash;
+import org.web3j.utils.Numeric;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BytecodeTest {
+
+    private static final String BINARY = "0x6080604052348015600f57600080fd5b50603f80601d6000396000f3fe";
+
+    private static final String ARGS = "000000000000000000000000deadbeefdeadbeefdeadbeefdeadbeefdeadbeef";
+
+    private static final String CHANNEL = "0x1234567890123456789012345678901234567890";
+
+    @Test
+    void binariesAreShared() {
+        Bytecode a = Bytecode.of(BINARY, ARGS);
+        Bytecode b = Bytecode.of(BINARY + ARGS);
+        assertSame(a.getTemplate(), b.getTemplate());
+        assertArrayEquals(a.getArgs(), b.getArgs());
+        assertEquals(a, b);
+        assertEquals(BINARY + ARGS, a.toHexString());
+        assertEquals(Numeric.hexStringToByteArray(BINARY + ARGS).length, a.length());
+
+        // Bytecode without a registered binary is kept whole
+        Bytecode other = Bytecode.of("0x01020304");
+        assertEquals("", other.getTemplate());
+        assertEquals("0x01020304", other.toHexString());
+    }
+
+    @Test
+    void differentlySplitBytecodeIsEqual() {
+        String late = "0x60806040aabbccdd";
+        Bytecode whole = Bytecode.of(late + ARGS);
+        Bytecode split = Bytecode.of(late, ARGS);
+        assertNotSame(whole.getTemplate(), split.getTemplate());
+        assertEquals(whole, split);
+        assertEquals(split, whole);
+        assertEquals(whole.hashCode(), split.hashCode());
+        assertEquals(Arrays.hashCode(split.toBytes()), split.hashCode());
+        assertNotEquals(split, Bytecode.of(late, ARGS.replace('d', 'e')));
+        assertNotEquals(split, Bytecode.of(late + ARGS + "00"));
+    }
+
+    @Test
+    void bytecodeIsHashedWithoutRebuilding() {
+        Bytecode bytecode = Bytecode.of(BINARY, ARGS);
+        assertArrayEquals(Hash.sha3(bytecode.toBytes()), bytecode.keccak256());
+        assertArrayEquals(Hash.sha3(new byte[]{1, 2, 3, 4}), Bytecode.of("0x01020304").keccak256());
+        // The same binary passed in another form resolves to the same template
+        assertSame(bytecode.getTemplate(), Bytecode.of(BINARY.substring(2).toUpperCase(), ARGS).getTemplate());
+    }
+
+    @Test
+    void promiseAddressIsUnchanged() throws Exception {
+        byte[] salt = new byte[32];
+        salt[5] = 7;
+        Promise promise = Promise.builder().salt(salt).bytecode(Bytecode.of(BINARY, ARGS)).build();
+        assertEquals(PromiseService.getCreate2Address(CHANNEL, salt, BINARY + ARGS),
+                PromiseService.getCreate2Address(CHANNEL, salt, promise.getCompactBytecode()));
+        assertEquals(BINARY + ARGS, promise.getBytecode());
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(promise);
+        }
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            Promise copy = (Promise) in.readObject();
+            assertSame(promise.getCompactBytecode().getTemplate(), copy.getCompactBytecode().getTemplate());
+            assertEquals(promise.getBytecode(), copy.getBytecode());
+        }
+    }
+}
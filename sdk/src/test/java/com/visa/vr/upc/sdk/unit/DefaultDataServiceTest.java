@@ -0,0 +1,73 @@
+package com.visa.vr.upc.sdk.unit;
+
+import com.visa.vr.upc.sdk.DefaultDataService;
+import com.visa.vr.upc.sdk.PromiseService;
+import com.visa.vr.upc.sdk.custody.BasicSigner;
+import com.visa.vr.upc.sdk.domain.Channel;
+import com.visa.vr.upc.sdk.domain.HTLCConstructorParams;
+import com.visa.vr.upc.sdk.domain.Promise;
+import com.visa.vr.upc.sdk.domain.StatefulPromise;
+import com.visa.vr.upc.sdk.generated.HTLC;
+import org.junit.jupiter.api.Test;
+import org.web3j.crypto.ECKeyPair;
+import org.web3j.utils.Numeric;
+
+import java.util.Collections;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DefaultDataServiceTest {
+
+    private static final String CHANNEL = "0x71C7656EC7ab88b098defB751B7401B5f6d8976F";
+
+    private static final BasicSigner HUB = new BasicSigner(ECKeyPair.create(Numeric.hexStringToByteArray("FE4EAEFBE4076F4D726ABD8B20335543E4210524AD3DF189C2BBF3A756702FFE")));
+
+    private static final BasicSigner CLIENT = new BasicSigner(ECKeyPair.create(Numeric.hexStringToByteArray("36A110380859D05E60C2991479DE4D24DA3116A49B342127C1F1F7D536CAE547")));
+
+    private static final long CHAIN_ID = 1337;
+
+    private static Promise getPromise(long channelId, byte salt) {
+        byte[] saltBytes = new byte[32];
+        saltBytes[31] = salt;
+        return PromiseService.createPromise(channelId, CHAIN_ID, CHANNEL, CLIENT.getAddress(), HUB.getAddress(), 0,
+                HTLC.BINARY, new HTLCConstructorParams(10, new byte[32], 2000), saltBytes);
+    }
+
+    @Test
+    void promisesAreFoundByChannelAndAddress() {
+        DefaultDataService dataService = new DefaultDataService(HUB.getAddress());
+        long channelId = dataService.createChannel(new Channel(HUB.getAddress(), CLIENT.getAddress(), CHAIN_ID, 100, CHANNEL)).getId();
+        StatefulPromise incoming = dataService.addIncomingPromise(getPromise(channelId, (byte) 1), 1L, 0, false);
+        StatefulPromise outgoing = dataService.addOutgoingPromise(getPromise(channelId, (byte) 2), 0, false);
+
+        String upper = "0x" + Numeric.cleanHexPrefix(incoming.getAddress()).toUpperCase();
+        assertSame(incoming, dataService.getIncomingPromiseByAddress(channelId, upper).get());
+        assertSame(incoming, dataService.getIncomingPromiseByAddress(upper).get());
+        assertFalse(dataService.getIncomingPromiseByAddress(channelId + 1, upper).isPresent());
+        assertFalse(dataService.getOutgoingPromiseByAddress(channelId, upper).isPresent());
+        assertSame(outgoing, dataService.getOutgoingPromiseByAddress(channelId, outgoing.getAddress()).get());
+    }
+
+    @Test
+    void promisesAreStreamedWithoutCopies() {
+        DefaultDataService dataService = new DefaultDataService(HUB.getAddress());
+        long channelId = dataService.createChannel(new Channel(HUB.getAddress(), CLIENT.getAddress(), CHAIN_ID, 100, CHANNEL)).getId();
+        for (byte i = 1; i <= 5; i++) {
+            dataService.addIncomingPromise(getPromise(channelId, i), (long) i, 0, false);
+        }
+        StatefulPromise closed = dataService.getIncomingPromiseById(2L).get();
+        dataService.closeIncomingPromises(Collections.singletonList(closed));
+
+        assertEquals(dataService.getOpenIncomingPromises(channelId), dataService.streamOpenIncomingPromises(channelId).collect(Collectors.toList()));
+        assertEquals(5, dataService.streamPromisesByChannel(channelId).count());
+        assertEquals(0, dataService.streamOpenOutgoingPromises(channelId).count());
+        assertEquals(40L, dataService.getIncomingPendingAmount(channelId).longValueExact());
+        assertArrayEquals(PromiseService.getAccumulator(dataService.getOpenIncomingPromises(channelId)).getRootHash(),
+                PromiseService.getAccumulator(dataService.streamOpenIncomingPromises(channelId)).getRootHash());
+        assertEquals(dataService.getIncomingOpenPromisesWithout(channelId, Collections.singleton(3L)),
+                dataService.streamIncomingOpenPromisesWithout(channelId, Collections.singleton(3L)).collect(Collectors.toList()));
+        assertEquals(3, dataService.streamIncomingOpenPromisesWithout(channelId, Collections.singleton(3L)).count());
+        assertEquals(dataService.getExpiringPromises(channelId), dataService.streamExpiringPromises(channelId).collect(Collectors.toList()));
+    }
+}
@@ -0,0 +1,64 @@
+package com.visa.vr.upc.sdk.unit;
+
+import com.visa.vr.upc.sdk.DefaultDataService;
+import com.visa.vr.upc.sdk.PromiseService;
+import com.visa.vr.upc.sdk.custody.BasicSigner;
+import com.visa.vr.upc.sdk.domain.Channel;
+import com.visa.vr.upc.sdk.domain.HTLCConstructorParams;
+import com.visa.vr.upc.sdk.domain.PromiseStatus;
+import com.visa.vr.upc.sdk.domain.StatefulPromise;
+import com.visa.vr.upc.sdk.events.DefaultUPCEventHandler;
+import com.visa.vr.upc.sdk.events.UPCHandledEvents;
+import com.visa.vr.upc.sdk.generated.HTLC;
+import com.visa.vr.upc.sdk.generated.UPC2;
+import org.junit.jupiter.api.Test;
+import org.web3j.crypto.ECKeyPair;
+import org.web3j.protocol.core.methods.response.Log;
+import org.web3j.utils.Numeric;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DefaultUPCEventHandlerTest {
+
+    private static final String CHANNEL = "0x71C7656EC7ab88b098defB751B7401B5f6d8976F";
+
+    private static final BasicSigner HUB = new BasicSigner(ECKeyPair.create(Numeric.hexStringToByteArray("FE4EAEFBE4076F4D726ABD8B20335543E4210524AD3DF189C2BBF3A756702FFE")));
+
+    private static final BasicSigner CLIENT = new BasicSigner(ECKeyPair.create(Numeric.hexStringToByteArray("36A110380859D05E60C2991479DE4D24DA3116A49B342127C1F1F7D536CAE547")));
+
+    private static UPC2.DeployPromiseEventResponse deployPromise(long channelId, String promiseAddress, String hash, long logIndex) {
+        UPC2.DeployPromiseEventResponse event = new UPC2.DeployPromiseEventResponse();
+        event.log = new Log();
+        event.log.setTransactionHash(hash);
+        event.log.setLogIndex(Numeric.encodeQuantity(BigInteger.valueOf(logIndex)));
+        event.id = BigInteger.valueOf(channelId);
+        event.promiseAddress = promiseAddress;
+        return event;
+    }
+
+    @Test
+    void everyPromiseOfABatchRegistrationIsDeployed() {
+        DefaultDataService dataService = new DefaultDataService(HUB.getAddress());
+        long channelId = dataService.createChannel(new Channel(HUB.getAddress(), CLIENT.getAddress(), 1337, 100, CHANNEL)).getId();
+        List<StatefulPromise> promises = new ArrayList<>();
+        for (byte i = 1; i <= 3; i++) {
+            byte[] salt = new byte[32];
+            salt[31] = i;
+            promises.add(dataService.addOutgoingPromise(PromiseService.createPromise(channelId, 1337, CHANNEL, HUB.getAddress(), CLIENT.getAddress(), 0,
+                    HTLC.BINARY, new HTLCConstructorParams(10, new byte[32], 2000), salt), 0, false));
+        }
+        DefaultUPCEventHandler handler = new DefaultUPCEventHandler(new UPCHandledEvents(), dataService, dataService, dataService);
+
+        // All events come from one registerPromises transaction
+        for (int i = 0; i < promises.size(); i++) {
+            handler.handleDeployPromise(deployPromise(channelId, promises.get(i).getAddress(), "0x01", i));
+        }
+        for (StatefulPromise promise: promises) {
+            assertEquals(PromiseStatus.DEPLOYED, dataService.getOutgoingPromiseById(promise.getPromiseId()).get().getStatus());
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package com.visa.vr.upc.sdk.unit;
+
+import com.visa.vr.upc.sdk.DefaultDataService;
+import com.visa.vr.upc.sdk.MerkleAccumulator;
+import com.visa.vr.upc.sdk.PromiseService;
+import com.visa.vr.upc.sdk.custody.BasicSigner;
+import com.visa.vr.upc.sdk.dispute.DisputePlan;
+import com.visa.vr.upc.sdk.dispute.DisputePlanner;
+import com.visa.vr.upc.sdk.domain.Channel;
+import com.visa.vr.upc.sdk.domain.DecoratedUPC;
+import com.visa.vr.upc.sdk.domain.HTLCConstructorParams;
+import com.visa.vr.upc.sdk.domain.Promise;
+import com.visa.vr.upc.sdk.domain.Receipt;
+import com.visa.vr.upc.sdk.domain.StatefulPromise;
+import com.visa.vr.upc.sdk.domain.UInt256;
+import com.visa.vr.upc.sdk.domain.UPCState;
+import com.visa.vr.upc.sdk.generated.HTLC;
+import com.visa.vr.upc.sdk.generated.UPC2;
+import org.junit.jupiter.api.Test;
+import org.web3j.crypto.ECKeyPair;
+import org.web3j.protocol.Web3j;
+import org.web3j.protocol.http.HttpService;
+import org.web3j.tuples.generated.Tuple4;
+import org.web3j.tx.ReadonlyTransactionManager;
+import org.web3j.tx.gas.DefaultGasProvider;
+import org.web3j.utils.Numeric;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DisputePlannerTest {
+
+    private static final String CHANNEL = "0x71C7656EC7ab88b098defB751B7401B5f6d8976F";
+
+    private static final BasicSigner HUB = new BasicSigner(ECKeyPair.create(Numeric.hexStringToByteArray("FE4EAEFBE4076F4D726ABD8B20335543E4210524AD3DF189C2BBF3A756702FFE")));
+
+    private static final BasicSigner CLIENT = new BasicSigner(ECKeyPair.create(Numeric.hexStringToByteArray("36A110380859D05E60C2991479DE4D24DA3116A49B342127C1F1F7D536CAE547")));
+
+    private static final long CHAIN_ID = 1337;
+
+    private static final long TIMESTAMP = 1000;
+
+    private static StatefulPromise addIncomingPromise(DefaultDataService dataService, long channelId, long promiseId, long receiptId, long amount) {
+        byte[] salt = new byte[32];
+        salt[31] = (byte) promiseId;
+        Promise promise = PromiseService.createPromise(channelId, CHAIN_ID, CHANNEL, CLIENT.getAddress(), HUB.getAddress(), receiptId,
+                HTLC.BINARY, new HTLCConstructorParams(amount, new byte[32], TIMESTAMP + 300), salt);
+        return dataService.addIncomingPromise(PromiseService.signPromise(promise, CLIENT), promiseId, 0, false);
+    }
+
+    private static long gasOf(Promise promise) {
+        return DisputePlanner.GAS_PER_PROMISE + DisputePlanner.GAS_PER_BYTECODE_BYTE * (Numeric.cleanHexPrefix(promise.getBytecode()).length() / 2);
+    }
+
+    @Test
+    void valuablePromisesArePlannedWithProofs() {
+        DefaultDataService dataService = new DefaultDataService(HUB.getAddress());
+        Channel channel = new Channel(HUB.getAddress(), CLIENT.getAddress(), CHAIN_ID, 100, "0x00000000000000000000000000000000000000ee");
+        channel.setAddress(CHANNEL);
+        long channelId = dataService.createChannel(channel).getId();
+
+        // Two promises before the client's receipt 1, one after it
+        StatefulPromise p1 = addIncomingPromise(dataService, channelId, 1, 0, 50);
+        StatefulPromise p2 = addIncomingPromise(dataService, channelId, 2, 0, 1);
+        StatefulPromise p3 = addIncomingPromise(dataService, channelId, 3, 1, 30);
+        MerkleAccumulator acc = PromiseService.getAccumulator(Arrays.asList(p1, p2));
+        Receipt receipt = PromiseService.signReceipt(
+                PromiseService.createReceipt(channelId, CHAIN_ID, CLIENT.getAddress(), HUB.getAddress(), 1, 0, acc.getRootHash()), CLIENT);
+        dataService.addIncomingReceipt(receipt, 1L);
+
+        long gas = gasOf(p1);
+        DisputePlanner planner = new DisputePlanner(dataService, dataService, dataService, null, gas * 3 / 2, 2.0 / gas);
+
+        UPC2.ChannelParams params = new UPC2.ChannelParams(BigInteger.valueOf(channelId), BigInteger.valueOf(CHAIN_ID),
+                HUB.getAddress(), CLIENT.getAddress(), BigInteger.valueOf(100), channel.getTokenAddress());
+        UPC2.Party hub = new UPC2.Party(HUB.getAddress(), BigInteger.valueOf(100), BigInteger.ZERO, BigInteger.ZERO, BigInteger.ZERO, BigInteger.ZERO, false, false, false, new byte[32]);
+        UPC2.Party client = new UPC2.Party(CLIENT.getAddress(), BigInteger.valueOf(100), BigInteger.ZERO, BigInteger.ZERO, BigInteger.ZERO, BigInteger.ZERO, false, false, false, new byte[32]);
+        UPCState state = UPCState.fromContract(new Tuple4<>(BigInteger.ZERO, hub, client, BigInteger.ZERO));
+        Web3j web3j = Web3j.build(new HttpService());
+        DecoratedUPC upc = new DecoratedUPC(UPC2.load(CHANNEL, web3j, new ReadonlyTransactionManager(web3j, HUB.getAddress()), new DefaultGasProvider()), HUB.getAddress());
+
+        DisputePlan plan = planner.plan(upc, params, state, 0, TIMESTAMP);
+
+        assertSame(receipt, plan.getReceipt());
+        assertFalse(plan.isEmptyReceipt());
+        assertTrue(plan.isClose());
+        assertEquals(UInt256.valueOf(80), plan.getTotalValue());
+        assertEquals("not worth the gas", plan.getSkipped().get(2L));
+
+        // One promise per transaction, most valuable first
+        assertEquals(2, plan.getBatches().size());
+        DisputePlan.PromiseBatch first = plan.getBatches().get(0);
+        assertEquals(p1.getAddress(), first.getPromises().get(0).getAddress());
+        assertTrue(MerkleAccumulator.verifyMultiProof(acc.getRootHash(), new MerkleAccumulator.MultiProof(
+                Arrays.asList(MerkleAccumulator.keyFromAddress(p1.getAddress())), first.getMultiProof(), first.getProofFlags())));
+        DisputePlan.PromiseBatch second = plan.getBatches().get(1);
+        assertEquals(p3.getAddress(), second.getPromises().get(0).getAddress());
+        assertTrue(second.getProofFlags().isEmpty());
+    }
+}
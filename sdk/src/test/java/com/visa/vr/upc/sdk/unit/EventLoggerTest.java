@@ -0,0 +1,91 @@
+package com.visa.vr.upc.sdk.unit;
+
+import com.visa.vr.upc.sdk.logging.EventLogger;
+import com.visa.vr.upc.sdk.metrics.IMetrics;
+import com.visa.vr.upc.sdk.metrics.Metrics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class EventLoggerTest {
+
+    /**
+     * Returns a logger that records "level: message" for each line, with the given levels enabled.
+     */
+    private static Logger recordingLogger(List<String> lines, boolean debugEnabled) {
+        return (Logger) Proxy.newProxyInstance(Logger.class.getClassLoader(), new Class<?>[]{Logger.class}, (proxy, method, args) -> {
+            String name = method.getName();
+            if (name.equals("isDebugEnabled")) {
+                return debugEnabled;
+            }
+            if (name.startsWith("is")) {
+                return true;
+            }
+            if (args != null && args.length > 0 && args[0] instanceof String) {
+                lines.add(name + ": " + args[0]);
+            }
+            return null;
+        });
+    }
+
+    @AfterEach
+    void resetMetrics() {
+        Metrics.set(null);
+    }
+
+    @Test
+    void eventsAreRateLimitedPerName() throws Exception {
+        List<String> lines = new ArrayList<>();
+        EventLogger events = new EventLogger(recordingLogger(lines, true), 50);
+        AtomicInteger evaluated = new AtomicInteger();
+        for (int i = 0; i < 10; i++) {
+            events.debug("promise.rejected").with("channelId", 7).with("reason", () -> "hash" + evaluated.incrementAndGet()).log();
+        }
+        events.debug("receipt.rejected").log();
+        assertEquals(2, lines.size());
+        assertEquals("debug: event=promise.rejected channelId=7 reason=hash1", lines.get(0));
+        assertEquals("debug: event=receipt.rejected", lines.get(1));
+        assertEquals(1, evaluated.get());
+
+        Thread.sleep(60);
+        events.debug("promise.rejected").log();
+        assertEquals("debug: event=promise.rejected suppressed=9", lines.get(2));
+    }
+
+    @Test
+    void disabledDebugIsNotEvaluatedAndErrorsAreCounted() {
+        List<String> lines = new ArrayList<>();
+        List<String> errors = new ArrayList<>();
+        Metrics.set(new IMetrics() {
+            @Override
+            public void increment(String name, String... tags) {
+                errors.add(name + " " + String.join(" ", tags));
+            }
+
+            @Override
+            public void recordNanos(String name, long nanos, String... tags) {
+            }
+
+            @Override
+            public void recordValue(String name, double value, String... tags) {
+            }
+        });
+        EventLogger events = new EventLogger(recordingLogger(lines, false), 1000);
+        events.debug("subscriber.deposit").with("tx", () -> fail("evaluated")).log();
+        assertTrue(lines.isEmpty());
+
+        events.error("subscriber.deposit", new IllegalStateException("boom")).log();
+        events.error("subscriber.deposit", new IllegalStateException("boom")).log();
+        assertEquals(1, lines.size());
+        assertEquals("warn: event=subscriber.deposit error=boom", lines.get(0));
+        assertEquals(2, errors.size());
+        assertEquals(Metrics.ERROR + " event subscriber.deposit cause IllegalStateException", errors.get(0));
+    }
+}
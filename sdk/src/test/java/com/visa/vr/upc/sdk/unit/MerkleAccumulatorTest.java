@@ -8,9 +8,11 @@ import org.junit.jupiter.params.provider.MethodSource;
 import org.web3j.abi.datatypes.Address;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.NoSuchElementException;
+import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
@@ -108,4 +110,31 @@ public class MerkleAccumulatorTest {
         byte[] proof = acc.getDummyKeyInclusionProof();
         assertTrue(MerkleAccumulator.verifyInclusionProof(acc.getRootHash(), MerkleAccumulator.keyFromAddress(toFind), proof));
     }
+
+    @ParameterizedTest
+    @MethodSource("getAddressLists")
+    void getMultiProofVerifiesWithDifferentSizedLists(List<String> addresses) {
+        MerkleAccumulator acc = MerkleAccumulator.fromAddresses(addresses);
+        List<byte[]> keys = IntStream.range(0, addresses.size()).filter(i -> i % 3 != 1)
+                .mapToObj(i -> MerkleAccumulator.keyFromAddress(addresses.get(i))).collect(Collectors.toList());
+        MerkleAccumulator.MultiProof proof = acc.getMultiProof(keys);
+        assertEquals(keys.size(), proof.getLeaves().size());
+        assertTrue(MerkleAccumulator.verifyMultiProof(acc.getRootHash(), proof));
+
+        MerkleAccumulator.MultiProof all = acc.getMultiProof(addresses.stream().map(MerkleAccumulator::keyFromAddress).collect(Collectors.toList()));
+        assertTrue(MerkleAccumulator.verifyMultiProof(acc.getRootHash(), all));
+    }
+
+    @Test
+    void getMultiProofFailsToVerifyWithWrongLeaf() {
+        List<String> addresses = getAddresses();
+        MerkleAccumulator acc = MerkleAccumulator.fromAddresses(addresses.subList(0, 10));
+        MerkleAccumulator.MultiProof proof = acc.getMultiProof(Arrays.asList(
+                MerkleAccumulator.keyFromAddress(addresses.get(2)), MerkleAccumulator.keyFromAddress(addresses.get(7))));
+        List<byte[]> leaves = new ArrayList<>(proof.getLeaves());
+        leaves.set(0, MerkleAccumulator.keyFromAddress(addresses.get(12)));
+        assertFalse(MerkleAccumulator.verifyMultiProof(acc.getRootHash(),
+                new MerkleAccumulator.MultiProof(leaves, proof.getProof(), proof.getProofFlags())));
+        assertThrows(NoSuchElementException.class, () -> acc.getMultiProof(Arrays.asList(MerkleAccumulator.keyFromAddress(addresses.get(12)))));
+    }
 }
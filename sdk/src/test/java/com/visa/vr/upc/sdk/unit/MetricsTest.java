@@ -0,0 +1,104 @@
+package com.visa.vr.upc.sdk.unit;
+
+import com.visa.vr.upc.sdk.MerkleAccumulator;
+import com.visa.vr.upc.sdk.PromiseService;
+import com.visa.vr.upc.sdk.custody.BasicSigner;
+import com.visa.vr.upc.sdk.domain.Receipt;
+import com.visa.vr.upc.sdk.events.OrderedEventDispatcher;
+import com.visa.vr.upc.sdk.metrics.IMetrics;
+import com.visa.vr.upc.sdk.metrics.Metrics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.web3j.crypto.ECKeyPair;
+import org.web3j.utils.Numeric;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MetricsTest {
+
+    private static final BasicSigner SIGNER = new BasicSigner(ECKeyPair.create(Numeric.hexStringToByteArray("36A110380859D05E60C2991479DE4D24DA3116A49B342127C1F1F7D536CAE547")));
+
+    /**
+     * Records every call as the name followed by the tags.
+     */
+    private static class RecordingMetrics implements IMetrics {
+        private final List<List<String>> records = new CopyOnWriteArrayList<>();
+
+        @Override
+        public void increment(String name, String... tags) {
+            record(name, tags);
+        }
+
+        @Override
+        public void recordNanos(String name, long nanos, String... tags) {
+            assertTrue(nanos >= 0);
+            record(name, tags);
+        }
+
+        @Override
+        public void recordValue(String name, double value, String... tags) {
+            record(name, tags);
+        }
+
+        private void record(String name, String... tags) {
+            List<String> record = new ArrayList<>();
+            record.add(name);
+            record.addAll(Arrays.asList(tags));
+            records.add(record);
+        }
+    }
+
+    @AfterEach
+    void resetMetrics() {
+        Metrics.set(null);
+    }
+
+    @Test
+    void signingVerifyingAndAccumulatorsAreRecorded() throws Exception {
+        RecordingMetrics metrics = new RecordingMetrics();
+        Metrics.set(metrics);
+
+        String receiver = "deadbeefdeadbeefdeadbeefdeadbeefdeadbeef";
+        Receipt receipt = PromiseService.signReceipt(PromiseService.createReceipt(1, 0, SIGNER.getAddress(), receiver, 1, 5, new byte[32]), SIGNER);
+        assertTrue(PromiseService.verifyReceipt(receipt, 1, 0, SIGNER.getAddress(), receiver, 1, 5, new byte[32]));
+        assertFalse(PromiseService.verifyReceipt(receipt, 1, 0, receiver, receiver, 1, 5, new byte[32]));
+        new MerkleAccumulator(new ArrayList<>(Arrays.asList(new byte[32], new byte[32], new byte[32])));
+
+        assertTrue(metrics.records.contains(Arrays.asList(Metrics.SIGN, "type", "receipt")));
+        assertTrue(metrics.records.contains(Arrays.asList(Metrics.VERIFY, "type", "receipt", "valid", "true")));
+        assertTrue(metrics.records.contains(Arrays.asList(Metrics.VERIFY, "type", "receipt", "valid", "false")));
+        assertTrue(metrics.records.contains(Arrays.asList(Metrics.ACCUMULATOR_BUILD)));
+        assertTrue(metrics.records.contains(Arrays.asList(Metrics.ACCUMULATOR_SIZE)));
+    }
+
+    @Test
+    void dispatchedEventsAreRecorded() throws Exception {
+        RecordingMetrics metrics = new RecordingMetrics();
+        Metrics.set(metrics);
+
+        OrderedEventDispatcher dispatcher = new OrderedEventDispatcher(1, 4, OrderedEventDispatcher.BackpressurePolicy.BLOCK);
+        dispatcher.dispatch(1, () -> {});
+        dispatcher.dispatch(1, () -> { throw new IllegalStateException("handler failure"); });
+        dispatcher.close();
+        dispatcher.awaitTermination(5000);
+
+        assertTrue(metrics.records.contains(Arrays.asList(Metrics.EVENT_QUEUE_DEPTH)));
+        assertTrue(metrics.records.contains(Arrays.asList(Metrics.EVENT_HANDLER, "status", "success")));
+        assertTrue(metrics.records.contains(Arrays.asList(Metrics.EVENT_HANDLER, "status", "failure")));
+    }
+
+    @Test
+    void nothingIsRecordedAfterReset() {
+        RecordingMetrics metrics = new RecordingMetrics();
+        Metrics.set(metrics);
+        Metrics.set(null);
+        assertSame(Metrics.NOOP, Metrics.get());
+        new MerkleAccumulator(new ArrayList<>(Arrays.asList(new byte[32], new byte[32])));
+        assertTrue(metrics.records.isEmpty());
+    }
+}
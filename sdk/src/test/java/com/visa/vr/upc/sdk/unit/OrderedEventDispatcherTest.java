@@ -0,0 +1,220 @@
+package com.visa.vr.upc.sdk.unit;
+
+import com.visa.vr.upc.sdk.events.OrderedEventDispatcher;
+import com.visa.vr.upc.sdk.events.UPCEventHandler;
+import com.visa.vr.upc.sdk.events.UPCHandledEvents;
+import com.visa.vr.upc.sdk.events.callback.DefaultDepositSubscriberFactory;
+import com.visa.vr.upc.sdk.generated.UPC2;
+import io.reactivex.processors.PublishProcessor;
+import io.reactivex.subscribers.DisposableSubscriber;
+import org.junit.jupiter.api.Test;
+import org.web3j.protocol.core.methods.response.Log;
+
+import java.math.BigInteger;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class OrderedEventDispatcherTest {
+
+    @Test
+    void eventsForTheSameChannelAreHandledInOrder() throws InterruptedException {
+        int numChannels = 8;
+        int eventsPerChannel = 500;
+        Map<Long, List<Integer>> handled = new HashMap<>();
+        for(long c = 0; c < numChannels; c++){
+            handled.put(c, Collections.synchronizedList(new ArrayList<>()));
+        }
+
+        OrderedEventDispatcher dispatcher = new OrderedEventDispatcher(3, 16, OrderedEventDispatcher.BackpressurePolicy.BLOCK);
+        for(int i = 0; i < eventsPerChannel; i++){
+            for(long c = 0; c < numChannels; c++){
+                final int index = i;
+                final long channelId = c;
+                dispatcher.dispatch(channelId, () -> handled.get(channelId).add(index));
+            }
+        }
+        dispatcher.close();
+        dispatcher.awaitTermination(5000);
+
+        for(long c = 0; c < numChannels; c++){
+            List<Integer> events = handled.get(c);
+            assertEquals(eventsPerChannel, events.size());
+            for(int i = 0; i < eventsPerChannel; i++){
+                assertEquals(i, events.get(i).intValue());
+            }
+        }
+        assertEquals(numChannels * eventsPerChannel, dispatcher.getCompletedCount());
+        assertEquals(0, dispatcher.getQueueDepth());
+    }
+
+    @Test
+    void fullLaneRejectsWithRejectPolicy() throws InterruptedException {
+        OrderedEventDispatcher dispatcher = new OrderedEventDispatcher(1, 1, OrderedEventDispatcher.BackpressurePolicy.REJECT);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        dispatcher.dispatch(1, () -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        dispatcher.dispatch(1, () -> {});
+        assertThrows(RejectedExecutionException.class, () -> dispatcher.dispatch(1, () -> {}));
+        assertEquals(1, dispatcher.getRejectedCount());
+
+        release.countDown();
+        dispatcher.close();
+        dispatcher.awaitTermination(5000);
+        assertEquals(2, dispatcher.getCompletedCount());
+    }
+
+    @Test
+    void closeDoesNotBlockOnAFullLane() throws InterruptedException {
+        OrderedEventDispatcher dispatcher = new OrderedEventDispatcher(1, 1, OrderedEventDispatcher.BackpressurePolicy.BLOCK);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        dispatcher.dispatch(1, () -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        dispatcher.dispatch(1, () -> {});
+
+        // The lane is full and its handler is stuck
+        dispatcher.close();
+        assertThrows(RejectedExecutionException.class, () -> dispatcher.dispatch(1, () -> {}));
+        release.countDown();
+        dispatcher.awaitTermination(5000);
+        assertEquals(2, dispatcher.getCompletedCount());
+    }
+
+    @Test
+    void failingHandlerDoesNotStopTheLane() throws InterruptedException {
+        OrderedEventDispatcher dispatcher = new OrderedEventDispatcher(1, 4, OrderedEventDispatcher.BackpressurePolicy.BLOCK);
+        dispatcher.dispatch(1, () -> { throw new IllegalStateException("handler failure"); });
+        dispatcher.dispatch(1, () -> {});
+        dispatcher.close();
+        dispatcher.awaitTermination(5000);
+        assertEquals(1, dispatcher.getFailedCount());
+        assertEquals(1, dispatcher.getCompletedCount());
+    }
+
+    private static UPC2.DepositEventResponse deposit(String hash) {
+        UPC2.DepositEventResponse event = new UPC2.DepositEventResponse();
+        event.log = new Log();
+        event.log.setTransactionHash(hash);
+        event.id = BigInteger.ONE;
+        return event;
+    }
+
+    /**
+     * A handler whose first deposit blocks until released, so the single slot of the lane fills up behind it.
+     */
+    private static UPCEventHandler blockingHandler(OrderedEventDispatcher dispatcher, CountDownLatch started, CountDownLatch release, List<String> handled) {
+        return new UPCEventHandler(new UPCHandledEvents(), dispatcher) {
+            @Override
+            protected void internalHandleDeposit(UPC2.DepositEventResponse event) {
+                started.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                handled.add(event.log.getTransactionHash());
+            }
+
+            @Override
+            protected void internalHandleSetClosing(UPC2.SetClosingEventResponse event) {
+            }
+
+            @Override
+            protected void internalHandleClose(UPC2.CloseEventResponse event) {
+            }
+
+            @Override
+            protected void internalHandleDeployPromise(UPC2.DeployPromiseEventResponse event) {
+            }
+
+            @Override
+            protected void internalHandleWithdrawRequest(UPC2.WithdrawRequestEventResponse event) {
+            }
+
+            @Override
+            protected void internalHandleWithdraw(UPC2.WithdrawEventResponse event) {
+            }
+
+            @Override
+            protected void internalCloseChannel(long channelId) {
+            }
+        };
+    }
+
+    @Test
+    void rejectedEventIsHandledWhenDeliveredAgain() throws InterruptedException {
+        OrderedEventDispatcher dispatcher = new OrderedEventDispatcher(1, 1, OrderedEventDispatcher.BackpressurePolicy.REJECT);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        List<String> handled = Collections.synchronizedList(new ArrayList<>());
+        UPCEventHandler handler = blockingHandler(dispatcher, started, release, handled);
+        handler.handleDeposit(deposit("0x01"));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        handler.handleDeposit(deposit("0x02"));
+        assertThrows(RejectedExecutionException.class, () -> handler.handleDeposit(deposit("0x03")));
+
+        release.countDown();
+        while (dispatcher.getCompletedCount() < 2) {
+            Thread.sleep(1);
+        }
+        // The rejected event is redelivered, while handled ones are still dropped
+        handler.handleDeposit(deposit("0x03"));
+        handler.handleDeposit(deposit("0x02"));
+        dispatcher.close();
+        dispatcher.awaitTermination(5000);
+        assertEquals(Arrays.asList("0x01", "0x02", "0x03"), handled);
+    }
+
+    @Test
+    void rejectedEventDoesNotTerminateTheSubscription() throws InterruptedException {
+        OrderedEventDispatcher dispatcher = new OrderedEventDispatcher(1, 1, OrderedEventDispatcher.BackpressurePolicy.REJECT);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        List<String> handled = Collections.synchronizedList(new ArrayList<>());
+        DisposableSubscriber<UPC2.DepositEventResponse> subscriber = new DefaultDepositSubscriberFactory(blockingHandler(dispatcher, started, release, handled)).getSubscriber();
+        PublishProcessor<UPC2.DepositEventResponse> logs = PublishProcessor.create();
+        logs.map(event -> event).subscribe(subscriber);
+
+        logs.onNext(deposit("0x01"));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        logs.onNext(deposit("0x02"));
+        logs.onNext(deposit("0x03"));
+        assertEquals(1, dispatcher.getRejectedCount());
+
+        release.countDown();
+        while (dispatcher.getCompletedCount() < 2) {
+            Thread.sleep(1);
+        }
+        // Later events still reach the handler
+        assertFalse(subscriber.isDisposed());
+        logs.onNext(deposit("0x04"));
+        dispatcher.close();
+        dispatcher.awaitTermination(5000);
+        assertEquals(Arrays.asList("0x01", "0x02", "0x04"), handled);
+    }
+}
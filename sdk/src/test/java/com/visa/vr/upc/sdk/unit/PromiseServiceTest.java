@@ -7,7 +7,9 @@ import com.visa.vr.upc.sdk.PromiseService;
 import com.visa.vr.upc.sdk.domain.HTLCConstructorParams;
 import com.visa.vr.upc.sdk.domain.Promise;
 import com.visa.vr.upc.sdk.domain.Receipt;
+import com.visa.vr.upc.sdk.domain.UInt256;
 import com.visa.vr.upc.sdk.generated.HTLC;
+import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.Arguments;
 import org.junit.jupiter.params.provider.MethodSource;
@@ -152,7 +154,17 @@ public class PromiseServiceTest {
         assertTrue(PromiseService.verifyReceipt(receipt, channelId, chainId, sender, receiver, receiptId, credit, accumulatorRoot));
     }
 
-
-
-
+    @Test
+    void toBuilderCopiesReceipt() {
+        Receipt receipt = PromiseService.createReceipt(1, 0, getAddress(), "deadbeefdeadbeefdeadbeefdeadbeefdeadbeef", 2, 5, new byte[32]);
+        Receipt next = receipt.toBuilder().receiptId(3).cumulativeCredit(7).build();
+
+        assertNotSame(receipt, next);
+        assertEquals(2, receipt.getReceiptId());
+        assertEquals(UInt256.valueOf(5), receipt.getCumulativeCredit());
+        assertEquals(3, next.getReceiptId());
+        assertEquals(UInt256.valueOf(7), next.getCumulativeCredit());
+        assertArrayEquals(PromiseService.hashReceipt(receipt),
+                PromiseService.hashReceipt(next.toBuilder().receiptId(2).cumulativeCredit(5).build()));
+    }
 }
\ No newline at end of file
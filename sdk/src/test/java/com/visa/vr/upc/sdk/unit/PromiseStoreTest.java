@@ -0,0 +1,106 @@
+package com.visa.vr.upc.sdk.unit;
+
+import com.visa.vr.upc.sdk.domain.Bytecode;
+import com.visa.vr.upc.sdk.domain.Promise;
+import com.visa.vr.upc.sdk.domain.PromiseStatus;
+import com.visa.vr.upc.sdk.domain.StatefulPromise;
+import com.visa.vr.upc.sdk.store.PromiseArchive;
+import com.visa.vr.upc.sdk.store.PromiseStore;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PromiseStoreTest {
+
+    private static final String TEMPLATE = "0x608060405234801561001057600080fd5b50";
+
+    private static StatefulPromise getPromise(long channelId, long promiseId) {
+        byte[] salt = new byte[32];
+        salt[0] = (byte) promiseId;
+        Promise promise = Promise.builder()
+                .channelId(channelId)
+                .chainId(1337)
+                .sender("0x1111111111111111111111111111111111111111")
+                .receiver("0x2222222222222222222222222222222222222222")
+                .address(String.format("0x%040x", promiseId))
+                .bytecode(TEMPLATE + String.format("%064x", promiseId))
+                .receiptId(promiseId)
+                .amount(promiseId * 10)
+                .salt(salt)
+                .expiration(1000 + promiseId)
+                .build();
+        return new StatefulPromise(promise, promiseId, 0, true);
+    }
+
+    private static void close(PromiseStore store, StatefulPromise promise) {
+        promise.setStatus(PromiseStatus.CLOSED);
+        store.update(promise);
+    }
+
+    @Test
+    void closedPromisesLeaveTheOpenSet() {
+        PromiseArchive archive = PromiseArchive.inMemory(true);
+        Bytecode.registerTemplate(TEMPLATE);
+        PromiseStore store = new PromiseStore(archive);
+        for (long i = 1; i <= 10; i++) {
+            store.add(getPromise(1, i));
+        }
+        for (long i = 1; i <= 8; i++) {
+            close(store, getPromise(1, i));
+        }
+
+        assertEquals(2, store.getOpenCount());
+        assertEquals(2, store.getOpen(1).size());
+        assertEquals(10, store.getAll(1).size());
+        assertEquals(8, archive.size());
+
+        StatefulPromise archived = store.get(3).get();
+        StatefulPromise expected = getPromise(1, 3);
+        assertEquals(PromiseStatus.CLOSED, archived.getStatus());
+        assertEquals(expected.getBytecode(), archived.getBytecode());
+        assertArrayEquals(expected.getSalt(), archived.getSalt());
+        assertEquals(expected.getAmount(), archived.getAmount());
+        assertEquals(expected.getExpiration(), archived.getExpiration());
+        assertEquals(3L, store.getByAddress(1, expected.getAddress().toUpperCase().replace("0X", "0x")).get().getPromiseId());
+        assertEquals(3L, store.getByAddress(expected.getAddress()).get().getPromiseId());
+
+        // Opening a promise again moves it back to the open set
+        archived.setStatus(PromiseStatus.OPEN);
+        store.update(archived);
+        assertEquals(3, store.getOpenCount());
+        assertEquals(7, archive.size());
+
+        assertThrows(IllegalArgumentException.class, () -> store.update(getPromise(1, 11)));
+    }
+
+    @Test
+    void bytecodeCanBeDropped() {
+        PromiseStore store = new PromiseStore(PromiseArchive.inMemory(false));
+        store.add(getPromise(2, 1));
+        close(store, getPromise(2, 1));
+        StatefulPromise archived = store.get(1).get();
+        assertNull(archived.getBytecode());
+        assertEquals(getPromise(2, 1).getAddress(), archived.getAddress());
+    }
+
+    @Test
+    void archiveCanSpillToDisk() throws Exception {
+        Path path = Files.createTempFile("promises", ".bin");
+        try (PromiseArchive archive = PromiseArchive.onDisk(path, true)) {
+            PromiseStore store = new PromiseStore(archive);
+            for (long i = 1; i <= 5; i++) {
+                store.add(getPromise(i % 2, i));
+                close(store, getPromise(i % 2, i));
+            }
+            assertEquals(0, store.getOpenCount());
+            assertEquals(3, store.getAll(1).size());
+            assertEquals(getPromise(0, 4).getBytecode(), store.get(4).get().getBytecode());
+            assertTrue(Files.size(path) > 0);
+        } finally {
+            Files.delete(path);
+        }
+    }
+}
@@ -0,0 +1,195 @@
+package com.visa.vr.upc.sdk.unit;
+
+import com.visa.vr.upc.sdk.events.PushLogSource;
+import io.reactivex.Flowable;
+import io.reactivex.processors.PublishProcessor;
+import org.junit.jupiter.api.Test;
+import org.web3j.protocol.ObjectMapperFactory;
+import org.web3j.protocol.Web3j;
+import org.web3j.protocol.Web3jService;
+import org.web3j.protocol.core.BatchRequest;
+import org.web3j.protocol.core.BatchResponse;
+import org.web3j.protocol.core.DefaultBlockParameterNumber;
+import org.web3j.protocol.core.Request;
+import org.web3j.protocol.core.Response;
+import org.web3j.protocol.core.methods.request.EthFilter;
+import org.web3j.protocol.core.methods.response.EthBlockNumber;
+import org.web3j.protocol.core.methods.response.EthLog;
+import org.web3j.protocol.core.methods.response.Log;
+import org.web3j.protocol.websocket.events.LogNotification;
+import org.web3j.protocol.websocket.events.Notification;
+import org.web3j.utils.Numeric;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PushLogSourceTest {
+
+    private static final String CHANNEL = "0x00000000000000000000000000000000000000aa";
+
+    @Test
+    void gapIsFilledBeforePushedLogsAndDuplicatesAreDropped() throws Exception {
+        FakeNode node = new FakeNode();
+        node.addLog(5, "0x01");
+        node.addLog(6, "0x02");
+
+        PushLogSource source = new PushLogSource(() -> node, Web3j.build(node), 50, 50);
+        List<String> received = new CopyOnWriteArrayList<>();
+        source.open(Collections.singletonList(CHANNEL), BigInteger.valueOf(5))
+                .subscribe(l -> received.add(l.getTransactionHash()));
+        source.connect();
+        await(() -> source.getMode() == PushLogSource.Mode.PUSH);
+
+        node.push(6, "0x02");
+        node.push(7, "0x03");
+        await(() -> received.size() >= 3);
+        source.stop();
+
+        assertEquals(3, received.size());
+        assertEquals("0x01", received.get(0));
+        assertEquals("0x02", received.get(1));
+        assertEquals("0x03", received.get(2));
+        assertEquals(BigInteger.valueOf(7), source.getLastBlock());
+    }
+
+    @Test
+    void fallsBackToPollingAndResubscribes() throws Exception {
+        FakeNode node = new FakeNode();
+        node.addLog(1, "0x01");
+        node.failConnect = true;
+
+        PushLogSource source = new PushLogSource(() -> {
+            if(node.failConnect){
+                throw new IOException("connection refused");
+            }
+            return node;
+        }, Web3j.build(node), 20, 100);
+        List<String> received = new CopyOnWriteArrayList<>();
+        source.open(Collections.singletonList(CHANNEL), BigInteger.ONE)
+                .subscribe(l -> received.add(l.getTransactionHash()));
+        source.connect();
+
+        await(() -> received.size() == 1);
+        assertEquals(PushLogSource.Mode.POLLING, source.getMode());
+        node.addLog(2, "0x02");
+        await(() -> received.size() == 2);
+
+        node.failConnect = false;
+        await(() -> source.getMode() == PushLogSource.Mode.PUSH);
+        node.fail(new IOException("connection lost"));
+        node.addLog(3, "0x03");
+        await(() -> received.size() == 3);
+        source.stop();
+
+        assertEquals(3, received.size());
+        assertEquals("0x03", received.get(2));
+    }
+
+    private static void await(Condition condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while(!condition.holds()){
+            if(System.currentTimeMillis() > deadline){
+                fail("Timed out waiting for condition");
+            }
+            Thread.sleep(10);
+        }
+    }
+
+    private interface Condition {
+        boolean holds();
+    }
+
+    /**
+     * Answers eth_blockNumber and eth_getLogs from an in-memory list of logs, and pushes logs to a subscription.
+     */
+    private static class FakeNode implements Web3jService {
+
+        private final List<Log> logs = new CopyOnWriteArrayList<>();
+
+        private volatile PublishProcessor<LogNotification> subscription;
+
+        private volatile long head = 0;
+
+        private volatile boolean failConnect = false;
+
+        void addLog(long block, String txHash) {
+            logs.add(log(block, txHash));
+            head = Math.max(head, block);
+        }
+
+        void push(long block, String txHash) throws IOException {
+            addLog(block, txHash);
+            String json = "{\"jsonrpc\":\"2.0\",\"method\":\"eth_subscription\",\"params\":{\"subscription\":\"0x1\",\"result\":{"
+                    + "\"address\":\"" + CHANNEL + "\",\"blockHash\":\"0x00\",\"blockNumber\":\"" + Numeric.encodeQuantity(BigInteger.valueOf(block)) + "\","
+                    + "\"data\":\"0x\",\"logIndex\":\"0x0\",\"topics\":[],\"transactionHash\":\"" + txHash + "\",\"transactionIndex\":\"0x0\"}}}";
+            subscription.onNext(ObjectMapperFactory.getObjectMapper().readValue(json, LogNotification.class));
+        }
+
+        void fail(Throwable t) {
+            subscription.onError(t);
+        }
+
+        private static Log log(long block, String txHash) {
+            return new EthLog.LogObject(false, "0x0", "0x0", txHash, "0x00",
+                    Numeric.encodeQuantity(BigInteger.valueOf(block)), CHANNEL, "0x", null, new ArrayList<>());
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <T extends Response> T send(Request request, Class<T> responseType) throws IOException {
+            if(request.getMethod().equals("eth_blockNumber")){
+                EthBlockNumber response = new EthBlockNumber();
+                response.setResult(Numeric.encodeQuantity(BigInteger.valueOf(head)));
+                return (T) response;
+            }
+            if(request.getMethod().equals("eth_getLogs")){
+                EthFilter filter = (EthFilter) request.getParams().get(0);
+                BigInteger from = ((DefaultBlockParameterNumber) filter.getFromBlock()).getBlockNumber();
+                BigInteger to = ((DefaultBlockParameterNumber) filter.getToBlock()).getBlockNumber();
+                List<EthLog.LogResult> results = new ArrayList<>();
+                for (Log l: logs) {
+                    if(l.getBlockNumber().compareTo(from) >= 0 && l.getBlockNumber().compareTo(to) <= 0){
+                        results.add((EthLog.LogObject) l);
+                    }
+                }
+                EthLog response = new EthLog();
+                response.setResult(results);
+                return (T) response;
+            }
+            throw new IOException("Unsupported method " + request.getMethod());
+        }
+
+        @Override
+        public <T extends Response> CompletableFuture<T> sendAsync(Request request, Class<T> responseType) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public BatchResponse sendBatch(BatchRequest batchRequest) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public CompletableFuture<BatchResponse> sendBatchAsync(BatchRequest batchRequest) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <T extends Notification<?>> Flowable<T> subscribe(Request request, String unsubscribeMethod, Class<T> responseType) {
+            subscription = PublishProcessor.create();
+            return (Flowable<T>) subscription;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package com.visa.vr.upc.sdk.unit;
+
+import com.visa.vr.upc.sdk.DefaultDataService;
+import com.visa.vr.upc.sdk.PromiseService;
+import com.visa.vr.upc.sdk.custody.BasicSigner;
+import com.visa.vr.upc.sdk.domain.Receipt;
+import com.visa.vr.upc.sdk.domain.UInt256;
+import com.visa.vr.upc.sdk.store.ReceiptCodec;
+import com.visa.vr.upc.sdk.store.ReceiptRetentionPolicy;
+import com.visa.vr.upc.sdk.store.ReceiptStore;
+import org.junit.jupiter.api.Test;
+import org.web3j.crypto.ECKeyPair;
+import org.web3j.utils.Numeric;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ReceiptStoreTest {
+
+    private static final BasicSigner SIGNER = new BasicSigner(ECKeyPair.create(Numeric.hexStringToByteArray("36A110380859D05E60C2991479DE4D24DA3116A49B342127C1F1F7D536CAE547")));
+
+    private static final String RECEIVER = "0xdeadbeefdeadbeefdeadbeefdeadbeefdeadbeef";
+
+    private static Receipt getReceipt(long channelId, long receiptId) {
+        byte[] root = new byte[32];
+        root[0] = (byte) receiptId;
+        Receipt receipt = PromiseService.createReceipt(channelId, 1337, SIGNER.getAddress(), RECEIVER, receiptId, receiptId * 10, root);
+        return PromiseService.signReceipt(receipt, SIGNER);
+    }
+
+    private static void assertSameReceipt(Receipt expected, Receipt actual) {
+        assertArrayEquals(PromiseService.hashReceipt(expected), PromiseService.hashReceipt(actual));
+        assertEquals(expected.getSender(), actual.getSender());
+        assertEquals(expected.getReceiver(), actual.getReceiver());
+        assertEquals(expected.getSignature(), actual.getSignature());
+    }
+
+    @Test
+    void codecRoundTripsReceipts() {
+        List<Receipt> receipts = new ArrayList<>();
+        for (int i = 1; i <= 100; i++) {
+            receipts.add(getReceipt(3, i));
+        }
+        receipts.add(Receipt.builder().channelId(3).receiptId(101)
+                .cumulativeCredit(UInt256.valueOf(BigInteger.TEN.pow(40))).accumulatorRoot(new byte[32]).build());
+        byte[] encoded = ReceiptCodec.encode(receipts);
+        List<Receipt> decoded = ReceiptCodec.decode(encoded);
+        assertEquals(receipts.size(), decoded.size());
+        for (int i = 0; i < receipts.size(); i++) {
+            assertSameReceipt(receipts.get(i), decoded.get(i));
+        }
+        assertNull(decoded.get(100).getSignature());
+        assertThrows(IllegalArgumentException.class, () -> ReceiptCodec.decode(new byte[]{1, 2, 3}));
+    }
+
+    @Test
+    void olderReceiptsAreArchivedOrDropped() {
+        ReceiptStore archive = new ReceiptStore(ReceiptRetentionPolicy.archiveAllButLatest(2));
+        ReceiptStore drop = new ReceiptStore(ReceiptRetentionPolicy.keepLatest(2));
+        for (int i = 1; i <= 25; i++) {
+            archive.add(getReceipt(1, i));
+            drop.add(getReceipt(1, i));
+        }
+        assertTrue(archive.getRetainedCount(1) < 4);
+        assertEquals(25, archive.getRetainedCount(1) + archive.getArchivedCount(1));
+        assertEquals(25, archive.getLatest(1).get().getReceiptId());
+        assertSameReceipt(getReceipt(1, 3), archive.get(1, 3).get());
+        assertThrows(IllegalArgumentException.class, () -> archive.add(getReceipt(1, 3)));
+
+        assertEquals(25, drop.getLatest(1).get().getReceiptId());
+        assertFalse(drop.get(1, 3).isPresent());
+        assertEquals(0, drop.getArchivedCount(1));
+        drop.compact(1);
+        assertEquals(2, drop.getRetainedCount(1));
+        assertFalse(drop.getLatest(2).isPresent());
+    }
+
+    @Test
+    void droppedReceiptsAreNotAcceptedAgain() {
+        ReceiptStore drop = new ReceiptStore(ReceiptRetentionPolicy.keepLatest(2));
+        assertEquals(Long.MIN_VALUE, drop.getDroppedUpTo(1));
+        for (int i = 1; i <= 4; i++) {
+            drop.add(getReceipt(1, i));
+        }
+        assertEquals(2, drop.getDroppedUpTo(1));
+        assertFalse(drop.get(1, 1).isPresent());
+        assertThrows(IllegalArgumentException.class, () -> drop.add(getReceipt(1, 1)));
+        assertThrows(IllegalArgumentException.class, () -> drop.add(getReceipt(1, 2)));
+        assertEquals(2, drop.getRetainedCount(1));
+        // Other channels are not affected
+        drop.add(getReceipt(2, 1));
+        assertEquals(Long.MIN_VALUE, drop.getDroppedUpTo(2));
+
+        ReceiptStore archive = new ReceiptStore(ReceiptRetentionPolicy.archiveAllButLatest(2));
+        for (int i = 1; i <= 4; i++) {
+            archive.add(getReceipt(1, i));
+        }
+        assertEquals(Long.MIN_VALUE, archive.getDroppedUpTo(1));
+    }
+
+    @Test
+    void dataServiceCompactsOnRequest() {
+        DefaultDataService dataService = new DefaultDataService(SIGNER.getAddress(), ReceiptRetentionPolicy.keepLatest(5));
+        for (int i = 1; i <= 7; i++) {
+            dataService.addOutgoingReceipt(getReceipt(1, i));
+        }
+        assertTrue(dataService.getOutgoingReceiptById(1, 1).isPresent());
+        dataService.compact(1);
+        assertFalse(dataService.getOutgoingReceiptById(1, 1).isPresent());
+        assertTrue(dataService.getOutgoingReceiptById(1, 3).isPresent());
+        assertEquals(7, dataService.getLatestOutgoingReceipt(1).get().getReceiptId());
+    }
+}
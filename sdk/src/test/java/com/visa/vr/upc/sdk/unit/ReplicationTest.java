@@ -0,0 +1,196 @@
+package com.visa.vr.upc.sdk.unit;
+
+import com.visa.vr.upc.sdk.DefaultDataService;
+import com.visa.vr.upc.sdk.PromiseService;
+import com.visa.vr.upc.sdk.custody.BasicSigner;
+import com.visa.vr.upc.sdk.domain.Bytecode;
+import com.visa.vr.upc.sdk.domain.Channel;
+import com.visa.vr.upc.sdk.domain.Promise;
+import com.visa.vr.upc.sdk.domain.PromiseStatus;
+import com.visa.vr.upc.sdk.domain.Receipt;
+import com.visa.vr.upc.sdk.domain.StatefulPromise;
+import com.visa.vr.upc.sdk.store.Replica;
+import com.visa.vr.upc.sdk.store.ReplicatedDataService;
+import org.junit.jupiter.api.Test;
+import org.web3j.crypto.ECKeyPair;
+import org.web3j.utils.Numeric;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.concurrent.CountDownLatch;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ReplicationTest {
+
+    private static final BasicSigner SIGNER = new BasicSigner(ECKeyPair.create(Numeric.hexStringToByteArray("36A110380859D05E60C2991479DE4D24DA3116A49B342127C1F1F7D536CAE547")));
+
+    private static final String CLIENT = "0xdeadbeefdeadbeefdeadbeefdeadbeefdeadbeef";
+
+    private static Promise getPromise(long channelId, long n) {
+        return Promise.builder()
+                .channelId(channelId)
+                .chainId(1337)
+                .sender(SIGNER.getAddress())
+                .receiver(CLIENT)
+                .address(String.format("0x%040x", n))
+                .bytecode(Bytecode.of("0x6080604052", String.format("%064x", n)))
+                .receiptId(n)
+                .amount(n)
+                .salt(new byte[32])
+                .expiration(1000)
+                .build();
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10000;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < deadline, "Timed out");
+            Thread.sleep(5);
+        }
+    }
+
+    @Test
+    void replicaFollowsTheHub() throws Exception {
+        DefaultDataService hubData = new DefaultDataService(SIGNER.getAddress());
+        DefaultDataService standby = new DefaultDataService(SIGNER.getAddress());
+        try (ReplicatedDataService hub = new ReplicatedDataService(hubData, hubData, hubData, 0, ReplicatedDataService.AckLevel.APPLIED, 5000, 1024)) {
+            // Changes made before the replica connects reach it through the snapshot
+            Channel channel = hub.createChannel(new Channel(SIGNER.getAddress(), CLIENT, 1337, 60, "0x1111111111111111111111111111111111111111"));
+            long channelId = channel.getId();
+            hub.addOutgoingPromise(getPromise(channelId, 1), 0, false);
+            assertEquals(0, hub.getSequence());
+
+            Replica replica = new Replica(hub.getPort(), standby, standby, standby);
+            await(() -> hub.isReplicaConnected() && standby.getChannelById(channelId).isPresent());
+
+            // With APPLIED acknowledgements, the standby has every change once the call returns
+            StatefulPromise incoming = hub.addIncomingPromise(getPromise(channelId, 2), 5L, 0, true);
+            assertEquals(5L, standby.getOpenIncomingPromises(channelId).get(0).getPromiseId());
+            hub.closeIncomingPromises(Collections.singletonList(incoming));
+            assertEquals(PromiseStatus.CLOSED, standby.getIncomingPromiseById(5L).get().getStatus());
+            Receipt receipt = PromiseService.signReceipt(PromiseService.createReceipt(channelId, 1337, SIGNER.getAddress(), CLIENT, 1, 7, new byte[32]), SIGNER);
+            hub.addOutgoingReceipt(receipt);
+            assertEquals(1L, standby.getLatestOutgoingReceipt(channelId).get().getReceiptId());
+            channel.setHubCredit(7);
+            hub.updateChannel(channel);
+            assertEquals(7L, standby.getChannelById(channelId).get().getHubCredit().longValueExact());
+            for (long i = 10; i < 200; i++) {
+                hub.addOutgoingPromise(getPromise(channelId, i), 0, false);
+            }
+            assertEquals(hub.getSequence(), replica.getAppliedSequence());
+            assertEquals(191, standby.getOpenOutgoingPromises(channelId).size());
+            assertEquals(getPromise(channelId, 150).getBytecode(), standby.getOutgoingPromiseByAddress(String.format("0x%040x", 150)).get().getBytecode());
+
+            // Failover: the standby takes over with the same state and continues the ids
+            hub.close();
+            await(() -> !replica.isConnected());
+            replica.awaitTermination(1000);
+            assertEquals(192L, standby.addOutgoingPromise(getPromise(channelId, 500), 0, false).getPromiseId());
+        }
+    }
+
+    @Test
+    void replicaReconnectsOnTheSameServices() throws Exception {
+        DefaultDataService hubData = new DefaultDataService(SIGNER.getAddress());
+        DefaultDataService standby = new DefaultDataService(SIGNER.getAddress());
+        try (ReplicatedDataService hub = new ReplicatedDataService(hubData, hubData, hubData, 0, ReplicatedDataService.AckLevel.APPLIED, 5000, 1024)) {
+            Channel channel = hub.createChannel(new Channel(SIGNER.getAddress(), CLIENT, 1337, 60, "0x1111111111111111111111111111111111111111"));
+            long channelId = channel.getId();
+            Replica first = new Replica(hub.getPort(), standby, standby, standby);
+            await(() -> hub.isReplicaConnected() && standby.getChannelById(channelId).isPresent());
+            StatefulPromise incoming = hub.addIncomingPromise(getPromise(channelId, 1), 1L, 0, true);
+            hub.addOutgoingReceipt(PromiseService.signReceipt(PromiseService.createReceipt(channelId, 1337, SIGNER.getAddress(), CLIENT, 1, 1, new byte[32]), SIGNER));
+            first.close();
+            first.awaitTermination(1000);
+            await(() -> !hub.isReplicaConnected());
+
+            // Changes made while disconnected reach the standby through the next snapshot
+            hub.closeIncomingPromises(Collections.singletonList(incoming));
+            hub.addIncomingPromise(getPromise(channelId, 2), 2L, 0, true);
+            hub.addOutgoingReceipt(PromiseService.signReceipt(PromiseService.createReceipt(channelId, 1337, SIGNER.getAddress(), CLIENT, 2, 3, new byte[32]), SIGNER));
+            try (Replica second = new Replica(hub.getPort(), standby, standby, standby)) {
+                await(() -> hub.isReplicaConnected() && second.getAppliedSequence() == hub.getSequence() && standby.getIncomingPromiseById(2L).isPresent());
+                assertTrue(second.isConnected());
+                assertEquals(PromiseStatus.CLOSED, standby.getIncomingPromiseById(1L).get().getStatus());
+                assertEquals(2L, standby.getLatestOutgoingReceipt(channelId).get().getReceiptId());
+                hub.addIncomingPromise(getPromise(channelId, 3), 3L, 0, true);
+                assertEquals(2, standby.getOpenIncomingPromises(channelId).size());
+            }
+        }
+    }
+
+    @Test
+    void closedPromisesReachTheReplicaWhenTheDelegateCopiesThem() throws Exception {
+        // Like a database-backed service, the delegate updates its own records and leaves the caller's objects alone
+        DefaultDataService hubData = new DefaultDataService(SIGNER.getAddress()) {
+            @Override
+            public void closeIncomingPromises(List<StatefulPromise> promises) {
+                super.closeIncomingPromises(promises.stream()
+                        .map(p -> new StatefulPromise(p, p.getPromiseId(), p.getPromiseType(), p.getTriggerClose()))
+                        .collect(Collectors.toList()));
+            }
+        };
+        DefaultDataService standby = new DefaultDataService(SIGNER.getAddress());
+        try (ReplicatedDataService hub = new ReplicatedDataService(hubData, hubData, hubData, 0, ReplicatedDataService.AckLevel.APPLIED, 5000, 1024);
+             Replica replica = new Replica(hub.getPort(), standby, standby, standby)) {
+            await(hub::isReplicaConnected);
+            Channel channel = hub.createChannel(new Channel(SIGNER.getAddress(), CLIENT, 1337, 60, "0x1111111111111111111111111111111111111111"));
+            StatefulPromise incoming = hub.addIncomingPromise(getPromise(channel.getId(), 1), 1L, 0, true);
+            hub.closeIncomingPromises(Collections.singletonList(incoming));
+            assertEquals(PromiseStatus.OPEN, incoming.getStatus());
+            assertEquals(PromiseStatus.CLOSED, hubData.getIncomingPromiseById(1L).get().getStatus());
+            assertEquals(PromiseStatus.CLOSED, standby.getIncomingPromiseById(1L).get().getStatus());
+        }
+    }
+
+    @Test
+    void replicaKeepsUpWithABurstOfChanges() throws Exception {
+        DefaultDataService hubData = new DefaultDataService(SIGNER.getAddress());
+        DefaultDataService standby = new DefaultDataService(SIGNER.getAddress());
+        try (ReplicatedDataService hub = new ReplicatedDataService(hubData, hubData, hubData, 0, ReplicatedDataService.AckLevel.NONE, 5000, 16);
+             Replica replica = new Replica(hub.getPort(), standby, standby, standby)) {
+            await(hub::isReplicaConnected);
+            Channel channel = hub.createChannel(new Channel(SIGNER.getAddress(), CLIENT, 1337, 60, "0x1111111111111111111111111111111111111111"));
+            for (long i = 1; i <= 1000; i++) {
+                hub.addIncomingPromise(getPromise(channel.getId(), i), i, 0, true);
+            }
+            await(() -> replica.getAppliedSequence() == hub.getSequence());
+            assertEquals(1000, standby.getOpenIncomingPromises(channel.getId()).size());
+        }
+    }
+
+    @Test
+    void stalledReplicaIsDisconnectedWithoutBlockingTheHub() throws Exception {
+        CountDownLatch stall = new CountDownLatch(1);
+        DefaultDataService hubData = new DefaultDataService(SIGNER.getAddress());
+        DefaultDataService standby = new DefaultDataService(SIGNER.getAddress()) {
+            @Override
+            public StatefulPromise addIncomingPromise(Promise promise, Long promiseId, Integer promiseType, Boolean triggerClose) {
+                try {
+                    stall.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return super.addIncomingPromise(promise, promiseId, promiseType, triggerClose);
+            }
+        };
+        try (ReplicatedDataService hub = new ReplicatedDataService(hubData, hubData, hubData, 0, ReplicatedDataService.AckLevel.APPLIED, 200, 16);
+             Replica replica = new Replica(hub.getPort(), standby, standby, standby)) {
+            await(hub::isReplicaConnected);
+            Channel channel = hub.createChannel(new Channel(SIGNER.getAddress(), CLIENT, 1337, 60, "0x1111111111111111111111111111111111111111"));
+            long start = System.currentTimeMillis();
+            for (long i = 1; i <= 100; i++) {
+                hub.addIncomingPromise(getPromise(channel.getId(), i), i, 0, true);
+            }
+            // Only the first change waits for the stalled replica, until the acknowledgement timeout
+            assertTrue(System.currentTimeMillis() - start < 5000);
+            assertFalse(hub.isReplicaConnected());
+            assertEquals(100, hubData.getOpenIncomingPromises(channel.getId()).size());
+        } finally {
+            stall.countDown();
+        }
+    }
+}
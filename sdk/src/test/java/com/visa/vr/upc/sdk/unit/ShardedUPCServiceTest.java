@@ -0,0 +1,132 @@
+package com.visa.vr.upc.sdk.unit;
+
+import com.visa.vr.upc.sdk.ShardedUPCService;
+import com.visa.vr.upc.sdk.custody.BasicSigner;
+import com.visa.vr.upc.sdk.domain.Channel;
+import com.visa.vr.upc.sdk.domain.HTLCConstructorParams;
+import com.visa.vr.upc.sdk.domain.PromiseStatus;
+import com.visa.vr.upc.sdk.domain.Receipt;
+import com.visa.vr.upc.sdk.domain.StatefulPromise;
+import com.visa.vr.upc.sdk.generated.HTLC;
+import org.junit.jupiter.api.Test;
+import org.web3j.crypto.ECKeyPair;
+import org.web3j.utils.Numeric;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ShardedUPCServiceTest {
+
+    private static final String TOKEN = "0xe7E6c88Ad1BAb6508a251B7995f44fB1C5E3dCF7";
+
+    private static final BasicSigner HUB = new BasicSigner(ECKeyPair.create(Numeric.hexStringToByteArray("FE4EAEFBE4076F4D726ABD8B20335543E4210524AD3DF189C2BBF3A756702FFE")));
+
+    private static final BasicSigner CLIENT = new BasicSigner(ECKeyPair.create(Numeric.hexStringToByteArray("36A110380859D05E60C2991479DE4D24DA3116A49B342127C1F1F7D536CAE547")));
+
+    private static final HTLCConstructorParams PARAMS = new HTLCConstructorParams(10, new byte[32], 2000);
+
+    private static long createChannel(ShardedUPCService hub, int n) {
+        Channel channel = new Channel(HUB.getAddress(), CLIENT.getAddress(), 1337, 100, TOKEN);
+        channel.setAddress(String.format("0x%040x", n));
+        channel.setHubDeposit(1000);
+        return hub.createChannel(channel).getId();
+    }
+
+    private static byte[] salt(int n) {
+        byte[] salt = new byte[32];
+        salt[0] = (byte) n;
+        return salt;
+    }
+
+    @Test
+    void channelsAreRoutedAndMovedBetweenShards() {
+        ShardedUPCService hub = ShardedUPCService.inMemory(HUB, 3);
+        Set<Long> promiseIds = new HashSet<>();
+        for (int i = 0; i < 6; i++) {
+            long channelId = createChannel(hub, i);
+            assertEquals(channelId % 3, hub.getShardIndex(channelId));
+            for (int j = 0; j < 2; j++) {
+                promiseIds.add(hub.createPromise(channelId, 0, HTLC.BINARY, PARAMS, salt(j)).getPromiseId());
+            }
+        }
+        // Outgoing promise ids are unique across shards
+        assertEquals(12, promiseIds.size());
+
+        long channelId = 1;
+        StatefulPromise closed = hub.withShard(channelId, shard -> shard.getPromiseDataService().getOpenOutgoingPromises(channelId).get(0));
+        hub.withShard(channelId, shard -> {
+            shard.getPromiseDataService().closeOutgoingPromises(Collections.singletonList(closed));
+            return shard.getPromiseDataService().addIncomingPromise(closed, 100L, 0, false);
+        });
+        Receipt receipt = hub.createReceipt(channelId);
+        byte[] accumulator = hub.getIncomingAccumulator(channelId).getRootHash();
+
+        hub.moveChannel(channelId, 0);
+        assertEquals(0, hub.getShardIndex(channelId));
+        assertEquals(Collections.singletonMap(channelId, 0), hub.getAssignments());
+        assertEquals(1000 - 10, hub.getSelfAvailableAmount(channelId).longValueExact());
+        assertArrayEquals(accumulator, hub.getIncomingAccumulator(channelId).getRootHash());
+        assertEquals(receipt.getReceiptId() + 1, hub.createReceipt(channelId).getReceiptId());
+        assertEquals(13L, hub.createPromise(channelId, 0, HTLC.BINARY, PARAMS, salt(5)).getPromiseId());
+
+        // Moving back overwrites the stale copy left in the previous shard
+        hub.moveChannel(channelId, 1);
+        assertTrue(hub.getAssignments().isEmpty());
+        assertEquals(2, hub.withShard(channelId, shard -> shard.getPromiseDataService().getOpenOutgoingPromises(channelId)).size());
+        assertEquals(1000 - 20, hub.getSelfAvailableAmount(channelId).longValueExact());
+        assertThrows(IllegalArgumentException.class, () -> hub.moveChannel(channelId, 3));
+    }
+
+    @Test
+    void channelsMoveBackWithoutActivityInBetween() {
+        ShardedUPCService hub = ShardedUPCService.inMemory(HUB, 2);
+        long channelId = createChannel(hub, 1);
+        int home = hub.getShardIndex(channelId);
+        StatefulPromise promise = hub.createPromise(channelId, 0, HTLC.BINARY, PARAMS, salt(1));
+        Receipt receipt = hub.createReceipt(channelId);
+
+        hub.moveChannel(channelId, 1 - home);
+        // The receipts are still in the home shard, and the move back keeps them
+        hub.moveChannel(channelId, home);
+        assertEquals(home, hub.getShardIndex(channelId));
+        assertTrue(hub.getAssignments().isEmpty());
+        List<StatefulPromise> open = hub.withShard(channelId, shard -> shard.getPromiseDataService().getOpenOutgoingPromises(channelId));
+        assertEquals(Collections.singletonList(promise.getPromiseId()), open.stream().map(StatefulPromise::getPromiseId).collect(Collectors.toList()));
+        assertEquals(receipt.getReceiptId(), hub.withShard(channelId, shard -> shard.getReceiptDataService().getLatestOutgoingReceipt(channelId)).get().getReceiptId());
+        assertEquals(receipt.getReceiptId() + 1, hub.createReceipt(channelId).getReceiptId());
+    }
+
+    @Test
+    void channelsAreExportedToAnotherRouter() throws Exception {
+        ShardedUPCService first = ShardedUPCService.inMemory(HUB, 2);
+        ShardedUPCService second = ShardedUPCService.inMemory(HUB, 2);
+        long channelId = createChannel(first, 1);
+        StatefulPromise promise = first.createPromise(channelId, 0, HTLC.BINARY, PARAMS, salt(1));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        first.exportChannel(channelId, out);
+        assertThrows(IllegalArgumentException.class, () -> first.getCredit(channelId, CLIENT.getAddress()));
+
+        assertEquals(Collections.singletonList(channelId), second.importChannel(new ByteArrayInputStream(out.toByteArray()), 0));
+        assertEquals(0, second.getShardIndex(channelId));
+        StatefulPromise imported = second.withShard(channelId, shard -> shard.getPromiseDataService().getOutgoingPromiseById(promise.getPromiseId()).get());
+        assertEquals(promise.getAddress(), imported.getAddress());
+        assertEquals(PromiseStatus.OPEN, imported.getStatus());
+        // Ids continue after the imported ones
+        assertEquals(channelId + 1, createChannel(second, 2));
+        assertEquals(promise.getPromiseId() + 1, second.createPromise(channelId, 0, HTLC.BINARY, PARAMS, salt(2)).getPromiseId());
+
+        // A channel that is already served cannot be imported again
+        assertThrows(IllegalStateException.class, () -> second.importChannel(new ByteArrayInputStream(out.toByteArray()), 1));
+        byte[] corrupt = out.toByteArray();
+        corrupt[corrupt.length / 2] ^= 0x10;
+        assertThrows(IllegalArgumentException.class, () -> first.importChannel(new ByteArrayInputStream(corrupt), 0));
+    }
+}
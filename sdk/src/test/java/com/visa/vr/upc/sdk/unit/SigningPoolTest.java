@@ -0,0 +1,150 @@
+package com.visa.vr.upc.sdk.unit;
+
+import com.visa.vr.upc.sdk.PromiseService;
+import com.visa.vr.upc.sdk.custody.BasicSigner;
+import com.visa.vr.upc.sdk.custody.IBatchSigner;
+import com.visa.vr.upc.sdk.custody.SigningPool;
+import com.visa.vr.upc.sdk.domain.Receipt;
+import org.junit.jupiter.api.Test;
+import org.web3j.crypto.ECKeyPair;
+import org.web3j.crypto.RawTransaction;
+import org.web3j.crypto.Sign;
+import org.web3j.utils.Numeric;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SigningPoolTest {
+
+    private static final BasicSigner SIGNER = new BasicSigner(ECKeyPair.create(Numeric.hexStringToByteArray("36A110380859D05E60C2991479DE4D24DA3116A49B342127C1F1F7D536CAE547")));
+
+    /**
+     * A batch signer that waits for a latch before its first batch, so the requests queue up behind it.
+     */
+    private static class GatedBatchSigner implements IBatchSigner {
+        private final CountDownLatch gate = new CountDownLatch(1);
+
+        private final List<Integer> batchSizes = new CopyOnWriteArrayList<>();
+
+        @Override
+        public List<Sign.SignatureData> signPrefixedMessages(List<byte[]> messages) {
+            batchSizes.add(messages.size());
+            List<Sign.SignatureData> signatures = new ArrayList<>();
+            for (byte[] message: messages) {
+                signatures.add(SIGNER.signPrefixedMessage(message));
+            }
+            return signatures;
+        }
+
+        @Override
+        public Sign.SignatureData signPrefixedMessage(byte[] message) {
+            try {
+                gate.await();
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+            batchSizes.add(1);
+            return SIGNER.signPrefixedMessage(message);
+        }
+
+        @Override
+        public byte[] sign(RawTransaction rawTransaction, long chainId) {
+            return SIGNER.sign(rawTransaction, chainId);
+        }
+
+        @Override
+        public String getAddress() {
+            return SIGNER.getAddress();
+        }
+    }
+
+    @Test
+    void signaturesMatchTheWrappedSigner() throws Exception {
+        try (SigningPool pool = new SigningPool(SIGNER, 4, 16, 1)) {
+            List<byte[]> messages = new ArrayList<>();
+            List<CompletableFuture<Sign.SignatureData>> futures = new ArrayList<>();
+            for (int i = 0; i < 50; i++) {
+                byte[] message = new byte[32];
+                message[0] = (byte) i;
+                messages.add(message);
+                futures.add(pool.signPrefixedMessageAsync(message));
+            }
+            for (int i = 0; i < messages.size(); i++) {
+                assertEquals(SIGNER.signPrefixedMessage(messages.get(i)), futures.get(i).get(10, TimeUnit.SECONDS));
+            }
+
+            Receipt receipt = PromiseService.createReceipt(1, 0, SIGNER.getAddress(), "deadbeefdeadbeefdeadbeefdeadbeefdeadbeef", 1, 5, new byte[32]);
+            Receipt signed = PromiseService.signReceiptAsync(receipt, pool).get(10, TimeUnit.SECONDS);
+            assertTrue(PromiseService.verifyReceipt(signed, 1, 0, SIGNER.getAddress(), "deadbeefdeadbeefdeadbeefdeadbeefdeadbeef", 1, 5, new byte[32]));
+        }
+    }
+
+    @Test
+    void queuedRequestsAreSignedInBatches() throws Exception {
+        GatedBatchSigner batchSigner = new GatedBatchSigner();
+        SigningPool pool = new SigningPool(batchSigner, 1, 16, 8);
+        List<CompletableFuture<Sign.SignatureData>> futures = new ArrayList<>();
+        for (int i = 0; i < 9; i++) {
+            futures.add(pool.signPrefixedMessageAsync(new byte[]{(byte) i}));
+        }
+        // The worker blocks on the first request while the other eight queue up
+        batchSigner.gate.countDown();
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).get(10, TimeUnit.SECONDS);
+        assertEquals(9, batchSigner.batchSizes.stream().mapToInt(Integer::intValue).sum());
+        assertTrue(batchSigner.batchSizes.stream().anyMatch(size -> size > 1));
+
+        pool.close();
+        pool.awaitTermination(10000);
+        assertThrows(RejectedExecutionException.class, () -> pool.signPrefixedMessageAsync(new byte[32]));
+    }
+
+    @Test
+    void closeDoesNotBlockOnAFullQueue() throws Exception {
+        GatedBatchSigner batchSigner = new GatedBatchSigner();
+        SigningPool pool = new SigningPool(batchSigner, 1, 1, 1);
+        CompletableFuture<Sign.SignatureData> first = pool.signPrefixedMessageAsync(new byte[]{1});
+        // Wait until the worker is blocked on the first request, then fill the queue
+        while(pool.getQueueSize() > 0){
+            Thread.sleep(1);
+        }
+        CompletableFuture<Sign.SignatureData> second = pool.signPrefixedMessageAsync(new byte[]{2});
+
+        pool.close();
+        batchSigner.gate.countDown();
+        assertEquals(SIGNER.signPrefixedMessage(new byte[]{1}), first.get(10, TimeUnit.SECONDS));
+        assertEquals(SIGNER.signPrefixedMessage(new byte[]{2}), second.get(10, TimeUnit.SECONDS));
+        pool.awaitTermination(10000);
+    }
+
+    @Test
+    void requestsRacingWithCloseAreSignedOrRejected() throws Exception {
+        for (int i = 0; i < 50; i++) {
+            SigningPool pool = new SigningPool(SIGNER, 1, 4, 1);
+            List<CompletableFuture<Sign.SignatureData>> futures = new CopyOnWriteArrayList<>();
+            Thread producer = new Thread(() -> {
+                try {
+                    for (int j = 0; j < 20; j++) {
+                        futures.add(pool.signPrefixedMessageAsync(new byte[]{(byte) j}));
+                    }
+                } catch (RejectedExecutionException e) {
+                    // closed
+                }
+            });
+            producer.start();
+            Thread.sleep(i % 5);
+            pool.close();
+            producer.join(10000);
+            pool.awaitTermination(10000);
+            for (CompletableFuture<Sign.SignatureData> future: futures) {
+                assertTrue(future.isDone());
+            }
+        }
+    }
+}
@@ -0,0 +1,209 @@
+package com.visa.vr.upc.sdk.unit;
+
+import com.visa.vr.upc.sdk.DefaultDataService;
+import com.visa.vr.upc.sdk.PromiseService;
+import com.visa.vr.upc.sdk.custody.BasicSigner;
+import com.visa.vr.upc.sdk.domain.Bytecode;
+import com.visa.vr.upc.sdk.domain.Channel;
+import com.visa.vr.upc.sdk.domain.ChannelStatus;
+import com.visa.vr.upc.sdk.domain.Promise;
+import com.visa.vr.upc.sdk.domain.PromiseStatus;
+import com.visa.vr.upc.sdk.domain.Receipt;
+import com.visa.vr.upc.sdk.domain.StatefulPromise;
+import com.visa.vr.upc.sdk.store.ReceiptRetentionPolicy;
+import com.visa.vr.upc.sdk.store.StateSnapshot;
+import org.junit.jupiter.api.Test;
+import org.web3j.crypto.ECKeyPair;
+import org.web3j.utils.Numeric;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class StateSnapshotTest {
+
+    private static final BasicSigner SIGNER = new BasicSigner(ECKeyPair.create(Numeric.hexStringToByteArray("36A110380859D05E60C2991479DE4D24DA3116A49B342127C1F1F7D536CAE547")));
+
+    private static final String CLIENT = "0xdeadbeefdeadbeefdeadbeefdeadbeefdeadbeef";
+
+    private static final String BINARY = "0x6080604052348015600f57600080fd5b50";
+
+    private static Promise getPromise(long channelId, long n) {
+        byte[] salt = new byte[32];
+        salt[0] = (byte) n;
+        return Promise.builder()
+                .channelId(channelId)
+                .chainId(1337)
+                .sender(SIGNER.getAddress())
+                .receiver(CLIENT)
+                .address(String.format("0x%040x", 1000 + n))
+                .bytecode(Bytecode.of(BINARY, String.format("%064x", n)))
+                .receiptId(n)
+                .amount(n * 10)
+                .salt(salt)
+                .expiration(2000 + n)
+                .build();
+    }
+
+    private static Receipt getReceipt(long channelId, long receiptId) {
+        Receipt receipt = PromiseService.createReceipt(channelId, 1337, SIGNER.getAddress(), CLIENT, receiptId, receiptId * 10, new byte[32]);
+        return PromiseService.signReceipt(receipt, SIGNER);
+    }
+
+    private static byte[] write(StateSnapshot snapshot, boolean delta) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        if (delta) {
+            snapshot.writeDelta(out);
+        } else {
+            snapshot.write(out);
+        }
+        return out.toByteArray();
+    }
+
+    private static long restore(byte[] image, DefaultDataService service, long lastSequence) throws Exception {
+        return StateSnapshot.restore(new ByteArrayInputStream(image), service, service, service, lastSequence);
+    }
+
+    @Test
+    void fullAndDeltaImagesAreRestored() throws Exception {
+        DefaultDataService hub = new DefaultDataService(SIGNER.getAddress());
+        Channel channel = new Channel(SIGNER.getAddress(), CLIENT, 1337, 60, "0x1111111111111111111111111111111111111111");
+        hub.createChannel(channel);
+        channel.setAddress("0x2222222222222222222222222222222222222222");
+        channel.setStatus(ChannelStatus.DEPLOYED);
+        channel.setHubDeposit(500);
+        long channelId = channel.getId();
+
+        StatefulPromise first = hub.addOutgoingPromise(getPromise(channelId, 1), 0, false);
+        hub.addOutgoingPromise(getPromise(channelId, 2), 0, false);
+        hub.addIncomingPromise(getPromise(channelId, 3), 7L, 0, true);
+        hub.closeOutgoingPromises(Collections.singletonList(first));
+        hub.addOutgoingReceipt(getReceipt(channelId, 1));
+        hub.addIncomingReceipt(getReceipt(channelId, 4), 4L);
+
+        StateSnapshot snapshot = new StateSnapshot(hub, hub, hub);
+        byte[] full = write(snapshot, false);
+
+        DefaultDataService standby = new DefaultDataService(SIGNER.getAddress());
+        long sequence = restore(full, standby, 0);
+        assertEquals(1, sequence);
+        Channel restored = standby.getChannelById(channelId).get();
+        assertEquals(channel.getAddress(), restored.getAddress());
+        assertEquals(ChannelStatus.DEPLOYED, restored.getStatus());
+        assertEquals(channel.getHubDeposit(), restored.getHubDeposit());
+        assertEquals(2L, standby.getOpenOutgoingPromises(channelId).get(0).getPromiseId());
+        assertEquals(getPromise(channelId, 2).getBytecode(), standby.getOutgoingPromiseById(2L).get().getBytecode());
+        assertEquals(7L, standby.getOpenIncomingPromises(channelId).get(0).getPromiseId());
+        assertArrayEquals(PromiseService.hashReceipt(getReceipt(channelId, 4)), PromiseService.hashReceipt(standby.getLatestIncomingReceipt(channelId).get()));
+        assertEquals(1L, standby.getLatestOutgoingReceipt(channelId).get().getReceiptId());
+
+        // A delta only carries the changes, including the promises that are no longer open
+        channel.setHubCredit(20);
+        StatefulPromise incoming = hub.getIncomingPromiseById(7L).get();
+        hub.closeIncomingPromises(Collections.singletonList(incoming));
+        hub.addIncomingPromise(getPromise(channelId, 4), 8L, 0, true);
+        byte[] delta = write(snapshot, true);
+        assertTrue(delta.length < full.length);
+
+        assertThrows(IllegalArgumentException.class, () -> restore(delta, new DefaultDataService(SIGNER.getAddress()), 0));
+        assertEquals(2, restore(delta, standby, sequence));
+        assertEquals(20L, standby.getChannelById(channelId).get().getHubCredit().longValueExact());
+        assertEquals(PromiseStatus.CLOSED, standby.getIncomingPromiseById(7L).get().getStatus());
+        assertEquals(8L, standby.getOpenIncomingPromises(channelId).get(0).getPromiseId());
+        // Restored outgoing ids are not handed out again
+        assertEquals(3L, standby.addOutgoingPromise(getPromise(channelId, 9), 0, false).getPromiseId());
+    }
+
+    @Test
+    void receiptsDroppedByTheStandbyAreSkipped() throws Exception {
+        DefaultDataService hub = new DefaultDataService(SIGNER.getAddress());
+        Channel channel = hub.createChannel(new Channel(SIGNER.getAddress(), CLIENT, 1337, 60, "0x1111111111111111111111111111111111111111"));
+        long channelId = channel.getId();
+        hub.addOutgoingReceipt(getReceipt(channelId, 1));
+        byte[] image = write(new StateSnapshot(hub, hub, hub), false);
+
+        // The standby already holds newer receipts and dropped the one in the image
+        DefaultDataService standby = new DefaultDataService(SIGNER.getAddress(), ReceiptRetentionPolicy.keepLatest(2));
+        for (int i = 1; i <= 4; i++) {
+            standby.addOutgoingReceipt(getReceipt(channelId, i));
+        }
+        assertFalse(standby.getOutgoingReceiptById(channelId, 1).isPresent());
+        restore(image, standby, 0);
+        assertEquals(4L, standby.getLatestOutgoingReceipt(channelId).get().getReceiptId());
+    }
+
+    @Test
+    void corruptImagesAreRejected() throws Exception {
+        DefaultDataService hub = new DefaultDataService(SIGNER.getAddress());
+        Channel channel = new Channel(SIGNER.getAddress(), CLIENT, 1337, 60, "0x1111111111111111111111111111111111111111");
+        hub.createChannel(channel);
+        for (long i = 1; i <= 20; i++) {
+            hub.addIncomingPromise(getPromise(channel.getId(), i), i, 0, true);
+        }
+        byte[] image = write(new StateSnapshot(hub, hub, hub), false);
+
+        byte[] corrupt = image.clone();
+        corrupt[corrupt.length / 2] ^= 0x10;
+        assertThrows(IllegalArgumentException.class, () -> restore(corrupt, new DefaultDataService(SIGNER.getAddress()), 0));
+        byte[] truncated = Arrays.copyOf(image, image.length - 6);
+        assertThrows(IllegalArgumentException.class, () -> restore(truncated, new DefaultDataService(SIGNER.getAddress()), 0));
+
+        DefaultDataService standby = new DefaultDataService(SIGNER.getAddress());
+        restore(image, standby, 0);
+        assertEquals(20, standby.getOpenIncomingPromises(channel.getId()).size());
+    }
+
+    @Test
+    void fullImagesAreRestoredAgainIntoTheSameServices() throws Exception {
+        DefaultDataService hub = new DefaultDataService(SIGNER.getAddress());
+        Channel channel = new Channel(SIGNER.getAddress(), CLIENT, 1337, 60, "0x1111111111111111111111111111111111111111");
+        hub.createChannel(channel);
+        long channelId = channel.getId();
+        hub.addOutgoingPromise(getPromise(channelId, 1), 0, false);
+        hub.addIncomingPromise(getPromise(channelId, 2), 5L, 0, true);
+        hub.addOutgoingReceipt(getReceipt(channelId, 1));
+        hub.addIncomingReceipt(getReceipt(channelId, 3), 3L);
+        StateSnapshot snapshot = new StateSnapshot(hub, hub, hub);
+        byte[] first = write(snapshot, false);
+
+        DefaultDataService standby = new DefaultDataService(SIGNER.getAddress());
+        restore(first, standby, 0);
+        restore(first, standby, 1);
+        hub.addOutgoingReceipt(getReceipt(channelId, 2));
+        restore(write(snapshot, false), standby, 1);
+        assertEquals(2L, standby.getLatestOutgoingReceipt(channelId).get().getReceiptId());
+        assertEquals(3L, standby.getLatestIncomingReceipt(channelId).get().getReceiptId());
+        assertEquals(1, standby.getOpenOutgoingPromises(channelId).size());
+        assertEquals(1, standby.getOpenIncomingPromises(channelId).size());
+
+        // Promises closed on the hub since are closed by the next full image
+        hub.closeIncomingPromises(hub.getOpenIncomingPromises(channelId));
+        restore(write(snapshot, false), standby, 1);
+        assertEquals(PromiseStatus.CLOSED, standby.getIncomingPromiseById(5L).get().getStatus());
+        assertTrue(standby.getOpenIncomingPromises(channelId).isEmpty());
+    }
+
+    @Test
+    void nothingIsRestoredIfTheAccumulatorsDoNotMatch() throws Exception {
+        DefaultDataService hub = new DefaultDataService(SIGNER.getAddress());
+        Channel channel = new Channel(SIGNER.getAddress(), CLIENT, 1337, 60, "0x1111111111111111111111111111111111111111");
+        hub.createChannel(channel);
+        long channelId = channel.getId();
+        hub.addIncomingPromise(getPromise(channelId, 1), 1L, 0, true);
+        StateSnapshot snapshot = new StateSnapshot(hub, hub, hub);
+        DefaultDataService standby = new DefaultDataService(SIGNER.getAddress());
+        restore(write(snapshot, false), standby, 0);
+
+        // The standby diverged from the hub, so the next delta does not apply to it
+        standby.addIncomingPromise(getPromise(channelId, 2), 2L, 0, true);
+        hub.addIncomingPromise(getPromise(channelId, 3), 3L, 0, true);
+        channel.setHubCredit(30);
+        byte[] delta = write(snapshot, true);
+        assertThrows(IllegalStateException.class, () -> restore(delta, standby, 1));
+        assertFalse(standby.getIncomingPromiseById(3L).isPresent());
+        assertEquals(0L, standby.getChannelById(channelId).get().getHubCredit().longValueExact());
+    }
+}
@@ -0,0 +1,107 @@
+package com.visa.vr.upc.sdk.unit;
+
+import com.visa.vr.upc.sdk.DefaultDataService;
+import com.visa.vr.upc.sdk.StatefulUPCService;
+import com.visa.vr.upc.sdk.custody.BasicSigner;
+import com.visa.vr.upc.sdk.domain.Channel;
+import com.visa.vr.upc.sdk.domain.HTLCConstructorParams;
+import com.visa.vr.upc.sdk.domain.StatefulPromise;
+import com.visa.vr.upc.sdk.generated.HTLC;
+import com.visa.vr.upc.sdk.tracing.InMemoryTracer;
+import com.visa.vr.upc.sdk.tracing.Tracing;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.web3j.crypto.ECKeyPair;
+import org.web3j.utils.Numeric;
+
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TracingTest {
+
+    private static final String CHANNEL = "0x71C7656EC7ab88b098defB751B7401B5f6d8976F";
+
+    private static final String TOKEN = "0xe7E6c88Ad1BAb6508a251B7995f44fB1C5E3dCF7";
+
+    private static final BasicSigner HUB = new BasicSigner(ECKeyPair.create(Numeric.hexStringToByteArray("FE4EAEFBE4076F4D726ABD8B20335543E4210524AD3DF189C2BBF3A756702FFE")));
+
+    private static final BasicSigner CLIENT = new BasicSigner(ECKeyPair.create(Numeric.hexStringToByteArray("36A110380859D05E60C2991479DE4D24DA3116A49B342127C1F1F7D536CAE547")));
+
+    private static final HTLCConstructorParams PARAMS = new HTLCConstructorParams(10, new byte[32], 2000);
+
+    private DefaultDataService hubDataService;
+
+    private StatefulUPCService hubService;
+
+    private StatefulUPCService clientService;
+
+    private long channelId;
+
+    private void createServices() {
+        hubDataService = new DefaultDataService(HUB.getAddress());
+        DefaultDataService clientDataService = new DefaultDataService(CLIENT.getAddress());
+        Channel channel = hubDataService.createChannel(new Channel(HUB.getAddress(), CLIENT.getAddress(), 1337, 100, TOKEN));
+        channel.setAddress(CHANNEL);
+        clientDataService.addChannel(channel);
+        channelId = channel.getId();
+        hubService = new StatefulUPCService(HUB, hubDataService, hubDataService, hubDataService);
+        clientService = new StatefulUPCService(CLIENT, clientDataService, clientDataService, clientDataService);
+    }
+
+    @AfterEach
+    void resetTracing() {
+        Tracing.set(null);
+    }
+
+    @Test
+    void paymentStagesAreChildSpansOfTheRoundTrip() throws Exception {
+        createServices();
+        InMemoryTracer tracer = new InMemoryTracer();
+        Tracing.set(tracer);
+
+        StatefulPromise promise = clientService.createPromise(channelId, 0, HTLC.BINARY, PARAMS, new byte[32]);
+        hubService.checkPromise(promise, channelId, HTLC.BINARY, PARAMS, new byte[32]);
+
+        List<InMemoryTracer.RecordedSpan> spans = tracer.getFinishedSpans();
+        Map<Long, InMemoryTracer.RecordedSpan> byId = spans.stream().collect(Collectors.toMap(InMemoryTracer.RecordedSpan::getSpanId, Function.identity()));
+        InMemoryTracer.RecordedSpan send = spans.stream().filter(s -> s.getName().equals(Tracing.PROMISE_SEND)).findFirst().get();
+        assertEquals(0, send.getParentSpanId());
+        assertEquals(channelId, send.getAttributes().get(Tracing.CHANNEL_ID));
+        assertEquals(promise.getPromiseId(), send.getAttributes().get(Tracing.PROMISE_ID));
+        assertEquals(promise.getAddress(), send.getAttributes().get(Tracing.PROMISE_ADDRESS));
+        for (String stage: new String[]{Tracing.PROMISE_CREATE, Tracing.PROMISE_BYTECODE, Tracing.PROMISE_CREATE2,
+                Tracing.PROMISE_HASH, Tracing.PROMISE_SIGN, Tracing.DATA_STORE}) {
+            InMemoryTracer.RecordedSpan span = spans.stream().filter(s -> s.getName().equals(stage) && s.getTraceId() == send.getTraceId()).findFirst().get();
+            assertTrue(span.getDurationNanos() >= 0);
+            assertTrue(span.getDurationNanos() <= send.getDurationNanos());
+        }
+        InMemoryTracer.RecordedSpan bytecode = spans.stream().filter(s -> s.getName().equals(Tracing.PROMISE_BYTECODE)).findFirst().get();
+        assertEquals(Tracing.PROMISE_CREATE, byId.get(bytecode.getParentSpanId()).getName());
+
+        InMemoryTracer.RecordedSpan receive = spans.stream().filter(s -> s.getName().equals(Tracing.PROMISE_RECEIVE)).findFirst().get();
+        assertNotEquals(send.getTraceId(), receive.getTraceId());
+        InMemoryTracer.RecordedSpan verify = spans.stream().filter(s -> s.getName().equals(Tracing.PROMISE_VERIFY)).findFirst().get();
+        assertEquals(receive.getSpanId(), verify.getParentSpanId());
+        assertTrue(spans.stream().anyMatch(s -> s.getName().equals(Tracing.SIGNATURE_RECOVER) && s.getParentSpanId() == verify.getSpanId()));
+    }
+
+    @Test
+    void unsampledTracesAndFailuresAreHandled() {
+        createServices();
+        InMemoryTracer tracer = new InMemoryTracer();
+        Tracing.set(tracer, 0);
+        clientService.createPromise(channelId, 0, HTLC.BINARY, PARAMS, new byte[32]);
+        assertTrue(tracer.getFinishedSpans().isEmpty());
+
+        Tracing.set(tracer, 1);
+        assertThrows(IllegalArgumentException.class, () -> clientService.createPromise(channelId + 1, 0, HTLC.BINARY, PARAMS, new byte[32]));
+        List<InMemoryTracer.RecordedSpan> spans = tracer.getFinishedSpans();
+        assertEquals(1, spans.size());
+        assertTrue(spans.get(0).getException() instanceof IllegalArgumentException);
+        assertThrows(IllegalArgumentException.class, () -> Tracing.set(tracer, 1.5));
+    }
+}
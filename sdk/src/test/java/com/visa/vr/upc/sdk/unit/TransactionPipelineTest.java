@@ -0,0 +1,202 @@
+package com.visa.vr.upc.sdk.unit;
+
+import com.visa.vr.upc.sdk.custody.BasicSigner;
+import com.visa.vr.upc.sdk.tx.ReceiptTracker;
+import com.visa.vr.upc.sdk.tx.TransactionPipeline;
+import io.reactivex.Flowable;
+import org.junit.jupiter.api.Test;
+import org.web3j.crypto.Hash;
+import org.web3j.crypto.Keys;
+import org.web3j.crypto.TransactionDecoder;
+import org.web3j.protocol.Web3j;
+import org.web3j.protocol.Web3jService;
+import org.web3j.protocol.core.BatchRequest;
+import org.web3j.protocol.core.BatchResponse;
+import org.web3j.protocol.core.Request;
+import org.web3j.protocol.core.Response;
+import org.web3j.protocol.core.methods.response.EthBlockNumber;
+import org.web3j.protocol.core.methods.response.EthGetTransactionCount;
+import org.web3j.protocol.core.methods.response.EthGetTransactionReceipt;
+import org.web3j.protocol.core.methods.response.EthSendTransaction;
+import org.web3j.protocol.core.methods.response.TransactionReceipt;
+import org.web3j.protocol.websocket.events.Notification;
+import org.web3j.tx.gas.DefaultGasProvider;
+import org.web3j.utils.Numeric;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TransactionPipelineTest {
+
+    private static final String CHANNEL = "0x00000000000000000000000000000000000000aa";
+
+    @Test
+    void transactionsAreSentWithConsecutiveNoncesAndCompletedPerBlock() throws Exception {
+        FakeNode node = new FakeNode(true);
+        node.failNextSend.set(1);
+        ReceiptTracker tracker = new ReceiptTracker(node, 10, 5000);
+        TransactionPipeline pipeline = new TransactionPipeline(Web3j.build(node), tracker, new BasicSigner(Keys.createEcKeyPair()),
+                1337, new DefaultGasProvider(), 4, 3, 10);
+
+        List<CompletableFuture<TransactionReceipt>> futures = new ArrayList<>();
+        for(int i = 0; i < 20; i++){
+            futures.add(pipeline.submit(CHANNEL, "0x43d726d6", "close"));
+        }
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).get();
+        pipeline.close();
+        tracker.close();
+
+        assertEquals(20, node.sentNonces.size());
+        for(int i = 0; i < 20; i++){
+            assertEquals(BigInteger.valueOf(7 + i), node.sentNonces.get(i));
+        }
+        assertTrue(node.maxPending <= 4);
+        assertTrue(tracker.isBlockReceiptsSupported());
+        assertTrue(node.blockReceiptCalls.get() > 0);
+    }
+
+    @Test
+    void trackerFallsBackToBatchedLookupsWithoutBlockReceipts() throws Exception {
+        FakeNode node = new FakeNode(false);
+        ReceiptTracker tracker = new ReceiptTracker(node, 10, 5000);
+        TransactionPipeline pipeline = new TransactionPipeline(Web3j.build(node), tracker, new BasicSigner(Keys.createEcKeyPair()),
+                1337, new DefaultGasProvider(), 8, 3, 10);
+
+        List<CompletableFuture<TransactionReceipt>> futures = new ArrayList<>();
+        for(int i = 0; i < 20; i++){
+            futures.add(pipeline.submit(CHANNEL, "0x43d726d6", "close"));
+        }
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).get();
+        pipeline.close();
+        tracker.close();
+
+        assertFalse(tracker.isBlockReceiptsSupported());
+        assertTrue(node.batches.get() > 0);
+        assertTrue(node.batches.get() < 20);
+    }
+
+    /**
+     * Accepts raw transactions and mines all pending ones into a new block whenever the block number is asked for.
+     */
+    private static class FakeNode implements Web3jService {
+
+        private final boolean supportsBlockReceipts;
+
+        private final List<BigInteger> sentNonces = new CopyOnWriteArrayList<>();
+
+        private final List<String> pending = new CopyOnWriteArrayList<>();
+
+        private final Map<String, TransactionReceipt> mined = new ConcurrentHashMap<>();
+
+        private final Map<Long, List<TransactionReceipt>> blocks = new ConcurrentHashMap<>();
+
+        private final AtomicInteger failNextSend = new AtomicInteger();
+
+        private final AtomicInteger batches = new AtomicInteger();
+
+        private final AtomicInteger blockReceiptCalls = new AtomicInteger();
+
+        private volatile long head = 100;
+
+        private volatile int maxPending = 0;
+
+        private FakeNode(boolean supportsBlockReceipts) {
+            this.supportsBlockReceipts = supportsBlockReceipts;
+        }
+
+        private synchronized long mine() {
+            List<TransactionReceipt> receipts = new ArrayList<>();
+            for (String hash: pending) {
+                TransactionReceipt receipt = new TransactionReceipt();
+                receipt.setTransactionHash(hash);
+                receipt.setStatus("0x1");
+                receipts.add(receipt);
+                mined.put(hash, receipt);
+            }
+            pending.clear();
+            head++;
+            blocks.put(head, receipts);
+            return head;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <T extends Response> T send(Request request, Class<T> responseType) throws IOException {
+            switch (request.getMethod()){
+                case "eth_getTransactionCount":
+                    EthGetTransactionCount count = new EthGetTransactionCount();
+                    count.setResult(Numeric.encodeQuantity(BigInteger.valueOf(7 + sentNonces.size())));
+                    return (T) count;
+                case "eth_blockNumber":
+                    EthBlockNumber blockNumber = new EthBlockNumber();
+                    blockNumber.setResult(Numeric.encodeQuantity(BigInteger.valueOf(mine())));
+                    return (T) blockNumber;
+                case "eth_getBlockReceipts":
+                    ReceiptTracker.EthBlockReceipts blockReceipts = new ReceiptTracker.EthBlockReceipts();
+                    if(!supportsBlockReceipts){
+                        blockReceipts.setError(new Response.Error(-32601, "the method eth_getBlockReceipts does not exist"));
+                        return (T) blockReceipts;
+                    }
+                    blockReceiptCalls.incrementAndGet();
+                    long block = Numeric.decodeQuantity((String) request.getParams().get(0)).longValue();
+                    blockReceipts.setResult(blocks.getOrDefault(block, new ArrayList<>()));
+                    return (T) blockReceipts;
+                case "eth_sendRawTransaction":
+                    if(failNextSend.getAndDecrement() > 0){
+                        throw new IOException("connection reset");
+                    }
+                    String raw = (String) request.getParams().get(0);
+                    sentNonces.add(TransactionDecoder.decode(raw).getNonce());
+                    String hash = Numeric.toHexString(Hash.sha3(Numeric.hexStringToByteArray(raw)));
+                    pending.add(hash);
+                    maxPending = Math.max(maxPending, pending.size());
+                    EthSendTransaction sent = new EthSendTransaction();
+                    sent.setResult(hash);
+                    return (T) sent;
+                default:
+                    throw new IOException("Unsupported method " + request.getMethod());
+            }
+        }
+
+        @Override
+        public BatchResponse sendBatch(BatchRequest batchRequest) {
+            batches.incrementAndGet();
+            List<Response<?>> responses = new ArrayList<>();
+            for (Request<?, ? extends Response<?>> request: batchRequest.getRequests()) {
+                String hash = (String) request.getParams().get(0);
+                EthGetTransactionReceipt response = new EthGetTransactionReceipt();
+                response.setResult(mined.get(hash));
+                responses.add(response);
+            }
+            return new BatchResponse(batchRequest.getRequests(), responses);
+        }
+
+        @Override
+        public <T extends Response> CompletableFuture<T> sendAsync(Request request, Class<T> responseType) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public CompletableFuture<BatchResponse> sendBatchAsync(BatchRequest batchRequest) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public <T extends Notification<?>> Flowable<T> subscribe(Request request, String unsubscribeMethod, Class<T> responseType) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package com.visa.vr.upc.sdk.unit;
+
+import com.visa.vr.upc.sdk.AbiHashEncoder;
+import com.visa.vr.upc.sdk.domain.UInt256;
+import org.junit.jupiter.api.Test;
+import org.web3j.abi.TypeEncoder;
+import org.web3j.abi.datatypes.generated.Uint256;
+import org.web3j.utils.Numeric;
+
+import java.math.BigInteger;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class UInt256Test {
+
+    private static final BigInteger MAX = BigInteger.ONE.shiftLeft(256).subtract(BigInteger.ONE);
+
+    private static BigInteger random(Random random) {
+        // Mix small values and values with words full of ones, to exercise the carries
+        switch (random.nextInt(3)) {
+            case 0:
+                return BigInteger.valueOf(random.nextInt(1000));
+            case 1:
+                return MAX.shiftRight(random.nextInt(256));
+            default:
+                return new BigInteger(random.nextInt(257), random);
+        }
+    }
+
+    @Test
+    void arithmeticMatchesBigInteger() {
+        Random random = new Random(11);
+        for (int i = 0; i < 2000; i++) {
+            BigInteger a = random(random);
+            BigInteger b = random(random);
+            UInt256 x = UInt256.valueOf(a);
+            UInt256 y = UInt256.valueOf(b);
+
+            assertEquals(a, x.toBigInteger());
+            assertEquals(Integer.signum(a.compareTo(b)), Integer.signum(x.compareTo(y)));
+            if (a.add(b).compareTo(MAX) <= 0) {
+                assertEquals(a.add(b), x.add(y).toBigInteger());
+            } else {
+                assertThrows(ArithmeticException.class, () -> x.add(y));
+            }
+            if (a.compareTo(b) >= 0) {
+                assertEquals(a.subtract(b), x.subtract(y).toBigInteger());
+            } else {
+                assertThrows(ArithmeticException.class, () -> x.subtract(y));
+            }
+            byte[] encoded = new byte[32];
+            x.writeTo(encoded, 0);
+            assertEquals(TypeEncoder.encode(new Uint256(a)), Numeric.toHexStringNoPrefix(encoded));
+            assertEquals(x, UInt256.fromBytes(encoded, 0));
+        }
+    }
+
+    @Test
+    void valuesBeyondLongAreKept() {
+        // 10^30, e.g. a trillion tokens with 18 decimals
+        BigInteger large = BigInteger.TEN.pow(30);
+        UInt256 amount = UInt256.valueOf(large);
+        assertEquals(large.add(BigInteger.valueOf(5)), amount.add(5).toBigInteger());
+        assertEquals(large.subtract(BigInteger.valueOf(5)), amount.add(-5).toBigInteger());
+        assertThrows(ArithmeticException.class, amount::longValueExact);
+        assertEquals(1e30, amount.doubleValue(), 1e15);
+        assertArrayEquals(AbiHashEncoder.start().uint256(UInt256.valueOf(42)).hash(), AbiHashEncoder.start().uint256(42).hash());
+        assertThrows(IllegalArgumentException.class, () -> UInt256.valueOf(-1));
+        assertThrows(IllegalArgumentException.class, () -> UInt256.valueOf(MAX.add(BigInteger.ONE)));
+    }
+}
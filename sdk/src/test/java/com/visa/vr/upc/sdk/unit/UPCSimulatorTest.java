@@ -0,0 +1,127 @@
+package com.visa.vr.upc.sdk.unit;
+
+import com.visa.vr.upc.sdk.MerkleAccumulator;
+import com.visa.vr.upc.sdk.PromiseService;
+import com.visa.vr.upc.sdk.custody.BasicSigner;
+import com.visa.vr.upc.sdk.domain.Bytecode;
+import com.visa.vr.upc.sdk.domain.HTLCConstructorParams;
+import com.visa.vr.upc.sdk.domain.Promise;
+import com.visa.vr.upc.sdk.domain.Receipt;
+import com.visa.vr.upc.sdk.domain.UPCState;
+import com.visa.vr.upc.sdk.generated.HTLC;
+import com.visa.vr.upc.sdk.generated.UPC2;
+import com.visa.vr.upc.sdk.simulation.UPCSimulator;
+import org.junit.jupiter.api.Test;
+import org.web3j.crypto.ECKeyPair;
+import org.web3j.tuples.generated.Tuple4;
+import org.web3j.utils.Numeric;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class UPCSimulatorTest {
+
+    private static final String CHANNEL = "0x71C7656EC7ab88b098defB751B7401B5f6d8976F";
+
+    private static final BasicSigner HUB = new BasicSigner(ECKeyPair.create(Numeric.hexStringToByteArray("20C52C16E0813E342E4E2A700A1EEB104F11A4634B3B4839F822E044D63BD2F0")));
+
+    private static final BasicSigner CLIENT = new BasicSigner(ECKeyPair.create(Numeric.hexStringToByteArray("36A110380859D05E60C2991479DE4D24DA3116A49B342127C1F1F7D536CAE547")));
+
+    private static final long CHAIN_ID = 1337;
+
+    private static final long CHANNEL_ID = 1;
+
+    private static UPCSimulator getSimulator(int unresolvedPromiseCount) {
+        UPC2.ChannelParams params = new UPC2.ChannelParams(BigInteger.valueOf(CHANNEL_ID), BigInteger.valueOf(CHAIN_ID),
+                HUB.getAddress(), CLIENT.getAddress(), BigInteger.valueOf(100), "0x00000000000000000000000000000000000000ee");
+        UPC2.Party hub = new UPC2.Party(HUB.getAddress(), BigInteger.valueOf(100), BigInteger.ZERO, BigInteger.ZERO, BigInteger.ZERO, BigInteger.ZERO, false, false, false, new byte[32]);
+        UPC2.Party client = new UPC2.Party(CLIENT.getAddress(), BigInteger.valueOf(100), BigInteger.ZERO, BigInteger.ZERO, BigInteger.ZERO, BigInteger.ZERO, false, false, false, new byte[32]);
+        UPCState state = UPCState.fromContract(new Tuple4<>(BigInteger.ZERO, hub, client, BigInteger.ZERO));
+        UPCSimulator simulator = UPCSimulator.fromState(CHANNEL, params, state, unresolvedPromiseCount);
+        simulator.setTimestamp(1000);
+        return simulator;
+    }
+
+    private static Promise getPromise(long receiptId, byte salt) {
+        byte[] saltBytes = new byte[32];
+        saltBytes[31] = salt;
+        Promise promise = PromiseService.createPromise(CHANNEL_ID, CHAIN_ID, CHANNEL, CLIENT.getAddress(), HUB.getAddress(), receiptId,
+                HTLC.BINARY, new HTLCConstructorParams(20, new byte[32], 2000), saltBytes);
+        return PromiseService.signPromise(promise, CLIENT);
+    }
+
+    @Test
+    void disputeSequenceIsSimulated() throws IOException {
+        UPCSimulator simulator = getSimulator(0);
+        Promise promise = getPromise(1, (byte) 1);
+        MerkleAccumulator acc = PromiseService.getAccumulator(Arrays.asList(promise, getPromise(2, (byte) 2)));
+        Receipt receipt = PromiseService.signReceipt(
+                PromiseService.createReceipt(CHANNEL_ID, CHAIN_ID, CLIENT.getAddress(), HUB.getAddress(), 3, 10, acc.getRootHash()), CLIENT);
+
+        assertTrue(simulator.registerReceipt(HUB.getAddress(), receipt).isSuccess());
+        assertEquals(UPCSimulator.Status.PAUSE, simulator.getStatus());
+        assertEquals(1100, simulator.getExpiry());
+        assertEquals(BigInteger.valueOf(10), simulator.getCredit(HUB.getAddress()));
+        assertEquals("Receipt id is not greater than the registered receipt id", simulator.checkRegisterReceipt(HUB.getAddress(), receipt).getReason());
+
+        assertEquals("membership proof of the promise inside the accumulator not verified",
+                simulator.checkRegisterPromise(HUB.getAddress(), promise, null).getReason());
+        byte[] proof = PromiseService.getAccumulatorProof(acc, promise);
+        UPCSimulator plan = simulator.copy();
+        assertTrue(plan.registerPromise(HUB.getAddress(), promise, proof).isSuccess());
+        assertEquals(UPCSimulator.Status.CLOSING, plan.getStatus());
+        assertEquals(1, plan.getUnresolvedPromiseCount());
+        assertEquals(UPCSimulator.Status.PAUSE, simulator.getStatus());
+        assertEquals("Create2: Failed on deploy", plan.checkRegisterPromise(HUB.getAddress(), promise, proof).getReason());
+        assertEquals("Channel is not active or paused", plan.checkWithdrawNotClosing(CLIENT.getAddress(), 5).getReason());
+
+        assertEquals("Channel is not closed", plan.checkWithdrawClosing(HUB.getAddress()).getReason());
+        plan.setTimestamp(1100);
+        assertEquals("Expiry has passed", plan.checkClose(CLIENT.getAddress()).getReason());
+        assertTrue(plan.checkWithdrawClosing(HUB.getAddress()).isSuccess());
+    }
+
+    @Test
+    void invalidCallsAreRejected() {
+        UPCSimulator simulator = getSimulator(UPCSimulator.UNRESOLVED_PROMISE_LIMIT);
+        Receipt forged = PromiseService.signReceipt(
+                PromiseService.createReceipt(CHANNEL_ID, CHAIN_ID, HUB.getAddress(), CLIENT.getAddress(), 3, 10, new byte[32]), HUB);
+        assertEquals("signature of other-party on receipt does not verify", simulator.checkRegisterReceipt(HUB.getAddress(), forged).getReason());
+        assertTrue(simulator.checkRegisterReceipt(CLIENT.getAddress(), forged).isSuccess());
+        assertEquals("Sender is not a channel participant", simulator.checkClose("0x00000000000000000000000000000000000000ee").getReason());
+        assertEquals("Unresolved promises array is maxed out.", simulator.checkRegisterPromise(HUB.getAddress(), getPromise(1, (byte) 1), null).getReason());
+
+        // Both parties agree to resume off-chain, so the second request settles and the channel pauses again
+        assertTrue(simulator.withdrawNotClosing(HUB.getAddress(), 40).isSuccess());
+        assertTrue(simulator.withdrawNotClosing(CLIENT.getAddress(), 0).isSuccess());
+        assertEquals(BigInteger.valueOf(60), simulator.getDeposit(HUB.getAddress()));
+        assertEquals(UPCSimulator.Status.PAUSE, simulator.getStatus());
+
+        assertTrue(simulator.close(HUB.getAddress()).isSuccess());
+        assertTrue(simulator.close(CLIENT.getAddress()).isSuccess());
+        // As in the contract, setClosing overrides the closed status
+        assertEquals(UPCSimulator.Status.CLOSING, simulator.getStatus());
+    }
+
+    @Test
+    void closeBySecondPartyIsCheckedAfterTheBody() {
+        UPCSimulator simulator = getSimulator(0);
+        assertTrue(simulator.close(HUB.getAddress()).isSuccess());
+        assertEquals(UPCSimulator.Status.CLOSING, simulator.getStatus());
+        simulator.setTimestamp(1100);
+        // The client's close sets the channel to CLOSED before setClosing would check the expiry
+        assertTrue(simulator.checkClose(CLIENT.getAddress()).isSuccess());
+        assertEquals("Expiry has passed", simulator.checkClose(HUB.getAddress()).getReason());
+        assertTrue(simulator.close(CLIENT.getAddress()).isSuccess());
+    }
+
+    @Test
+    void emptyBytecodeIsRejected() {
+        Promise promise = getPromise(0, (byte) 3);
+        promise.setBytecode(Bytecode.of("0x"));
+        assertEquals("Create2: bytecode length is zero", getSimulator(0).checkRegisterPromise(CLIENT.getAddress(), promise, null).getReason());
+    }
+}
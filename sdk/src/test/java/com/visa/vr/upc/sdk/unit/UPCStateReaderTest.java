@@ -0,0 +1,139 @@
+package com.visa.vr.upc.sdk.unit;
+
+import com.visa.vr.upc.sdk.UPCStateReader;
+import com.visa.vr.upc.sdk.domain.UPCState;
+import com.visa.vr.upc.sdk.generated.UPC2;
+import io.reactivex.Flowable;
+import org.junit.jupiter.api.Test;
+import org.web3j.abi.FunctionEncoder;
+import org.web3j.abi.datatypes.generated.Uint256;
+import org.web3j.abi.datatypes.generated.Uint8;
+import org.web3j.protocol.Web3j;
+import org.web3j.protocol.Web3jService;
+import org.web3j.protocol.core.BatchRequest;
+import org.web3j.protocol.core.BatchResponse;
+import org.web3j.protocol.core.Request;
+import org.web3j.protocol.core.Response;
+import org.web3j.protocol.core.methods.request.Transaction;
+import org.web3j.protocol.core.methods.response.EthBlockNumber;
+import org.web3j.protocol.core.methods.response.EthCall;
+import org.web3j.protocol.websocket.events.Notification;
+import org.web3j.utils.Numeric;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class UPCStateReaderTest {
+
+    private static final String HUB = "0x00000000000000000000000000000000000000a1";
+
+    private static final String CLIENT = "0x00000000000000000000000000000000000000b2";
+
+    @Test
+    void statesAreBatchedAndCachedWithinABlock() throws Exception {
+        FakeNode node = new FakeNode();
+        UPCStateReader reader = new UPCStateReader(Web3j.build(node), 3, 5, 0);
+        List<String> channels = new ArrayList<>();
+        for(int i = 1; i <= 7; i++){
+            channels.add(String.format("0x%040x", i));
+        }
+
+        Map<String, UPCState> states = reader.getStates(channels).get();
+        assertEquals(7, states.size());
+        assertEquals(3, node.batches.get());
+        assertEquals(7, node.calls.get());
+        UPCState state = states.get(channels.get(4));
+        assertEquals(5, state.getExpiry());
+        assertEquals(HUB, state.getHub().addr);
+        assertEquals(BigInteger.valueOf(100), state.getClient().deposit);
+
+        reader.getStates(channels).get();
+        assertEquals(7, node.calls.get());
+
+        node.block.incrementAndGet();
+        reader.getStates(channels.subList(0, 2)).get();
+        assertEquals(9, node.calls.get());
+        reader.close();
+    }
+
+    @Test
+    void singleReadsAreCoalesced() throws Exception {
+        FakeNode node = new FakeNode();
+        UPCStateReader reader = new UPCStateReader(Web3j.build(node), 100, 50, 0);
+        List<CompletableFuture<UPCState>> futures = new ArrayList<>();
+        for(int i = 1; i <= 10; i++){
+            futures.add(reader.getState(String.format("0x%040x", i)));
+        }
+        for (CompletableFuture<UPCState> future: futures) {
+            assertNotNull(future.get());
+        }
+        assertEquals(1, node.batches.get());
+        reader.close();
+    }
+
+    /**
+     * Answers getState for any address, with the expiry set to the address.
+     */
+    private static class FakeNode implements Web3jService {
+
+        private final AtomicInteger block = new AtomicInteger(10);
+
+        private final AtomicInteger batches = new AtomicInteger();
+
+        private final AtomicInteger calls = new AtomicInteger();
+
+        private static String state(BigInteger expiry) {
+            UPC2.Party hub = new UPC2.Party(HUB, BigInteger.valueOf(100), BigInteger.ZERO, BigInteger.ZERO, BigInteger.ZERO, BigInteger.ZERO, false, false, false, new byte[32]);
+            UPC2.Party client = new UPC2.Party(CLIENT, BigInteger.valueOf(100), BigInteger.ZERO, BigInteger.ZERO, BigInteger.ZERO, BigInteger.ZERO, false, false, false, new byte[32]);
+            return "0x" + FunctionEncoder.encodeConstructor(Arrays.asList(new Uint8(0), hub, client, new Uint256(expiry)));
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <T extends Response> T send(Request request, Class<T> responseType) {
+            EthBlockNumber response = new EthBlockNumber();
+            response.setResult(Numeric.encodeQuantity(BigInteger.valueOf(block.get())));
+            return (T) response;
+        }
+
+        @Override
+        public <T extends Response> CompletableFuture<T> sendAsync(Request request, Class<T> responseType) {
+            return CompletableFuture.completedFuture(send(request, responseType));
+        }
+
+        @Override
+        public BatchResponse sendBatch(BatchRequest batchRequest) {
+            batches.incrementAndGet();
+            List<Response<?>> responses = new ArrayList<>();
+            for (Request<?, ? extends Response<?>> request: batchRequest.getRequests()) {
+                calls.incrementAndGet();
+                Transaction call = (Transaction) request.getParams().get(0);
+                EthCall response = new EthCall();
+                response.setResult(state(Numeric.toBigInt(call.getTo())));
+                responses.add(response);
+            }
+            return new BatchResponse(batchRequest.getRequests(), responses);
+        }
+
+        @Override
+        public CompletableFuture<BatchResponse> sendBatchAsync(BatchRequest batchRequest) {
+            return CompletableFuture.completedFuture(sendBatch(batchRequest));
+        }
+
+        @Override
+        public <T extends Notification<?>> Flowable<T> subscribe(Request request, String unsubscribeMethod, Class<T> responseType) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}